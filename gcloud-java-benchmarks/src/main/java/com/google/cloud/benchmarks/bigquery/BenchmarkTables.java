@@ -0,0 +1,149 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.benchmarks.bigquery;
+
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.http.LowLevelHttpResponse;
+import com.google.api.client.json.Json;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+import com.google.api.services.bigquery.model.TableCell;
+import com.google.api.services.bigquery.model.TableRow;
+import com.google.cloud.AuthCredentials;
+import com.google.cloud.HttpServiceOptions.HttpTransportFactory;
+import com.google.cloud.RetryParams;
+import com.google.cloud.bigquery.BigQuery;
+import com.google.cloud.bigquery.BigQueryOptions;
+import com.google.cloud.bigquery.Field;
+import com.google.cloud.bigquery.Schema;
+import com.google.cloud.bigquery.spi.BigQueryRpc;
+import com.google.cloud.bigquery.spi.BigQueryRpcFactory;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Helpers to create table rows and a {@link BigQuery} service backed by a stub
+ * {@link BigQueryRpc}, for BigQuery benchmarks.
+ */
+final class BenchmarkTables {
+
+  static final String PROJECT = "benchmark-project";
+  static final Schema SCHEMA = Schema.of(
+      Field.of("id", Field.Type.integer()),
+      Field.of("price", Field.Type.floatingPoint()),
+      Field.of("active", Field.Type.bool()),
+      Field.of("country", Field.Type.string()),
+      Field.of("created", Field.Type.timestamp()));
+  private static final String[] COUNTRIES = {"US", "IT", "FR", "DE", "JP", "BR", "IN", "CN"};
+
+  private BenchmarkTables() {}
+
+  /**
+   * Returns {@code count} rows for {@link #SCHEMA}, encoded as returned by the service.
+   */
+  static List<TableRow> rows(int count) {
+    Random random = new Random(42);
+    List<TableRow> rows = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      List<TableCell> cells = new ArrayList<>(5);
+      cells.add(new TableCell().setV(Long.toString(random.nextLong())));
+      cells.add(new TableCell().setV(Double.toString(random.nextDouble() * 1000)));
+      cells.add(new TableCell().setV(Boolean.toString(random.nextBoolean())));
+      cells.add(new TableCell().setV(COUNTRIES[random.nextInt(COUNTRIES.length)]));
+      cells.add(new TableCell().setV(
+          Double.toString(1.4e9 + random.nextInt(100_000_000) + random.nextInt(1000) / 1000.0)));
+      rows.add(new TableRow().setF(cells));
+    }
+    return rows;
+  }
+
+  /**
+   * Returns a {@link BigQuery} service whose RPC layer answers calls with {@code handler}. Calls
+   * not handled by {@code handler} throw {@link UnsupportedOperationException}.
+   */
+  static BigQuery service(final InvocationHandler handler) {
+    final BigQueryRpc rpc = (BigQueryRpc) Proxy.newProxyInstance(
+        BigQueryRpc.class.getClassLoader(), new Class<?>[] {BigQueryRpc.class}, handler);
+    return BigQueryOptions.builder()
+        .projectId(PROJECT)
+        .serviceRpcFactory(new BigQueryRpcFactory() {
+          @Override
+          public BigQueryRpc create(BigQueryOptions options) {
+            return rpc;
+          }
+        })
+        .retryParams(RetryParams.noRetries())
+        .build()
+        .service();
+  }
+
+  /**
+   * Returns a {@link BigQuery} service using the default RPC layer over an HTTP transport that
+   * answers every request with {@code content}, a JSON response body.
+   */
+  static BigQuery httpService(final byte[] content) {
+    return BigQueryOptions.builder()
+        .projectId(PROJECT)
+        .authCredentials(AuthCredentials.noAuth())
+        .httpTransportFactory(new HttpTransportFactory() {
+          @Override
+          public HttpTransport create() {
+            return new MockHttpTransport() {
+              @Override
+              public LowLevelHttpRequest buildRequest(String method, String url) {
+                return new MockLowLevelHttpRequest(url) {
+                  @Override
+                  public LowLevelHttpResponse execute() {
+                    return new MockLowLevelHttpResponse()
+                        .setContentType(Json.MEDIA_TYPE)
+                        .setContent(content);
+                  }
+                };
+              }
+            };
+          }
+        })
+        .retryParams(RetryParams.noRetries())
+        .build()
+        .service();
+  }
+
+  /**
+   * Returns an invocation handler that answers {@code methodName} calls with {@code result}.
+   */
+  static InvocationHandler answering(final String methodName, final Object result) {
+    return new InvocationHandler() {
+      @Override
+      public Object invoke(Object proxy, Method method, Object[] args) throws Exception {
+        if (method.getDeclaringClass() == Object.class) {
+          return method.invoke(this, args);
+        }
+        if (method.getName().equals(methodName)) {
+          return result;
+        }
+        throw new UnsupportedOperationException(method.getName());
+      }
+    };
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.benchmarks.bigquery;
+
+import com.google.api.services.bigquery.model.TableRow;
+import com.google.cloud.Page;
+import com.google.cloud.bigquery.BigQuery;
+import com.google.cloud.bigquery.ColumnBatch;
+import com.google.cloud.bigquery.FieldValue;
+import com.google.cloud.bigquery.TableId;
+import com.google.cloud.bigquery.spi.BigQueryRpc;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares decoding a page of table data into {@link FieldValue} rows, via
+ * {@link BigQuery#listTableData(TableId, BigQuery.TableDataListOption...)}, with decoding it into
+ * typed columns, via
+ * {@link BigQuery#listTableDataColumns(TableId, com.google.cloud.bigquery.Schema,
+ * BigQuery.TableDataListOption...)}. Each benchmark decodes a page and reads every value once.
+ * Use {@code -prof gc} to compare allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RowDecodingBenchmark {
+
+  private static final TableId TABLE_ID = TableId.of("dataset", "table");
+
+  @Param({"1000", "100000"})
+  public int rows;
+
+  private BigQuery bigquery;
+
+  @Setup
+  public void setUp() {
+    List<TableRow> page = BenchmarkTables.rows(rows);
+    bigquery = BenchmarkTables.service(BenchmarkTables.answering("listTableData",
+        BigQueryRpc.Tuple.<String, Iterable<TableRow>>of(null, page)));
+  }
+
+  @Benchmark
+  public void fieldValues(Blackhole blackhole) {
+    Page<List<FieldValue>> page = bigquery.listTableData(TABLE_ID);
+    for (List<FieldValue> row : page.values()) {
+      blackhole.consume(row.get(0).longValue());
+      blackhole.consume(row.get(1).doubleValue());
+      blackhole.consume(row.get(2).booleanValue());
+      blackhole.consume(row.get(3).stringValue());
+      blackhole.consume(row.get(4).timestampValue());
+    }
+  }
+
+  @Benchmark
+  public void columns(Blackhole blackhole) {
+    Page<ColumnBatch> page = bigquery.listTableDataColumns(TABLE_ID, BenchmarkTables.SCHEMA);
+    for (ColumnBatch batch : page.values()) {
+      ColumnBatch.LongColumn ids = batch.column(0);
+      ColumnBatch.DoubleColumn prices = batch.column(1);
+      ColumnBatch.BooleanColumn active = batch.column(2);
+      ColumnBatch.StringColumn countries = batch.column(3);
+      ColumnBatch.LongColumn created = batch.column(4);
+      for (int row = 0; row < batch.rowCount(); row++) {
+        blackhole.consume(ids.longValue(row));
+        blackhole.consume(prices.doubleValue(row));
+        blackhole.consume(active.booleanValue(row));
+        blackhole.consume(countries.stringValue(row));
+        blackhole.consume(created.longValue(row));
+      }
+    }
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.benchmarks.bigquery;
+
+import com.google.api.client.json.jackson.JacksonFactory;
+import com.google.api.services.bigquery.model.TableDataList;
+import com.google.cloud.Page;
+import com.google.cloud.bigquery.BigQuery;
+import com.google.cloud.bigquery.FieldValue;
+import com.google.cloud.bigquery.RowStream;
+import com.google.cloud.bigquery.TableId;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures reading a page of table data from its JSON response through the default RPC layer,
+ * comparing {@link BigQuery#listTableData(TableId, BigQuery.TableDataListOption...)}, which parses
+ * the response into {@code TableRow} objects and then into {@link FieldValue} rows, with
+ * {@link BigQuery#openTableData(TableId, BigQuery.TableDataListOption...)}, which parses rows
+ * incrementally from the response. Use {@code -prof gc} to compare allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TableDataParsingBenchmark {
+
+  private static final TableId TABLE_ID = TableId.of("dataset", "table");
+
+  @Param({"1000", "100000"})
+  public int rows;
+
+  private BigQuery bigquery;
+
+  @Setup
+  public void setUp() throws IOException {
+    TableDataList page = new TableDataList().setRows(BenchmarkTables.rows(rows));
+    bigquery = BenchmarkTables.httpService(new JacksonFactory().toByteArray(page));
+  }
+
+  @Benchmark
+  public void listTableData(Blackhole blackhole) {
+    Page<List<FieldValue>> page = bigquery.listTableData(TABLE_ID);
+    for (List<FieldValue> row : page.values()) {
+      consume(blackhole, row);
+    }
+  }
+
+  @Benchmark
+  public void openTableData(Blackhole blackhole) {
+    try (RowStream stream = bigquery.openTableData(TABLE_ID)) {
+      while (stream.hasNext()) {
+        consume(blackhole, stream.next());
+      }
+    }
+  }
+
+  private static void consume(Blackhole blackhole, List<FieldValue> row) {
+    blackhole.consume(row.get(0).longValue());
+    blackhole.consume(row.get(1).doubleValue());
+    blackhole.consume(row.get(2).booleanValue());
+    blackhole.consume(row.get(3).stringValue());
+    blackhole.consume(row.get(4).timestampValue());
+  }
+}
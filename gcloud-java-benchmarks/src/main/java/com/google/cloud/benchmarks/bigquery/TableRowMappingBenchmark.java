@@ -0,0 +1,139 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.benchmarks.bigquery;
+
+import com.google.api.services.bigquery.model.GetQueryResultsResponse;
+import com.google.api.services.bigquery.model.JobReference;
+import com.google.api.services.bigquery.model.TableDataInsertAllResponse;
+import com.google.cloud.bigquery.BigQuery;
+import com.google.cloud.bigquery.EncodedInsertAllRequest;
+import com.google.cloud.bigquery.FieldValue;
+import com.google.cloud.bigquery.InsertAllRequest;
+import com.google.cloud.bigquery.InsertAllRequest.RowToInsert;
+import com.google.cloud.bigquery.JobId;
+import com.google.cloud.bigquery.QueryResult;
+import com.google.cloud.bigquery.TableId;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the conversions between rows and their {@code TableRow} representation:
+ * {@link BigQuery#insertAll(InsertAllRequest)} maps {@link RowToInsert} objects to request rows,
+ * {@link BigQuery#insertAll(EncodedInsertAllRequest)} encodes rows directly into the request body,
+ * {@link BigQuery#getQueryResults(JobId, BigQuery.QueryResultsOption...)} maps response rows to
+ * {@link FieldValue} rows. All run against a stub RPC layer returning canned responses.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TableRowMappingBenchmark {
+
+  private static final TableId TABLE_ID = TableId.of("dataset", "table");
+  private static final JobId JOB_ID = JobId.of("job");
+
+  @Param({"500", "10000"})
+  public int rows;
+
+  private BigQuery insertService;
+  private BigQuery queryService;
+  private InsertAllRequest insertRequest;
+  private EncodedInsertAllRequest encodedRequest;
+  private long[] ids;
+  private double[] prices;
+  private boolean[] active;
+  private double[] created;
+
+  @Setup
+  public void setUp() {
+    insertService = BenchmarkTables.service(
+        BenchmarkTables.answering("insertAll", new TableDataInsertAllResponse()));
+    GetQueryResultsResponse response = new GetQueryResultsResponse()
+        .setJobReference(new JobReference().setProjectId(BenchmarkTables.PROJECT).setJobId("job"))
+        .setJobComplete(true)
+        .setCacheHit(false)
+        .setTotalBytesProcessed(0L)
+        .setTotalRows(BigInteger.valueOf(rows))
+        .setRows(BenchmarkTables.rows(rows));
+    queryService =
+        BenchmarkTables.service(BenchmarkTables.answering("getQueryResults", response));
+    Random random = new Random(42);
+    ids = new long[rows];
+    prices = new double[rows];
+    active = new boolean[rows];
+    created = new double[rows];
+    List<RowToInsert> toInsert = new ArrayList<>(rows);
+    for (int i = 0; i < rows; i++) {
+      ids[i] = random.nextLong();
+      prices[i] = random.nextDouble() * 1000;
+      active[i] = random.nextBoolean();
+      created[i] = 1.4e9 + random.nextInt(100_000_000);
+      Map<String, Object> content = new HashMap<>();
+      content.put("id", ids[i]);
+      content.put("price", prices[i]);
+      content.put("active", active[i]);
+      content.put("country", "US");
+      content.put("created", created[i]);
+      toInsert.add(RowToInsert.of(Integer.toString(i), content));
+    }
+    insertRequest = InsertAllRequest.of(TABLE_ID, toInsert);
+    encodedRequest = EncodedInsertAllRequest.builder(TABLE_ID, BenchmarkTables.SCHEMA).build();
+  }
+
+  @Benchmark
+  public void insertAll(Blackhole blackhole) {
+    blackhole.consume(insertService.insertAll(insertRequest));
+  }
+
+  @Benchmark
+  public void insertAllEncoded(Blackhole blackhole) {
+    encodedRequest.clear();
+    for (int i = 0; i < rows; i++) {
+      encodedRequest.addRow(Integer.toString(i))
+          .set("id", ids[i])
+          .set("price", prices[i])
+          .set("active", active[i])
+          .set("country", "US")
+          .set("created", created[i]);
+    }
+    blackhole.consume(insertService.insertAll(encodedRequest));
+  }
+
+  @Benchmark
+  public void queryResults(Blackhole blackhole) {
+    QueryResult result = queryService.getQueryResults(JOB_ID).result();
+    for (List<FieldValue> row : result.values()) {
+      blackhole.consume(row.get(0).longValue());
+      blackhole.consume(row.get(3).stringValue());
+    }
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.benchmarks.datastore;
+
+import com.google.cloud.RetryParams;
+import com.google.cloud.datastore.Blob;
+import com.google.cloud.datastore.Datastore;
+import com.google.cloud.datastore.DatastoreOptions;
+import com.google.cloud.datastore.DateTime;
+import com.google.cloud.datastore.Entity;
+import com.google.cloud.datastore.FullEntity;
+import com.google.cloud.datastore.Key;
+import com.google.cloud.datastore.KeyFactory;
+import com.google.cloud.datastore.LatLng;
+import com.google.cloud.datastore.spi.DatastoreRpc;
+import com.google.cloud.datastore.spi.DatastoreRpcFactory;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Helpers to create entities and a {@link Datastore} service backed by a stub
+ * {@link DatastoreRpc}, for Datastore benchmarks.
+ */
+final class BenchmarkEntities {
+
+  static final String PROJECT = "benchmark-project";
+  private static final String[] TAGS = {"red", "green", "blue", "small", "large", "new", "used"};
+
+  private BenchmarkEntities() {}
+
+  /**
+   * Returns {@code count} entities with properties of every common value type, including a list
+   * and an embedded entity.
+   */
+  static List<Entity> entities(int count) {
+    Random random = new Random(42);
+    KeyFactory keyFactory = new KeyFactory(PROJECT).kind("Product");
+    Key owner = new KeyFactory(PROJECT).kind("User").newKey("owner");
+    byte[] thumbnail = new byte[256];
+    random.nextBytes(thumbnail);
+    List<Entity> entities = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      FullEntity<?> dimensions = FullEntity.builder()
+          .set("width", random.nextDouble() * 100)
+          .set("height", random.nextDouble() * 100)
+          .set("unit", "cm")
+          .build();
+      entities.add(Entity.builder(keyFactory.newKey(i + 1))
+          .set("name", "Product " + i)
+          .set("description", "A product used to measure entity conversions, number " + i)
+          .set("quantity", random.nextInt(1000))
+          .set("price", random.nextDouble() * 1000)
+          .set("available", random.nextBoolean())
+          .set("created", DateTime.copyFrom(new Date(1_460_000_000_000L + random.nextInt())))
+          .set("location", LatLng.of(random.nextDouble() * 90, random.nextDouble() * 180))
+          .set("owner", owner)
+          .set("tags", TAGS[random.nextInt(TAGS.length)], TAGS[random.nextInt(TAGS.length)])
+          .set("dimensions", dimensions)
+          .set("thumbnail", Blob.copyFrom(thumbnail))
+          .build());
+    }
+    return entities;
+  }
+
+  /**
+   * Returns a {@link Datastore} service whose RPC layer answers calls with {@code handler}.
+   */
+  static Datastore service(InvocationHandler handler) {
+    final DatastoreRpc rpc = (DatastoreRpc) Proxy.newProxyInstance(
+        DatastoreRpc.class.getClassLoader(), new Class<?>[] {DatastoreRpc.class}, handler);
+    return DatastoreOptions.builder()
+        .projectId(PROJECT)
+        .serviceRpcFactory(new DatastoreRpcFactory() {
+          @Override
+          public DatastoreRpc create(DatastoreOptions options) {
+            return rpc;
+          }
+        })
+        .retryParams(RetryParams.noRetries())
+        .build()
+        .service();
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.benchmarks.datastore;
+
+import com.google.cloud.datastore.Datastore;
+import com.google.cloud.datastore.Entity;
+import com.google.cloud.datastore.Key;
+import com.google.datastore.v1beta3.CommitRequest;
+import com.google.datastore.v1beta3.CommitResponse;
+import com.google.datastore.v1beta3.EntityResult;
+import com.google.datastore.v1beta3.LookupResponse;
+import com.google.datastore.v1beta3.Mutation;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the conversions between {@link Entity} objects and their protobuf representation:
+ * {@link Datastore#update(Entity...)} converts entities to protobuf mutations,
+ * {@link Datastore#fetch(Key...)} converts the entities in a lookup response back, including all
+ * their values. Both run against a stub RPC layer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EntityConversionBenchmark {
+
+  @Param({"100", "1000"})
+  public int entities;
+
+  private Datastore datastore;
+  private Entity[] toUpdate;
+  private Key[] keys;
+  private volatile CommitRequest lastCommit;
+  private LookupResponse lookupResponse;
+
+  @Setup
+  public void setUp() {
+    List<Entity> entityList = BenchmarkEntities.entities(entities);
+    toUpdate = entityList.toArray(new Entity[entities]);
+    keys = new Key[entities];
+    for (int i = 0; i < entities; i++) {
+      keys[i] = toUpdate[i].key();
+    }
+    datastore = BenchmarkEntities.service(new InvocationHandler() {
+      @Override
+      public Object invoke(Object proxy, Method method, Object[] args) throws Exception {
+        switch (method.getName()) {
+          case "commit":
+            lastCommit = (CommitRequest) args[0];
+            return CommitResponse.getDefaultInstance();
+          case "lookup":
+            return lookupResponse;
+          default:
+            if (method.getDeclaringClass() == Object.class) {
+              return method.invoke(this, args);
+            }
+            throw new UnsupportedOperationException(method.getName());
+        }
+      }
+    });
+    // the lookup response is built from the entities converted by update
+    datastore.update(toUpdate);
+    LookupResponse.Builder responseBuilder = LookupResponse.newBuilder();
+    for (Mutation mutation : lastCommit.getMutationsList()) {
+      responseBuilder.addFound(EntityResult.newBuilder().setEntity(mutation.getUpdate()));
+    }
+    lookupResponse = responseBuilder.build();
+  }
+
+  @Benchmark
+  public void update() {
+    datastore.update(toUpdate);
+  }
+
+  @Benchmark
+  public void fetch(Blackhole blackhole) {
+    for (Entity entity : datastore.fetch(keys)) {
+      blackhole.consume(entity.getString("name"));
+      blackhole.consume(entity.getLong("quantity"));
+      blackhole.consume(entity.getList("tags"));
+    }
+  }
+}
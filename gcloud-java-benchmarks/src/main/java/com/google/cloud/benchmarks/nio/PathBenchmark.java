@@ -0,0 +1,138 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.benchmarks.nio;
+
+import com.google.cloud.storage.contrib.nio.CloudStorageConfiguration;
+import com.google.cloud.storage.contrib.nio.CloudStorageFileSystem;
+import com.google.cloud.storage.testing.InMemoryStorageRpc;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the path operations of {@link CloudStorageFileSystem} over a set of object names laid
+ * out like a partitioned data set ({@code data/2016/10/17/part-00001.csv}): parsing names into
+ * paths, getting parents and file names, normalizing, resolving, relativizing, iterating over
+ * names and sorting. Run it with {@code -prof gc} to also compare allocation rates, and with
+ * {@code -p internDirectoryPaths=true} to measure interned directory paths.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PathBenchmark {
+
+  @Param({"1000"})
+  public int pathCount;
+
+  @Param({"false"})
+  public boolean internDirectoryPaths;
+
+  private CloudStorageFileSystem fileSystem;
+  private String[] names;
+  private Path[] paths;
+  private Path[] unnormalized;
+  private Path base;
+
+  @Setup
+  public void setUp() {
+    CloudStorageConfiguration config = CloudStorageConfiguration.builder()
+        .internDirectoryPaths(internDirectoryPaths)
+        .build();
+    fileSystem = CloudStorageFileSystem.forBucket(
+        "bucket", config, InMemoryStorageRpc.create().options());
+    names = new String[pathCount];
+    paths = new Path[pathCount];
+    unnormalized = new Path[pathCount];
+    for (int i = 0; i < pathCount; i++) {
+      names[i] = String.format("/data/2016/%02d/%02d/part-%05d.csv", i % 12 + 1, i % 28 + 1, i);
+      paths[i] = fileSystem.getPath(names[i]);
+      unnormalized[i] = fileSystem.getPath(
+          String.format("/data/./2016/%02d/../%02d/%02d/part-%05d.csv", i % 7, i % 12 + 1,
+              i % 28 + 1, i));
+    }
+    base = fileSystem.getPath("/data/2016/");
+  }
+
+  @Benchmark
+  public void getPath(Blackhole blackhole) {
+    for (String name : names) {
+      blackhole.consume(fileSystem.getPath(name));
+    }
+  }
+
+  @Benchmark
+  public void getParent(Blackhole blackhole) {
+    for (Path path : paths) {
+      blackhole.consume(path.getParent());
+    }
+  }
+
+  @Benchmark
+  public void getFileName(Blackhole blackhole) {
+    for (Path path : paths) {
+      blackhole.consume(path.getFileName());
+    }
+  }
+
+  @Benchmark
+  public void normalize(Blackhole blackhole) {
+    for (Path path : unnormalized) {
+      blackhole.consume(path.normalize());
+    }
+  }
+
+  @Benchmark
+  public void relativizeAndResolve(Blackhole blackhole) {
+    for (Path path : paths) {
+      blackhole.consume(base.resolve(base.relativize(path)));
+    }
+  }
+
+  @Benchmark
+  public void startsWith(Blackhole blackhole) {
+    for (Path path : paths) {
+      blackhole.consume(path.startsWith(base));
+    }
+  }
+
+  @Benchmark
+  public void iterateNames(Blackhole blackhole) {
+    for (Path path : paths) {
+      for (Path name : path) {
+        blackhole.consume(name);
+      }
+    }
+  }
+
+  @Benchmark
+  public Path[] sort() {
+    Path[] sorted = paths.clone();
+    Arrays.sort(sorted);
+    return sorted;
+  }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.benchmarks.pubsub;
+
+import com.google.cloud.pubsub.Message;
+import com.google.cloud.pubsub.PubSub;
+import com.google.cloud.pubsub.ReceivedMessage;
+import com.google.cloud.pubsub.SubscriptionInfo;
+import com.google.cloud.pubsub.TopicInfo;
+import com.google.cloud.pubsub.testing.InMemoryPubSubRpc;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the acknowledge path ({@link PubSub#ackAsync(String, Iterable)} and
+ * {@link ReceivedMessage#ackAsync()}) against an {@link InMemoryPubSubRpc} backend. Messages are
+ * published and pulled before each invocation, only acknowledging them is measured. Throughput is
+ * reported in acknowledged messages per millisecond. Sample time benchmarks report latency
+ * percentiles for acknowledging a whole batch.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class AckBenchmark {
+
+  private static final String TOPIC = "ack-benchmark-topic";
+  private static final String SUBSCRIPTION = "ack-benchmark-subscription";
+  private static final int BATCH_SIZE = 100;
+
+  @Param({"0", "1000"})
+  public int latencyMicros;
+
+  private InMemoryPubSubRpc pubsubRpc;
+  private PubSub pubsub;
+  private List<Message> batch;
+  private List<ReceivedMessage> received;
+  private List<String> ackIds;
+
+  @Setup
+  public void setUp() {
+    pubsubRpc = InMemoryPubSubRpc.builder()
+        .latency(latencyMicros, TimeUnit.MICROSECONDS)
+        .build();
+    pubsub = pubsubRpc.options().service();
+    pubsub.create(TopicInfo.of(TOPIC));
+    pubsub.create(SubscriptionInfo.of(TOPIC, SUBSCRIPTION));
+    batch = new ArrayList<>(BATCH_SIZE);
+    for (int i = 0; i < BATCH_SIZE; i++) {
+      batch.add(BenchmarkMessages.message(64));
+    }
+  }
+
+  @Setup(Level.Invocation)
+  public void pullMessages() {
+    pubsub.publish(TOPIC, batch);
+    received = new ArrayList<>(BATCH_SIZE);
+    ackIds = new ArrayList<>(BATCH_SIZE);
+    while (received.size() < BATCH_SIZE) {
+      Iterator<ReceivedMessage> iterator = pubsub.pull(SUBSCRIPTION, BATCH_SIZE - received.size());
+      while (iterator.hasNext()) {
+        ReceivedMessage message = iterator.next();
+        received.add(message);
+        ackIds.add(message.ackId());
+      }
+    }
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    pubsub.close();
+    pubsubRpc.shutdown();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH_SIZE)
+  public void ackBatch() throws ExecutionException, InterruptedException {
+    pubsub.ackAsync(SUBSCRIPTION, ackIds).get();
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.SampleTime)
+  public void ackBatchLatency() throws ExecutionException, InterruptedException {
+    pubsub.ackAsync(SUBSCRIPTION, ackIds).get();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH_SIZE)
+  public void ackEach() throws ExecutionException, InterruptedException {
+    ackReceived();
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.SampleTime)
+  public void ackEachLatency() throws ExecutionException, InterruptedException {
+    ackReceived();
+  }
+
+  private void ackReceived() throws ExecutionException, InterruptedException {
+    List<Future<Void>> futures = new ArrayList<>(BATCH_SIZE);
+    for (ReceivedMessage message : received) {
+      futures.add(message.ackAsync());
+    }
+    for (Future<Void> future : futures) {
+      future.get();
+    }
+  }
+}
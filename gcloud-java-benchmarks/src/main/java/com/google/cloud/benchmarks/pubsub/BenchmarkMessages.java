@@ -0,0 +1,42 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.benchmarks.pubsub;
+
+import com.google.cloud.ByteArray;
+import com.google.cloud.pubsub.Message;
+
+import java.util.Random;
+
+/**
+ * Utility class to create messages used by Pub/Sub benchmarks.
+ */
+final class BenchmarkMessages {
+
+  private static final Random RANDOM = new Random(42);
+
+  private BenchmarkMessages() {}
+
+  /**
+   * Returns a message with a random payload of {@code payloadSize} bytes and one attribute.
+   */
+  static Message message(int payloadSize) {
+    byte[] payload = new byte[payloadSize];
+    RANDOM.nextBytes(payload);
+    return Message.builder(ByteArray.copyFrom(payload))
+        .addAttribute("key", Integer.toString(RANDOM.nextInt(16)))
+        .build();
+  }
+}
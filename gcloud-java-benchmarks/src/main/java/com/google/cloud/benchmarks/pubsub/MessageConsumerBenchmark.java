@@ -0,0 +1,136 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.benchmarks.pubsub;
+
+import com.google.cloud.GrpcServiceOptions.ExecutorFactory;
+import com.google.cloud.pubsub.Message;
+import com.google.cloud.pubsub.PubSub;
+import com.google.cloud.pubsub.PubSub.MessageConsumer;
+import com.google.cloud.pubsub.PubSub.MessageProcessor;
+import com.google.cloud.pubsub.PubSub.PullOption;
+import com.google.cloud.pubsub.SubscriptionInfo;
+import com.google.cloud.pubsub.TopicInfo;
+import com.google.cloud.pubsub.testing.InMemoryPubSubRpc;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for message consumers created with
+ * {@link PubSub#pullAsync(String, MessageProcessor, PullOption...)} against an
+ * {@link InMemoryPubSubRpc} backend. Each invocation publishes a batch of messages and waits for
+ * the consumer to process (and acknowledge) all of them. {@link #publishAndConsume()} reports
+ * throughput in messages per millisecond, {@link #publishAndConsumeLatency()} reports latency
+ * percentiles for a whole batch.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MessageConsumerBenchmark {
+
+  private static final String TOPIC = "consumer-benchmark-topic";
+  private static final String SUBSCRIPTION = "consumer-benchmark-subscription";
+  private static final int BATCH_SIZE = 1000;
+
+  @Param({"0", "1000"})
+  public int latencyMicros;
+
+  @Param({"1", "8"})
+  public int threads;
+
+  @Param({"false", "true"})
+  public boolean ordered;
+
+  private InMemoryPubSubRpc pubsubRpc;
+  private PubSub pubsub;
+  private MessageConsumer consumer;
+  private List<Message> batch;
+  private final Semaphore processed = new Semaphore(0);
+
+  @Setup
+  public void setUp() {
+    pubsubRpc = InMemoryPubSubRpc.builder()
+        .latency(latencyMicros, TimeUnit.MICROSECONDS)
+        .build();
+    pubsub = pubsubRpc.options().service();
+    pubsub.create(TopicInfo.of(TOPIC));
+    pubsub.create(SubscriptionInfo.of(TOPIC, SUBSCRIPTION));
+    batch = new ArrayList<>(BATCH_SIZE);
+    for (int i = 0; i < BATCH_SIZE; i++) {
+      batch.add(BenchmarkMessages.message(64));
+    }
+    MessageProcessor processor = new MessageProcessor() {
+      @Override
+      public void process(Message message) {
+        processed.release();
+      }
+    };
+    List<PullOption> options = new ArrayList<>();
+    options.add(PullOption.maxQueuedCallbacks(BATCH_SIZE));
+    options.add(PullOption.executorFactory(new ExecutorFactory<ExecutorService>() {
+      @Override
+      public ExecutorService get() {
+        return Executors.newFixedThreadPool(threads);
+      }
+
+      @Override
+      public void release(ExecutorService executor) {
+        executor.shutdownNow();
+      }
+    }));
+    if (ordered) {
+      options.add(PullOption.orderingKey("key"));
+    }
+    consumer = pubsub.pullAsync(SUBSCRIPTION, processor,
+        options.toArray(new PullOption[options.size()]));
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    consumer.close();
+    pubsub.close();
+    pubsubRpc.shutdown();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH_SIZE)
+  public void publishAndConsume() throws InterruptedException {
+    pubsub.publishAsync(TOPIC, batch);
+    processed.acquire(BATCH_SIZE);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.SampleTime)
+  public void publishAndConsumeLatency() throws InterruptedException {
+    pubsub.publishAsync(TOPIC, batch);
+    processed.acquire(BATCH_SIZE);
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.benchmarks.pubsub;
+
+import com.google.cloud.pubsub.Message;
+import com.google.cloud.pubsub.PubSub;
+import com.google.cloud.pubsub.TopicInfo;
+import com.google.cloud.pubsub.testing.InMemoryPubSubRpc;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for {@link PubSub#publishAsync(String, Message, Message...)} and
+ * {@link PubSub#publishAsync(String, Iterable)} against an {@link InMemoryPubSubRpc} backend.
+ * Throughput is reported in messages per millisecond. Sample time benchmarks report latency
+ * percentiles (including p99) of a single publish call: {@link #publishOne()} for a call
+ * publishing one message and {@link #publishBatchLatency()} for a call publishing a whole batch.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PublishBenchmark {
+
+  private static final String TOPIC = "publish-benchmark-topic";
+  private static final int BATCH_SIZE = 100;
+
+  @Param({"0", "1000"})
+  public int latencyMicros;
+
+  @Param({"16", "1024"})
+  public int payloadSize;
+
+  private InMemoryPubSubRpc pubsubRpc;
+  private PubSub pubsub;
+  private Message message;
+  private List<Message> batch;
+
+  @Setup
+  public void setUp() {
+    pubsubRpc = InMemoryPubSubRpc.builder()
+        .latency(latencyMicros, TimeUnit.MICROSECONDS)
+        .build();
+    pubsub = pubsubRpc.options().service();
+    pubsub.create(TopicInfo.of(TOPIC));
+    message = BenchmarkMessages.message(payloadSize);
+    batch = new ArrayList<>(BATCH_SIZE);
+    for (int i = 0; i < BATCH_SIZE; i++) {
+      batch.add(BenchmarkMessages.message(payloadSize));
+    }
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    pubsub.close();
+    pubsubRpc.shutdown();
+  }
+
+  @Benchmark
+  @BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+  public String publishOne() throws ExecutionException, InterruptedException {
+    return pubsub.publishAsync(TOPIC, message).get();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH_SIZE)
+  public List<String> publishBatch() throws ExecutionException, InterruptedException {
+    return pubsub.publishAsync(TOPIC, batch).get();
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.SampleTime)
+  public List<String> publishBatchLatency() throws ExecutionException, InterruptedException {
+    return pubsub.publishAsync(TOPIC, batch).get();
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.benchmarks.storage;
+
+import com.google.api.client.util.DateTime;
+import com.google.api.services.storage.model.ObjectAccessControl;
+import com.google.api.services.storage.model.StorageObject;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Helpers to create blob metadata for Storage benchmarks.
+ */
+final class BenchmarkBlobs {
+
+  static final String PROJECT = "benchmark-project";
+  static final String BUCKET = "benchmark-bucket";
+
+  private BenchmarkBlobs() {}
+
+  /**
+   * Returns {@code count} objects with typical metadata, as returned by the service.
+   */
+  static List<StorageObject> objects(int count) {
+    Random random = new Random(42);
+    List<StorageObject> objects = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      String name = "logs/2016/06/" + i + ".json";
+      long generation = 1_460_000_000_000_000L + random.nextInt(1_000_000);
+      objects.add(new StorageObject()
+          .setBucket(BUCKET)
+          .setName(name)
+          .setId(BUCKET + "/" + name + "/" + generation)
+          .setSelfLink("https://www.googleapis.com/storage/v1/b/" + BUCKET + "/o/" + name)
+          .setMediaLink("https://www.googleapis.com/download/storage/v1/b/" + BUCKET + "/o/"
+              + name + "?generation=" + generation + "&alt=media")
+          .setGeneration(generation)
+          .setMetageneration(1L)
+          .setContentType("application/json")
+          .setSize(BigInteger.valueOf(random.nextInt(10_000_000)))
+          .setMd5Hash("1B2M2Y8AsgTpgAmY7PhCfg==")
+          .setCrc32c("AAAAAA==")
+          .setEtag("CJDw0/eMzM0CEAE=")
+          .setTimeCreated(new DateTime(1_460_000_000_000L + random.nextInt(1_000_000)))
+          .setUpdated(new DateTime(1_460_000_000_000L + random.nextInt(1_000_000)))
+          .setMetadata(ImmutableMap.of("source", "benchmark", "index", Integer.toString(i)))
+          .setAcl(ImmutableList.of(new ObjectAccessControl()
+              .setEntity("project-owners-" + PROJECT)
+              .setRole("OWNER"))));
+    }
+    return objects;
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.benchmarks.storage;
+
+import com.google.api.services.storage.model.StorageObject;
+import com.google.cloud.Page;
+import com.google.cloud.storage.Blob;
+import com.google.cloud.storage.BlobId;
+import com.google.cloud.storage.BlobInfo;
+import com.google.cloud.storage.BucketInfo;
+import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.spi.StorageRpc;
+import com.google.cloud.storage.testing.InMemoryStorageRpc;
+import com.google.common.collect.ImmutableMap;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the conversions between {@link BlobInfo} and {@code StorageObject}: listing a page of
+ * blobs ({@code StorageObject} to {@link Blob}), getting a blob and creating a blob
+ * ({@link BlobInfo} to {@code StorageObject} and back). All benchmarks run against an
+ * {@link InMemoryStorageRpc} holding empty blobs with typical metadata.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BlobInfoConversionBenchmark {
+
+  @Param({"1000"})
+  public int pageSize;
+
+  private Storage storage;
+  private BlobId blobId;
+  private BlobInfo blobInfo;
+
+  @Setup
+  public void setUp() {
+    List<StorageObject> objects = BenchmarkBlobs.objects(pageSize);
+    StorageObject object = objects.get(0);
+    InMemoryStorageRpc rpc = InMemoryStorageRpc.create();
+    storage = rpc.options().service();
+    storage.create(BucketInfo.of(BenchmarkBlobs.BUCKET));
+    for (StorageObject created : objects) {
+      rpc.create(created, new ByteArrayInputStream(new byte[0]),
+          ImmutableMap.<StorageRpc.Option, Object>of());
+    }
+    Blob blob = storage.get(BlobId.of(object.getBucket(), object.getName()));
+    blobId = blob.blobId();
+    blobInfo = BlobInfo.builder(blob.blobId())
+        .contentType(blob.contentType())
+        .metadata(blob.metadata())
+        .acl(blob.acl())
+        .build();
+  }
+
+  @Benchmark
+  public void list(Blackhole blackhole) {
+    Page<Blob> page = storage.list(BenchmarkBlobs.BUCKET);
+    for (Blob blob : page.values()) {
+      blackhole.consume(blob.name());
+      blackhole.consume(blob.size());
+    }
+  }
+
+  @Benchmark
+  public Blob get() {
+    return storage.get(blobId);
+  }
+
+  @Benchmark
+  public Blob create() {
+    return storage.create(blobInfo);
+  }
+}
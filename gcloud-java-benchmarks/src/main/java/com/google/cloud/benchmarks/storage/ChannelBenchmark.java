@@ -0,0 +1,97 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.benchmarks.storage;
+
+import com.google.cloud.ReadChannel;
+import com.google.cloud.WriteChannel;
+import com.google.cloud.storage.BlobId;
+import com.google.cloud.storage.BlobInfo;
+import com.google.cloud.storage.BucketInfo;
+import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.testing.InMemoryStorageRpc;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the overhead of {@link ReadChannel} and {@link WriteChannel} when reading and writing
+ * a blob with buffers of different sizes. The blob is kept by an {@link InMemoryStorageRpc}, so
+ * the results only include the channels' own buffering and copying, and the in-memory RPC
+ * computing the checksums of each written blob.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ChannelBenchmark {
+
+  private static final BlobId BLOB_ID = BlobId.of(BenchmarkBlobs.BUCKET, "blob");
+
+  @Param({"16777216"})
+  public int blobSize;
+
+  @Param({"4096", "65536", "1048576"})
+  public int bufferSize;
+
+  private Storage storage;
+  private byte[] content;
+
+  @Setup
+  public void setUp() {
+    content = new byte[blobSize];
+    new Random(42).nextBytes(content);
+    storage = InMemoryStorageRpc.create().options().service();
+    storage.create(BucketInfo.of(BenchmarkBlobs.BUCKET));
+    storage.create(BlobInfo.builder(BLOB_ID).build(), content);
+  }
+
+  @Benchmark
+  public long read() throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(bufferSize);
+    long total = 0;
+    try (ReadChannel reader = storage.reader(BLOB_ID)) {
+      int read;
+      while ((read = reader.read(buffer)) >= 0) {
+        total += read;
+        buffer.clear();
+      }
+    }
+    return total;
+  }
+
+  @Benchmark
+  public long write() throws IOException {
+    long total = 0;
+    try (WriteChannel writer = storage.writer(BlobInfo.builder(BLOB_ID).build())) {
+      for (int offset = 0; offset < content.length; offset += bufferSize) {
+        int length = Math.min(bufferSize, content.length - offset);
+        total += writer.write(ByteBuffer.wrap(content, offset, length));
+      }
+    }
+    return total;
+  }
+}
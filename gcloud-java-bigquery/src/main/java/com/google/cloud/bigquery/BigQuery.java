@@ -22,10 +22,12 @@ import com.google.cloud.FieldSelector;
 import com.google.cloud.FieldSelector.Helper;
 import com.google.cloud.Page;
 import com.google.cloud.Service;
+import com.google.cloud.WaitForOption;
 import com.google.cloud.bigquery.spi.BigQueryRpc;
 import com.google.common.base.Function;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ListenableFuture;
 
 import java.util.List;
 
@@ -565,12 +567,22 @@ public interface BigQuery extends Service<BigQueryOptions> {
   Page<Table> listTables(DatasetId datasetId, TableListOption... options);
 
   /**
-   * Sends an insert all request.
+   * Sends an insert all request. The request is sent once and is not retried on failure, as rows
+   * without an id could be inserted twice. Use {@link TableStreamWriter} to retry failed rows.
    *
    * @throws BigQueryException upon failure
    */
   InsertAllResponse insertAll(InsertAllRequest request);
 
+  /**
+   * Sends an insert all request whose rows are already encoded. The request is not cleared: call
+   * {@link EncodedInsertAllRequest#clear()} before reusing it for other rows. If the request has
+   * no rows, nothing is sent and a response without errors is returned.
+   *
+   * @throws BigQueryException upon failure
+   */
+  InsertAllResponse insertAll(EncodedInsertAllRequest request);
+
   /**
    * Lists the table's rows.
    *
@@ -586,6 +598,48 @@ public interface BigQuery extends Service<BigQueryOptions> {
    */
   Page<List<FieldValue>> listTableData(TableId tableId, TableDataListOption... options);
 
+  /**
+   * Lists the table's rows, decoded into typed columns according to the provided schema. Each page
+   * holds a single {@link ColumnBatch} with the rows returned by one request. Values are parsed
+   * once and no {@link FieldValue} object is created for primitive fields, which makes this method
+   * better suited than {@link #listTableData(TableId, TableDataListOption...)} to read large
+   * amounts of rows.
+   *
+   * <p>Example usage of listing table data as columns:
+   * <pre> {@code
+   * Schema schema = bigquery.getTable(tableId).definition().schema();
+   * Page<ColumnBatch> page = bigquery.listTableDataColumns(tableId, schema,
+   *     TableDataListOption.pageSize(10000));
+   * for (ColumnBatch batch : page.iterateAll()) {
+   *   ColumnBatch.DoubleColumn column = batch.column("price");
+   *   // do something with the column
+   * }}</pre>
+   *
+   * @param schema the table's schema
+   * @throws BigQueryException upon failure
+   */
+  Page<ColumnBatch> listTableDataColumns(TableId tableId, Schema schema,
+      TableDataListOption... options);
+
+  /**
+   * Returns a stream over all the table's rows, across pages. Rows are parsed from each response
+   * as the stream is iterated, without holding a whole page in memory, which allows reading large
+   * tables with a large {@link TableDataListOption#pageSize(long)}. The returned stream must be
+   * closed.
+   *
+   * <p>Example usage of streaming table data:
+   * <pre> {@code
+   * try (RowStream rows = bigquery.openTableData(tableId, TableDataListOption.pageSize(100000))) {
+   *   while (rows.hasNext()) {
+   *     List<FieldValue> row = rows.next();
+   *     // do something with the row
+   *   }
+   * }}</pre>
+   *
+   * @throws BigQueryException upon failure
+   */
+  RowStream openTableData(TableId tableId, TableDataListOption... options);
+
   /**
    * Returns the requested job or {@code null} if not found.
    *
@@ -636,6 +690,39 @@ public interface BigQuery extends Service<BigQueryOptions> {
    */
   QueryResponse query(QueryRequest request);
 
+  /**
+   * Runs the query associated with the request, without waiting for it to complete. The returned
+   * future completes with the first page of the query results once the query job completes. The
+   * query request is sent and the query job status is checked by a scheduler shared by all jobs:
+   * this method does not send any request, and no thread is blocked while waiting for the query to
+   * complete. If {@link QueryRequest#maxWaitTime()} is not set, the query request returns
+   * immediately. By default, the query job status is first checked after 100
+   * milliseconds, then less and less often, up to every 5 seconds. To check the status with a
+   * fixed period use {@link WaitForOption#checkEvery(long, java.util.concurrent.TimeUnit)}. Use
+   * {@link WaitForOption#timeout(long, java.util.concurrent.TimeUnit)} to set the maximum time to
+   * wait, after which the future fails with a {@link java.util.concurrent.TimeoutException}. The
+   * future fails with a {@link BigQueryException} if the query or a status check fails, or if
+   * the query job completes with errors.
+   *
+   * <p>Example usage of {@code queryAsync()}:
+   * <pre> {@code
+   * ListenableFuture<QueryResult> future =
+   *     bigquery.queryAsync(QueryRequest.of("SELECT field FROM my_dataset_name.my_table_name"));
+   * Futures.addCallback(future, new FutureCallback<QueryResult>() {
+   *   public void onSuccess(QueryResult result) {
+   *     // process the results
+   *   }
+   *
+   *   public void onFailure(Throwable throwable) {
+   *     // handle the error
+   *   }
+   * });}</pre>
+   *
+   * @param waitOptions options to configure checking period and timeout
+   * @see Job#toFuture(WaitForOption...)
+   */
+  ListenableFuture<QueryResult> queryAsync(QueryRequest request, WaitForOption... waitOptions);
+
   /**
    * Returns results of the query associated with the provided job.
    *
@@ -643,6 +730,27 @@ public interface BigQuery extends Service<BigQueryOptions> {
    */
   QueryResponse getQueryResults(JobId job, QueryResultsOption... options);
 
+  /**
+   * Returns a stream over all the results of the query associated with the provided job, across
+   * pages. Rows are parsed from each response as the stream is iterated, without holding a whole
+   * page in memory. If the job has not completed, iterating the stream waits for it to complete.
+   * Returns {@code null} if the job was not found. The returned stream must be closed.
+   *
+   * @throws BigQueryException upon failure
+   * @see #openTableData(TableId, TableDataListOption...)
+   */
+  RowStream openQueryResults(JobId job, QueryResultsOption... options);
+
+  /**
+   * Returns results of the query associated with the provided job, decoded into typed columns
+   * according to the schema of the results. Each page holds a single {@link ColumnBatch} with the
+   * rows returned by one request. Returns {@code null} if the job has not completed yet.
+   *
+   * @throws BigQueryException upon failure
+   * @see ColumnBatch
+   */
+  Page<ColumnBatch> getQueryResultsColumns(JobId job, QueryResultsOption... options);
+
   /**
    * Returns a channel to write data to be inserted into a BigQuery table. Data format and other
    * options can be configured using the {@link WriteChannelConfiguration} parameter.
@@ -18,6 +18,7 @@ package com.google.cloud.bigquery;
 
 import static com.google.cloud.RetryHelper.runWithRetries;
 import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
 
 import com.google.api.services.bigquery.model.GetQueryResultsResponse;
 import com.google.api.services.bigquery.model.TableDataInsertAllRequest;
@@ -28,6 +29,7 @@ import com.google.cloud.Page;
 import com.google.cloud.PageImpl;
 import com.google.cloud.PageImpl.NextPageFetcher;
 import com.google.cloud.RetryHelper;
+import com.google.cloud.WaitForOption;
 import com.google.cloud.bigquery.InsertAllRequest.RowToInsert;
 import com.google.cloud.bigquery.spi.BigQueryRpc;
 import com.google.common.base.Function;
@@ -36,6 +38,8 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
 
 import java.util.List;
 import java.util.Map;
@@ -123,6 +127,50 @@ final class BigQueryImpl extends BaseService<BigQueryOptions> implements BigQuer
     }
   }
 
+  private static class TableDataColumnsPageFetcher implements NextPageFetcher<ColumnBatch> {
+
+    private static final long serialVersionUID = 3573693307209658337L;
+    private final Map<BigQueryRpc.Option, ?> requestOptions;
+    private final BigQueryOptions serviceOptions;
+    private final TableId table;
+    private final Schema schema;
+
+    TableDataColumnsPageFetcher(TableId table, Schema schema, BigQueryOptions serviceOptions,
+        String cursor, Map<BigQueryRpc.Option, ?> optionMap) {
+      this.requestOptions =
+          PageImpl.nextRequestOptions(BigQueryRpc.Option.PAGE_TOKEN, cursor, optionMap);
+      this.serviceOptions = serviceOptions;
+      this.table = table;
+      this.schema = schema;
+    }
+
+    @Override
+    public Page<ColumnBatch> nextPage() {
+      return listTableDataColumns(table, schema, serviceOptions, requestOptions);
+    }
+  }
+
+  private static class QueryResultsColumnsPageFetcher implements NextPageFetcher<ColumnBatch> {
+
+    private static final long serialVersionUID = -1541474883227183417L;
+    private final Map<BigQueryRpc.Option, ?> requestOptions;
+    private final BigQueryOptions serviceOptions;
+    private final JobId job;
+
+    QueryResultsColumnsPageFetcher(JobId job, BigQueryOptions serviceOptions, String cursor,
+        Map<BigQueryRpc.Option, ?> optionMap) {
+      this.requestOptions =
+          PageImpl.nextRequestOptions(BigQueryRpc.Option.PAGE_TOKEN, cursor, optionMap);
+      this.serviceOptions = serviceOptions;
+      this.job = job;
+    }
+
+    @Override
+    public Page<ColumnBatch> nextPage() {
+      return getQueryResultsColumns(job, serviceOptions, requestOptions);
+    }
+  }
+
   private static class QueryResultsPageFetcherImpl
       implements NextPageFetcher<List<FieldValue>>, QueryResult.QueryResultsPageFetcher {
 
@@ -411,6 +459,17 @@ final class BigQueryImpl extends BaseService<BigQueryOptions> implements BigQuer
         bigQueryRpc.insertAll(tableId.dataset(), tableId.table(), requestPb));
   }
 
+  @Override
+  public InsertAllResponse insertAll(EncodedInsertAllRequest request) {
+    if (request.rowCount() == 0) {
+      return new InsertAllResponse(null);
+    }
+    TableId tableId = request.table();
+    int length = request.finish();
+    return InsertAllResponse.fromPb(bigQueryRpc.insertAll(tableId.dataset(), tableId.table(),
+        request.buffer(), 0, length));
+  }
+
   @Override
   public Page<List<FieldValue>> listTableData(String datasetId, String tableId,
       TableDataListOption... options) {
@@ -441,6 +500,58 @@ final class BigQueryImpl extends BaseService<BigQueryOptions> implements BigQuer
     }
   }
 
+  @Override
+  public Page<ColumnBatch> listTableDataColumns(TableId tableId, Schema schema,
+      TableDataListOption... options) {
+    return listTableDataColumns(tableId, checkNotNull(schema), options(), optionMap(options));
+  }
+
+  private static Page<ColumnBatch> listTableDataColumns(final TableId tableId,
+      final Schema schema, final BigQueryOptions serviceOptions,
+      final Map<BigQueryRpc.Option, ?> optionsMap) {
+    try {
+      BigQueryRpc.Tuple<String, Iterable<TableRow>> result =
+          runWithRetries(new Callable<BigQueryRpc.Tuple<String, Iterable<TableRow>>>() {
+            @Override
+            public BigQueryRpc.Tuple<String, Iterable<TableRow>> call() {
+              return serviceOptions.rpc()
+                  .listTableData(tableId.dataset(), tableId.table(), optionsMap);
+            }
+          }, serviceOptions.retryParams(), EXCEPTION_HANDLER, serviceOptions.clock());
+      String cursor = result.x();
+      List<TableRow> rowsPb = result.y() != null
+          ? ImmutableList.copyOf(result.y()) : ImmutableList.<TableRow>of();
+      return new PageImpl<>(
+          new TableDataColumnsPageFetcher(tableId, schema, serviceOptions, cursor, optionsMap),
+          cursor, ImmutableList.of(ColumnBatch.fromPb(schema, rowsPb)));
+    } catch (RetryHelper.RetryHelperException e) {
+      throw BigQueryException.translateAndThrow(e);
+    }
+  }
+
+  @Override
+  public RowStream openTableData(final TableId tableId, TableDataListOption... options) {
+    final BigQueryOptions serviceOptions = options();
+    RowStream.PageOpener opener = new RowStream.PageOpener() {
+      @Override
+      BigQueryRpc.RowPage open(final Map<BigQueryRpc.Option, ?> optionsMap) {
+        try {
+          return runWithRetries(new Callable<BigQueryRpc.RowPage>() {
+            @Override
+            public BigQueryRpc.RowPage call() {
+              return serviceOptions.rpc()
+                  .openTableData(tableId.dataset(), tableId.table(), optionsMap);
+            }
+          }, serviceOptions.retryParams(), EXCEPTION_HANDLER, serviceOptions.clock());
+        } catch (RetryHelper.RetryHelperException e) {
+          throw BigQueryException.translateAndThrow(e);
+        }
+      }
+    };
+    Map<BigQueryRpc.Option, ?> optionsMap = optionMap(options);
+    return new RowStream(opener, optionsMap, opener.open(optionsMap));
+  }
+
   private static List<List<FieldValue>> transformTableData(Iterable<TableRow> tableDataPb) {
     return ImmutableList.copyOf(
         Iterables.transform(tableDataPb != null ? tableDataPb : ImmutableList.<TableRow>of(),
@@ -559,6 +670,40 @@ final class BigQueryImpl extends BaseService<BigQueryOptions> implements BigQuer
     }
   }
 
+  @Override
+  public ListenableFuture<QueryResult> queryAsync(QueryRequest request,
+      WaitForOption... waitOptions) {
+    final QueryRequest queryRequest = request.maxWaitTime() != null
+        ? request : request.toBuilder().maxWaitTime(0L).build();
+    final Map<BigQueryRpc.Option, ?> optionsMap = request.pageSize() != null
+        ? optionMap(QueryResultsOption.maxWaitTime(0L),
+            QueryResultsOption.pageSize(request.pageSize()))
+        : optionMap(QueryResultsOption.maxWaitTime(0L));
+    final BigQueryOptions serviceOptions = options();
+    // the query request is sent by the first check, so that no call blocks the caller's thread
+    return JobPoller.defaultInstance().submit(new JobPoller.Check<QueryResult>() {
+      private JobId jobId;
+
+      @Override
+      boolean check(SettableFuture<QueryResult> future) {
+        QueryResponse results = jobId == null
+            ? query(queryRequest) : getQueryResults(jobId, serviceOptions, optionsMap);
+        if (!results.jobCompleted()) {
+          jobId = results.jobId();
+          return false;
+        }
+        if (results.hasErrors()) {
+          BigQueryError error = results.executionErrors().get(0);
+          future.setException(
+              new BigQueryException(BigQueryException.UNKNOWN_CODE, error.message(), error));
+          return true;
+        }
+        future.set(results.result());
+        return true;
+      }
+    }, serviceOptions.clock(), waitOptions);
+  }
+
   @Override
   public QueryResponse getQueryResults(JobId job, QueryResultsOption... options) {
     Map<BigQueryRpc.Option, ?> optionsMap = optionMap(options);
@@ -604,6 +749,58 @@ final class BigQueryImpl extends BaseService<BigQueryOptions> implements BigQuer
     }
   }
 
+  @Override
+  public RowStream openQueryResults(final JobId job, QueryResultsOption... options) {
+    final BigQueryOptions serviceOptions = options();
+    RowStream.PageOpener opener = new RowStream.PageOpener() {
+      @Override
+      BigQueryRpc.RowPage open(final Map<BigQueryRpc.Option, ?> optionsMap) {
+        try {
+          return runWithRetries(new Callable<BigQueryRpc.RowPage>() {
+            @Override
+            public BigQueryRpc.RowPage call() {
+              return serviceOptions.rpc().openQueryResults(job.job(), optionsMap);
+            }
+          }, serviceOptions.retryParams(), EXCEPTION_HANDLER, serviceOptions.clock());
+        } catch (RetryHelper.RetryHelperException e) {
+          throw BigQueryException.translateAndThrow(e);
+        }
+      }
+    };
+    Map<BigQueryRpc.Option, ?> optionsMap = optionMap(options);
+    BigQueryRpc.RowPage page = opener.open(optionsMap);
+    return page != null ? new RowStream(opener, optionsMap, page) : null;
+  }
+
+  @Override
+  public Page<ColumnBatch> getQueryResultsColumns(JobId job, QueryResultsOption... options) {
+    return getQueryResultsColumns(job, options(), optionMap(options));
+  }
+
+  private static Page<ColumnBatch> getQueryResultsColumns(final JobId jobId,
+      final BigQueryOptions serviceOptions, final Map<BigQueryRpc.Option, ?> optionsMap) {
+    try {
+      GetQueryResultsResponse results =
+          runWithRetries(new Callable<GetQueryResultsResponse>() {
+            @Override
+            public GetQueryResultsResponse call() {
+              return serviceOptions.rpc().getQueryResults(jobId.job(), optionsMap);
+            }
+          }, serviceOptions.retryParams(), EXCEPTION_HANDLER, serviceOptions.clock());
+      if (!results.getJobComplete()) {
+        return null;
+      }
+      String cursor = results.getPageToken();
+      Schema schema = results.getSchema() != null
+          ? Schema.fromPb(results.getSchema()) : Schema.of();
+      return new PageImpl<>(new QueryResultsColumnsPageFetcher(
+          JobId.fromPb(results.getJobReference()), serviceOptions, cursor, optionsMap),
+          cursor, ImmutableList.of(ColumnBatch.fromPb(schema, results.getRows())));
+    } catch (RetryHelper.RetryHelperException e) {
+      throw BigQueryException.translateAndThrow(e);
+    }
+  }
+
   private static QueryResult.Builder transformQueryResults(JobId jobId, List<TableRow> rowsPb,
       String cursor, BigQueryOptions serviceOptions, Map<BigQueryRpc.Option, ?> optionsMap) {
     QueryResultsPageFetcherImpl nextPageFetcher =
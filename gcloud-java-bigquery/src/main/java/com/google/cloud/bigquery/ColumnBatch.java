@@ -0,0 +1,642 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.bigquery;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.api.client.util.Data;
+import com.google.api.services.bigquery.model.TableRow;
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.BaseEncoding;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A batch of table rows decoded into typed columns. Objects of this class are an alternative to
+ * lists of {@link FieldValue} objects, for reading large amounts of rows. Each value is parsed once,
+ * when the batch is created, and stored in a column vector according to the type of its field:
+ * <ul>
+ *   <li>{@link Field.Type#integer()} fields are stored in a {@link LongColumn}
+ *   <li>{@link Field.Type#timestamp()} fields are stored in a {@link LongColumn}, as microseconds
+ *       since epoch (UNIX time)
+ *   <li>{@link Field.Type#floatingPoint()} fields are stored in a {@link DoubleColumn}
+ *   <li>{@link Field.Type#bool()} fields are stored in a {@link BooleanColumn}
+ *   <li>{@link Field.Type#string()} fields are stored in a dictionary-encoded {@link StringColumn}
+ *   <li>{@link Field.Type#bytes()} fields are stored in a {@link BytesColumn}
+ *   <li>{@link Field.Type#record(Field...)} fields and fields with {@link Field.Mode#REPEATED} mode
+ *       are stored in a {@link FieldValueColumn}
+ * </ul>
+ *
+ * <p>Example usage of a column batch:
+ * <pre> {@code
+ * Page<ColumnBatch> page = bigquery.listTableDataColumns(tableId, schema);
+ * for (ColumnBatch batch : page.iterateAll()) {
+ *   ColumnBatch.LongColumn column = batch.column("count");
+ *   for (int row = 0; row < batch.rowCount(); row++) {
+ *     if (!column.isNull(row)) {
+ *       sum += column.longValue(row);
+ *     }
+ *   }
+ * }}</pre>
+ *
+ * @see BigQuery#listTableDataColumns(TableId, Schema, BigQuery.TableDataListOption...)
+ * @see BigQuery#getQueryResultsColumns(JobId, BigQuery.QueryResultsOption...)
+ * @see QueryResult#columns()
+ */
+public final class ColumnBatch implements Serializable {
+
+  private static final long serialVersionUID = -2719532862713867318L;
+  private static final double MICROSECONDS = 1000000;
+
+  private final Schema schema;
+  private final int rowCount;
+  private final List<Column> columns;
+  private final Map<String, Integer> columnIndexes;
+
+  /**
+   * Base class for a column vector. A column holds the values of a field for all rows in a batch.
+   */
+  public abstract static class Column implements Serializable {
+
+    private static final long serialVersionUID = 2964585395366582302L;
+
+    private final Field field;
+    private final BitSet nulls;
+
+    Column(Field field, BitSet nulls) {
+      this.field = field;
+      this.nulls = nulls;
+    }
+
+    /**
+     * Returns the field whose values are held by this column.
+     */
+    public Field field() {
+      return field;
+    }
+
+    /**
+     * Returns {@code true} if the value at the provided row is {@code null}.
+     */
+    public boolean isNull(int row) {
+      return nulls.get(row);
+    }
+
+    /**
+     * Returns the number of {@code null} values in this column.
+     */
+    public int nullCount() {
+      return nulls.cardinality();
+    }
+
+    void checkNotNullAt(int row) {
+      if (nulls.get(row)) {
+        throw new NullPointerException("Value at row " + row + " is null");
+      }
+    }
+  }
+
+  /**
+   * A column of {@code long} values, for {@link Field.Type#integer()} and
+   * {@link Field.Type#timestamp()} fields. Timestamps are stored as microseconds since epoch.
+   */
+  public static final class LongColumn extends Column {
+
+    private static final long serialVersionUID = 7064811744564722788L;
+
+    private final long[] values;
+
+    LongColumn(Field field, BitSet nulls, long[] values) {
+      super(field, nulls);
+      this.values = values;
+    }
+
+    /**
+     * Returns the value at the provided row.
+     *
+     * @throws NullPointerException if {@link #isNull(int)} returns {@code true}
+     */
+    public long longValue(int row) {
+      checkNotNullAt(row);
+      return values[row];
+    }
+
+    /**
+     * Returns the underlying values. The value for rows where {@link #isNull(int)} is {@code true}
+     * is {@code 0}. The returned array must not be modified.
+     */
+    public long[] values() {
+      return values;
+    }
+  }
+
+  /**
+   * A column of {@code double} values, for {@link Field.Type#floatingPoint()} fields.
+   */
+  public static final class DoubleColumn extends Column {
+
+    private static final long serialVersionUID = -4233574400929098427L;
+
+    private final double[] values;
+
+    DoubleColumn(Field field, BitSet nulls, double[] values) {
+      super(field, nulls);
+      this.values = values;
+    }
+
+    /**
+     * Returns the value at the provided row.
+     *
+     * @throws NullPointerException if {@link #isNull(int)} returns {@code true}
+     */
+    public double doubleValue(int row) {
+      checkNotNullAt(row);
+      return values[row];
+    }
+
+    /**
+     * Returns the underlying values. The value for rows where {@link #isNull(int)} is {@code true}
+     * is {@code 0}. The returned array must not be modified.
+     */
+    public double[] values() {
+      return values;
+    }
+  }
+
+  /**
+   * A column of {@code boolean} values, for {@link Field.Type#bool()} fields. Values are stored in
+   * a bitmap.
+   */
+  public static final class BooleanColumn extends Column {
+
+    private static final long serialVersionUID = 6455367282478262519L;
+
+    private final BitSet values;
+
+    BooleanColumn(Field field, BitSet nulls, BitSet values) {
+      super(field, nulls);
+      this.values = values;
+    }
+
+    /**
+     * Returns the value at the provided row.
+     *
+     * @throws NullPointerException if {@link #isNull(int)} returns {@code true}
+     */
+    public boolean booleanValue(int row) {
+      checkNotNullAt(row);
+      return values.get(row);
+    }
+  }
+
+  /**
+   * A column of {@link String} values, for {@link Field.Type#string()} fields. Values are
+   * dictionary-encoded: each distinct value is stored once and rows hold an index in the
+   * dictionary.
+   */
+  public static final class StringColumn extends Column {
+
+    private static final long serialVersionUID = -6001934372398817185L;
+
+    private final int[] codes;
+    private final List<String> dictionary;
+
+    StringColumn(Field field, BitSet nulls, int[] codes, List<String> dictionary) {
+      super(field, nulls);
+      this.codes = codes;
+      this.dictionary = dictionary;
+    }
+
+    /**
+     * Returns the value at the provided row.
+     *
+     * @throws NullPointerException if {@link #isNull(int)} returns {@code true}
+     */
+    public String stringValue(int row) {
+      return dictionary.get(code(row));
+    }
+
+    /**
+     * Returns the index in {@link #dictionary()} of the value at the provided row. Rows with the
+     * same value have the same code.
+     *
+     * @throws NullPointerException if {@link #isNull(int)} returns {@code true}
+     */
+    public int code(int row) {
+      checkNotNullAt(row);
+      return codes[row];
+    }
+
+    /**
+     * Returns the distinct values in this column, in order of first appearance.
+     */
+    public List<String> dictionary() {
+      return dictionary;
+    }
+  }
+
+  /**
+   * A column of byte array values, for {@link Field.Type#bytes()} fields. Values are decoded from
+   * base64 once.
+   */
+  public static final class BytesColumn extends Column {
+
+    private static final long serialVersionUID = 3125419541208512546L;
+
+    private final byte[][] values;
+
+    BytesColumn(Field field, BitSet nulls, byte[][] values) {
+      super(field, nulls);
+      this.values = values;
+    }
+
+    /**
+     * Returns the value at the provided row. The returned array must not be modified.
+     *
+     * @throws NullPointerException if {@link #isNull(int)} returns {@code true}
+     */
+    public byte[] bytesValue(int row) {
+      checkNotNullAt(row);
+      return values[row];
+    }
+  }
+
+  /**
+   * A column of {@link FieldValue} objects, for {@link Field.Type#record(Field...)} fields and
+   * fields with {@link Field.Mode#REPEATED} mode.
+   */
+  public static final class FieldValueColumn extends Column {
+
+    private static final long serialVersionUID = -3586325117569470713L;
+
+    private final FieldValue[] values;
+
+    FieldValueColumn(Field field, BitSet nulls, FieldValue[] values) {
+      super(field, nulls);
+      this.values = values;
+    }
+
+    /**
+     * Returns the value at the provided row.
+     *
+     * @throws NullPointerException if {@link #isNull(int)} returns {@code true}
+     */
+    public FieldValue fieldValue(int row) {
+      checkNotNullAt(row);
+      return values[row];
+    }
+  }
+
+  private ColumnBatch(Schema schema, int rowCount, List<Column> columns) {
+    this.schema = schema;
+    this.rowCount = rowCount;
+    this.columns = columns;
+    Map<String, Integer> indexes = new HashMap<>();
+    for (int i = 0; i < columns.size(); i++) {
+      indexes.put(columns.get(i).field().name(), i);
+    }
+    this.columnIndexes = Collections.unmodifiableMap(indexes);
+  }
+
+  /**
+   * Returns the schema of the rows in this batch.
+   */
+  public Schema schema() {
+    return schema;
+  }
+
+  /**
+   * Returns the number of rows in this batch.
+   */
+  public int rowCount() {
+    return rowCount;
+  }
+
+  /**
+   * Returns the columns in this batch, in schema order.
+   */
+  public List<Column> columns() {
+    return columns;
+  }
+
+  /**
+   * Returns the column at the provided index, in schema order. The returned column is cast to the
+   * type of the assignment target, see {@link ColumnBatch} for the column type of each field type.
+   *
+   * @throws IndexOutOfBoundsException if there is no column at the provided index
+   */
+  @SuppressWarnings("unchecked")
+  public <T extends Column> T column(int index) {
+    checkElementIndex(index, columns.size());
+    return (T) columns.get(index);
+  }
+
+  /**
+   * Returns the column for the field with the provided name. The returned column is cast to the
+   * type of the assignment target, see {@link ColumnBatch} for the column type of each field type.
+   *
+   * @throws IllegalArgumentException if the schema has no field with the provided name
+   */
+  @SuppressWarnings("unchecked")
+  public <T extends Column> T column(String name) {
+    Integer index = columnIndexes.get(name);
+    checkArgument(index != null, "No field named %s", name);
+    return (T) columns.get(index);
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("schema", schema)
+        .add("rowCount", rowCount)
+        .toString();
+  }
+
+  /**
+   * Decodes a page of rows into typed columns, according to {@code schema}.
+   */
+  static ColumnBatch fromPb(Schema schema, List<TableRow> rowsPb) {
+    int rowCount = rowsPb != null ? rowsPb.size() : 0;
+    ColumnDecoder[] decoders = decoders(schema, rowCount);
+    for (int row = 0; row < rowCount; row++) {
+      List<?> cells = rowsPb.get(row).getF();
+      checkState(cells.size() == decoders.length,
+          "Row %s has %s values, schema has %s fields", row, cells.size(), decoders.length);
+      for (int i = 0; i < decoders.length; i++) {
+        Object cellPb = cells.get(i);
+        Object value = cellPb instanceof Map ? ((Map<?, ?>) cellPb).get("v") : cellPb;
+        if (Data.isNull(value)) {
+          decoders[i].nulls.set(row);
+        } else {
+          decoders[i].decode(row, value);
+        }
+      }
+    }
+    return build(schema, rowCount, decoders);
+  }
+
+  /**
+   * Decodes rows of {@link FieldValue} objects into typed columns, according to {@code schema}.
+   */
+  static ColumnBatch of(Schema schema, List<List<FieldValue>> rows) {
+    int rowCount = rows.size();
+    ColumnDecoder[] decoders = decoders(schema, rowCount);
+    for (int row = 0; row < rowCount; row++) {
+      List<FieldValue> values = rows.get(row);
+      checkState(values.size() == decoders.length,
+          "Row %s has %s values, schema has %s fields", row, values.size(), decoders.length);
+      for (int i = 0; i < decoders.length; i++) {
+        FieldValue value = values.get(i);
+        if (value.isNull()) {
+          decoders[i].nulls.set(row);
+        } else {
+          decoders[i].decodeValue(row, value);
+        }
+      }
+    }
+    return build(schema, rowCount, decoders);
+  }
+
+  private static ColumnDecoder[] decoders(Schema schema, int rowCount) {
+    List<Field> fields = checkNotNull(schema).fields();
+    ColumnDecoder[] decoders = new ColumnDecoder[fields.size()];
+    for (int i = 0; i < decoders.length; i++) {
+      decoders[i] = ColumnDecoder.of(fields.get(i), rowCount);
+    }
+    return decoders;
+  }
+
+  private static ColumnBatch build(Schema schema, int rowCount, ColumnDecoder[] decoders) {
+    ImmutableList.Builder<Column> columns = ImmutableList.builder();
+    for (ColumnDecoder decoder : decoders) {
+      columns.add(decoder.build());
+    }
+    return new ColumnBatch(schema, rowCount, columns.build());
+  }
+
+  /**
+   * Parses a timestamp value, encoded as seconds since epoch with a fractional part (e.g.
+   * {@code 1408452095.22} or {@code 1.40845209522E9}), into microseconds since epoch.
+   */
+  static long parseTimestamp(String value) {
+    return (long) (Double.parseDouble(value) * MICROSECONDS);
+  }
+
+  /**
+   * Accumulates the values of a field while decoding rows.
+   */
+  private abstract static class ColumnDecoder {
+
+    final Field field;
+    final BitSet nulls;
+
+    ColumnDecoder(Field field, int rowCount) {
+      this.field = field;
+      this.nulls = new BitSet(rowCount);
+    }
+
+    abstract void decode(int row, Object value);
+
+    /**
+     * Decodes a value that was already wrapped in a {@link FieldValue} object. Primitive values
+     * hold their encoded string.
+     */
+    void decodeValue(int row, FieldValue value) {
+      decode(row, value.value());
+    }
+
+    abstract Column build();
+
+    static ColumnDecoder of(Field field, int rowCount) {
+      if (field.mode() == Field.Mode.REPEATED) {
+        return new FieldValueDecoder(field, rowCount);
+      }
+      switch (field.type().value()) {
+        case INTEGER:
+          return new LongDecoder(field, rowCount, false);
+        case TIMESTAMP:
+          return new LongDecoder(field, rowCount, true);
+        case FLOAT:
+          return new DoubleDecoder(field, rowCount);
+        case BOOLEAN:
+          return new BooleanDecoder(field, rowCount);
+        case STRING:
+          return new StringDecoder(field, rowCount);
+        case BYTES:
+          return new BytesDecoder(field, rowCount);
+        default:
+          return new FieldValueDecoder(field, rowCount);
+      }
+    }
+  }
+
+  private static final class LongDecoder extends ColumnDecoder {
+
+    private final boolean timestamp;
+    private final long[] values;
+
+    LongDecoder(Field field, int rowCount, boolean timestamp) {
+      super(field, rowCount);
+      this.timestamp = timestamp;
+      this.values = new long[rowCount];
+    }
+
+    @Override
+    void decode(int row, Object value) {
+      String stringValue = (String) value;
+      values[row] = timestamp ? parseTimestamp(stringValue) : Long.parseLong(stringValue);
+    }
+
+    @Override
+    Column build() {
+      return new LongColumn(field, nulls, values);
+    }
+  }
+
+  private static final class DoubleDecoder extends ColumnDecoder {
+
+    private final double[] values;
+
+    DoubleDecoder(Field field, int rowCount) {
+      super(field, rowCount);
+      this.values = new double[rowCount];
+    }
+
+    @Override
+    void decode(int row, Object value) {
+      values[row] = Double.parseDouble((String) value);
+    }
+
+    @Override
+    Column build() {
+      return new DoubleColumn(field, nulls, values);
+    }
+  }
+
+  private static final class BooleanDecoder extends ColumnDecoder {
+
+    private final BitSet values;
+
+    BooleanDecoder(Field field, int rowCount) {
+      super(field, rowCount);
+      this.values = new BitSet(rowCount);
+    }
+
+    @Override
+    void decode(int row, Object value) {
+      String stringValue = (String) value;
+      if (stringValue.equalsIgnoreCase("true")) {
+        values.set(row);
+      } else {
+        checkState(stringValue.equalsIgnoreCase("false"), "Field value is not of boolean type");
+      }
+    }
+
+    @Override
+    Column build() {
+      return new BooleanColumn(field, nulls, values);
+    }
+  }
+
+  private static final class StringDecoder extends ColumnDecoder {
+
+    private final int[] codes;
+    private final List<String> dictionary = new ArrayList<>();
+    private final Map<String, Integer> dictionaryIndexes = new HashMap<>();
+
+    StringDecoder(Field field, int rowCount) {
+      super(field, rowCount);
+      this.codes = new int[rowCount];
+    }
+
+    @Override
+    void decode(int row, Object value) {
+      String stringValue = (String) value;
+      Integer code = dictionaryIndexes.get(stringValue);
+      if (code == null) {
+        code = dictionary.size();
+        dictionary.add(stringValue);
+        dictionaryIndexes.put(stringValue, code);
+      }
+      codes[row] = code;
+    }
+
+    @Override
+    Column build() {
+      return new StringColumn(field, nulls, codes, Collections.unmodifiableList(dictionary));
+    }
+  }
+
+  private static final class BytesDecoder extends ColumnDecoder {
+
+    private final byte[][] values;
+
+    BytesDecoder(Field field, int rowCount) {
+      super(field, rowCount);
+      this.values = new byte[rowCount][];
+    }
+
+    @Override
+    void decode(int row, Object value) {
+      try {
+        values[row] = BaseEncoding.base64().decode((String) value);
+      } catch (IllegalArgumentException ex) {
+        throw new IllegalStateException(ex);
+      }
+    }
+
+    @Override
+    Column build() {
+      return new BytesColumn(field, nulls, values);
+    }
+  }
+
+  private static final class FieldValueDecoder extends ColumnDecoder {
+
+    private final FieldValue[] values;
+
+    FieldValueDecoder(Field field, int rowCount) {
+      super(field, rowCount);
+      this.values = new FieldValue[rowCount];
+    }
+
+    @Override
+    void decode(int row, Object value) {
+      values[row] = FieldValue.fromPb(value);
+    }
+
+    @Override
+    void decodeValue(int row, FieldValue value) {
+      values[row] = value;
+    }
+
+    @Override
+    Column build() {
+      return new FieldValueColumn(field, nulls, values);
+    }
+  }
+}
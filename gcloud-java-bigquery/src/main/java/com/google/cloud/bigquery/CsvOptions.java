@@ -251,6 +251,18 @@ public final class CsvOptions extends FormatOptions {
     return new Builder();
   }
 
+  /**
+   * Returns the character used to separate fields, given a field delimiter as accepted by
+   * BigQuery. The tab character can be set as {@code \t} or {@code tab}. If
+   * {@code fieldDelimiter} is {@code null} or empty, a comma is returned.
+   */
+  static char fieldDelimiterChar(String fieldDelimiter) {
+    if ("tab".equals(fieldDelimiter) || "\\t".equals(fieldDelimiter)) {
+      return '\t';
+    }
+    return fieldDelimiter != null && !fieldDelimiter.isEmpty() ? fieldDelimiter.charAt(0) : ',';
+  }
+
   static CsvOptions fromPb(com.google.api.services.bigquery.model.CsvOptions csvOptions) {
     Builder builder = builder();
     if (csvOptions.getAllowJaggedRows() != null) {
@@ -0,0 +1,388 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.bigquery;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A Google Cloud BigQuery insert all request whose rows are encoded, as they are added, directly
+ * into the JSON body of the request. Compared to {@link InsertAllRequest}, rows are not held as
+ * {@code Map} objects and are not converted to a request model before being serialized: field
+ * values are written with {@code set} methods and encoded into a reusable byte array, using field
+ * name tokens precomputed from the schema. Once sent with
+ * {@link BigQuery#insertAll(EncodedInsertAllRequest)}, the request can be reused for other rows
+ * after calling {@link #clear()}, with no further allocation of the encoding buffer.
+ *
+ * <p>Example usage of an encoded insert all request:
+ * <pre> {@code
+ * EncodedInsertAllRequest request = EncodedInsertAllRequest.builder(tableId, schema).build();
+ * for (Order order : orders) {
+ *   request.addRow(order.id())
+ *       .set("customer", order.customer())
+ *       .set("quantity", order.quantity())
+ *       .set("price", order.price());
+ *   if (request.byteSize() > maxRequestBytes) {
+ *     InsertAllResponse response = bigquery.insertAll(request);
+ *     // check response for errors
+ *     request.clear();
+ *   }
+ * }}</pre>
+ *
+ * <p>This class is not thread-safe.
+ *
+ * @see <a href="https://cloud.google.com/bigquery/streaming-data-into-bigquery">Streaming Data into
+ *     BigQuery</a>
+ */
+public final class EncodedInsertAllRequest {
+
+  private static final int DEFAULT_INITIAL_CAPACITY = 64 * 1024;
+  private static final byte[] ROW_WITH_ID = "{\"insertId\":".getBytes(UTF_8);
+  private static final byte[] ROW_JSON = ",\"json\":{".getBytes(UTF_8);
+  private static final byte[] ROW_WITHOUT_ID = "{\"json\":{".getBytes(UTF_8);
+
+  private final TableId table;
+  private final List<Field> fields;
+  private final Map<String, Integer> fieldIndexes;
+  private final byte[][] fieldTokens;
+  private final byte[] header;
+  private final RowEncoder encoder;
+  private final BitSet rowFields;
+  private int rowCount;
+  private boolean rowOpen;
+
+  /**
+   * Builder for {@code EncodedInsertAllRequest} objects.
+   */
+  public static final class Builder {
+
+    private final TableId table;
+    private final Schema schema;
+    private Boolean skipInvalidRows;
+    private Boolean ignoreUnknownValues;
+    private String templateSuffix;
+    private int initialCapacity = DEFAULT_INITIAL_CAPACITY;
+
+    private Builder(TableId table, Schema schema) {
+      this.table = checkNotNull(table);
+      this.schema = checkNotNull(schema);
+    }
+
+    /**
+     * Sets whether to insert all valid rows of a request, even if invalid rows exist. If not set
+     * the entire insert request will fail if it contains an invalid row.
+     */
+    public Builder skipInvalidRows(boolean skipInvalidRows) {
+      this.skipInvalidRows = skipInvalidRows;
+      return this;
+    }
+
+    /**
+     * Sets whether to accept rows that contain values that do not match the schema. The unknown
+     * values are ignored. If not set, rows with unknown values are considered to be invalid.
+     */
+    public Builder ignoreUnknownValues(boolean ignoreUnknownValues) {
+      this.ignoreUnknownValues = ignoreUnknownValues;
+      return this;
+    }
+
+    /**
+     * If specified, the destination table is treated as a base template. Rows are inserted into an
+     * instance table named "{destination}{templateSuffix}".
+     *
+     * @see InsertAllRequest.Builder#templateSuffix(String)
+     */
+    public Builder templateSuffix(String templateSuffix) {
+      this.templateSuffix = templateSuffix;
+      return this;
+    }
+
+    /**
+     * Sets the initial size, in bytes, of the buffer rows are encoded into. The buffer grows as
+     * needed. By default, 64KB.
+     */
+    public Builder initialCapacity(int initialCapacity) {
+      checkArgument(initialCapacity > 0, "Initial capacity must be > 0");
+      this.initialCapacity = initialCapacity;
+      return this;
+    }
+
+    /**
+     * Creates an {@code EncodedInsertAllRequest} object.
+     */
+    public EncodedInsertAllRequest build() {
+      return new EncodedInsertAllRequest(this);
+    }
+  }
+
+  private EncodedInsertAllRequest(Builder builder) {
+    this.table = builder.table;
+    this.fields = builder.schema.fields();
+    this.fieldIndexes = new HashMap<>();
+    this.fieldTokens = new byte[fields.size()][];
+    RowEncoder tokenEncoder = new RowEncoder(64);
+    for (int i = 0; i < fields.size(); i++) {
+      String name = fields.get(i).name();
+      fieldIndexes.put(name, i);
+      tokenEncoder.reset();
+      tokenEncoder.appendJsonString(name);
+      tokenEncoder.appendByte(':');
+      fieldTokens[i] = Arrays.copyOf(tokenEncoder.buffer(), tokenEncoder.length());
+    }
+    tokenEncoder.reset();
+    tokenEncoder.appendByte('{');
+    if (builder.ignoreUnknownValues != null) {
+      tokenEncoder.appendAscii("\"ignoreUnknownValues\":" + builder.ignoreUnknownValues + ",");
+    }
+    if (builder.skipInvalidRows != null) {
+      tokenEncoder.appendAscii("\"skipInvalidRows\":" + builder.skipInvalidRows + ",");
+    }
+    if (builder.templateSuffix != null) {
+      tokenEncoder.appendAscii("\"templateSuffix\":");
+      tokenEncoder.appendJsonString(builder.templateSuffix);
+      tokenEncoder.appendByte(',');
+    }
+    tokenEncoder.appendAscii("\"rows\":[");
+    this.header = Arrays.copyOf(tokenEncoder.buffer(), tokenEncoder.length());
+    this.encoder = new RowEncoder(Math.max(builder.initialCapacity, header.length + 2));
+    this.rowFields = new BitSet(fields.size());
+    clear();
+  }
+
+  /**
+   * Returns the destination table for rows insert request.
+   */
+  public TableId table() {
+    return table;
+  }
+
+  /**
+   * Adds a row to the request and makes it the current row, whose values are set with the
+   * {@code set} methods. {@code insertId} is used by BigQuery to detect duplicate insertion
+   * requests on a best-effort basis.
+   */
+  public EncodedInsertAllRequest addRow(String insertId) {
+    checkNotNull(insertId);
+    startRow();
+    encoder.appendBytes(ROW_WITH_ID);
+    encoder.appendJsonString(insertId);
+    encoder.appendBytes(ROW_JSON);
+    return this;
+  }
+
+  /**
+   * Adds a row with no insert id to the request and makes it the current row, whose values are
+   * set with the {@code set} methods.
+   */
+  public EncodedInsertAllRequest addRow() {
+    startRow();
+    encoder.appendBytes(ROW_WITHOUT_ID);
+    return this;
+  }
+
+  /**
+   * Sets the value of an integer field, or of a field of another non-repeated scalar type, for the
+   * current row.
+   *
+   * @throws IllegalArgumentException if the field is not in the schema, is a repeated or record
+   *     field, or was already set for the current row
+   * @throws IllegalStateException if no row was added
+   */
+  public EncodedInsertAllRequest set(String field, long value) {
+    startField(scalarFieldIndex(field));
+    encoder.appendLong(value);
+    return this;
+  }
+
+  /**
+   * Sets the value of a float field, or of a field of another non-repeated scalar type, for the
+   * current row. NaN and infinite values are encoded as strings.
+   *
+   * @throws IllegalArgumentException if the field is not in the schema, is a repeated or record
+   *     field, or was already set for the current row
+   * @throws IllegalStateException if no row was added
+   */
+  public EncodedInsertAllRequest set(String field, double value) {
+    startField(scalarFieldIndex(field));
+    encoder.appendJsonDouble(value);
+    return this;
+  }
+
+  /**
+   * Sets the value of a boolean field for the current row.
+   *
+   * @throws IllegalArgumentException if the field is not in the schema, is a repeated or record
+   *     field, or was already set for the current row
+   * @throws IllegalStateException if no row was added
+   */
+  public EncodedInsertAllRequest set(String field, boolean value) {
+    startField(scalarFieldIndex(field));
+    encoder.appendAscii(value ? "true" : "false");
+    return this;
+  }
+
+  /**
+   * Sets the value of a string field, or of a field of another non-repeated scalar type, for the
+   * current row. Values of bytes fields must be base64 encoded. A {@code null} value is encoded
+   * as {@code null}.
+   *
+   * @throws IllegalArgumentException if the field is not in the schema, is a repeated or record
+   *     field, or was already set for the current row
+   * @throws IllegalStateException if no row was added
+   */
+  public EncodedInsertAllRequest set(String field, String value) {
+    startField(scalarFieldIndex(field));
+    if (value == null) {
+      encoder.appendAscii("null");
+    } else {
+      encoder.appendJsonString(value);
+    }
+    return this;
+  }
+
+  /**
+   * Sets the value of a field of any type for the current row. Values of record fields are maps,
+   * values of repeated fields are {@code Iterable} objects. Values of bytes fields are either
+   * {@code byte[]} or base64 encoded strings. A {@code null} value is encoded as {@code null}.
+   *
+   * @throws IllegalArgumentException if the field is not in the schema or was already set for the
+   *     current row
+   * @throws IllegalStateException if no row was added
+   */
+  public EncodedInsertAllRequest set(String field, Object value) {
+    Field schemaField = fields.get(startField(fieldIndex(field)));
+    if (value == null) {
+      encoder.appendAscii("null");
+    } else {
+      encoder.appendJsonFieldValue(schemaField, value);
+    }
+    return this;
+  }
+
+  /**
+   * Returns the number of rows added to the request.
+   */
+  public int rowCount() {
+    return rowCount;
+  }
+
+  /**
+   * Returns the number of bytes encoded so far, which approximates the size of the request body.
+   */
+  public int byteSize() {
+    return encoder.length();
+  }
+
+  /**
+   * Removes all rows from the request, so that it can be reused. The encoding buffer is retained.
+   */
+  public void clear() {
+    encoder.reset();
+    encoder.appendBytes(header);
+    rowCount = 0;
+    rowOpen = false;
+  }
+
+  /**
+   * Completes the current row and the request body, returning its length. The body starts at
+   * offset 0 of {@link #buffer()}. More rows can still be added afterwards.
+   */
+  int finish() {
+    closeRow();
+    encoder.ensureCapacity(2);
+    byte[] buffer = encoder.buffer();
+    int length = encoder.length();
+    buffer[length] = ']';
+    buffer[length + 1] = '}';
+    return length + 2;
+  }
+
+  byte[] buffer() {
+    return encoder.buffer();
+  }
+
+  private void startRow() {
+    closeRow();
+    if (rowCount > 0) {
+      encoder.appendByte(',');
+    }
+    rowFields.clear();
+    rowOpen = true;
+    rowCount++;
+  }
+
+  private void closeRow() {
+    if (rowOpen) {
+      encoder.appendByte('}');
+      encoder.appendByte('}');
+      rowOpen = false;
+    }
+  }
+
+  private int fieldIndex(String name) {
+    checkState(rowOpen, "No row was added");
+    Integer index = fieldIndexes.get(name);
+    checkArgument(index != null, "Field %s is not in the schema", name);
+    return index;
+  }
+
+  private int scalarFieldIndex(String name) {
+    int index = fieldIndex(name);
+    Field field = fields.get(index);
+    checkArgument(field.mode() != Field.Mode.REPEATED
+        && field.type().value() != Field.Type.Value.RECORD,
+        "Field %s is a repeated or record field", name);
+    return index;
+  }
+
+  private int startField(int index) {
+    checkArgument(!rowFields.get(index), "Field %s was already set", fields.get(index).name());
+    if (!rowFields.isEmpty()) {
+      encoder.appendByte(',');
+    }
+    rowFields.set(index);
+    encoder.appendBytes(fieldTokens[index]);
+    return index;
+  }
+
+  /**
+   * Returns a builder for {@code EncodedInsertAllRequest} objects, given the destination table and
+   * its schema.
+   */
+  public static Builder builder(TableId table, Schema schema) {
+    return new Builder(table, schema);
+  }
+
+  /**
+   * Returns a builder for {@code EncodedInsertAllRequest} objects, given the destination table.
+   *
+   * @throws IllegalArgumentException if the table has no schema
+   */
+  public static Builder builder(TableInfo tableInfo) {
+    Schema schema = tableInfo.definition() != null ? tableInfo.definition().schema() : null;
+    checkArgument(schema != null, "Table %s has no schema", tableInfo.tableId());
+    return new Builder(tableInfo.tableId(), schema);
+  }
+}
@@ -43,7 +43,6 @@ public class FieldValue implements Serializable {
       return FieldValue.fromPb(pb);
     }
   };
-  private static final int MICROSECONDS = 1000000;
   private static final long serialVersionUID = 469098630191710061L;
 
   private final Attribute attribute;
@@ -193,7 +192,7 @@ public class FieldValue implements Serializable {
   public long timestampValue() {
     // timestamps are encoded in the format 1408452095.22 where the integer part is seconds since
     // epoch (e.g. 1408452095.22 == 2014-08-19 07:41:35.220 -05:00)
-    return new Double(((Double.valueOf(stringValue())) * MICROSECONDS)).longValue();
+    return ColumnBatch.parseTimestamp(stringValue());
   }
 
   /**
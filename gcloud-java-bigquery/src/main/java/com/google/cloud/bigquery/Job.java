@@ -22,6 +22,8 @@ import com.google.cloud.Clock;
 import com.google.cloud.WaitForOption;
 import com.google.cloud.WaitForOption.CheckingPeriod;
 import com.google.cloud.WaitForOption.Timeout;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
 
 import java.io.IOException;
 import java.io.ObjectInputStream;
@@ -203,6 +205,49 @@ public class Job extends JobInfo {
     return reload();
   }
 
+  /**
+   * Returns a future that completes with this job's latest information once the job completes its
+   * execution, either failing or succeeding. If the job no longer exists, the future completes
+   * with {@code null}. Unlike {@link #waitFor(WaitForOption...)}, this method does not block: the
+   * job status is checked by a scheduler shared by all jobs. By default, the job status is first
+   * checked after 100 milliseconds, then less and less often, up to every 5 seconds. To check the
+   * job status with a fixed period use {@link WaitForOption#checkEvery(long, TimeUnit)}. Use
+   * {@link WaitForOption#timeout(long, TimeUnit)} to set the maximum time to wait, after which the
+   * future fails with a {@link TimeoutException}. Cancelling the future does not cancel the job.
+   *
+   * <p>Example usage of {@code toFuture()}:
+   * <pre> {@code
+   * Futures.addCallback(job.toFuture(), new FutureCallback<Job>() {
+   *   public void onSuccess(Job completedJob) {
+   *     if (completedJob == null) {
+   *       // job no longer exists
+   *     } else if (completedJob.status().error() != null) {
+   *       // job failed, handle error
+   *     } else {
+   *       // job completed successfully
+   *     }
+   *   }
+   *
+   *   public void onFailure(Throwable throwable) {
+   *     // job status could not be checked
+   *   }
+   * });}</pre>
+   *
+   * @param waitOptions options to configure checking period and timeout
+   */
+  public ListenableFuture<Job> toFuture(WaitForOption... waitOptions) {
+    return JobPoller.defaultInstance().poll(new JobPoller.Check<Job>() {
+      @Override
+      boolean check(SettableFuture<Job> future) {
+        if (!isDone()) {
+          return false;
+        }
+        future.set(reload());
+        return true;
+      }
+    }, options.clock(), waitOptions);
+  }
+
   /**
    * Fetches current job's latest information. Returns {@code null} if the job does not exist.
    *
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.bigquery;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.cloud.Clock;
+import com.google.cloud.WaitForOption;
+import com.google.cloud.WaitForOption.CheckingPeriod;
+import com.google.cloud.WaitForOption.Timeout;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Polls pending jobs on a scheduler, without blocking the threads waiting for them. A single
+ * scheduler, with a few daemon threads, is shared by all jobs polled through
+ * {@link #defaultInstance()}. Unless a fixed checking period is set with
+ * {@link WaitForOption#checkEvery(long, TimeUnit)}, each job is first checked after
+ * {@value #INITIAL_DELAY_MILLIS} milliseconds, then the delay between checks grows by a factor of
+ * {@value #DELAY_MULTIPLIER}, up to {@value #MAX_DELAY_MILLIS} milliseconds. Short jobs are then
+ * detected quickly, while long jobs are not checked more often than needed.
+ */
+final class JobPoller {
+
+  static final long INITIAL_DELAY_MILLIS = 100;
+  static final long MAX_DELAY_MILLIS = 5000;
+  static final double DELAY_MULTIPLIER = 1.5;
+  private static final int POLLING_THREADS =
+      Math.max(4, Runtime.getRuntime().availableProcessors());
+
+  private final ScheduledExecutorService executor;
+
+  /**
+   * A check of the status of a pending job.
+   *
+   * @param <T> the type of the job's result
+   */
+  abstract static class Check<T> {
+
+    /**
+     * Checks whether the job completed. If so, this method sets the result of {@code future} and
+     * returns {@code true}. Otherwise, this method returns {@code false}.
+     *
+     * @throws RuntimeException if the check failed, the exception is used to fail the future
+     */
+    abstract boolean check(SettableFuture<T> future);
+  }
+
+  private static final class DefaultInstanceHolder {
+
+    private static final JobPoller INSTANCE = new JobPoller(Executors.newScheduledThreadPool(
+        POLLING_THREADS, new ThreadFactoryBuilder()
+            .setDaemon(true)
+            .setNameFormat("bigquery-job-poller-%d")
+            .build()));
+  }
+
+  private final class PollingTask<T> implements Runnable {
+
+    private final Check<T> check;
+    private final SettableFuture<T> future = SettableFuture.create();
+    private final Clock clock;
+    private final long deadline;
+    private final boolean fixedDelay;
+    private long delayMillis;
+
+    PollingTask(Check<T> check, Clock clock, WaitForOption... waitOptions) {
+      this.check = check;
+      this.clock = clock;
+      long timeoutMillis = Timeout.getOrDefault(waitOptions).timeoutMillis();
+      this.deadline = timeoutMillis != -1 ? clock.millis() + timeoutMillis : -1;
+      // checks for duplicate options, a fixed checking period is used only if explicitly set
+      CheckingPeriod.getOrDefault(waitOptions);
+      CheckingPeriod checkingPeriod = null;
+      for (WaitForOption option : waitOptions) {
+        if (option instanceof CheckingPeriod) {
+          checkingPeriod = (CheckingPeriod) option;
+        }
+      }
+      this.fixedDelay = checkingPeriod != null;
+      this.delayMillis = fixedDelay
+          ? checkingPeriod.unit().toMillis(checkingPeriod.period()) : INITIAL_DELAY_MILLIS;
+    }
+
+    @Override
+    public void run() {
+      if (future.isDone()) {
+        // the future was cancelled
+        return;
+      }
+      try {
+        if (check.check(future)) {
+          return;
+        }
+      } catch (RuntimeException ex) {
+        future.setException(ex);
+        return;
+      }
+      if (deadline != -1 && clock.millis() >= deadline) {
+        future.setException(new TimeoutException());
+        return;
+      }
+      schedule();
+    }
+
+    void schedule() {
+      long delay = delayMillis;
+      if (!fixedDelay) {
+        delayMillis = Math.min((long) (delayMillis * DELAY_MULTIPLIER), MAX_DELAY_MILLIS);
+      }
+      executor.schedule(this, delay, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  JobPoller(ScheduledExecutorService executor) {
+    this.executor = checkNotNull(executor);
+  }
+
+  /**
+   * Returns a future that completes once {@code check} detects that the job completed. The
+   * future fails with the exception thrown by {@code check}, if any, or with a
+   * {@link TimeoutException} if the timeout set with {@link WaitForOption#timeout(long, TimeUnit)}
+   * is exceeded. Cancelling the future stops polling the job, but does not cancel it.
+   */
+  <T> ListenableFuture<T> poll(Check<T> check, Clock clock, WaitForOption... waitOptions) {
+    PollingTask<T> task = new PollingTask<>(check, clock, waitOptions);
+    task.schedule();
+    return task.future;
+  }
+
+  /**
+   * Returns a future that completes once {@code check} detects that the job completed, as
+   * {@link #poll(Check, Clock, WaitForOption...)} does. The first check is run on the scheduler
+   * as soon as possible rather than after a delay, it can be used to start the job.
+   */
+  <T> ListenableFuture<T> submit(Check<T> check, Clock clock, WaitForOption... waitOptions) {
+    PollingTask<T> task = new PollingTask<>(check, clock, waitOptions);
+    executor.execute(task);
+    return task.future;
+  }
+
+  /**
+   * Returns a poller whose scheduler is shared by all jobs.
+   */
+  static JobPoller defaultInstance() {
+    return DefaultInstanceHolder.INSTANCE;
+  }
+}
@@ -0,0 +1,477 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.bigquery;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.cloud.Clock;
+import com.google.cloud.WaitForOption;
+import com.google.cloud.bigquery.BigQuery.TableField;
+import com.google.cloud.bigquery.BigQuery.TableOption;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A client-side cache of query results. Results are cached by normalized query text, default
+ * dataset and page size: issuing a query equal to a cached one returns the cached result without
+ * any request to the service, other than the ones needed to check that referenced tables were not
+ * modified.
+ *
+ * <p>All result pages are fetched and stored when a query is first run. Cached results expire
+ * after {@link Builder#expireAfter(long, TimeUnit)} and are evicted, least recently used first,
+ * when the total estimated size of the cached results exceeds {@link Builder#maxBytes(long)}.
+ * Results larger than the whole budget are never cached. Cached results are also invalidated when
+ * the last modified time of one of the tables referenced by the query changes. Referenced tables
+ * are detected in the query text: table references in brackets or backticks, or following
+ * {@code FROM} and {@code JOIN}. Results of queries referencing tables that can't be detected
+ * this way (e.g. table wildcard functions) are only invalidated by expiration.
+ *
+ * <p>Queries with {@link QueryRequest#dryRun()} set or with {@link QueryRequest#useQueryCache()}
+ * set to {@code false} are always sent to the service, and their results are not cached. So are
+ * queries calling non-deterministic functions, such as {@code CURRENT_TIMESTAMP()}, {@code NOW()}
+ * or {@code RAND()}, detected in the query text.
+ *
+ * <p>Example usage of a query cache:
+ * <pre> {@code
+ * QueryCache cache = QueryCache.builder(bigquery)
+ *     .expireAfter(5, TimeUnit.MINUTES)
+ *     .maxBytes(64 * 1024 * 1024)
+ *     .build();
+ * QueryResult result = cache.query(QueryRequest.of("SELECT field FROM dataset.table"));
+ * for (List<FieldValue> row : result.iterateAll()) {
+ *   // do something with the row
+ * }}</pre>
+ *
+ * <p>This class is thread-safe. If the same query is issued concurrently while not cached, it may
+ * be sent to the service more than once.
+ */
+public final class QueryCache {
+
+  private static final long DEFAULT_MAX_BYTES = 32L * 1024 * 1024;
+  private static final long DEFAULT_EXPIRE_AFTER_MILLIS = TimeUnit.MINUTES.toMillis(5);
+  private static final Pattern QUOTED_TABLE_PATTERN =
+      Pattern.compile("\\[([^\\[\\]\\s]+)\\]|`([^`\\s]+)`");
+  private static final Pattern TABLE_PATTERN = Pattern.compile(
+      "(?i)\\b(?:FROM|JOIN)\\s+([A-Za-z_][\\w-]*+(?:[.:][A-Za-z_$][\\w$-]*+)*+)(?!\\s*\\()");
+  private static final Pattern NON_DETERMINISTIC_PATTERN = Pattern.compile(
+      "(?i)\\bCURRENT_(?:DATE|DATETIME|TIME|TIMESTAMP|USER)\\b"
+          + "|\\b(?:NOW|RAND|GENERATE_UUID|SESSION_USER)\\s*\\(");
+  private static final TableOption LAST_MODIFIED_OPTION =
+      TableOption.fields(TableField.LAST_MODIFIED_TIME);
+
+  private final BigQuery bigquery;
+  private final Clock clock;
+  private final long maxBytes;
+  private final long tableCheckIntervalMillis;
+  private final Cache<Key, Entry> cache;
+
+  /**
+   * Builder for {@code QueryCache} objects.
+   */
+  public static final class Builder {
+
+    private final BigQuery bigquery;
+    private long maxBytes = DEFAULT_MAX_BYTES;
+    private long expireAfterMillis = DEFAULT_EXPIRE_AFTER_MILLIS;
+    private long tableCheckIntervalMillis;
+
+    private Builder(BigQuery bigquery) {
+      this.bigquery = checkNotNull(bigquery);
+    }
+
+    /**
+     * Sets the maximum estimated size, in bytes, of all cached results. By default, 32MB.
+     */
+    public Builder maxBytes(long maxBytes) {
+      checkArgument(maxBytes > 0, "Max bytes must be > 0");
+      this.maxBytes = maxBytes;
+      return this;
+    }
+
+    /**
+     * Sets how long results are cached after being fetched from the service. By default, 5
+     * minutes.
+     */
+    public Builder expireAfter(long duration, TimeUnit unit) {
+      checkArgument(duration > 0, "Duration must be > 0");
+      this.expireAfterMillis = unit.toMillis(duration);
+      return this;
+    }
+
+    /**
+     * Sets the minimum time between checks of the last modified time of the tables referenced by
+     * a cached query. Within this interval, cached results are returned without any request to
+     * the service. By default, referenced tables are checked every time a cached result is
+     * returned.
+     */
+    public Builder tableCheckInterval(long duration, TimeUnit unit) {
+      checkArgument(duration >= 0, "Duration must be >= 0");
+      this.tableCheckIntervalMillis = unit.toMillis(duration);
+      return this;
+    }
+
+    /**
+     * Creates a {@code QueryCache} object.
+     */
+    public QueryCache build() {
+      return new QueryCache(this);
+    }
+  }
+
+  private static final class Key {
+
+    private final String query;
+    private final DatasetId defaultDataset;
+    private final Long pageSize;
+
+    Key(QueryRequest request) {
+      this.query = normalize(request.query());
+      this.defaultDataset = request.defaultDataset();
+      this.pageSize = request.pageSize();
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(query, defaultDataset, pageSize);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (obj == this) {
+        return true;
+      }
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) obj;
+      return query.equals(other.query)
+          && Objects.equals(defaultDataset, other.defaultDataset)
+          && Objects.equals(pageSize, other.pageSize);
+    }
+  }
+
+  private static final class Entry {
+
+    private final Schema schema;
+    private final long totalRows;
+    private final long totalBytesProcessed;
+    private final List<List<List<FieldValue>>> pages;
+    private final Map<TableId, Long> lastModifiedTimes;
+    private final long bytes;
+    private volatile long lastCheckMillis;
+
+    Entry(QueryResult result, List<List<List<FieldValue>>> pages,
+        Map<TableId, Long> lastModifiedTimes, long bytes, long lastCheckMillis) {
+      this.schema = result.schema();
+      this.totalRows = result.totalRows();
+      this.totalBytesProcessed = result.totalBytesProcessed();
+      this.pages = pages;
+      this.lastModifiedTimes = lastModifiedTimes;
+      this.bytes = bytes;
+      this.lastCheckMillis = lastCheckMillis;
+    }
+
+    QueryResult page(int index) {
+      return QueryResult.builder()
+          .cacheHit(true)
+          .schema(schema)
+          .totalRows(totalRows)
+          .totalBytesProcessed(totalBytesProcessed)
+          .results(pages.get(index))
+          .cursor(index + 1 < pages.size() ? Integer.toString(index + 1) : null)
+          .pageFetcher(new CachedPageFetcher(this, index + 1))
+          .build();
+    }
+  }
+
+  private static final class CachedPageFetcher implements QueryResult.QueryResultsPageFetcher {
+
+    private static final long serialVersionUID = -5429361745213485960L;
+
+    private final transient Entry entry;
+    private final int index;
+
+    CachedPageFetcher(Entry entry, int index) {
+      this.entry = entry;
+      this.index = index;
+    }
+
+    @Override
+    public QueryResult nextPage() {
+      return entry != null && index < entry.pages.size() ? entry.page(index) : null;
+    }
+  }
+
+  private QueryCache(Builder builder) {
+    this.bigquery = builder.bigquery;
+    this.clock = bigquery.options().clock();
+    this.maxBytes = builder.maxBytes;
+    this.tableCheckIntervalMillis = builder.tableCheckIntervalMillis;
+    // a single segment, so that the byte budget applies to the cache as a whole
+    this.cache = CacheBuilder.newBuilder()
+        .concurrencyLevel(1)
+        .maximumWeight(builder.maxBytes)
+        .weigher(new Weigher<Key, Entry>() {
+          @Override
+          public int weigh(Key key, Entry entry) {
+            return (int) Math.min(entry.bytes, Integer.MAX_VALUE);
+          }
+        })
+        .expireAfterWrite(builder.expireAfterMillis, TimeUnit.MILLISECONDS)
+        .ticker(new Ticker() {
+          @Override
+          public long read() {
+            return TimeUnit.MILLISECONDS.toNanos(clock.millis());
+          }
+        })
+        .build();
+  }
+
+  /**
+   * Runs a query and returns its results, or returns the cached results of an equal query if
+   * present and still valid. Results returned from the cache have {@link QueryResult#cacheHit()}
+   * set to {@code true}.
+   *
+   * @param waitOptions options to configure checking period and timeout while waiting for the
+   *     query to complete, if it has to be sent to the service
+   * @throws BigQueryException upon failure
+   * @see BigQuery#queryAsync(QueryRequest, WaitForOption...)
+   */
+  public QueryResult query(QueryRequest request, WaitForOption... waitOptions) {
+    if (Boolean.TRUE.equals(request.dryRun()) || Boolean.FALSE.equals(request.useQueryCache())
+        || !isDeterministic(request.query())) {
+      return getResult(request, waitOptions);
+    }
+    Key key = new Key(request);
+    Entry entry = cache.getIfPresent(key);
+    if (entry != null) {
+      if (isValid(entry)) {
+        return entry.page(0);
+      }
+      cache.invalidate(key);
+    }
+    Map<TableId, Long> lastModifiedTimes = lastModifiedTimes(request);
+    long checkMillis = clock.millis();
+    QueryResult result = getResult(request, waitOptions);
+    List<List<List<FieldValue>>> pages = new ArrayList<>();
+    long bytes = 0;
+    for (QueryResult page = result; page != null; page = page.nextPage()) {
+      List<List<FieldValue>> rows = ImmutableList.copyOf(page.values());
+      pages.add(rows);
+      bytes += estimateBytes(rows);
+      if (bytes > maxBytes) {
+        return result;
+      }
+    }
+    entry = new Entry(result, pages, lastModifiedTimes, bytes, checkMillis);
+    cache.put(key, entry);
+    return entry.page(0);
+  }
+
+  /**
+   * Removes the cached results of {@code request}, if any.
+   */
+  public void invalidate(QueryRequest request) {
+    cache.invalidate(new Key(request));
+  }
+
+  /**
+   * Removes all cached results.
+   */
+  public void invalidateAll() {
+    cache.invalidateAll();
+  }
+
+  /**
+   * Returns the number of cached results.
+   */
+  public long size() {
+    return cache.size();
+  }
+
+  private QueryResult getResult(QueryRequest request, WaitForOption... waitOptions) {
+    try {
+      return Uninterruptibles.getUninterruptibly(bigquery.queryAsync(request, waitOptions));
+    } catch (ExecutionException ex) {
+      Throwable cause = ex.getCause();
+      if (cause instanceof BigQueryException) {
+        throw (BigQueryException) cause;
+      }
+      throw new BigQueryException(BigQueryException.UNKNOWN_CODE, cause.getMessage(), cause);
+    }
+  }
+
+  private boolean isValid(Entry entry) {
+    long now = clock.millis();
+    if (now - entry.lastCheckMillis < tableCheckIntervalMillis) {
+      return true;
+    }
+    for (Map.Entry<TableId, Long> tableEntry : entry.lastModifiedTimes.entrySet()) {
+      Table table = bigquery.getTable(tableEntry.getKey(), LAST_MODIFIED_OPTION);
+      if (table == null || !Objects.equals(tableEntry.getValue(), table.lastModifiedTime())) {
+        return false;
+      }
+    }
+    entry.lastCheckMillis = now;
+    return true;
+  }
+
+  private Map<TableId, Long> lastModifiedTimes(QueryRequest request) {
+    Map<TableId, Long> lastModifiedTimes = new LinkedHashMap<>();
+    String projectId = bigquery.options().projectId();
+    for (TableId tableId : referencedTables(request.query(), request.defaultDataset())) {
+      Table table = bigquery.getTable(tableId.project() != null ? tableId
+          : TableId.of(projectId, tableId.dataset(), tableId.table()), LAST_MODIFIED_OPTION);
+      if (table != null) {
+        lastModifiedTimes.put(table.tableId(), table.lastModifiedTime());
+      }
+    }
+    return Collections.unmodifiableMap(lastModifiedTimes);
+  }
+
+  /**
+   * Returns whether {@code query} does not call any non-deterministic function, as detected from
+   * the query text. Standard SQL {@code CURRENT_*} functions can be called without parentheses.
+   */
+  static boolean isDeterministic(String query) {
+    return !NON_DETERMINISTIC_PATTERN.matcher(query).find();
+  }
+
+  /**
+   * Returns the tables referenced by {@code query}, as detected from the query text. Tables
+   * whose project is not specified have a {@code null} project.
+   */
+  static Set<TableId> referencedTables(String query, DatasetId defaultDataset) {
+    Set<TableId> tables = new LinkedHashSet<>();
+    Matcher matcher = QUOTED_TABLE_PATTERN.matcher(query);
+    while (matcher.find()) {
+      addTable(tables, matcher.group(1) != null ? matcher.group(1) : matcher.group(2),
+          defaultDataset);
+    }
+    matcher = TABLE_PATTERN.matcher(query);
+    while (matcher.find()) {
+      addTable(tables, matcher.group(1), defaultDataset);
+    }
+    return tables;
+  }
+
+  private static void addTable(Set<TableId> tables, String name, DatasetId defaultDataset) {
+    int tableIndex = name.lastIndexOf('.');
+    if (tableIndex < 0) {
+      if (defaultDataset != null && name.indexOf(':') < 0) {
+        tables.add(TableId.of(defaultDataset.project(), defaultDataset.dataset(), name));
+      }
+      return;
+    }
+    String table = name.substring(tableIndex + 1);
+    String qualifier = name.substring(0, tableIndex);
+    int datasetIndex = Math.max(qualifier.lastIndexOf('.'), qualifier.lastIndexOf(':'));
+    if (table.isEmpty() || datasetIndex == qualifier.length() - 1) {
+      return;
+    }
+    if (datasetIndex < 0) {
+      tables.add(TableId.of(qualifier, table));
+    } else if (datasetIndex > 0) {
+      tables.add(TableId.of(qualifier.substring(0, datasetIndex),
+          qualifier.substring(datasetIndex + 1), table));
+    }
+  }
+
+  /**
+   * Normalizes a query by collapsing whitespace outside of quoted strings and identifiers.
+   */
+  static String normalize(String query) {
+    StringBuilder builder = new StringBuilder(query.length());
+    char quote = 0;
+    boolean whitespace = false;
+    for (int i = 0; i < query.length(); i++) {
+      char c = query.charAt(i);
+      if (quote != 0) {
+        builder.append(c);
+        if (c == '\\' && i + 1 < query.length()) {
+          builder.append(query.charAt(++i));
+        } else if (c == quote) {
+          quote = 0;
+        }
+      } else if (Character.isWhitespace(c)) {
+        whitespace = true;
+      } else {
+        if (whitespace && builder.length() > 0) {
+          builder.append(' ');
+        }
+        whitespace = false;
+        if (c == '\'' || c == '"' || c == '`') {
+          quote = c;
+        }
+        builder.append(c);
+      }
+    }
+    return builder.toString();
+  }
+
+  /**
+   * Returns an estimate of the memory used by {@code rows}, in bytes.
+   */
+  static long estimateBytes(List<List<FieldValue>> rows) {
+    long bytes = 16;
+    for (List<FieldValue> row : rows) {
+      bytes += estimateValuesBytes(row);
+    }
+    return bytes;
+  }
+
+  private static long estimateValuesBytes(List<FieldValue> values) {
+    long bytes = 24 + 8L * values.size();
+    for (FieldValue value : values) {
+      bytes += 24;
+      Object content = value.value();
+      if (content instanceof String) {
+        bytes += 40 + 2L * ((String) content).length();
+      } else if (content instanceof List) {
+        @SuppressWarnings("unchecked")
+        List<FieldValue> nested = (List<FieldValue>) content;
+        bytes += estimateValuesBytes(nested);
+      }
+    }
+    return bytes;
+  }
+
+  /**
+   * Returns a builder for {@code QueryCache} objects, given the service used to run queries.
+   */
+  public static Builder builder(BigQuery bigquery) {
+    return new Builder(bigquery);
+  }
+}
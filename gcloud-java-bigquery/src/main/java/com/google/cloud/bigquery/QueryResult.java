@@ -16,6 +16,8 @@
 
 package com.google.cloud.bigquery;
 
+import static com.google.common.base.Preconditions.checkState;
+
 import com.google.cloud.PageImpl;
 import com.google.common.base.MoreObjects;
 import com.google.common.collect.ImmutableList;
@@ -131,6 +133,19 @@ public class QueryResult extends PageImpl<List<FieldValue>> {
     return totalRows;
   }
 
+  /**
+   * Returns the rows of this page of results decoded into typed columns, according to
+   * {@link #schema()}. To decode pages of results without creating {@link FieldValue} objects use
+   * {@link BigQuery#getQueryResultsColumns(JobId, BigQuery.QueryResultsOption...)}.
+   *
+   * @throws IllegalStateException if the results have no schema
+   * @see ColumnBatch
+   */
+  public ColumnBatch columns() {
+    checkState(schema != null, "Query results have no schema");
+    return ColumnBatch.of(schema, ImmutableList.copyOf(values()));
+  }
+
   @Override
   public QueryResult nextPage() {
     return (QueryResult) super.nextPage();
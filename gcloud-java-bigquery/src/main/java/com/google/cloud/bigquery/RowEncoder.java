@@ -0,0 +1,285 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.bigquery;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.io.BaseEncoding;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encodes rows as UTF-8 JSON or CSV directly into a growable byte array, that can be reused for
+ * several rows with {@link #reset()}.
+ */
+final class RowEncoder {
+
+  private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(UTF_8);
+  private static final byte[] MIN_LONG = Long.toString(Long.MIN_VALUE).getBytes(UTF_8);
+
+  private byte[] buffer;
+  private int length;
+
+  RowEncoder(int initialCapacity) {
+    buffer = new byte[initialCapacity];
+  }
+
+  /**
+   * Returns the array holding the encoded bytes. The array is replaced when it needs to grow.
+   */
+  byte[] buffer() {
+    return buffer;
+  }
+
+  int length() {
+    return length;
+  }
+
+  void reset() {
+    length = 0;
+  }
+
+  /**
+   * Makes sure that {@code capacity} more bytes can be appended without growing the buffer.
+   */
+  void ensureCapacity(int capacity) {
+    if (length + capacity > buffer.length) {
+      buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + capacity));
+    }
+  }
+
+  /**
+   * Appends a JSON object for a record with the given fields. Values are taken from
+   * {@code record}, if not {@code null}, or else from {@code values}, in the order of the fields.
+   * Fields with {@code null} value are omitted.
+   */
+  void appendJsonRecord(List<Field> recordFields, Map<?, ?> record, List<?> values) {
+    appendByte('{');
+    boolean first = true;
+    for (int i = 0; i < recordFields.size(); i++) {
+      Field field = recordFields.get(i);
+      Object value = record != null ? record.get(field.name()) : values.get(i);
+      if (value == null) {
+        continue;
+      }
+      if (!first) {
+        appendByte(',');
+      }
+      first = false;
+      appendJsonString(field.name());
+      appendByte(':');
+      appendJsonFieldValue(field, value);
+    }
+    appendByte('}');
+  }
+
+  /**
+   * Appends the JSON value of a field, which is an array if the field is repeated.
+   */
+  void appendJsonFieldValue(Field field, Object value) {
+    if (field.mode() == Field.Mode.REPEATED) {
+      appendByte('[');
+      boolean firstElement = true;
+      for (Object element : (Iterable<?>) value) {
+        if (!firstElement) {
+          appendByte(',');
+        }
+        firstElement = false;
+        appendJsonValue(field, element);
+      }
+      appendByte(']');
+    } else {
+      appendJsonValue(field, value);
+    }
+  }
+
+  void appendJsonValue(Field field, Object value) {
+    if (value == null) {
+      appendAscii("null");
+    } else if (field.type().value() == Field.Type.Value.RECORD) {
+      appendJsonRecord(field.fields(), (Map<?, ?>) value, null);
+    } else if (value instanceof byte[]) {
+      appendJsonString(BaseEncoding.base64().encode((byte[]) value));
+    } else if (value instanceof Integer || value instanceof Long || value instanceof Short
+        || value instanceof Byte) {
+      appendLong(((Number) value).longValue());
+    } else if (value instanceof Boolean) {
+      appendAscii((Boolean) value ? "true" : "false");
+    } else if (value instanceof Double || value instanceof Float) {
+      double doubleValue = ((Number) value).doubleValue();
+      if (Double.isNaN(doubleValue) || Double.isInfinite(doubleValue)) {
+        appendJsonString(value.toString());
+      } else {
+        appendAscii(value.toString());
+      }
+    } else {
+      appendJsonString(value.toString());
+    }
+  }
+
+  /**
+   * Appends a JSON number, or a JSON string for NaN and infinite values.
+   */
+  void appendJsonDouble(double value) {
+    if (Double.isNaN(value) || Double.isInfinite(value)) {
+      appendJsonString(Double.toString(value));
+    } else {
+      appendAscii(Double.toString(value));
+    }
+  }
+
+  void appendJsonString(String value) {
+    appendByte('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      switch (c) {
+        case '"':
+          appendAscii("\\\"");
+          break;
+        case '\\':
+          appendAscii("\\\\");
+          break;
+        case '\n':
+          appendAscii("\\n");
+          break;
+        case '\r':
+          appendAscii("\\r");
+          break;
+        case '\t':
+          appendAscii("\\t");
+          break;
+        default:
+          if (c < 0x20) {
+            appendAscii("\\u00");
+            appendByte(HEX_DIGITS[c >> 4]);
+            appendByte(HEX_DIGITS[c & 0xF]);
+          } else {
+            i = appendChar(value, i);
+          }
+      }
+    }
+    appendByte('"');
+  }
+
+  /**
+   * Appends a CSV value, preceded by {@code delimiter} unless it is the first value of the row.
+   * Values are quoted if they are empty or contain the delimiter, the quote or a line break.
+   */
+  void appendCsvValue(int index, Object value, char delimiter, char quote) {
+    if (index > 0) {
+      appendByte(delimiter);
+    }
+    if (value == null) {
+      return;
+    }
+    String string = value instanceof byte[]
+        ? BaseEncoding.base64().encode((byte[]) value) : value.toString();
+    boolean quoted = string.isEmpty();
+    for (int i = 0; i < string.length() && !quoted; i++) {
+      char c = string.charAt(i);
+      quoted = c == delimiter || c == quote || c == '\n' || c == '\r';
+    }
+    if (quoted) {
+      appendByte(quote);
+    }
+    for (int i = 0; i < string.length(); i++) {
+      char c = string.charAt(i);
+      if (c == quote) {
+        appendByte(quote);
+      }
+      i = appendChar(string, i);
+    }
+    if (quoted) {
+      appendByte(quote);
+    }
+  }
+
+  /**
+   * Appends the UTF-8 encoding of the character at {@code index} of {@code value}, and returns the
+   * index of the last character consumed.
+   */
+  int appendChar(String value, int index) {
+    char c = value.charAt(index);
+    if (c < 0x80) {
+      appendByte(c);
+    } else if (c < 0x800) {
+      appendByte(0xC0 | (c >> 6));
+      appendByte(0x80 | (c & 0x3F));
+    } else if (Character.isHighSurrogate(c) && index + 1 < value.length()
+        && Character.isLowSurrogate(value.charAt(index + 1))) {
+      int codePoint = Character.toCodePoint(c, value.charAt(++index));
+      appendByte(0xF0 | (codePoint >> 18));
+      appendByte(0x80 | ((codePoint >> 12) & 0x3F));
+      appendByte(0x80 | ((codePoint >> 6) & 0x3F));
+      appendByte(0x80 | (codePoint & 0x3F));
+    } else if (Character.isSurrogate(c)) {
+      appendByte('?');
+    } else {
+      appendByte(0xE0 | (c >> 12));
+      appendByte(0x80 | ((c >> 6) & 0x3F));
+      appendByte(0x80 | (c & 0x3F));
+    }
+    return index;
+  }
+
+  /**
+   * Appends the decimal representation of {@code value}, without creating a string.
+   */
+  void appendLong(long value) {
+    if (value == Long.MIN_VALUE) {
+      appendBytes(MIN_LONG);
+      return;
+    }
+    ensureCapacity(20);
+    if (value < 0) {
+      buffer[length++] = '-';
+      value = -value;
+    }
+    int start = length;
+    do {
+      buffer[length++] = (byte) ('0' + value % 10);
+      value /= 10;
+    } while (value != 0);
+    for (int i = start, j = length - 1; i < j; i++, j--) {
+      byte digit = buffer[i];
+      buffer[i] = buffer[j];
+      buffer[j] = digit;
+    }
+  }
+
+  void appendAscii(String value) {
+    ensureCapacity(value.length());
+    for (int i = 0; i < value.length(); i++) {
+      buffer[length++] = (byte) value.charAt(i);
+    }
+  }
+
+  void appendBytes(byte[] bytes) {
+    ensureCapacity(bytes.length);
+    System.arraycopy(bytes, 0, buffer, length, bytes.length);
+    length += bytes.length;
+  }
+
+  void appendByte(int value) {
+    if (length == buffer.length) {
+      buffer = Arrays.copyOf(buffer, buffer.length * 2);
+    }
+    buffer[length++] = (byte) value;
+  }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.bigquery;
+
+import com.google.cloud.PageImpl;
+import com.google.cloud.bigquery.spi.BigQueryRpc;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.UnmodifiableIterator;
+
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * An iterator over all the rows of a table or of query results, across pages. Rows are parsed from
+ * each response as the iterator advances, so that only the row being read is held in memory,
+ * regardless of the page size. The next page is requested once all rows in the current page were
+ * read. A {@code RowStream} holds an open connection and must be closed once it is no longer
+ * needed.
+ *
+ * <p>Example usage of a row stream:
+ * <pre> {@code
+ * try (RowStream rows = bigquery.openTableData(tableId, TableDataListOption.pageSize(100000))) {
+ *   while (rows.hasNext()) {
+ *     List<FieldValue> row = rows.next();
+ *     // do something with the row
+ *   }
+ * }}</pre>
+ *
+ * <p>Failures while reading a response are not retried: {@link #hasNext()} and {@link #next()}
+ * throw {@link BigQueryException} and the stream can't be used further.
+ *
+ * @see BigQuery#openTableData(TableId, BigQuery.TableDataListOption...)
+ * @see BigQuery#openQueryResults(JobId, BigQuery.QueryResultsOption...)
+ */
+public final class RowStream extends UnmodifiableIterator<List<FieldValue>>
+    implements AutoCloseable {
+
+  private final PageOpener opener;
+  private Map<BigQueryRpc.Option, ?> pageOptions;
+  private BigQueryRpc.RowPage page;
+
+  /**
+   * Opens a page of rows, given the request options.
+   */
+  abstract static class PageOpener {
+
+    /**
+     * Returns the requested page or {@code null} if the table or job was not found.
+     *
+     * @throws BigQueryException upon failure
+     */
+    abstract BigQueryRpc.RowPage open(Map<BigQueryRpc.Option, ?> options);
+  }
+
+  RowStream(PageOpener opener, Map<BigQueryRpc.Option, ?> pageOptions,
+      BigQueryRpc.RowPage page) {
+    this.opener = opener;
+    this.pageOptions = pageOptions;
+    this.page = page;
+  }
+
+  /**
+   * Returns whether there are more rows, requesting the next page if all rows in the current page
+   * were read. When reading query results of a job that has not completed, this method waits for
+   * the job to complete.
+   *
+   * @throws BigQueryException upon failure
+   */
+  @Override
+  public boolean hasNext() {
+    while (page != null) {
+      if (page.hasNext()) {
+        return true;
+      }
+      String pageToken = page.pageToken();
+      boolean jobComplete = page.jobComplete();
+      page.close();
+      page = null;
+      if (!jobComplete) {
+        page = opener.open(pageOptions);
+      } else if (pageToken != null) {
+        pageOptions =
+            PageImpl.nextRequestOptions(BigQueryRpc.Option.PAGE_TOKEN, pageToken, pageOptions);
+        page = opener.open(pageOptions);
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns the next row.
+   *
+   * @throws BigQueryException upon failure
+   */
+  @Override
+  public List<FieldValue> next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    List<Object> cells = page.next();
+    ImmutableList.Builder<FieldValue> row = ImmutableList.builder();
+    for (Object cell : cells) {
+      row.add(FieldValue.fromPb(cell));
+    }
+    return row.build();
+  }
+
+  /**
+   * Closes the stream, releasing the connection used to read the current page.
+   *
+   * @throws BigQueryException upon failure
+   */
+  @Override
+  public void close() {
+    if (page != null) {
+      BigQueryRpc.RowPage toClose = page;
+      page = null;
+      toClose.close();
+    }
+  }
+}
@@ -0,0 +1,413 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.bigquery;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.cloud.WriteChannel;
+import com.google.cloud.bigquery.JobInfo.WriteDisposition;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A loader that encodes rows and streams them into a BigQuery table with load jobs, using
+ * {@link BigQuery#writer(WriteChannelConfiguration)}. Rows are encoded as newline-delimited JSON
+ * or CSV, according to {@link WriteChannelConfiguration#format()}, and the schema set with
+ * {@link Builder#schema(Schema)}.
+ *
+ * <p>Rows are encoded directly into a pool of {@link Builder#buffers(int)} buffers of
+ * {@link Builder#bufferSize(int)} bytes. Full buffers are uploaded by a background thread while
+ * the following rows are encoded, so that encoding and uploading overlap. If all buffers are being
+ * uploaded, {@link #write(Map)} blocks until a buffer is available. Once a load job received
+ * {@link Builder#maxBytesPerJob(long)} bytes, its upload is completed and the following rows are
+ * written to a new load job. A row is never split across load jobs. Load jobs after the first one
+ * always append to the table, regardless of {@link WriteChannelConfiguration#writeDisposition()},
+ * so that they don't overwrite rows loaded by earlier jobs. The loader never writes a CSV header
+ * row, so {@link CsvOptions#skipLeadingRows()} must not be set to skip rows.
+ *
+ * <p>Example usage of a table data loader:
+ * <pre> {@code
+ * WriteChannelConfiguration configuration =
+ *     WriteChannelConfiguration.builder(tableId, FormatOptions.json()).build();
+ * try (TableDataLoader loader = TableDataLoader.builder(bigquery, configuration)
+ *     .schema(schema)
+ *     .build()) {
+ *   loader.writeAll(rows);
+ * }}</pre>
+ *
+ * <p>This class is not thread-safe.
+ */
+public final class TableDataLoader implements AutoCloseable {
+
+  private static final int DEFAULT_BUFFER_SIZE = 2 * 1024 * 1024;
+  private static final int DEFAULT_BUFFERS = 3;
+  private static final int MIN_BUFFER_SIZE = 256 * 1024;
+  private static final String JSON_FORMAT = "NEWLINE_DELIMITED_JSON";
+  private static final String CSV_FORMAT = "CSV";
+
+  private final BigQuery bigquery;
+  private final WriteChannelConfiguration configuration;
+  private final WriteChannelConfiguration nextJobConfiguration;
+  private final List<Field> fields;
+  private final boolean csv;
+  private final char delimiter;
+  private final char quote;
+  private final int bufferSize;
+  private final long maxBytesPerJob;
+  private final BlockingQueue<ByteBuffer> freeBuffers;
+  private final ExecutorService uploader;
+  private final RowEncoder encoder = new RowEncoder(1024);
+  private ByteBuffer current;
+  private long jobBytes;
+  private boolean jobStarted;
+  private long rowCount;
+  private int jobCount;
+  private boolean closed;
+  private volatile Throwable failure;
+  // only accessed by the uploader thread
+  private WriteChannel channel;
+
+  /**
+   * Builder for {@code TableDataLoader} objects.
+   */
+  public static final class Builder {
+
+    private final BigQuery bigquery;
+    private final WriteChannelConfiguration configuration;
+    private Schema schema;
+    private int bufferSize = DEFAULT_BUFFER_SIZE;
+    private int buffers = DEFAULT_BUFFERS;
+    private long maxBytesPerJob = Long.MAX_VALUE;
+
+    private Builder(BigQuery bigquery, WriteChannelConfiguration configuration) {
+      this.bigquery = checkNotNull(bigquery);
+      this.configuration = checkNotNull(configuration);
+      this.schema = configuration.schema();
+    }
+
+    /**
+     * Sets the schema used to encode rows. If not set, {@link WriteChannelConfiguration#schema()}
+     * is used.
+     */
+    public Builder schema(Schema schema) {
+      this.schema = schema;
+      return this;
+    }
+
+    /**
+     * Sets the size of the buffers rows are encoded into. Each full buffer is uploaded with a
+     * single request. The size is rounded down to a multiple of 256KB. By default, 2MB.
+     */
+    public Builder bufferSize(int bufferSize) {
+      checkArgument(bufferSize >= MIN_BUFFER_SIZE, "Buffer size must be >= %s", MIN_BUFFER_SIZE);
+      this.bufferSize = bufferSize - bufferSize % MIN_BUFFER_SIZE;
+      return this;
+    }
+
+    /**
+     * Sets the number of buffers rows are encoded into. One buffer is filled while the others are
+     * uploaded. By default, 3 buffers.
+     */
+    public Builder buffers(int buffers) {
+      checkArgument(buffers >= 2, "Buffers must be >= 2");
+      this.buffers = buffers;
+      return this;
+    }
+
+    /**
+     * Sets the number of bytes after which a new load job is started. By default, all rows are
+     * loaded with a single load job.
+     */
+    public Builder maxBytesPerJob(long maxBytesPerJob) {
+      checkArgument(maxBytesPerJob > 0, "Max bytes per job must be > 0");
+      this.maxBytesPerJob = maxBytesPerJob;
+      return this;
+    }
+
+    /**
+     * Creates a {@code TableDataLoader} object.
+     *
+     * @throws IllegalArgumentException if no schema was set, if the format is neither
+     *     {@code NEWLINE_DELIMITED_JSON} nor {@code CSV}, or if the format is {@code CSV} and the
+     *     schema has record or repeated fields or leading rows are skipped
+     */
+    public TableDataLoader build() {
+      return new TableDataLoader(this);
+    }
+  }
+
+  private TableDataLoader(Builder builder) {
+    this.bigquery = builder.bigquery;
+    this.configuration = builder.configuration;
+    checkArgument(builder.schema != null, "A schema is required to encode rows");
+    this.fields = builder.schema.fields();
+    String format = configuration.format() != null ? configuration.format() : CSV_FORMAT;
+    checkArgument(JSON_FORMAT.equals(format) || CSV_FORMAT.equals(format),
+        "Rows can't be encoded as %s", format);
+    this.csv = CSV_FORMAT.equals(format);
+    CsvOptions csvOptions = configuration.csvOptions();
+    if (csv) {
+      for (Field field : fields) {
+        checkArgument(field.type().value() != Field.Type.Value.RECORD
+            && field.mode() != Field.Mode.REPEATED,
+            "Field %s can't be encoded as CSV", field.name());
+      }
+      checkArgument(csvOptions == null || csvOptions.encoding() == null
+          || "UTF-8".equals(csvOptions.encoding()), "Only UTF-8 encoding is supported");
+      // rows are written without a header, skipping leading rows would drop rows
+      checkArgument(csvOptions == null || csvOptions.skipLeadingRows() == null
+          || csvOptions.skipLeadingRows() == 0, "Skipping leading rows is not supported");
+    }
+    this.nextJobConfiguration =
+        configuration.toBuilder().writeDisposition(WriteDisposition.WRITE_APPEND).build();
+    this.delimiter =
+        CsvOptions.fieldDelimiterChar(csvOptions != null ? csvOptions.fieldDelimiter() : null);
+    this.quote = csvOptions != null && csvOptions.quote() != null && !csvOptions.quote().isEmpty()
+        ? csvOptions.quote().charAt(0) : '"';
+    this.bufferSize = builder.bufferSize;
+    this.maxBytesPerJob = builder.maxBytesPerJob;
+    this.freeBuffers = new ArrayBlockingQueue<>(builder.buffers);
+    for (int i = 0; i < builder.buffers; i++) {
+      freeBuffers.add(ByteBuffer.allocate(bufferSize));
+    }
+    this.uploader = Executors.newSingleThreadExecutor(
+        new ThreadFactoryBuilder().setDaemon(true).setNameFormat("table-loader-%d").build());
+  }
+
+  /**
+   * Writes a row, given a map from field names to values. Values of record fields are maps,
+   * values of repeated fields are {@code Iterable} objects. Values of bytes fields are either
+   * {@code byte[]} or base64 encoded strings. Fields missing from {@code row} are written as
+   * {@code null}.
+   *
+   * @throws BigQueryException if uploading rows failed
+   */
+  public void write(Map<String, ?> row) {
+    checkNotNull(row);
+    checkState(!closed, "Loader is closed");
+    checkFailure();
+    encoder.reset();
+    if (csv) {
+      for (int i = 0; i < fields.size(); i++) {
+        encoder.appendCsvValue(i, row.get(fields.get(i).name()), delimiter, quote);
+      }
+      encoder.appendByte('\n');
+    } else {
+      encoder.appendJsonRecord(fields, row, null);
+      encoder.appendByte('\n');
+    }
+    writeRow();
+  }
+
+  /**
+   * Writes a row, given its values in the order of the schema's fields.
+   *
+   * @throws IllegalArgumentException if the number of values does not match the number of fields
+   * @throws BigQueryException if uploading rows failed
+   * @see #write(Map)
+   */
+  public void write(List<?> values) {
+    checkArgument(values.size() == fields.size(), "Expected %s values, found %s", fields.size(),
+        values.size());
+    checkState(!closed, "Loader is closed");
+    checkFailure();
+    encoder.reset();
+    if (csv) {
+      for (int i = 0; i < fields.size(); i++) {
+        encoder.appendCsvValue(i, values.get(i), delimiter, quote);
+      }
+      encoder.appendByte('\n');
+    } else {
+      encoder.appendJsonRecord(fields, null, values);
+      encoder.appendByte('\n');
+    }
+    writeRow();
+  }
+
+  /**
+   * Writes all the rows returned by {@code rows}.
+   *
+   * @throws BigQueryException if uploading rows failed
+   * @see #write(Map)
+   */
+  public void writeAll(Iterator<? extends Map<String, ?>> rows) {
+    while (rows.hasNext()) {
+      write(rows.next());
+    }
+  }
+
+  /**
+   * Returns the number of rows written.
+   */
+  public long rowCount() {
+    return rowCount;
+  }
+
+  /**
+   * Returns the number of load jobs started.
+   */
+  public int jobCount() {
+    return jobCount;
+  }
+
+  /**
+   * Uploads the remaining rows, completes the last load job and waits for all uploads to
+   * complete.
+   *
+   * @throws BigQueryException if uploading rows failed
+   */
+  @Override
+  public void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    if (jobBytes > 0) {
+      finishJob();
+    }
+    uploader.shutdown();
+    try {
+      while (!uploader.awaitTermination(1, TimeUnit.MINUTES)) {
+        // keep waiting for uploads to complete
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      uploader.shutdownNow();
+      throw new BigQueryException(BigQueryException.UNKNOWN_CODE,
+          "Interrupted while uploading rows", ex);
+    }
+    checkFailure();
+  }
+
+  private void checkFailure() {
+    Throwable throwable = failure;
+    if (throwable instanceof BigQueryException) {
+      throw (BigQueryException) throwable;
+    }
+    if (throwable instanceof IOException) {
+      throw new BigQueryException((IOException) throwable);
+    }
+    if (throwable != null) {
+      throw new BigQueryException(BigQueryException.UNKNOWN_CODE, throwable.getMessage(),
+          throwable);
+    }
+  }
+
+  private void writeRow() {
+    int rowLength = encoder.length();
+    if (jobBytes > 0 && jobBytes + rowLength > maxBytesPerJob) {
+      finishJob();
+    }
+    int offset = 0;
+    while (offset < rowLength) {
+      if (current == null) {
+        try {
+          current = freeBuffers.take();
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+          throw new BigQueryException(BigQueryException.UNKNOWN_CODE,
+              "Interrupted while waiting for a buffer", ex);
+        }
+      }
+      int length = Math.min(rowLength - offset, current.remaining());
+      current.put(encoder.buffer(), offset, length);
+      offset += length;
+      if (!current.hasRemaining()) {
+        upload(current);
+        current = null;
+      }
+    }
+    jobBytes += rowLength;
+    rowCount++;
+  }
+
+  private void finishJob() {
+    if (current != null) {
+      upload(current);
+      current = null;
+    }
+    uploader.execute(new Runnable() {
+      @Override
+      public void run() {
+        if (channel == null) {
+          return;
+        }
+        try {
+          channel.close();
+        } catch (IOException | RuntimeException ex) {
+          failure = ex;
+        } finally {
+          channel = null;
+        }
+      }
+    });
+    jobBytes = 0;
+    jobStarted = false;
+  }
+
+  private void upload(final ByteBuffer buffer) {
+    if (!jobStarted) {
+      jobStarted = true;
+      jobCount++;
+    }
+    final WriteChannelConfiguration jobConfiguration =
+        jobCount == 1 ? configuration : nextJobConfiguration;
+    uploader.execute(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          if (failure != null) {
+            return;
+          }
+          if (channel == null) {
+            channel = bigquery.writer(jobConfiguration);
+            channel.chunkSize(bufferSize);
+          }
+          buffer.flip();
+          while (buffer.hasRemaining()) {
+            channel.write(buffer);
+          }
+        } catch (IOException | RuntimeException ex) {
+          failure = ex;
+        } finally {
+          buffer.clear();
+          freeBuffers.add(buffer);
+        }
+      }
+    });
+  }
+
+  /**
+   * Returns a builder for {@code TableDataLoader} objects, given the service used to load rows and
+   * the configuration of the load jobs.
+   */
+  public static Builder builder(BigQuery bigquery, WriteChannelConfiguration configuration) {
+    return new Builder(bigquery, configuration);
+  }
+}
@@ -0,0 +1,394 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.bigquery;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.cloud.bigquery.BigQuery.TableDataListOption;
+import com.google.cloud.bigquery.BigQuery.TableField;
+import com.google.cloud.bigquery.BigQuery.TableOption;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A reader that fetches the rows of a table in parallel. The table is partitioned into ranges of
+ * {@link Builder#rowsPerRange(long)} rows, according to the table's number of rows. Each range is
+ * read by a separate task via {@link BigQuery#listTableData(TableId, TableDataListOption...)},
+ * using the {@link TableDataListOption#startIndex(long)} option. Rows are returned by
+ * {@link #next()} either in table order or in the order ranges are fetched.
+ *
+ * <p>Fetched ranges are buffered in memory until consumed: at most
+ * {@link Builder#maxBufferedRanges(int)} ranges are either being fetched or waiting to be
+ * consumed. New ranges are only requested once buffered ranges are consumed.
+ *
+ * <p>Example usage of a table data reader:
+ * <pre> {@code
+ * try (TableDataReader reader = TableDataReader.builder(bigquery, tableId)
+ *     .parallelism(8)
+ *     .ordered(false)
+ *     .build()) {
+ *   while (reader.hasNext()) {
+ *     List<FieldValue> row = reader.next();
+ *     // do something with the row
+ *   }
+ * }}</pre>
+ *
+ * <p>Rows inserted in the table while reading it, for instance via streaming, may not be returned.
+ * This class is not thread-safe.
+ */
+public final class TableDataReader implements Iterator<List<FieldValue>>, AutoCloseable {
+
+  private static final int DEFAULT_PARALLELISM = 4;
+  private static final long DEFAULT_ROWS_PER_RANGE = 10_000L;
+
+  private final BigQuery bigquery;
+  private final TableId tableId;
+  private final long totalRows;
+  private final long rowsPerRange;
+  private final Long pageSize;
+  private final boolean ordered;
+  private final int maxBufferedRanges;
+  private final ExecutorService executor;
+  private final boolean shutdownExecutor;
+  private final Queue<Future<List<List<FieldValue>>>> orderedRanges;
+  private final CompletionService<List<List<FieldValue>>> unorderedRanges;
+  private final Set<Future<List<List<FieldValue>>>> unorderedFutures;
+  private final Iterator<List<FieldValue>> rows;
+  private long nextRangeStart;
+  private int pendingRanges;
+  private boolean closed;
+
+  /**
+   * Builder for {@code TableDataReader} objects.
+   */
+  public static final class Builder {
+
+    private final BigQuery bigquery;
+    private final TableId tableId;
+    private Long totalRows;
+    private long rowsPerRange = DEFAULT_ROWS_PER_RANGE;
+    private Long pageSize;
+    private int parallelism = DEFAULT_PARALLELISM;
+    private Integer maxBufferedRanges;
+    private boolean ordered = true;
+    private ExecutorService executor;
+
+    private Builder(BigQuery bigquery, TableId tableId) {
+      this.bigquery = checkNotNull(bigquery);
+      this.tableId = checkNotNull(tableId);
+    }
+
+    /**
+     * Sets the number of rows to read. If not set, the table's number of rows is used, as returned
+     * by {@link StandardTableDefinition#numRows()}.
+     */
+    public Builder totalRows(long totalRows) {
+      checkArgument(totalRows >= 0, "Total rows must be >= 0");
+      this.totalRows = totalRows;
+      return this;
+    }
+
+    /**
+     * Sets the number of rows read by each task. By default, each task reads 10000 rows.
+     */
+    public Builder rowsPerRange(long rowsPerRange) {
+      checkArgument(rowsPerRange > 0, "Rows per range must be > 0");
+      this.rowsPerRange = rowsPerRange;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of rows returned by each {@code tabledata.list} request. If not set,
+     * each request asks for all remaining rows in its range and the service decides the size of
+     * the response.
+     */
+    public Builder pageSize(long pageSize) {
+      checkArgument(pageSize > 0, "Page size must be > 0");
+      this.pageSize = pageSize;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of ranges fetched at the same time. This is also the number of
+     * threads used by the reader, if no executor is set via {@link #executor(ExecutorService)}.
+     * By default, 4 ranges are fetched at the same time.
+     */
+    public Builder parallelism(int parallelism) {
+      checkArgument(parallelism > 0, "Parallelism must be > 0");
+      this.parallelism = parallelism;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of ranges that can be either being fetched or waiting to be
+     * consumed. This bounds the memory used by the reader. By default, twice the parallelism.
+     */
+    public Builder maxBufferedRanges(int maxBufferedRanges) {
+      checkArgument(maxBufferedRanges > 0, "Max buffered ranges must be > 0");
+      this.maxBufferedRanges = maxBufferedRanges;
+      return this;
+    }
+
+    /**
+     * Sets whether rows must be returned in table order. If {@code false}, rows of a range are
+     * returned as soon as the range is fetched, regardless of previous ranges. By default, rows
+     * are returned in table order.
+     */
+    public Builder ordered(boolean ordered) {
+      this.ordered = ordered;
+      return this;
+    }
+
+    /**
+     * Sets the executor used to fetch ranges. The executor is not shut down when the reader is
+     * closed. If not set, a fixed thread pool of {@link #parallelism(int)} threads is used.
+     */
+    public Builder executor(ExecutorService executor) {
+      this.executor = executor;
+      return this;
+    }
+
+    /**
+     * Creates a {@code TableDataReader} object. If the number of rows to read was not set, this
+     * method gets the table to read its number of rows.
+     *
+     * @throws BigQueryException upon failure
+     * @throws IllegalArgumentException if the table does not exist or its number of rows is not
+     *     known (e.g. for views and external tables)
+     */
+    public TableDataReader build() {
+      return new TableDataReader(this);
+    }
+  }
+
+  private TableDataReader(Builder builder) {
+    this.bigquery = builder.bigquery;
+    this.tableId = builder.tableId;
+    this.totalRows = builder.totalRows != null ? builder.totalRows : tableRows(bigquery, tableId);
+    this.rowsPerRange = builder.rowsPerRange;
+    this.pageSize = builder.pageSize;
+    this.ordered = builder.ordered;
+    this.maxBufferedRanges = builder.maxBufferedRanges != null
+        ? builder.maxBufferedRanges : 2 * builder.parallelism;
+    this.shutdownExecutor = builder.executor == null;
+    this.executor = builder.executor != null
+        ? builder.executor : Executors.newFixedThreadPool(builder.parallelism,
+            new ThreadFactoryBuilder().setDaemon(true).setNameFormat("table-reader-%d").build());
+    this.orderedRanges = new ArrayDeque<>();
+    this.unorderedRanges = new ExecutorCompletionService<>(executor);
+    this.unorderedFutures = new HashSet<>();
+    this.rows = new RowIterator();
+    fillBuffer();
+  }
+
+  private static long tableRows(BigQuery bigquery, TableId tableId) {
+    Table table = bigquery.getTable(tableId, TableOption.fields(TableField.NUM_ROWS));
+    checkArgument(table != null, "Table %s not found", tableId);
+    TableDefinition definition = table.definition();
+    checkArgument(definition instanceof StandardTableDefinition
+        && ((StandardTableDefinition) definition).numRows() != null,
+        "Number of rows is not known for table %s", tableId);
+    return ((StandardTableDefinition) definition).numRows();
+  }
+
+  /**
+   * Returns the number of rows this reader reads.
+   */
+  public long totalRows() {
+    return totalRows;
+  }
+
+  /**
+   * Returns {@code true} if there are more rows to read.
+   *
+   * @throws BigQueryException upon failure
+   */
+  @Override
+  public boolean hasNext() {
+    return rows.hasNext();
+  }
+
+  /**
+   * Returns the next row.
+   *
+   * @throws BigQueryException upon failure
+   * @throws java.util.NoSuchElementException if there are no more rows to read
+   */
+  @Override
+  public List<FieldValue> next() {
+    return rows.next();
+  }
+
+  @Override
+  public void remove() {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * Stops fetching ranges. Ranges being fetched are cancelled. If the reader created its own
+   * executor, the executor is shut down. The reader is automatically closed once all rows have
+   * been returned.
+   */
+  @Override
+  public void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    Future<List<List<FieldValue>>> future;
+    while ((future = orderedRanges.poll()) != null) {
+      future.cancel(true);
+    }
+    for (Future<List<List<FieldValue>>> unorderedFuture : unorderedFutures) {
+      unorderedFuture.cancel(true);
+    }
+    unorderedFutures.clear();
+    if (shutdownExecutor) {
+      executor.shutdownNow();
+    }
+  }
+
+  private void fillBuffer() {
+    while (!closed && pendingRanges < maxBufferedRanges && nextRangeStart < totalRows) {
+      long rangeEnd = Math.min(nextRangeStart + rowsPerRange, totalRows);
+      Callable<List<List<FieldValue>>> range = new RangeReader(nextRangeStart, rangeEnd);
+      if (ordered) {
+        orderedRanges.add(executor.submit(range));
+      } else {
+        unorderedFutures.add(unorderedRanges.submit(range));
+      }
+      pendingRanges++;
+      nextRangeStart = rangeEnd;
+    }
+  }
+
+  private List<List<FieldValue>> nextRange() {
+    if (pendingRanges == 0) {
+      return null;
+    }
+    try {
+      Future<List<List<FieldValue>>> future;
+      if (ordered) {
+        future = orderedRanges.peek();
+      } else {
+        future = unorderedRanges.take();
+        unorderedFutures.remove(future);
+      }
+      List<List<FieldValue>> range = future.get();
+      if (ordered) {
+        orderedRanges.poll();
+      }
+      pendingRanges--;
+      fillBuffer();
+      return range;
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      close();
+      throw new BigQueryException(BigQueryException.UNKNOWN_CODE, "Interrupted while reading "
+          + tableId, ex);
+    } catch (ExecutionException ex) {
+      close();
+      if (ex.getCause() instanceof BigQueryException) {
+        throw (BigQueryException) ex.getCause();
+      }
+      throw new BigQueryException(BigQueryException.UNKNOWN_CODE, ex.getCause().getMessage(),
+          ex.getCause());
+    }
+  }
+
+  private final class RowIterator extends AbstractIterator<List<FieldValue>> {
+
+    private Iterator<List<FieldValue>> current = ImmutableList.<List<FieldValue>>of().iterator();
+
+    @Override
+    protected List<FieldValue> computeNext() {
+      while (!current.hasNext()) {
+        checkState(!closed, "Reader is closed");
+        List<List<FieldValue>> range = nextRange();
+        if (range == null) {
+          close();
+          return endOfData();
+        }
+        current = range.iterator();
+      }
+      return current.next();
+    }
+  }
+
+  /**
+   * Reads the rows in {@code [start, end)}, possibly issuing several requests if the service
+   * returns fewer rows than requested.
+   */
+  private final class RangeReader implements Callable<List<List<FieldValue>>> {
+
+    private final long start;
+    private final long end;
+
+    RangeReader(long start, long end) {
+      this.start = start;
+      this.end = end;
+    }
+
+    @Override
+    public List<List<FieldValue>> call() {
+      List<List<FieldValue>> rangeRows =
+          new ArrayList<>((int) Math.min(end - start, DEFAULT_ROWS_PER_RANGE));
+      long position = start;
+      while (position < end && !Thread.currentThread().isInterrupted()) {
+        long maxResults = pageSize != null ? Math.min(pageSize, end - position) : end - position;
+        List<List<FieldValue>> page = ImmutableList.copyOf(bigquery.listTableData(tableId,
+            TableDataListOption.startIndex(position),
+            TableDataListOption.pageSize(maxResults)).values());
+        if (page.isEmpty()) {
+          // the table has fewer rows than expected
+          break;
+        }
+        List<List<FieldValue>> rows =
+            page.size() > end - position ? page.subList(0, (int) (end - position)) : page;
+        rangeRows.addAll(rows);
+        position += rows.size();
+      }
+      return rangeRows;
+    }
+  }
+
+  /**
+   * Returns a builder for {@code TableDataReader} objects, given the service and the table to
+   * read.
+   */
+  public static Builder builder(BigQuery bigquery, TableId tableId) {
+    return new Builder(bigquery, tableId);
+  }
+}
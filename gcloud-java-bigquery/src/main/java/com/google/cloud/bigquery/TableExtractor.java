@@ -0,0 +1,773 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.bigquery;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.json.jackson.JacksonFactory;
+import com.google.api.client.util.Data;
+import com.google.cloud.ReadChannel;
+import com.google.cloud.WaitForOption;
+import com.google.cloud.storage.Blob;
+import com.google.cloud.storage.BlobId;
+import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.Storage.BlobListOption;
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.util.concurrent.AsyncFunction;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TimeZone;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * A utility that exports a table to Google Cloud Storage with an extract job, and reads the
+ * exported files back in parallel. Extracting a large table to sharded destination URIs (e.g.
+ * {@code gs://bucket/table-*.json}) and reading the shards in parallel is usually much faster than
+ * listing the table's rows with {@link BigQuery#listTableData(TableId,
+ * BigQuery.TableDataListOption...)}.
+ *
+ * <p>{@link #extract()} runs the extract job and returns the exported shards, once the job
+ * completes. The job status is checked with {@link Job#toFuture(WaitForOption...)}, so no thread
+ * is blocked while waiting for the job. {@link #downloadTo(Path)} downloads the shards to a local
+ * directory, and {@link #readRows()} decodes the rows of CSV and newline-delimited JSON shards.
+ * Up to {@link Builder#parallelism(int)} shards are downloaded or read at the same time, using
+ * {@link Storage#reader(BlobId, Storage.BlobSourceOption...)}.
+ *
+ * <p>{@code gcloud-java-storage} is an optional dependency of {@code gcloud-java-bigquery}, it must
+ * be added to the classpath to use this class.
+ *
+ * <p>Example usage of a table extractor:
+ * <pre> {@code
+ * ExtractJobConfiguration configuration =
+ *     ExtractJobConfiguration.builder(tableId, "gs://my_bucket/my_table-*.json")
+ *         .format("NEWLINE_DELIMITED_JSON")
+ *         .build();
+ * TableExtractor extractor = TableExtractor.builder(bigquery, storage, configuration)
+ *     .parallelism(8)
+ *     .build();
+ * try (TableExtractor.RowIterator rows = extractor.readRows().get()) {
+ *   while (rows.hasNext()) {
+ *     List<FieldValue> row = rows.next();
+ *     // do something with the row
+ *   }
+ * }}</pre>
+ *
+ * @see <a href="https://cloud.google.com/bigquery/exporting-data-from-bigquery">Exporting Data
+ *     From BigQuery</a>
+ */
+public final class TableExtractor {
+
+  private static final int DEFAULT_PARALLELISM = 4;
+  private static final int DEFAULT_CHUNK_SIZE = 2 * 1024 * 1024;
+  private static final int ROWS_PER_BATCH = 1000;
+  private static final String CSV_FORMAT = "CSV";
+  private static final String JSON_FORMAT = "NEWLINE_DELIMITED_JSON";
+  private static final String GZIP_COMPRESSION = "GZIP";
+  private static final JsonFactory JSON_FACTORY = JacksonFactory.getDefaultInstance();
+  private static final Object NULL_VALUE = Data.nullOf(String.class);
+
+  private final BigQuery bigquery;
+  private final Storage storage;
+  private final ExtractJobConfiguration configuration;
+  private final int parallelism;
+  private final int chunkSize;
+  private final WaitForOption[] waitOptions;
+  private final ListeningExecutorService executor;
+
+  /**
+   * Builder for {@code TableExtractor} objects.
+   */
+  public static final class Builder {
+
+    private final BigQuery bigquery;
+    private final Storage storage;
+    private final ExtractJobConfiguration configuration;
+    private int parallelism = DEFAULT_PARALLELISM;
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+    private WaitForOption[] waitOptions = {};
+    private ExecutorService executor;
+
+    private Builder(BigQuery bigquery, Storage storage, ExtractJobConfiguration configuration) {
+      this.bigquery = checkNotNull(bigquery);
+      this.storage = checkNotNull(storage);
+      this.configuration = checkNotNull(configuration);
+    }
+
+    /**
+     * Sets the maximum number of shards downloaded or read at the same time. By default, 4 shards.
+     */
+    public Builder parallelism(int parallelism) {
+      checkArgument(parallelism > 0, "Parallelism must be > 0");
+      this.parallelism = parallelism;
+      return this;
+    }
+
+    /**
+     * Sets the size of the chunks requested when reading a shard.
+     *
+     * @see ReadChannel#chunkSize(int)
+     */
+    public Builder chunkSize(int chunkSize) {
+      checkArgument(chunkSize > 0, "Chunk size must be > 0");
+      this.chunkSize = chunkSize;
+      return this;
+    }
+
+    /**
+     * Sets the options used to wait for the extract job to complete.
+     *
+     * @see Job#toFuture(WaitForOption...)
+     */
+    public Builder waitOptions(WaitForOption... waitOptions) {
+      this.waitOptions = waitOptions.clone();
+      return this;
+    }
+
+    /**
+     * Sets the executor used to list, download and read shards. The executor should be able to run
+     * {@link #parallelism(int)} tasks at the same time. If not set, an executor with up to
+     * {@link #parallelism(int)} daemon threads is used. Its threads exit after being idle for a
+     * minute, so the extractor does not need to be closed.
+     */
+    public Builder executor(ExecutorService executor) {
+      this.executor = executor;
+      return this;
+    }
+
+    /**
+     * Creates a {@code TableExtractor} object.
+     */
+    public TableExtractor build() {
+      return new TableExtractor(this);
+    }
+  }
+
+  /**
+   * An iterator over the rows of the exported shards. Shards are read in parallel, rows of
+   * different shards may therefore be interleaved. Decoded rows are buffered in memory until
+   * consumed, reading a shard pauses when the buffer is full. Closing the iterator stops reading
+   * shards. This class is not thread-safe.
+   */
+  public static final class RowIterator implements Iterator<List<FieldValue>>, AutoCloseable {
+
+    private static final Object SHARD_END = new Object();
+
+    private final BlockingQueue<Object> queue;
+    private final List<Future<?>> futures = new ArrayList<>();
+    private int remainingShards;
+    private Iterator<List<FieldValue>> batch = Collections.emptyIterator();
+
+    private RowIterator(int remainingShards, int bufferedBatches) {
+      this.remainingShards = remainingShards;
+      this.queue = new ArrayBlockingQueue<>(bufferedBatches);
+    }
+
+    @Override
+    public boolean hasNext() {
+      while (!batch.hasNext()) {
+        if (remainingShards == 0) {
+          return false;
+        }
+        Object element;
+        try {
+          element = queue.take();
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+          close();
+          throw new BigQueryException(BigQueryException.UNKNOWN_CODE,
+              "Interrupted while reading rows", ex);
+        }
+        if (element == SHARD_END) {
+          remainingShards--;
+        } else if (element instanceof Throwable) {
+          close();
+          if (element instanceof RuntimeException) {
+            throw (RuntimeException) element;
+          }
+          Throwable throwable = (Throwable) element;
+          throw new BigQueryException(BigQueryException.UNKNOWN_CODE, throwable.getMessage(),
+              throwable);
+        } else {
+          @SuppressWarnings("unchecked")
+          List<List<FieldValue>> rows = (List<List<FieldValue>>) element;
+          batch = rows.iterator();
+        }
+      }
+      return true;
+    }
+
+    @Override
+    public List<FieldValue> next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      return batch.next();
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Stops reading shards.
+     */
+    @Override
+    public void close() {
+      remainingShards = 0;
+      batch = Collections.emptyIterator();
+      for (Future<?> future : futures) {
+        future.cancel(true);
+      }
+      queue.clear();
+    }
+  }
+
+  /**
+   * Decodes the rows of a shard.
+   */
+  abstract static class RowDecoder implements Closeable {
+
+    final Schema schema;
+    final Reader reader;
+
+    RowDecoder(Schema schema, Reader reader) {
+      this.schema = schema;
+      this.reader = reader;
+    }
+
+    /**
+     * Returns the next row, or {@code null} if there are no more rows.
+     */
+    abstract List<FieldValue> next() throws IOException;
+
+    @Override
+    public void close() throws IOException {
+      reader.close();
+    }
+  }
+
+  /**
+   * Decodes CSV rows, as exported by BigQuery: values containing delimiters, quotes or new lines
+   * are quoted, and empty values are decoded as {@code null}.
+   */
+  static final class CsvDecoder extends RowDecoder {
+
+    private static final int NONE = -2;
+
+    private final char delimiter;
+    private boolean skipHeader;
+    private int pushedBack = NONE;
+
+    CsvDecoder(Schema schema, Reader reader, char delimiter, boolean skipHeader) {
+      super(schema, reader);
+      this.delimiter = delimiter;
+      this.skipHeader = skipHeader;
+    }
+
+    @Override
+    List<FieldValue> next() throws IOException {
+      if (skipHeader) {
+        skipHeader = false;
+        readRecord();
+      }
+      List<String> values = readRecord();
+      if (values == null) {
+        return null;
+      }
+      List<Field> fields = schema.fields();
+      checkState(values.size() == fields.size(), "Expected %s values, found %s", fields.size(),
+          values.size());
+      List<FieldValue> row = new ArrayList<>(fields.size());
+      for (int i = 0; i < fields.size(); i++) {
+        String value = values.get(i);
+        if (value == null) {
+          row.add(FieldValue.fromPb(NULL_VALUE));
+        } else if (fields.get(i).type().value() == Field.Type.Value.TIMESTAMP) {
+          row.add(FieldValue.fromPb(toTimestamp(value)));
+        } else {
+          row.add(FieldValue.fromPb(value));
+        }
+      }
+      return row;
+    }
+
+    private int read() throws IOException {
+      if (pushedBack != NONE) {
+        int c = pushedBack;
+        pushedBack = NONE;
+        return c;
+      }
+      return reader.read();
+    }
+
+    private List<String> readRecord() throws IOException {
+      int c = read();
+      if (c == -1) {
+        return null;
+      }
+      List<String> values = new ArrayList<>();
+      StringBuilder value = new StringBuilder();
+      boolean inQuotes = false;
+      boolean quoted = false;
+      while (true) {
+        if (inQuotes) {
+          if (c == -1) {
+            throw new IOException("Unterminated quoted value");
+          }
+          if (c == '"') {
+            int next = read();
+            if (next != '"') {
+              inQuotes = false;
+              c = next;
+              continue;
+            }
+          }
+          value.append((char) c);
+        } else if (c == '"' && value.length() == 0 && !quoted) {
+          inQuotes = true;
+          quoted = true;
+        } else if (c == delimiter) {
+          values.add(value.length() > 0 || quoted ? value.toString() : null);
+          value.setLength(0);
+          quoted = false;
+        } else if (c == '\n' || c == -1) {
+          break;
+        } else if (c == '\r') {
+          int next = read();
+          if (next != '\n') {
+            pushedBack = next;
+          }
+          break;
+        } else {
+          value.append((char) c);
+        }
+        c = read();
+      }
+      values.add(value.length() > 0 || quoted ? value.toString() : null);
+      return values;
+    }
+  }
+
+  /**
+   * Decodes newline-delimited JSON rows, where each line is a JSON object mapping field names to
+   * values. Missing fields are decoded as {@code null}.
+   */
+  static final class JsonDecoder extends RowDecoder {
+
+    private final BufferedReader lineReader;
+
+    JsonDecoder(Schema schema, Reader reader) {
+      super(schema, new BufferedReader(reader));
+      this.lineReader = (BufferedReader) this.reader;
+    }
+
+    @Override
+    List<FieldValue> next() throws IOException {
+      String line;
+      do {
+        line = lineReader.readLine();
+        if (line == null) {
+          return null;
+        }
+      } while (line.isEmpty());
+      Map<?, ?> object = JSON_FACTORY.createJsonParser(line).parse(Map.class);
+      List<Field> fields = schema.fields();
+      List<FieldValue> row = new ArrayList<>(fields.size());
+      for (Field field : fields) {
+        row.add(FieldValue.fromPb(toCell(field, object.get(field.name()))));
+      }
+      return row;
+    }
+
+    private static Object toCell(Field field, Object value) {
+      if (value == null || Data.isNull(value)) {
+        return NULL_VALUE;
+      }
+      if (field.mode() == Field.Mode.REPEATED) {
+        List<Object> cells = new ArrayList<>();
+        for (Object element : (List<?>) value) {
+          cells.add(toValue(field, element));
+        }
+        return cells;
+      }
+      return toValue(field, value);
+    }
+
+    private static Object toValue(Field field, Object value) {
+      if (value == null || Data.isNull(value)) {
+        return NULL_VALUE;
+      }
+      switch (field.type().value()) {
+        case RECORD:
+          Map<?, ?> record = (Map<?, ?>) value;
+          List<Object> cells = new ArrayList<>(field.fields().size());
+          for (Field subField : field.fields()) {
+            cells.add(toCell(subField, record.get(subField.name())));
+          }
+          return Collections.singletonMap("f", cells);
+        case TIMESTAMP:
+          return toTimestamp(value.toString());
+        default:
+          return value.toString();
+      }
+    }
+  }
+
+  private final class ShardReader implements Callable<Void> {
+
+    private final BlobId shard;
+    private final Schema schema;
+    private final RowIterator iterator;
+
+    ShardReader(BlobId shard, Schema schema, RowIterator iterator) {
+      this.shard = shard;
+      this.schema = schema;
+      this.iterator = iterator;
+    }
+
+    @Override
+    public Void call() throws InterruptedException {
+      try (RowDecoder decoder = decoder(schema, openShard(shard))) {
+        List<List<FieldValue>> rows = new ArrayList<>(ROWS_PER_BATCH);
+        List<FieldValue> row;
+        while ((row = decoder.next()) != null) {
+          rows.add(row);
+          if (rows.size() == ROWS_PER_BATCH) {
+            iterator.queue.put(rows);
+            rows = new ArrayList<>(ROWS_PER_BATCH);
+          }
+        }
+        if (!rows.isEmpty()) {
+          iterator.queue.put(rows);
+        }
+        iterator.queue.put(RowIterator.SHARD_END);
+      } catch (IOException | RuntimeException ex) {
+        iterator.queue.put(ex);
+      }
+      return null;
+    }
+  }
+
+  private TableExtractor(Builder builder) {
+    this.bigquery = builder.bigquery;
+    this.storage = builder.storage;
+    this.configuration = builder.configuration;
+    this.parallelism = builder.parallelism;
+    this.chunkSize = builder.chunkSize;
+    this.waitOptions = builder.waitOptions;
+    if (builder.executor != null) {
+      this.executor = MoreExecutors.listeningDecorator(builder.executor);
+    } else {
+      ThreadPoolExecutor executor = new ThreadPoolExecutor(parallelism, parallelism, 60L,
+          TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+          new ThreadFactoryBuilder().setDaemon(true).setNameFormat("table-extractor-%d").build());
+      executor.allowCoreThreadTimeOut(true);
+      this.executor = MoreExecutors.listeningDecorator(executor);
+    }
+  }
+
+  /**
+   * Returns the configuration of the extract job.
+   */
+  public ExtractJobConfiguration configuration() {
+    return configuration;
+  }
+
+  /**
+   * Runs the extract job. The returned future completes with the exported shards, in the order
+   * of {@link ExtractJobConfiguration#destinationUris()} and then by name, once the job
+   * completes. The future fails with a {@link BigQueryException} if the job fails.
+   */
+  public ListenableFuture<List<BlobId>> extract() {
+    return Futures.transform(extractByUri(), new Function<List<List<BlobId>>, List<BlobId>>() {
+      @Override
+      public List<BlobId> apply(List<List<BlobId>> shardsByUri) {
+        return ImmutableList.copyOf(Iterables.concat(shardsByUri));
+      }
+    });
+  }
+
+  /**
+   * Runs the extract job. The returned future completes with the exported shards of each
+   * destination URI, in the order of {@link ExtractJobConfiguration#destinationUris()}.
+   */
+  private ListenableFuture<List<List<BlobId>>> extractByUri() {
+    ListenableFuture<Job> jobFuture;
+    try {
+      jobFuture = bigquery.create(JobInfo.of(configuration)).toFuture(waitOptions);
+    } catch (BigQueryException ex) {
+      return Futures.immediateFailedFuture(ex);
+    }
+    return Futures.transform(jobFuture, new Function<Job, List<List<BlobId>>>() {
+      @Override
+      public List<List<BlobId>> apply(Job job) {
+        if (job == null) {
+          throw new BigQueryException(BigQueryException.UNKNOWN_CODE,
+              "Extract job no longer exists");
+        }
+        BigQueryError error = job.status().error();
+        if (error != null) {
+          throw new BigQueryException(BigQueryException.UNKNOWN_CODE, error.message(), error);
+        }
+        return listShards();
+      }
+    }, executor);
+  }
+
+  /**
+   * Runs the extract job and downloads the exported shards to {@code directory}, once the job
+   * completes. Each shard is downloaded to the path of its name relative to the last {@code /}
+   * before the wildcard of its destination URI (e.g. {@code table-000000000000.csv} for
+   * {@code gs://bucket/export/table-*.csv}). If the job has more than one destination URI, the
+   * shards of the i-th URI are downloaded to the {@code i} subdirectory of {@code directory}.
+   * Existing files are replaced. The returned future completes with the downloaded files, in the
+   * order of the shards returned by {@link #extract()}, or fails with an {@link IOException} if
+   * two shards would be downloaded to the same file. Shards are downloaded as exported,
+   * compressed shards are not decompressed.
+   */
+  public ListenableFuture<List<Path>> downloadTo(final Path directory) {
+    return Futures.transformAsync(extractByUri(),
+        new AsyncFunction<List<List<BlobId>>, List<Path>>() {
+          @Override
+          public ListenableFuture<List<Path>> apply(List<List<BlobId>> shardsByUri) {
+            List<String> uris = configuration.destinationUris();
+            Path root = directory.normalize();
+            Map<Path, BlobId> targets = new LinkedHashMap<>();
+            for (int i = 0; i < uris.size(); i++) {
+              Path uriDirectory = uris.size() > 1 ? root.resolve(Integer.toString(i)) : root;
+              int start = shardDirectory(uris.get(i)).length();
+              for (BlobId shard : shardsByUri.get(i)) {
+                Path target = uriDirectory.resolve(shard.name().substring(start)).normalize();
+                if (!target.startsWith(root)) {
+                  return Futures.immediateFailedFuture(new IOException(
+                      "Shard " + shard.name() + " would be downloaded outside of " + root));
+                }
+                BlobId previous = targets.put(target, shard);
+                if (previous != null) {
+                  return Futures.immediateFailedFuture(new IOException("Shards " + previous.name()
+                      + " and " + shard.name() + " would both be downloaded to " + target));
+                }
+              }
+            }
+            List<ListenableFuture<Path>> downloads = new ArrayList<>(targets.size());
+            for (final Map.Entry<Path, BlobId> entry : targets.entrySet()) {
+              downloads.add(executor.submit(new Callable<Path>() {
+                @Override
+                public Path call() throws IOException {
+                  Path target = entry.getKey();
+                  Files.createDirectories(target.getParent());
+                  try (InputStream input = Channels.newInputStream(reader(entry.getValue()))) {
+                    Files.copy(input, target, StandardCopyOption.REPLACE_EXISTING);
+                  }
+                  return target;
+                }
+              }));
+            }
+            return Futures.allAsList(downloads);
+          }
+        });
+  }
+
+  /**
+   * Runs the extract job and reads the rows of the exported shards, once the job completes. The
+   * returned future completes with an iterator over the rows, decoded according to the schema of
+   * the source table. Only CSV and newline-delimited JSON shards can be decoded.
+   *
+   * @throws UnsupportedOperationException if the extract format is neither {@code CSV} nor
+   *     {@code NEWLINE_DELIMITED_JSON}
+   */
+  public ListenableFuture<RowIterator> readRows() {
+    String format = configuration.format() != null ? configuration.format() : CSV_FORMAT;
+    if (!CSV_FORMAT.equals(format) && !JSON_FORMAT.equals(format)) {
+      throw new UnsupportedOperationException("Rows can't be read from " + format + " shards");
+    }
+    return Futures.transform(extract(), new Function<List<BlobId>, RowIterator>() {
+      @Override
+      public RowIterator apply(List<BlobId> shards) {
+        Table table = bigquery.getTable(configuration.sourceTable(),
+            BigQuery.TableOption.fields(BigQuery.TableField.SCHEMA));
+        checkArgument(table != null, "Table %s not found", configuration.sourceTable());
+        Schema schema = table.definition().schema();
+        RowIterator iterator = new RowIterator(shards.size(), 2 * parallelism);
+        for (BlobId shard : shards) {
+          iterator.futures.add(executor.submit(new ShardReader(shard, schema, iterator)));
+        }
+        return iterator;
+      }
+    }, executor);
+  }
+
+  private List<List<BlobId>> listShards() {
+    ImmutableList.Builder<List<BlobId>> shardsByUri = ImmutableList.builder();
+    for (String uri : configuration.destinationUris()) {
+      checkArgument(uri.startsWith("gs://"), "Unsupported destination URI %s", uri);
+      int slash = uri.indexOf('/', 5);
+      checkArgument(slash > 5, "Unsupported destination URI %s", uri);
+      String bucket = uri.substring(5, slash);
+      String name = uri.substring(slash + 1);
+      int wildcard = name.indexOf('*');
+      if (wildcard == -1) {
+        shardsByUri.add(ImmutableList.of(BlobId.of(bucket, name)));
+        continue;
+      }
+      ImmutableList.Builder<BlobId> shards = ImmutableList.builder();
+      String prefix = name.substring(0, wildcard);
+      String suffix = name.substring(wildcard + 1);
+      Iterator<Blob> blobs = storage.list(bucket, BlobListOption.prefix(prefix)).iterateAll();
+      while (blobs.hasNext()) {
+        Blob blob = blobs.next();
+        if (isShard(blob.name(), prefix, suffix)) {
+          shards.add(BlobId.of(bucket, blob.name()));
+        }
+      }
+      shardsByUri.add(shards.build());
+    }
+    return shardsByUri.build();
+  }
+
+  /**
+   * Returns the part of the object name of {@code uri} up to the last {@code /} before the
+   * wildcard, if any. The shards of {@code uri} are downloaded relative to this directory.
+   */
+  private static String shardDirectory(String uri) {
+    String name = uri.substring(uri.indexOf('/', 5) + 1);
+    int wildcard = name.indexOf('*');
+    String fixed = wildcard == -1 ? name : name.substring(0, wildcard);
+    return fixed.substring(0, fixed.lastIndexOf('/') + 1);
+  }
+
+  private static boolean isShard(String name, String prefix, String suffix) {
+    if (name.length() <= prefix.length() + suffix.length() || !name.endsWith(suffix)) {
+      return false;
+    }
+    for (int i = prefix.length(); i < name.length() - suffix.length(); i++) {
+      if (!Character.isDigit(name.charAt(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private ReadChannel reader(BlobId shard) {
+    ReadChannel reader = storage.reader(shard);
+    reader.chunkSize(chunkSize);
+    return reader;
+  }
+
+  private Reader openShard(BlobId shard) throws IOException {
+    InputStream input = Channels.newInputStream(reader(shard));
+    if (GZIP_COMPRESSION.equals(configuration.compression())) {
+      input = new GZIPInputStream(input);
+    }
+    return new InputStreamReader(input, UTF_8);
+  }
+
+  private RowDecoder decoder(Schema schema, Reader reader) {
+    if (JSON_FORMAT.equals(configuration.format())) {
+      return new JsonDecoder(schema, reader);
+    }
+    boolean skipHeader = configuration.printHeader() == null || configuration.printHeader();
+    return new CsvDecoder(schema, reader,
+        CsvOptions.fieldDelimiterChar(configuration.fieldDelimiter()), skipHeader);
+  }
+
+  /**
+   * Converts an exported timestamp (e.g. {@code 2014-08-19 12:41:35.220 UTC}) to the format
+   * returned by the service when listing table data, i.e. seconds since epoch with an optional
+   * fractional part. Values that are already in this format are returned as they are.
+   */
+  static String toTimestamp(String value) {
+    String timestamp = value.endsWith(" UTC") ? value.substring(0, value.length() - 4) : value;
+    if (timestamp.indexOf('-', 1) == -1) {
+      return value;
+    }
+    int dot = timestamp.indexOf('.');
+    String fraction = dot != -1 ? timestamp.substring(dot + 1) : "";
+    SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+    format.setTimeZone(TimeZone.getTimeZone("UTC"));
+    format.setLenient(false);
+    long seconds;
+    try {
+      seconds = format.parse(dot != -1 ? timestamp.substring(0, dot) : timestamp).getTime() / 1000;
+    } catch (ParseException ex) {
+      throw new IllegalStateException("Invalid timestamp " + value, ex);
+    }
+    BigDecimal result = BigDecimal.valueOf(seconds);
+    if (!fraction.isEmpty()) {
+      result = result.add(new BigDecimal("0." + fraction));
+    }
+    return result.toPlainString();
+  }
+
+  /**
+   * Returns a builder for {@code TableExtractor} objects, given the services used to run the
+   * extract job and read the shards, and the configuration of the extract job.
+   */
+  public static Builder builder(BigQuery bigquery, Storage storage,
+      ExtractJobConfiguration configuration) {
+    return new Builder(bigquery, storage, configuration);
+  }
+
+  /**
+   * Returns a builder for {@code TableExtractor} objects, given the services used to run the
+   * extract job and read the shards, the table to extract and the destination URI. Shards are
+   * exported in CSV format.
+   */
+  public static Builder builder(BigQuery bigquery, Storage storage, TableId sourceTable,
+      String destinationUri) {
+    return new Builder(bigquery, storage, ExtractJobConfiguration.of(sourceTable, destinationUri));
+  }
+}
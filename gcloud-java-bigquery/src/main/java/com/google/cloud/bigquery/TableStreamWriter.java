@@ -0,0 +1,463 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.bigquery;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.cloud.RetryParams;
+import com.google.cloud.bigquery.InsertAllRequest.RowToInsert;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A long-lived writer that streams rows into a BigQuery table using
+ * {@link BigQuery#insertAll(InsertAllRequest)}. Rows passed to {@link #insert(RowToInsert)} are
+ * buffered and sent in batches, once a batch reaches {@link Builder#maxBatchRows(int)} rows or
+ * {@link Builder#maxBatchBytes(long)} bytes, or {@link Builder#maxBatchDelay(long, TimeUnit)}
+ * after its first row was added. Up to {@link Builder#maxInFlightRequests(int)} requests are sent
+ * at the same time.
+ *
+ * <p>Rows without an id are assigned a random one, that the service uses to detect duplicates if
+ * a row is sent more than once. If a request fails with a retryable error, all of its rows are
+ * sent again. If only some rows fail with a retryable error (for instance because the service
+ * stopped processing them, or because of a backend error) only those rows are sent again. Delays
+ * between attempts and the maximum number of attempts are taken from
+ * {@link Builder#retryParams(RetryParams)}. {@link BigQuery#insertAll(InsertAllRequest)} sends
+ * each request once, so a row is sent at most {@link RetryParams#retryMaxAttempts()} times in
+ * total.
+ *
+ * <p>Each call to {@link #insert(RowToInsert)} returns a {@code Future} that completes once the
+ * row is inserted or failed definitively. Failed rows complete their future with a
+ * {@link BigQueryException}, whose {@link BigQueryException#error()} is the row's first insert
+ * error, if any.
+ *
+ * <p>Example usage of a table stream writer:
+ * <pre> {@code
+ * try (TableStreamWriter writer = TableStreamWriter.builder(bigquery, tableId).build()) {
+ *   for (Map<String, Object> event : events) {
+ *     writer.insert(event);
+ *   }
+ * }}</pre>
+ *
+ * <p>This class is thread-safe.
+ *
+ * @see <a href="https://cloud.google.com/bigquery/streaming-data-into-bigquery">Streaming Data
+ *     into BigQuery</a>
+ */
+public final class TableStreamWriter implements AutoCloseable {
+
+  private static final int DEFAULT_MAX_BATCH_ROWS = 500;
+  private static final long DEFAULT_MAX_BATCH_BYTES = 5L * 1024 * 1024;
+  private static final long DEFAULT_MAX_BATCH_DELAY_MILLIS = 100;
+  private static final int DEFAULT_MAX_IN_FLIGHT_REQUESTS = 4;
+  private static final int DEFAULT_MAX_PENDING_ROWS = 50_000;
+  // insert error reasons for rows that can be sent again
+  private static final Set<String> RETRYABLE_REASONS =
+      ImmutableSet.of("backendError", "internalError", "rateLimitExceeded", "stopped", "timeout");
+
+  private final BigQuery bigquery;
+  private final TableId tableId;
+  private final int maxBatchRows;
+  private final long maxBatchBytes;
+  private final long maxBatchDelayMillis;
+  private final int maxPendingRows;
+  private final boolean skipInvalidRows;
+  private final boolean ignoreUnknownValues;
+  private final String templateSuffix;
+  private final RetryParams retryParams;
+  private final ScheduledExecutorService executor;
+  private final Semaphore pendingRows;
+  private final Object lock = new Object();
+  private List<PendingRow> batch = new ArrayList<>();
+  private long batchBytes;
+  private ScheduledFuture<?> scheduledFlush;
+  private boolean closed;
+
+  /**
+   * Builder for {@code TableStreamWriter} objects.
+   */
+  public static final class Builder {
+
+    private final BigQuery bigquery;
+    private final TableId tableId;
+    private int maxBatchRows = DEFAULT_MAX_BATCH_ROWS;
+    private long maxBatchBytes = DEFAULT_MAX_BATCH_BYTES;
+    private long maxBatchDelayMillis = DEFAULT_MAX_BATCH_DELAY_MILLIS;
+    private int maxInFlightRequests = DEFAULT_MAX_IN_FLIGHT_REQUESTS;
+    private int maxPendingRows = DEFAULT_MAX_PENDING_ROWS;
+    private boolean skipInvalidRows;
+    private boolean ignoreUnknownValues;
+    private String templateSuffix;
+    private RetryParams retryParams;
+
+    private Builder(BigQuery bigquery, TableId tableId) {
+      this.bigquery = checkNotNull(bigquery);
+      this.tableId = checkNotNull(tableId);
+    }
+
+    /**
+     * Sets the maximum number of rows sent in a single request. By default, 500 rows.
+     */
+    public Builder maxBatchRows(int maxBatchRows) {
+      checkArgument(maxBatchRows > 0, "Max batch rows must be > 0");
+      this.maxBatchRows = maxBatchRows;
+      return this;
+    }
+
+    /**
+     * Sets the approximate maximum size, in bytes, of the rows sent in a single request. The size
+     * of a row is estimated from its content. By default, 5MB.
+     */
+    public Builder maxBatchBytes(long maxBatchBytes) {
+      checkArgument(maxBatchBytes > 0, "Max batch bytes must be > 0");
+      this.maxBatchBytes = maxBatchBytes;
+      return this;
+    }
+
+    /**
+     * Sets the maximum time a row is buffered before being sent. By default, 100 milliseconds.
+     */
+    public Builder maxBatchDelay(long delay, TimeUnit unit) {
+      checkArgument(delay >= 0, "Max batch delay must be >= 0");
+      this.maxBatchDelayMillis = unit.toMillis(delay);
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of requests sent at the same time. By default, 4 requests.
+     */
+    public Builder maxInFlightRequests(int maxInFlightRequests) {
+      checkArgument(maxInFlightRequests > 0, "Max in-flight requests must be > 0");
+      this.maxInFlightRequests = maxInFlightRequests;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of rows that are either buffered, being sent or waiting to be sent
+     * again. Once the limit is reached, {@link TableStreamWriter#insert(RowToInsert)} blocks until
+     * pending rows complete. By default, 50000 rows.
+     */
+    public Builder maxPendingRows(int maxPendingRows) {
+      checkArgument(maxPendingRows > 0, "Max pending rows must be > 0");
+      this.maxPendingRows = maxPendingRows;
+      return this;
+    }
+
+    /**
+     * Sets whether valid rows of a request should be inserted even if the request contains invalid
+     * rows. If not set, a request with invalid rows causes its valid rows to be sent again without
+     * the invalid ones.
+     *
+     * @see InsertAllRequest.Builder#skipInvalidRows(boolean)
+     */
+    public Builder skipInvalidRows(boolean skipInvalidRows) {
+      this.skipInvalidRows = skipInvalidRows;
+      return this;
+    }
+
+    /**
+     * Sets whether values that do not match the table schema are ignored.
+     *
+     * @see InsertAllRequest.Builder#ignoreUnknownValues(boolean)
+     */
+    public Builder ignoreUnknownValues(boolean ignoreUnknownValues) {
+      this.ignoreUnknownValues = ignoreUnknownValues;
+      return this;
+    }
+
+    /**
+     * Sets the template suffix used to create destination tables.
+     *
+     * @see InsertAllRequest.Builder#templateSuffix(String)
+     */
+    public Builder templateSuffix(String templateSuffix) {
+      this.templateSuffix = templateSuffix;
+      return this;
+    }
+
+    /**
+     * Sets the parameters used to retry failed rows and requests. A row is sent at most
+     * {@link RetryParams#retryMaxAttempts()} times, including the first attempt. If not set,
+     * {@link BigQueryOptions#retryParams()} is used.
+     */
+    public Builder retryParams(RetryParams retryParams) {
+      this.retryParams = retryParams;
+      return this;
+    }
+
+    /**
+     * Creates a {@code TableStreamWriter} object.
+     */
+    public TableStreamWriter build() {
+      return new TableStreamWriter(this);
+    }
+  }
+
+  private static final class PendingRow {
+
+    private final RowToInsert row;
+    private final long bytes;
+    private final SettableFuture<Void> future = SettableFuture.create();
+    private int attempts;
+
+    PendingRow(RowToInsert row) {
+      this.row = row;
+      this.bytes = estimateBytes(row.content());
+    }
+  }
+
+  private TableStreamWriter(Builder builder) {
+    this.bigquery = builder.bigquery;
+    this.tableId = builder.tableId;
+    this.maxBatchRows = builder.maxBatchRows;
+    this.maxBatchBytes = builder.maxBatchBytes;
+    this.maxBatchDelayMillis = builder.maxBatchDelayMillis;
+    this.maxPendingRows = builder.maxPendingRows;
+    this.skipInvalidRows = builder.skipInvalidRows;
+    this.ignoreUnknownValues = builder.ignoreUnknownValues;
+    this.templateSuffix = builder.templateSuffix;
+    this.retryParams = builder.retryParams != null
+        ? builder.retryParams : bigquery.options().retryParams();
+    this.pendingRows = new Semaphore(maxPendingRows);
+    ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(
+        builder.maxInFlightRequests,
+        new ThreadFactoryBuilder().setDaemon(true).setNameFormat("table-writer-%d").build());
+    executor.setRemoveOnCancelPolicy(true);
+    this.executor = executor;
+  }
+
+  /**
+   * Adds a row, with a random id, to the rows to insert.
+   *
+   * @see #insert(RowToInsert)
+   */
+  public Future<Void> insert(Map<String, Object> content) {
+    return insert(RowToInsert.of(UUID.randomUUID().toString(), content));
+  }
+
+  /**
+   * Adds a row to the rows to insert. If the row has no id, a random one is assigned. This method
+   * blocks if {@link Builder#maxPendingRows(int)} rows are pending. The returned future completes
+   * successfully once the row is inserted, or with a {@link BigQueryException} if the row could
+   * not be inserted.
+   *
+   * @throws IllegalStateException if the writer is closed
+   */
+  public Future<Void> insert(RowToInsert row) {
+    if (row.id() == null) {
+      row = RowToInsert.of(UUID.randomUUID().toString(), row.content());
+    }
+    PendingRow pendingRow = new PendingRow(row);
+    pendingRows.acquireUninterruptibly();
+    synchronized (lock) {
+      if (closed) {
+        pendingRows.release();
+        throw new IllegalStateException("Writer is closed");
+      }
+      batch.add(pendingRow);
+      batchBytes += pendingRow.bytes;
+      if (batch.size() >= maxBatchRows || batchBytes >= maxBatchBytes) {
+        sendBatch();
+      } else if (scheduledFlush == null) {
+        scheduledFlush = executor.schedule(new Runnable() {
+          @Override
+          public void run() {
+            flush();
+          }
+        }, maxBatchDelayMillis, TimeUnit.MILLISECONDS);
+      }
+    }
+    return pendingRow.future;
+  }
+
+  /**
+   * Sends buffered rows immediately, without waiting for the batch to be full or for the batch
+   * delay to expire. This method does not wait for the rows to be inserted.
+   */
+  public void flush() {
+    synchronized (lock) {
+      sendBatch();
+    }
+  }
+
+  /**
+   * Sends buffered rows and waits for all pending rows to complete, then releases the writer's
+   * threads. Further calls to {@link #insert(RowToInsert)} fail.
+   */
+  @Override
+  public void close() {
+    synchronized (lock) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      sendBatch();
+    }
+    pendingRows.acquireUninterruptibly(maxPendingRows);
+    pendingRows.release(maxPendingRows);
+    executor.shutdown();
+  }
+
+  private void sendBatch() {
+    if (scheduledFlush != null) {
+      scheduledFlush.cancel(false);
+      scheduledFlush = null;
+    }
+    if (batch.isEmpty()) {
+      return;
+    }
+    final List<PendingRow> rows = batch;
+    batch = new ArrayList<>();
+    batchBytes = 0;
+    executor.execute(new Runnable() {
+      @Override
+      public void run() {
+        insertRows(rows);
+      }
+    });
+  }
+
+  private void insertRows(List<PendingRow> rows) {
+    InsertAllRequest.Builder requestBuilder = InsertAllRequest.builder(tableId)
+        .skipInvalidRows(skipInvalidRows)
+        .ignoreUnknownValues(ignoreUnknownValues)
+        .templateSuffix(templateSuffix);
+    for (PendingRow row : rows) {
+      row.attempts++;
+      requestBuilder.addRow(row.row);
+    }
+    InsertAllResponse response;
+    try {
+      response = bigquery.insertAll(requestBuilder.build());
+    } catch (BigQueryException ex) {
+      List<PendingRow> retryRows = new ArrayList<>();
+      for (PendingRow row : rows) {
+        if (ex.retryable() && row.attempts < retryParams.retryMaxAttempts()) {
+          retryRows.add(row);
+        } else {
+          fail(row, ex);
+        }
+      }
+      retry(retryRows);
+      return;
+    } catch (RuntimeException ex) {
+      for (PendingRow row : rows) {
+        fail(row, ex);
+      }
+      return;
+    }
+    List<PendingRow> retryRows = new ArrayList<>();
+    for (int i = 0; i < rows.size(); i++) {
+      PendingRow row = rows.get(i);
+      List<BigQueryError> errors = response.errorsFor(i);
+      if (errors == null || errors.isEmpty()) {
+        row.future.set(null);
+        pendingRows.release();
+      } else if (retryable(errors) && row.attempts < retryParams.retryMaxAttempts()) {
+        retryRows.add(row);
+      } else {
+        BigQueryError error = errors.get(0);
+        fail(row, new BigQueryException(BigQueryException.UNKNOWN_CODE, error.message(), error));
+      }
+    }
+    retry(retryRows);
+  }
+
+  private void retry(final List<PendingRow> rows) {
+    if (rows.isEmpty()) {
+      return;
+    }
+    executor.schedule(new Runnable() {
+      @Override
+      public void run() {
+        insertRows(rows);
+      }
+    }, retryDelayMillis(retryParams, rows.get(0).attempts), TimeUnit.MILLISECONDS);
+  }
+
+  private void fail(PendingRow row, Throwable throwable) {
+    row.future.setException(throwable);
+    pendingRows.release();
+  }
+
+  private static boolean retryable(List<BigQueryError> errors) {
+    for (BigQueryError error : errors) {
+      if (!RETRYABLE_REASONS.contains(error.reason())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the delay before sending rows again, after they failed {@code attempts} times.
+   */
+  static long retryDelayMillis(RetryParams retryParams, int attempts) {
+    double delay = retryParams.initialRetryDelayMillis()
+        * Math.pow(retryParams.retryDelayBackoffFactor(), attempts - 1);
+    return (long) Math.min(delay, retryParams.maxRetryDelayMillis());
+  }
+
+  /**
+   * Estimates the size of a row's JSON encoding.
+   */
+  static long estimateBytes(Object value) {
+    if (value == null) {
+      return 4;
+    }
+    if (value instanceof String) {
+      return ((String) value).length() + 2;
+    }
+    if (value instanceof Map) {
+      long bytes = 2;
+      for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+        bytes += String.valueOf(entry.getKey()).length() + 4 + estimateBytes(entry.getValue());
+      }
+      return bytes;
+    }
+    if (value instanceof Iterable) {
+      long bytes = 2;
+      for (Object element : (Iterable<?>) value) {
+        bytes += estimateBytes(element) + 1;
+      }
+      return bytes;
+    }
+    return value.toString().length();
+  }
+
+  /**
+   * Returns a builder for {@code TableStreamWriter} objects, given the service and the table where
+   * rows are inserted.
+   */
+  public static Builder builder(BigQuery bigquery, TableId tableId) {
+    return new Builder(bigquery, tableId);
+  }
+}
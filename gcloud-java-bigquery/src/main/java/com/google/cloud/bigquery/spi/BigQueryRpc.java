@@ -28,6 +28,8 @@ import com.google.api.services.bigquery.model.TableDataInsertAllResponse;
 import com.google.api.services.bigquery.model.TableRow;
 import com.google.cloud.bigquery.BigQueryException;
 
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 public interface BigQueryRpc {
@@ -95,6 +97,34 @@ public interface BigQueryRpc {
     }
   }
 
+  /**
+   * A page of rows parsed incrementally from a response, as the iterator advances. Each row is a
+   * list of cell values in the same format as {@link TableRow#getF()} values: {@code String} for
+   * primitive values, {@link com.google.api.client.util.Data#NULL_STRING} for {@code null} values,
+   * {@code List} for repeated values and {@code Map} for record values. A page must be closed to
+   * release the underlying connection.
+   */
+  interface RowPage extends Iterator<List<Object>>, AutoCloseable {
+
+    /**
+     * Returns the token of the next page or {@code null} if there are no more pages. The token is
+     * known only after all rows in the page were read.
+     */
+    String pageToken();
+
+    /**
+     * Returns whether the query job completed, for pages of query results. Always {@code true} for
+     * pages of table data. This value is known only after all rows in the page were read.
+     */
+    boolean jobComplete();
+
+    /**
+     * @throws BigQueryException upon failure
+     */
+    @Override
+    void close();
+  }
+
   /**
    * Returns the requested dataset or {@code null} if not found.
    *
@@ -184,6 +214,15 @@ public interface BigQueryRpc {
   TableDataInsertAllResponse insertAll(String datasetId, String tableId,
       TableDataInsertAllRequest request);
 
+  /**
+   * Sends an insert all request whose body is already encoded as JSON, from {@code content}
+   * starting at {@code offset} for {@code length} bytes.
+   *
+   * @throws BigQueryException upon failure
+   */
+  TableDataInsertAllResponse insertAll(String datasetId, String tableId, byte[] content,
+      int offset, int length);
+
   /**
    * Lists the table's rows.
    *
@@ -192,6 +231,13 @@ public interface BigQueryRpc {
   Tuple<String, Iterable<TableRow>> listTableData(String datasetId, String tableId,
       Map<Option, ?> options);
 
+  /**
+   * Lists the table's rows, parsing them from the response as the returned page is iterated.
+   *
+   * @throws BigQueryException upon failure
+   */
+  RowPage openTableData(String datasetId, String tableId, Map<Option, ?> options);
+
   /**
    * Returns the requested job or {@code null} if not found.
    *
@@ -223,6 +269,14 @@ public interface BigQueryRpc {
    */
   GetQueryResultsResponse getQueryResults(String jobId, Map<Option, ?> options);
 
+  /**
+   * Returns results of the query associated with the provided job, parsing rows from the response
+   * as the returned page is iterated. Returns {@code null} if the job was not found.
+   *
+   * @throws BigQueryException upon failure
+   */
+  RowPage openQueryResults(String jobId, Map<Option, ?> options);
+
   /**
    * Runs the query associated with the request.
    *
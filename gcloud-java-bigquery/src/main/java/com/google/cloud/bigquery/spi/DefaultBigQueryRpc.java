@@ -38,7 +38,9 @@ import com.google.api.client.http.HttpResponse;
 import com.google.api.client.http.HttpResponseException;
 import com.google.api.client.http.HttpTransport;
 import com.google.api.client.http.json.JsonHttpContent;
+import com.google.api.client.json.Json;
 import com.google.api.client.json.JsonFactory;
+import com.google.api.client.json.JsonParser;
 import com.google.api.client.json.jackson.JacksonFactory;
 import com.google.api.services.bigquery.Bigquery;
 import com.google.api.services.bigquery.model.Dataset;
@@ -64,7 +66,9 @@ import com.google.common.base.Function;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStream;
 import java.math.BigInteger;
 import java.util.List;
 import java.util.Map;
@@ -76,6 +80,9 @@ public class DefaultBigQueryRpc implements BigQueryRpc {
       "https://www.googleapis.com/upload/bigquery/v2/projects/";
   // see: https://cloud.google.com/bigquery/loading-data-post-request#resume-upload
   private static final int HTTP_RESUME_INCOMPLETE = 308;
+  // only the fields needed to iterate rows are requested when streaming pages
+  private static final String ROW_PAGE_FIELDS = "pageToken,rows";
+  private static final String QUERY_RESULTS_PAGE_FIELDS = "jobComplete,pageToken,rows";
   private final BigQueryOptions options;
   private final Bigquery bigquery;
 
@@ -288,6 +295,22 @@ public class DefaultBigQueryRpc implements BigQueryRpc {
     }
   }
 
+  @Override
+  public TableDataInsertAllResponse insertAll(String datasetId, String tableId, byte[] content,
+      int offset, int length) {
+    try {
+      GenericUrl url = bigquery.tabledata()
+          .insertAll(this.options.projectId(), datasetId, tableId, null)
+          .buildHttpRequestUrl();
+      HttpRequest httpRequest = bigquery.getRequestFactory().buildPostRequest(url,
+          new ByteArrayContent(Json.MEDIA_TYPE, content, offset, length));
+      httpRequest.setParser(bigquery.getObjectParser());
+      return httpRequest.execute().parseAs(TableDataInsertAllResponse.class);
+    } catch (IOException ex) {
+      throw translate(ex);
+    }
+  }
+
   @Override
   public Tuple<String, Iterable<TableRow>> listTableData(String datasetId, String tableId,
       Map<Option, ?> options) {
@@ -306,6 +329,23 @@ public class DefaultBigQueryRpc implements BigQueryRpc {
     }
   }
 
+  @Override
+  public RowPage openTableData(String datasetId, String tableId, Map<Option, ?> options) {
+    try {
+      HttpResponse response = bigquery.tabledata()
+          .list(this.options.projectId(), datasetId, tableId)
+          .setMaxResults(MAX_RESULTS.getLong(options))
+          .setPageToken(PAGE_TOKEN.getString(options))
+          .setStartIndex(START_INDEX.getLong(options) != null
+              ? BigInteger.valueOf(START_INDEX.getLong(options)) : null)
+          .setFields(ROW_PAGE_FIELDS)
+          .executeUnparsed();
+      return rowPage(response);
+    } catch (IOException ex) {
+      throw translate(ex);
+    }
+  }
+
   @Override
   public Job getJob(String jobId, Map<Option, ?> options) {
     try {
@@ -396,6 +436,45 @@ public class DefaultBigQueryRpc implements BigQueryRpc {
     }
   }
 
+  @Override
+  public RowPage openQueryResults(String jobId, Map<Option, ?> options) {
+    try {
+      HttpResponse response = bigquery.jobs().getQueryResults(this.options.projectId(), jobId)
+          .setMaxResults(MAX_RESULTS.getLong(options))
+          .setPageToken(PAGE_TOKEN.getString(options))
+          .setStartIndex(START_INDEX.getLong(options) != null
+              ? BigInteger.valueOf(START_INDEX.getLong(options)) : null)
+          .setTimeoutMs(TIMEOUT.getLong(options))
+          .setFields(QUERY_RESULTS_PAGE_FIELDS)
+          .executeUnparsed();
+      return rowPage(response);
+    } catch (IOException ex) {
+      BigQueryException serviceException = translate(ex);
+      if (serviceException.code() == HTTP_NOT_FOUND) {
+        return null;
+      }
+      throw serviceException;
+    }
+  }
+
+  private RowPage rowPage(final HttpResponse response) throws IOException {
+    InputStream content;
+    try {
+      content = response.getContent();
+    } catch (IOException ex) {
+      response.disconnect();
+      throw ex;
+    }
+    JsonParser parser =
+        bigquery.getJsonFactory().createJsonParser(content, response.getContentCharset());
+    return new JsonRowPage(parser, new Closeable() {
+      @Override
+      public void close() throws IOException {
+        response.disconnect();
+      }
+    });
+  }
+
   @Override
   public QueryResponse query(QueryRequest request) {
     try {
@@ -0,0 +1,227 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.bigquery.spi;
+
+import com.google.api.client.json.JsonParser;
+import com.google.api.client.json.JsonToken;
+import com.google.api.client.util.Data;
+import com.google.cloud.bigquery.BigQueryException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * A {@link BigQueryRpc.RowPage} that parses rows from the JSON content of a
+ * {@code tabledata.list} or {@code jobs.getQueryResults} response, one row at a time. Rows are
+ * parsed directly into cell values, without building {@code TableRow} objects, so that only the
+ * row being read is held in memory.
+ */
+final class JsonRowPage implements BigQueryRpc.RowPage {
+
+  private static final String ROWS = "rows";
+  private static final String PAGE_TOKEN = "pageToken";
+  private static final String JOB_COMPLETE = "jobComplete";
+
+  private final JsonParser parser;
+  private final Closeable response;
+  private String pageToken;
+  private boolean jobComplete = true;
+  private boolean inRows;
+  private boolean closed;
+  private List<Object> nextRow;
+
+  /**
+   * Creates a page that reads rows from {@code parser}. Top-level fields preceding the rows are
+   * read immediately. {@code response} is closed, together with {@code parser}, when the page is
+   * closed.
+   *
+   * @throws BigQueryException if the content can't be read or parsed
+   */
+  JsonRowPage(JsonParser parser, Closeable response) {
+    this.parser = parser;
+    this.response = response;
+    try {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        throw new IOException("Expected a JSON object");
+      }
+      readFields();
+    } catch (IOException | RuntimeException ex) {
+      close();
+      throw translate(ex);
+    }
+  }
+
+  @Override
+  public boolean hasNext() {
+    if (nextRow != null) {
+      return true;
+    }
+    if (!inRows || closed) {
+      return false;
+    }
+    try {
+      JsonToken token = parser.nextToken();
+      if (token == JsonToken.START_OBJECT) {
+        nextRow = readRow();
+        return true;
+      }
+      inRows = false;
+      readFields();
+      return false;
+    } catch (IOException | RuntimeException ex) {
+      close();
+      throw translate(ex);
+    }
+  }
+
+  @Override
+  public List<Object> next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    List<Object> row = nextRow;
+    nextRow = null;
+    return row;
+  }
+
+  @Override
+  public void remove() {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public String pageToken() {
+    return pageToken;
+  }
+
+  @Override
+  public boolean jobComplete() {
+    return jobComplete;
+  }
+
+  @Override
+  public void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    inRows = false;
+    try {
+      try {
+        parser.close();
+      } finally {
+        response.close();
+      }
+    } catch (IOException ex) {
+      throw new BigQueryException(ex);
+    }
+  }
+
+  /**
+   * Reads top-level fields until the start of the rows array or the end of the object.
+   */
+  private void readFields() throws IOException {
+    for (JsonToken token = parser.nextToken(); token == JsonToken.FIELD_NAME;
+        token = parser.nextToken()) {
+      String name = parser.getCurrentName();
+      token = parser.nextToken();
+      if (ROWS.equals(name) && token == JsonToken.START_ARRAY) {
+        inRows = true;
+        return;
+      } else if (PAGE_TOKEN.equals(name)) {
+        pageToken = token == JsonToken.VALUE_NULL ? null : parser.getText();
+      } else if (JOB_COMPLETE.equals(name)) {
+        jobComplete = token != JsonToken.VALUE_FALSE;
+      } else {
+        parser.skipChildren();
+      }
+    }
+  }
+
+  /**
+   * Reads a {@code {"f": [{"v": value}, ...]}} row, the parser being positioned on its start.
+   */
+  private List<Object> readRow() throws IOException {
+    List<Object> row = new ArrayList<>();
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String name = parser.getCurrentName();
+      JsonToken token = parser.nextToken();
+      if (!"f".equals(name) || token != JsonToken.START_ARRAY) {
+        parser.skipChildren();
+        continue;
+      }
+      while (parser.nextToken() == JsonToken.START_OBJECT) {
+        Object value = Data.NULL_STRING;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+          String cellName = parser.getCurrentName();
+          JsonToken cellToken = parser.nextToken();
+          if ("v".equals(cellName)) {
+            value = readValue(cellToken);
+          } else {
+            parser.skipChildren();
+          }
+        }
+        row.add(value);
+      }
+    }
+    return row;
+  }
+
+  private Object readValue(JsonToken token) throws IOException {
+    switch (token) {
+      case START_ARRAY:
+        List<Object> list = new ArrayList<>();
+        for (JsonToken next = parser.nextToken(); next != JsonToken.END_ARRAY;
+            next = parser.nextToken()) {
+          list.add(readValue(next));
+        }
+        return list;
+      case START_OBJECT:
+        Map<String, Object> map = new LinkedHashMap<>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+          String name = parser.getCurrentName();
+          map.put(name, readValue(parser.nextToken()));
+        }
+        return map;
+      case VALUE_NULL:
+        return Data.NULL_STRING;
+      case VALUE_STRING:
+      case VALUE_NUMBER_INT:
+      case VALUE_NUMBER_FLOAT:
+      case VALUE_TRUE:
+      case VALUE_FALSE:
+        return parser.getText();
+      default:
+        throw new IOException("Unexpected JSON token " + token);
+    }
+  }
+
+  private static BigQueryException translate(Exception ex) {
+    if (ex instanceof BigQueryException) {
+      return (BigQueryException) ex;
+    }
+    if (ex instanceof IOException) {
+      return new BigQueryException((IOException) ex);
+    }
+    return new BigQueryException(BigQueryException.UNKNOWN_CODE, ex.getMessage(), ex);
+  }
+}
@@ -22,10 +22,14 @@ import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import com.google.api.client.json.jackson.JacksonFactory;
+import com.google.api.client.util.Data;
 import com.google.api.services.bigquery.model.ErrorProto;
 import com.google.api.services.bigquery.model.TableCell;
 import com.google.api.services.bigquery.model.TableDataInsertAllRequest;
@@ -33,6 +37,7 @@ import com.google.api.services.bigquery.model.TableDataInsertAllResponse;
 import com.google.api.services.bigquery.model.TableRow;
 import com.google.cloud.Page;
 import com.google.cloud.RetryParams;
+import com.google.cloud.WaitForOption;
 import com.google.cloud.WriteChannel;
 import com.google.cloud.bigquery.InsertAllRequest.RowToInsert;
 import com.google.cloud.bigquery.spi.BigQueryRpc;
@@ -43,18 +48,26 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ListenableFuture;
 
 import org.easymock.Capture;
 import org.easymock.EasyMock;
+import org.easymock.IAnswer;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.math.BigInteger;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class BigQueryImplTest {
 
@@ -653,6 +666,51 @@ public class BigQueryImplTest {
     assertEquals("ErrorMessage", response.errorsFor(0L).get(0).message());
   }
 
+  @Test
+  public void testInsertAllEncodedEmpty() {
+    EasyMock.replay(bigqueryRpcMock);
+    bigquery = options.service();
+    EncodedInsertAllRequest request =
+        EncodedInsertAllRequest.builder(TABLE_ID, Schema.of(Field.of("field", Field.Type.string())))
+            .build();
+    assertTrue(bigquery.insertAll(request).insertErrors().isEmpty());
+  }
+
+  @Test
+  public void testInsertAllEncoded() throws IOException {
+    Schema schema = Schema.of(Field.of("field", Field.Type.string()));
+    EncodedInsertAllRequest request = EncodedInsertAllRequest.builder(TABLE_ID, schema)
+        .skipInvalidRows(false)
+        .ignoreUnknownValues(true)
+        .templateSuffix("suffix")
+        .build();
+    request.addRow("row1").set("field", "value1");
+    request.addRow("row2").set("field", "value2");
+    TableDataInsertAllRequest requestPb = new TableDataInsertAllRequest().setRows(ImmutableList.of(
+        new TableDataInsertAllRequest.Rows().setInsertId("row1")
+            .setJson(ImmutableMap.<String, Object>of("field", "value1")),
+        new TableDataInsertAllRequest.Rows().setInsertId("row2")
+            .setJson(ImmutableMap.<String, Object>of("field", "value2"))))
+        .setSkipInvalidRows(false).setIgnoreUnknownValues(true).setTemplateSuffix("suffix");
+    TableDataInsertAllResponse responsePb = new TableDataInsertAllResponse().setInsertErrors(
+        ImmutableList.of(new TableDataInsertAllResponse.InsertErrors().setIndex(1L).setErrors(
+            ImmutableList.of(new ErrorProto().setMessage("ErrorMessage")))));
+    Capture<byte[]> capturedContent = Capture.newInstance();
+    Capture<Integer> capturedLength = Capture.newInstance();
+    EasyMock.expect(bigqueryRpcMock.insertAll(eq(DATASET), eq(TABLE), capture(capturedContent),
+        eq(0), capture(capturedLength))).andReturn(responsePb);
+    EasyMock.replay(bigqueryRpcMock);
+    bigquery = options.service();
+    InsertAllResponse response = bigquery.insertAll(request);
+    assertNull(response.errorsFor(0L));
+    assertEquals("ErrorMessage", response.errorsFor(1L).get(0).message());
+    TableDataInsertAllRequest sentPb = JacksonFactory.getDefaultInstance()
+        .createJsonParser(new ByteArrayInputStream(capturedContent.getValue(), 0,
+            capturedLength.getValue()))
+        .parse(TableDataInsertAllRequest.class);
+    assertEquals(requestPb, sentPb);
+  }
+
   @Test
   public void testListTableData() {
     String cursor = "cursor";
@@ -681,6 +739,31 @@ public class BigQueryImplTest {
     assertArrayEquals(tableData.toArray(), Iterables.toArray(page.values(), List.class));
   }
 
+  @Test
+  public void testListTableDataColumns() {
+    String cursor = "cursor";
+    Schema schema = Schema.of(Field.of("flag", Field.Type.bool()),
+        Field.of("count", Field.Type.integer()));
+    Tuple<String, Iterable<com.google.api.services.bigquery.model.TableRow>> result =
+        Tuple.<String, Iterable<com.google.api.services.bigquery.model.TableRow>>of(cursor,
+            ImmutableList.of(TABLE_ROW, TABLE_ROW));
+    EasyMock.expect(bigqueryRpcMock.listTableData(DATASET, TABLE, EMPTY_RPC_OPTIONS))
+        .andReturn(result);
+    EasyMock.replay(bigqueryRpcMock);
+    bigquery = options.service();
+    Page<ColumnBatch> page = bigquery.listTableDataColumns(TableId.of(DATASET, TABLE), schema);
+    assertEquals(cursor, page.nextPageCursor());
+    ColumnBatch batch = Iterables.getOnlyElement(page.values());
+    assertEquals(schema, batch.schema());
+    assertEquals(2, batch.rowCount());
+    ColumnBatch.BooleanColumn flags = batch.column("flag");
+    ColumnBatch.LongColumn counts = batch.column(1);
+    for (int row = 0; row < batch.rowCount(); row++) {
+      assertFalse(flags.booleanValue(row));
+      assertEquals(1L, counts.longValue(row));
+    }
+  }
+
   @Test
   public void testListTableDataFromTableId() {
     String cursor = "cursor";
@@ -738,6 +821,122 @@ public class BigQueryImplTest {
     assertArrayEquals(tableData.toArray(), Iterables.toArray(page.values(), List.class));
   }
 
+  private static class TestRowPage implements BigQueryRpc.RowPage {
+
+    private final Iterator<List<Object>> rows;
+    private final String pageToken;
+    private final boolean jobComplete;
+    private boolean closed;
+
+    TestRowPage(List<List<Object>> rows, String pageToken, boolean jobComplete) {
+      this.rows = rows.iterator();
+      this.pageToken = pageToken;
+      this.jobComplete = jobComplete;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return rows.hasNext();
+    }
+
+    @Override
+    public List<Object> next() {
+      return rows.next();
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public String pageToken() {
+      return pageToken;
+    }
+
+    @Override
+    public boolean jobComplete() {
+      return jobComplete;
+    }
+
+    @Override
+    public void close() {
+      closed = true;
+    }
+  }
+
+  @Test
+  public void testOpenTableData() {
+    TestRowPage firstPage = new TestRowPage(
+        ImmutableList.<List<Object>>of(ImmutableList.<Object>of("Value1")), "cursor2", true);
+    TestRowPage secondPage = new TestRowPage(
+        ImmutableList.<List<Object>>of(ImmutableList.<Object>of("Value2")), null, true);
+    EasyMock.expect(bigqueryRpcMock.openTableData(DATASET, TABLE, TABLE_DATA_LIST_OPTIONS))
+        .andReturn(firstPage);
+    EasyMock.expect(bigqueryRpcMock.openTableData(DATASET, TABLE,
+        ImmutableMap.<BigQueryRpc.Option, Object>of(
+            BigQueryRpc.Option.MAX_RESULTS, 42L,
+            BigQueryRpc.Option.PAGE_TOKEN, "cursor2",
+            BigQueryRpc.Option.START_INDEX, 0L)))
+        .andReturn(secondPage);
+    EasyMock.replay(bigqueryRpcMock);
+    bigquery = options.service();
+    List<List<FieldValue>> rows;
+    try (RowStream stream = bigquery.openTableData(TableId.of(DATASET, TABLE),
+        TABLE_DATA_LIST_PAGE_SIZE, TABLE_DATA_LIST_PAGE_TOKEN, TABLE_DATA_LIST_START_INDEX)) {
+      rows = ImmutableList.copyOf(stream);
+      assertTrue(firstPage.closed);
+      assertTrue(secondPage.closed);
+    }
+    assertEquals(ImmutableList.of(
+        ImmutableList.of(FieldValue.fromPb("Value1")),
+        ImmutableList.of(FieldValue.fromPb("Value2"))), rows);
+  }
+
+  @Test
+  public void testOpenTableDataClose() {
+    TestRowPage page = new TestRowPage(
+        ImmutableList.<List<Object>>of(ImmutableList.<Object>of("Value1")), "cursor", true);
+    EasyMock.expect(bigqueryRpcMock.openTableData(DATASET, TABLE, EMPTY_RPC_OPTIONS))
+        .andReturn(page);
+    EasyMock.replay(bigqueryRpcMock);
+    bigquery = options.service();
+    RowStream stream = bigquery.openTableData(TableId.of(DATASET, TABLE));
+    assertTrue(stream.hasNext());
+    stream.close();
+    assertTrue(page.closed);
+    assertFalse(stream.hasNext());
+  }
+
+  @Test
+  public void testOpenQueryResults() {
+    TestRowPage incompletePage =
+        new TestRowPage(ImmutableList.<List<Object>>of(), null, false);
+    TestRowPage completePage = new TestRowPage(ImmutableList.<List<Object>>of(
+        ImmutableList.<Object>of("Value1", Data.NULL_STRING)), null, true);
+    EasyMock.expect(bigqueryRpcMock.openQueryResults(JOB, EMPTY_RPC_OPTIONS))
+        .andReturn(incompletePage)
+        .andReturn(completePage);
+    EasyMock.replay(bigqueryRpcMock);
+    bigquery = options.service();
+    try (RowStream stream = bigquery.openQueryResults(JobId.of(JOB))) {
+      assertTrue(stream.hasNext());
+      assertTrue(incompletePage.closed);
+      List<FieldValue> row = stream.next();
+      assertEquals("Value1", row.get(0).stringValue());
+      assertTrue(row.get(1).isNull());
+      assertFalse(stream.hasNext());
+    }
+  }
+
+  @Test
+  public void testOpenQueryResultsNotFound() {
+    EasyMock.expect(bigqueryRpcMock.openQueryResults(JOB, EMPTY_RPC_OPTIONS)).andReturn(null);
+    EasyMock.replay(bigqueryRpcMock);
+    bigquery = options.service();
+    assertNull(bigquery.openQueryResults(JobId.of(JOB)));
+  }
+
   @Test
   public void testCreateQueryJob() {
     EasyMock.expect(bigqueryRpcMock.create(
@@ -964,6 +1163,110 @@ public class BigQueryImplTest {
     assertEquals("cursor", response.result().nextPageCursor());
   }
 
+  @Test
+  public void testQueryAsync() throws Exception {
+    JobId queryJob = JobId.of(PROJECT, JOB);
+    QueryRequest requestPb = QUERY_REQUEST_WITH_PROJECT.toBuilder().maxWaitTime(0L).build();
+    com.google.api.services.bigquery.model.QueryResponse responsePb =
+        new com.google.api.services.bigquery.model.QueryResponse()
+            .setJobReference(queryJob.toPb())
+            .setJobComplete(false);
+    Map<BigQueryRpc.Option, ?> optionsMap = ImmutableMap.of(
+        BigQueryRpc.Option.TIMEOUT, 0L, BigQueryRpc.Option.MAX_RESULTS, 42L);
+    com.google.api.services.bigquery.model.GetQueryResultsResponse runningResponsePb =
+        new com.google.api.services.bigquery.model.GetQueryResultsResponse()
+            .setJobReference(queryJob.toPb())
+            .setJobComplete(false);
+    com.google.api.services.bigquery.model.GetQueryResultsResponse completedResponsePb =
+        new com.google.api.services.bigquery.model.GetQueryResultsResponse()
+            .setJobReference(queryJob.toPb())
+            .setRows(ImmutableList.of(TABLE_ROW))
+            .setJobComplete(true)
+            .setTotalRows(BigInteger.valueOf(1L));
+    EasyMock.expect(bigqueryRpcMock.query(requestPb.toPb())).andReturn(responsePb);
+    EasyMock.expect(bigqueryRpcMock.getQueryResults(JOB, optionsMap)).andReturn(runningResponsePb);
+    EasyMock.expect(bigqueryRpcMock.getQueryResults(JOB, optionsMap))
+        .andReturn(completedResponsePb);
+    EasyMock.replay(bigqueryRpcMock);
+    bigquery = options.service();
+    QueryResult result = bigquery.queryAsync(QUERY_REQUEST,
+        WaitForOption.checkEvery(1, TimeUnit.MILLISECONDS)).get();
+    assertEquals(1L, result.totalRows());
+    for (List<FieldValue> row : result.values()) {
+      assertEquals(false, row.get(0).booleanValue());
+      assertEquals(1L, row.get(1).longValue());
+    }
+  }
+
+  @Test
+  public void testQueryAsyncCompleted() throws Exception {
+    JobId queryJob = JobId.of(PROJECT, JOB);
+    QueryRequest request = QUERY_REQUEST.toBuilder().maxWaitTime(42L).build();
+    QueryRequest requestPb = QUERY_REQUEST_WITH_PROJECT.toBuilder().maxWaitTime(42L).build();
+    final com.google.api.services.bigquery.model.QueryResponse responsePb =
+        new com.google.api.services.bigquery.model.QueryResponse()
+            .setJobReference(queryJob.toPb())
+            .setRows(ImmutableList.of(TABLE_ROW))
+            .setJobComplete(true)
+            .setTotalRows(BigInteger.valueOf(1L));
+    final Thread callerThread = Thread.currentThread();
+    final AtomicReference<Thread> queryThread = new AtomicReference<>();
+    EasyMock.expect(bigqueryRpcMock.query(requestPb.toPb())).andAnswer(
+        new IAnswer<com.google.api.services.bigquery.model.QueryResponse>() {
+          @Override
+          public com.google.api.services.bigquery.model.QueryResponse answer() {
+            queryThread.set(Thread.currentThread());
+            return responsePb;
+          }
+        });
+    EasyMock.replay(bigqueryRpcMock);
+    bigquery = options.service();
+    ListenableFuture<QueryResult> future = bigquery.queryAsync(request);
+    assertEquals(1L, future.get().totalRows());
+    assertNotSame(callerThread, queryThread.get());
+  }
+
+  @Test
+  public void testQueryAsyncFailure() throws Exception {
+    QueryRequest requestPb = QUERY_REQUEST_WITH_PROJECT.toBuilder().maxWaitTime(0L).build();
+    BigQueryException exception = new BigQueryException(400, "invalid query");
+    EasyMock.expect(bigqueryRpcMock.query(requestPb.toPb())).andThrow(exception);
+    EasyMock.replay(bigqueryRpcMock);
+    bigquery = options.service();
+    try {
+      bigquery.queryAsync(QUERY_REQUEST).get();
+      fail("ExecutionException expected");
+    } catch (ExecutionException ex) {
+      assertSame(exception, ex.getCause());
+    }
+  }
+
+  @Test
+  public void testQueryAsyncCompletedWithErrors() throws Exception {
+    JobId queryJob = JobId.of(PROJECT, JOB);
+    QueryRequest requestPb = QUERY_REQUEST_WITH_PROJECT.toBuilder().maxWaitTime(0L).build();
+    ErrorProto errorPb = new ErrorProto()
+        .setReason("invalidQuery")
+        .setLocation("query")
+        .setMessage("Unrecognized name: field");
+    com.google.api.services.bigquery.model.QueryResponse responsePb =
+        new com.google.api.services.bigquery.model.QueryResponse()
+            .setJobReference(queryJob.toPb())
+            .setErrors(ImmutableList.of(errorPb))
+            .setJobComplete(true);
+    EasyMock.expect(bigqueryRpcMock.query(requestPb.toPb())).andReturn(responsePb);
+    EasyMock.replay(bigqueryRpcMock);
+    bigquery = options.service();
+    try {
+      bigquery.queryAsync(QUERY_REQUEST).get();
+      fail("ExecutionException expected");
+    } catch (ExecutionException ex) {
+      BigQueryException exception = (BigQueryException) ex.getCause();
+      assertEquals("Unrecognized name: field", exception.getMessage());
+      assertEquals(BigQueryError.fromPb(errorPb), exception.error());
+    }
+  }
+
   @Test
   public void testGetQueryResults() {
     JobId queryJob = JobId.of(PROJECT, JOB);
@@ -997,6 +1300,46 @@ public class BigQueryImplTest {
     assertEquals("cursor", response.result().nextPageCursor());
   }
 
+  @Test
+  public void testGetQueryResultsColumns() {
+    JobId queryJob = JobId.of(PROJECT, JOB);
+    Schema schema = Schema.of(Field.of("flag", Field.Type.bool()),
+        Field.of("count", Field.Type.integer()));
+    com.google.api.services.bigquery.model.GetQueryResultsResponse responsePb =
+        new com.google.api.services.bigquery.model.GetQueryResultsResponse()
+            .setEtag("etag")
+            .setJobReference(queryJob.toPb())
+            .setRows(ImmutableList.of(TABLE_ROW))
+            .setSchema(schema.toPb())
+            .setJobComplete(true)
+            .setPageToken("cursor")
+            .setTotalRows(BigInteger.valueOf(1L));
+    EasyMock.expect(bigqueryRpcMock.getQueryResults(JOB, EMPTY_RPC_OPTIONS)).andReturn(responsePb);
+    EasyMock.replay(bigqueryRpcMock);
+    bigquery = options.service();
+    Page<ColumnBatch> page = bigquery.getQueryResultsColumns(queryJob);
+    assertEquals("cursor", page.nextPageCursor());
+    ColumnBatch batch = Iterables.getOnlyElement(page.values());
+    assertEquals(schema, batch.schema());
+    assertEquals(1, batch.rowCount());
+    assertFalse(batch.<ColumnBatch.BooleanColumn>column("flag").booleanValue(0));
+    assertEquals(1L, batch.<ColumnBatch.LongColumn>column("count").longValue(0));
+  }
+
+  @Test
+  public void testGetQueryResultsColumnsIncomplete() {
+    JobId queryJob = JobId.of(PROJECT, JOB);
+    com.google.api.services.bigquery.model.GetQueryResultsResponse responsePb =
+        new com.google.api.services.bigquery.model.GetQueryResultsResponse()
+            .setEtag("etag")
+            .setJobReference(queryJob.toPb())
+            .setJobComplete(false);
+    EasyMock.expect(bigqueryRpcMock.getQueryResults(JOB, EMPTY_RPC_OPTIONS)).andReturn(responsePb);
+    EasyMock.replay(bigqueryRpcMock);
+    bigquery = options.service();
+    assertNull(bigquery.getQueryResultsColumns(queryJob));
+  }
+
   @Test
   public void testGetQueryResultsWithOptions() {
     JobId queryJob = JobId.of(PROJECT, JOB);
@@ -0,0 +1,218 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.bigquery;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.api.client.util.Data;
+import com.google.api.services.bigquery.model.TableCell;
+import com.google.api.services.bigquery.model.TableRow;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.BaseEncoding;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.List;
+
+public class ColumnBatchTest {
+
+  private static final byte[] BYTES = {0xD, 0xE, 0xA, 0xD};
+  private static final Field LONG_FIELD = Field.of("long", Field.Type.integer());
+  private static final Field DOUBLE_FIELD = Field.of("double", Field.Type.floatingPoint());
+  private static final Field BOOLEAN_FIELD = Field.of("boolean", Field.Type.bool());
+  private static final Field STRING_FIELD = Field.of("string", Field.Type.string());
+  private static final Field TIMESTAMP_FIELD = Field.of("timestamp", Field.Type.timestamp());
+  private static final Field BYTES_FIELD = Field.of("bytes", Field.Type.bytes());
+  private static final Field REPEATED_FIELD = Field.builder("repeated", Field.Type.integer())
+      .mode(Field.Mode.REPEATED)
+      .build();
+  private static final Field RECORD_FIELD =
+      Field.of("record", Field.Type.record(Field.of("nested", Field.Type.string())));
+  private static final Schema SCHEMA = Schema.of(LONG_FIELD, DOUBLE_FIELD, BOOLEAN_FIELD,
+      STRING_FIELD, TIMESTAMP_FIELD, BYTES_FIELD, REPEATED_FIELD, RECORD_FIELD);
+  private static final Object NULL = Data.nullOf(String.class);
+  private static final List<TableRow> ROWS = ImmutableList.of(
+      row("1", "1.5", "true", "a", "1408452095.22", BaseEncoding.base64().encode(BYTES),
+          ImmutableList.of(ImmutableMap.of("v", "1"), ImmutableMap.of("v", "2")),
+          ImmutableMap.of("f", ImmutableList.of(ImmutableMap.of("v", "nested")))),
+      row(NULL, NULL, NULL, NULL, NULL, NULL, NULL, NULL),
+      row("-3", "2.5E-1", "FALSE", "a", "1.40845209522E9", BaseEncoding.base64().encode(BYTES),
+          ImmutableList.of(), ImmutableMap.of("f", ImmutableList.of(ImmutableMap.of("v", "x")))),
+      row("42", "0", "false", "b", "42", "", ImmutableList.of(),
+          ImmutableMap.of("f", ImmutableList.of(ImmutableMap.of("v", NULL)))));
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  private static TableRow row(Object... values) {
+    ImmutableList.Builder<TableCell> cells = ImmutableList.builder();
+    for (Object value : values) {
+      cells.add(new TableCell().setV(value));
+    }
+    return new TableRow().setF(cells.build());
+  }
+
+  @Test
+  public void testFromPb() {
+    ColumnBatch batch = ColumnBatch.fromPb(SCHEMA, ROWS);
+    assertEquals(SCHEMA, batch.schema());
+    assertEquals(4, batch.rowCount());
+    assertEquals(8, batch.columns().size());
+    for (ColumnBatch.Column column : batch.columns()) {
+      assertTrue(column.isNull(1));
+      assertEquals(1, column.nullCount());
+    }
+    ColumnBatch.LongColumn longColumn = batch.column("long");
+    assertEquals(LONG_FIELD, longColumn.field());
+    assertEquals(1L, longColumn.longValue(0));
+    assertEquals(-3L, longColumn.longValue(2));
+    assertEquals(42L, longColumn.longValue(3));
+    assertArrayEquals(new long[] {1L, 0L, -3L, 42L}, longColumn.values());
+    ColumnBatch.DoubleColumn doubleColumn = batch.column("double");
+    assertEquals(1.5, doubleColumn.doubleValue(0), 0);
+    assertEquals(0.25, doubleColumn.doubleValue(2), 0);
+    assertEquals(0, doubleColumn.doubleValue(3), 0);
+    ColumnBatch.BooleanColumn booleanColumn = batch.column("boolean");
+    assertTrue(booleanColumn.booleanValue(0));
+    assertFalse(booleanColumn.booleanValue(2));
+    assertFalse(booleanColumn.booleanValue(3));
+    ColumnBatch.StringColumn stringColumn = batch.column("string");
+    assertEquals("a", stringColumn.stringValue(0));
+    assertEquals("a", stringColumn.stringValue(2));
+    assertEquals("b", stringColumn.stringValue(3));
+    assertEquals(stringColumn.code(0), stringColumn.code(2));
+    assertEquals(ImmutableList.of("a", "b"), stringColumn.dictionary());
+    ColumnBatch.LongColumn timestampColumn = batch.column("timestamp");
+    assertEquals(1408452095220000L, timestampColumn.longValue(0));
+    assertEquals(1408452095220000L, timestampColumn.longValue(2));
+    assertEquals(42000000L, timestampColumn.longValue(3));
+    ColumnBatch.BytesColumn bytesColumn = batch.column("bytes");
+    assertArrayEquals(BYTES, bytesColumn.bytesValue(0));
+    assertArrayEquals(new byte[0], bytesColumn.bytesValue(3));
+    ColumnBatch.FieldValueColumn repeatedColumn = batch.column("repeated");
+    assertEquals(FieldValue.Attribute.REPEATED, repeatedColumn.fieldValue(0).attribute());
+    assertEquals(2L, repeatedColumn.fieldValue(0).repeatedValue().get(1).longValue());
+    assertTrue(repeatedColumn.fieldValue(2).repeatedValue().isEmpty());
+    ColumnBatch.FieldValueColumn recordColumn = batch.column(7);
+    assertEquals(FieldValue.Attribute.RECORD, recordColumn.fieldValue(0).attribute());
+    assertEquals("nested", recordColumn.fieldValue(0).recordValue().get(0).stringValue());
+    assertTrue(recordColumn.fieldValue(3).recordValue().get(0).isNull());
+  }
+
+  @Test
+  public void testFromPbMatchesFieldValue() {
+    ColumnBatch batch = ColumnBatch.fromPb(SCHEMA, ROWS);
+    for (int row = 0; row < batch.rowCount(); row++) {
+      if (row == 1) {
+        continue;
+      }
+      List<TableCell> cells = ROWS.get(row).getF();
+      assertEquals(FieldValue.fromPb(cells.get(0)).longValue(),
+          batch.<ColumnBatch.LongColumn>column(0).longValue(row));
+      assertEquals(FieldValue.fromPb(cells.get(1)).doubleValue(),
+          batch.<ColumnBatch.DoubleColumn>column(1).doubleValue(row), 0);
+      assertEquals(FieldValue.fromPb(cells.get(2)).booleanValue(),
+          batch.<ColumnBatch.BooleanColumn>column(2).booleanValue(row));
+      assertEquals(FieldValue.fromPb(cells.get(3)).stringValue(),
+          batch.<ColumnBatch.StringColumn>column(3).stringValue(row));
+      assertEquals(FieldValue.fromPb(cells.get(4)).timestampValue(),
+          batch.<ColumnBatch.LongColumn>column(4).longValue(row));
+      assertEquals(FieldValue.fromPb(cells.get(6)),
+          batch.<ColumnBatch.FieldValueColumn>column(6).fieldValue(row));
+    }
+  }
+
+  @Test
+  public void testOfMatchesFromPb() {
+    ImmutableList.Builder<List<FieldValue>> rows = ImmutableList.builder();
+    for (TableRow rowPb : ROWS) {
+      ImmutableList.Builder<FieldValue> values = ImmutableList.builder();
+      for (TableCell cell : rowPb.getF()) {
+        values.add(FieldValue.fromPb(cell));
+      }
+      rows.add(values.build());
+    }
+    ColumnBatch expected = ColumnBatch.fromPb(SCHEMA, ROWS);
+    ColumnBatch batch = ColumnBatch.of(SCHEMA, rows.build());
+    assertEquals(SCHEMA, batch.schema());
+    assertEquals(expected.rowCount(), batch.rowCount());
+    for (int row = 0; row < batch.rowCount(); row++) {
+      for (int i = 0; i < batch.columns().size(); i++) {
+        assertEquals(expected.columns().get(i).isNull(row), batch.columns().get(i).isNull(row));
+      }
+      if (row == 1) {
+        continue;
+      }
+      assertEquals(expected.<ColumnBatch.LongColumn>column(0).longValue(row),
+          batch.<ColumnBatch.LongColumn>column(0).longValue(row));
+      assertEquals(expected.<ColumnBatch.DoubleColumn>column(1).doubleValue(row),
+          batch.<ColumnBatch.DoubleColumn>column(1).doubleValue(row), 0);
+      assertEquals(expected.<ColumnBatch.BooleanColumn>column(2).booleanValue(row),
+          batch.<ColumnBatch.BooleanColumn>column(2).booleanValue(row));
+      assertEquals(expected.<ColumnBatch.StringColumn>column(3).stringValue(row),
+          batch.<ColumnBatch.StringColumn>column(3).stringValue(row));
+      assertEquals(expected.<ColumnBatch.LongColumn>column(4).longValue(row),
+          batch.<ColumnBatch.LongColumn>column(4).longValue(row));
+      assertArrayEquals(expected.<ColumnBatch.BytesColumn>column(5).bytesValue(row),
+          batch.<ColumnBatch.BytesColumn>column(5).bytesValue(row));
+      assertEquals(expected.<ColumnBatch.FieldValueColumn>column(6).fieldValue(row),
+          batch.<ColumnBatch.FieldValueColumn>column(6).fieldValue(row));
+      assertEquals(expected.<ColumnBatch.FieldValueColumn>column(7).fieldValue(row),
+          batch.<ColumnBatch.FieldValueColumn>column(7).fieldValue(row));
+    }
+  }
+
+  @Test
+  public void testEmpty() {
+    ColumnBatch batch = ColumnBatch.fromPb(SCHEMA, null);
+    assertEquals(0, batch.rowCount());
+    assertEquals(8, batch.columns().size());
+    assertEquals(0, batch.<ColumnBatch.LongColumn>column("long").values().length);
+  }
+
+  @Test
+  public void testNullValue() {
+    ColumnBatch batch = ColumnBatch.fromPb(SCHEMA, ROWS);
+    thrown.expect(NullPointerException.class);
+    batch.<ColumnBatch.LongColumn>column("long").longValue(1);
+  }
+
+  @Test
+  public void testUnknownColumn() {
+    ColumnBatch batch = ColumnBatch.fromPb(SCHEMA, ROWS);
+    thrown.expect(IllegalArgumentException.class);
+    batch.column("unknown");
+  }
+
+  @Test
+  public void testInvalidBoolean() {
+    thrown.expect(IllegalStateException.class);
+    ColumnBatch.fromPb(Schema.of(BOOLEAN_FIELD), ImmutableList.of(row("yes")));
+  }
+
+  @Test
+  public void testSchemaMismatch() {
+    thrown.expect(IllegalStateException.class);
+    ColumnBatch.fromPb(Schema.of(LONG_FIELD), ImmutableList.of(row("1", "2")));
+  }
+}
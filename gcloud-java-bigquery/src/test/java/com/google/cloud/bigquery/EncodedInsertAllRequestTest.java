@@ -0,0 +1,141 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.bigquery;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.nio.charset.StandardCharsets;
+
+public class EncodedInsertAllRequestTest {
+
+  private static final TableId TABLE_ID = TableId.of("dataset", "table");
+  private static final Schema SCHEMA = Schema.of(
+      Field.of("id", Field.Type.integer()),
+      Field.of("price", Field.Type.floatingPoint()),
+      Field.of("active", Field.Type.bool()),
+      Field.of("name", Field.Type.string()),
+      Field.builder("tags", Field.Type.string()).mode(Field.Mode.REPEATED).build(),
+      Field.of("address", Field.Type.record(Field.of("city", Field.Type.string()))));
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  private static String body(EncodedInsertAllRequest request) {
+    int length = request.finish();
+    return new String(request.buffer(), 0, length, StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void testEncode() {
+    EncodedInsertAllRequest request = EncodedInsertAllRequest.builder(TABLE_ID, SCHEMA)
+        .ignoreUnknownValues(true)
+        .skipInvalidRows(false)
+        .templateSuffix("_2016")
+        .initialCapacity(16)
+        .build();
+    assertEquals(TABLE_ID, request.table());
+    request.addRow("row1")
+        .set("name", "caf\u00e9 \"bar\"\n")
+        .set("id", Long.MIN_VALUE)
+        .set("price", 1.5)
+        .set("active", true)
+        .set("tags", ImmutableList.of("a", "b"))
+        .set("address", ImmutableMap.of("city", "Milan"));
+    request.addRow()
+        .set("id", -42L)
+        .set("price", Double.NaN)
+        .set("name", (String) null);
+    assertEquals(2, request.rowCount());
+    assertEquals("{\"ignoreUnknownValues\":true,\"skipInvalidRows\":false,"
+        + "\"templateSuffix\":\"_2016\",\"rows\":["
+        + "{\"insertId\":\"row1\",\"json\":{\"name\":\"caf\u00e9 \\\"bar\\\"\\n\","
+        + "\"id\":-9223372036854775808,\"price\":1.5,\"active\":true,\"tags\":[\"a\",\"b\"],"
+        + "\"address\":{\"city\":\"Milan\"}}},"
+        + "{\"json\":{\"id\":-42,\"price\":\"NaN\",\"name\":null}}]}", body(request));
+  }
+
+  @Test
+  public void testAddRowAfterFinish() {
+    EncodedInsertAllRequest request = EncodedInsertAllRequest.builder(TABLE_ID, SCHEMA).build();
+    request.addRow("row1").set("id", 1L);
+    assertEquals("{\"rows\":[{\"insertId\":\"row1\",\"json\":{\"id\":1}}]}", body(request));
+    request.addRow("row2").set("id", 2L);
+    assertEquals("{\"rows\":[{\"insertId\":\"row1\",\"json\":{\"id\":1}},"
+        + "{\"insertId\":\"row2\",\"json\":{\"id\":2}}]}", body(request));
+  }
+
+  @Test
+  public void testClear() {
+    EncodedInsertAllRequest request = EncodedInsertAllRequest.builder(TABLE_ID, SCHEMA).build();
+    request.addRow("row1").set("id", 1L);
+    body(request);
+    request.clear();
+    assertEquals(0, request.rowCount());
+    assertEquals("{\"rows\":[".length(), request.byteSize());
+    request.addRow("row2").set("id", 2L);
+    assertEquals("{\"rows\":[{\"insertId\":\"row2\",\"json\":{\"id\":2}}]}", body(request));
+  }
+
+  @Test
+  public void testSetUnknownField() {
+    EncodedInsertAllRequest request = EncodedInsertAllRequest.builder(TABLE_ID, SCHEMA).build();
+    request.addRow();
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("Field unknown is not in the schema");
+    request.set("unknown", 1L);
+  }
+
+  @Test
+  public void testSetFieldTwice() {
+    EncodedInsertAllRequest request = EncodedInsertAllRequest.builder(TABLE_ID, SCHEMA).build();
+    request.addRow().set("id", 1L);
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("Field id was already set");
+    request.set("id", 2L);
+  }
+
+  @Test
+  public void testSetScalarValueOfRepeatedField() {
+    EncodedInsertAllRequest request = EncodedInsertAllRequest.builder(TABLE_ID, SCHEMA).build();
+    request.addRow();
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("Field tags is a repeated or record field");
+    request.set("tags", "a");
+  }
+
+  @Test
+  public void testSetWithoutRow() {
+    EncodedInsertAllRequest request = EncodedInsertAllRequest.builder(TABLE_ID, SCHEMA).build();
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("No row was added");
+    request.set("id", 1L);
+  }
+
+  @Test
+  public void testBuilderFromTableWithoutSchema() {
+    TableInfo tableInfo = TableInfo.of(TABLE_ID, ViewDefinition.of("SELECT 1"));
+    thrown.expect(IllegalArgumentException.class);
+    EncodedInsertAllRequest.builder(tableInfo);
+  }
+}
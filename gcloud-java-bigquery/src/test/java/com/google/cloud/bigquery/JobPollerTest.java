@@ -0,0 +1,160 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.bigquery;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.cloud.Clock;
+import com.google.cloud.WaitForOption;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.Timeout;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class JobPollerTest {
+
+  private static final String RESULT = "result";
+
+  @Rule
+  public Timeout globalTimeout = Timeout.seconds(60);
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  private ScheduledExecutorService executor;
+  private JobPoller poller;
+
+  private static class CountingCheck extends JobPoller.Check<String> {
+
+    private final AtomicInteger checks = new AtomicInteger();
+    private final int checksToComplete;
+
+    CountingCheck(int checksToComplete) {
+      this.checksToComplete = checksToComplete;
+    }
+
+    @Override
+    boolean check(SettableFuture<String> future) {
+      if (checks.incrementAndGet() < checksToComplete) {
+        return false;
+      }
+      future.set(RESULT);
+      return true;
+    }
+  }
+
+  @Before
+  public void setUp() {
+    executor = Executors.newSingleThreadScheduledExecutor();
+    poller = new JobPoller(executor);
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testPoll() throws Exception {
+    CountingCheck check = new CountingCheck(3);
+    ListenableFuture<String> future = poller.poll(check, Clock.defaultClock());
+    assertEquals(RESULT, future.get());
+    assertEquals(3, check.checks.get());
+  }
+
+  @Test
+  public void testPollWithCheckingPeriod() throws Exception {
+    CountingCheck check = new CountingCheck(10);
+    ListenableFuture<String> future = poller.poll(check, Clock.defaultClock(),
+        WaitForOption.checkEvery(1, TimeUnit.MILLISECONDS));
+    assertEquals(RESULT, future.get());
+    assertEquals(10, check.checks.get());
+  }
+
+  @Test
+  public void testSubmit() throws Exception {
+    CountingCheck check = new CountingCheck(1);
+    ListenableFuture<String> future = poller.submit(check, Clock.defaultClock(),
+        WaitForOption.checkEvery(1, TimeUnit.HOURS));
+    assertEquals(RESULT, future.get());
+    assertEquals(1, check.checks.get());
+  }
+
+  @Test
+  public void testPollWithTimeout() throws Exception {
+    CountingCheck check = new CountingCheck(Integer.MAX_VALUE);
+    ListenableFuture<String> future = poller.poll(check, Clock.defaultClock(),
+        WaitForOption.checkEvery(1, TimeUnit.MILLISECONDS),
+        WaitForOption.timeout(20, TimeUnit.MILLISECONDS));
+    try {
+      future.get();
+      fail("ExecutionException expected");
+    } catch (ExecutionException ex) {
+      assertTrue(ex.getCause() instanceof TimeoutException);
+    }
+  }
+
+  @Test
+  public void testPollFails() throws Exception {
+    final BigQueryException exception = new BigQueryException(500, "error");
+    ListenableFuture<String> future = poller.poll(new JobPoller.Check<String>() {
+      @Override
+      boolean check(SettableFuture<String> future) {
+        throw exception;
+      }
+    }, Clock.defaultClock());
+    try {
+      future.get();
+      fail("ExecutionException expected");
+    } catch (ExecutionException ex) {
+      assertSame(exception, ex.getCause());
+    }
+  }
+
+  @Test
+  public void testCancel() throws Exception {
+    CountingCheck check = new CountingCheck(1);
+    ListenableFuture<String> future = poller.poll(check, Clock.defaultClock(),
+        WaitForOption.checkEvery(50, TimeUnit.MILLISECONDS));
+    assertTrue(future.cancel(false));
+    Thread.sleep(100);
+    assertEquals(0, check.checks.get());
+  }
+
+  @Test
+  public void testDuplicateCheckingPeriod() {
+    thrown.expect(IllegalArgumentException.class);
+    poller.poll(new CountingCheck(1), Clock.defaultClock(),
+        WaitForOption.checkEvery(1, TimeUnit.MILLISECONDS),
+        WaitForOption.checkEvery(2, TimeUnit.MILLISECONDS));
+  }
+}
@@ -26,6 +26,7 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import com.google.cloud.Clock;
 import com.google.cloud.WaitForOption;
@@ -37,6 +38,7 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
@@ -288,6 +290,60 @@ public class JobTest {
     verify(status, timeUnit, clock, mockOptions);
   }
 
+  @Test
+  public void testToFuture() throws Exception {
+    initializeExpectedJob(2);
+    BigQuery.JobOption[] expectedOptions = {BigQuery.JobOption.fields(BigQuery.JobField.STATUS)};
+    expect(bigquery.options()).andReturn(mockOptions);
+    expect(mockOptions.clock()).andReturn(Clock.defaultClock());
+    Job runningJob = expectedJob.toBuilder().status(new JobStatus(JobStatus.State.RUNNING)).build();
+    expect(bigquery.getJob(JOB_INFO.jobId(), expectedOptions)).andReturn(runningJob);
+    expect(bigquery.getJob(JOB_INFO.jobId(), expectedOptions)).andReturn(expectedJob);
+    expect(bigquery.getJob(JOB_INFO.jobId())).andReturn(expectedJob);
+    replay(bigquery, mockOptions);
+    initializeJob();
+    assertSame(expectedJob,
+        job.toFuture(WaitForOption.checkEvery(1, TimeUnit.MILLISECONDS)).get());
+    verify(mockOptions);
+  }
+
+  @Test
+  public void testToFuture_Null() throws Exception {
+    initializeExpectedJob(1);
+    BigQuery.JobOption[] expectedOptions = {BigQuery.JobOption.fields(BigQuery.JobField.STATUS)};
+    expect(bigquery.options()).andReturn(mockOptions);
+    expect(mockOptions.clock()).andReturn(Clock.defaultClock());
+    expect(bigquery.getJob(JOB_INFO.jobId(), expectedOptions)).andReturn(null);
+    expect(bigquery.getJob(JOB_INFO.jobId())).andReturn(null);
+    replay(bigquery, mockOptions);
+    initializeJob();
+    assertNull(job.toFuture().get());
+    verify(mockOptions);
+  }
+
+  @Test
+  public void testToFutureWithTimeout() throws Exception {
+    initializeExpectedJob(2);
+    BigQuery.JobOption[] expectedOptions = {BigQuery.JobOption.fields(BigQuery.JobField.STATUS)};
+    Clock clock = createStrictMock(Clock.class);
+    expect(clock.millis()).andReturn(0L);
+    expect(clock.millis()).andReturn(3L);
+    expect(bigquery.options()).andReturn(mockOptions);
+    expect(mockOptions.clock()).andReturn(clock);
+    Job runningJob = expectedJob.toBuilder().status(new JobStatus(JobStatus.State.RUNNING)).build();
+    expect(bigquery.getJob(JOB_INFO.jobId(), expectedOptions)).andReturn(runningJob);
+    replay(bigquery, clock, mockOptions);
+    initializeJob();
+    try {
+      job.toFuture(WaitForOption.checkEvery(1, TimeUnit.MILLISECONDS),
+          WaitForOption.timeout(3, TimeUnit.MILLISECONDS)).get();
+      fail("ExecutionException expected");
+    } catch (ExecutionException ex) {
+      assertTrue(ex.getCause() instanceof TimeoutException);
+    }
+    verify(clock, mockOptions);
+  }
+
   @Test
   public void testReload() throws Exception {
     initializeExpectedJob(4);
@@ -0,0 +1,298 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.bigquery;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.cloud.Clock;
+import com.google.cloud.bigquery.BigQuery.TableField;
+import com.google.cloud.bigquery.BigQuery.TableOption;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.Futures;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class QueryCacheTest {
+
+  private static final String PROJECT = "project";
+  private static final String QUERY = "SELECT field FROM dataset.table";
+  private static final QueryRequest REQUEST = QueryRequest.of(QUERY);
+  private static final TableId TABLE_ID = TableId.of(PROJECT, "dataset", "table");
+  private static final TableOption LAST_MODIFIED_OPTION =
+      TableOption.fields(TableField.LAST_MODIFIED_TIME);
+  private static final Schema SCHEMA = Schema.of(Field.of("field", Field.Type.string()));
+  private static final List<FieldValue> ROW1 =
+      ImmutableList.of(new FieldValue(FieldValue.Attribute.PRIMITIVE, "value1"));
+  private static final List<FieldValue> ROW2 =
+      ImmutableList.of(new FieldValue(FieldValue.Attribute.PRIMITIVE, "value2"));
+
+  private static class TestClock extends Clock {
+
+    private long millis = 1000L;
+
+    @Override
+    public long millis() {
+      return millis;
+    }
+  }
+
+  private final TestClock clock = new TestClock();
+  private BigQuery bigquery;
+  private BigQuery tableService;
+
+  @Before
+  public void setUp() {
+    BigQueryOptions options = createNiceMock(BigQueryOptions.class);
+    expect(options.clock()).andReturn(clock).anyTimes();
+    expect(options.projectId()).andReturn(PROJECT).anyTimes();
+    replay(options);
+    tableService = createNiceMock(BigQuery.class);
+    expect(tableService.options()).andReturn(options).anyTimes();
+    replay(tableService);
+    bigquery = createMock(BigQuery.class);
+    expect(bigquery.options()).andReturn(options).anyTimes();
+  }
+
+  @After
+  public void tearDown() {
+    verify(bigquery);
+  }
+
+  private Table table(long lastModifiedTime) {
+    TableInfo info = TableInfo.builder(TABLE_ID, StandardTableDefinition.of(SCHEMA))
+        .lastModifiedTime(lastModifiedTime)
+        .build();
+    return new Table(tableService, new TableInfo.BuilderImpl(info));
+  }
+
+  private static QueryResult result() {
+    final QueryResult secondPage = QueryResult.builder()
+        .schema(SCHEMA)
+        .totalRows(2L)
+        .results(ImmutableList.of(ROW2))
+        .build();
+    return QueryResult.builder()
+        .schema(SCHEMA)
+        .totalRows(2L)
+        .totalBytesProcessed(42L)
+        .cursor("cursor")
+        .pageFetcher(new QueryResult.QueryResultsPageFetcher() {
+          @Override
+          public QueryResult nextPage() {
+            return secondPage;
+          }
+        })
+        .results(ImmutableList.of(ROW1))
+        .build();
+  }
+
+  private void expectQuery(QueryRequest request) {
+    expect(bigquery.queryAsync(request)).andReturn(Futures.immediateFuture(result()));
+  }
+
+  private static void assertCachedResult(QueryResult result) {
+    assertTrue(result.cacheHit());
+    assertEquals(SCHEMA, result.schema());
+    assertEquals(2L, result.totalRows());
+    assertEquals(42L, result.totalBytesProcessed());
+    assertEquals(ImmutableList.of(ROW1), ImmutableList.copyOf(result.values()));
+    assertEquals(ImmutableList.of(ROW1, ROW2), ImmutableList.copyOf(result.iterateAll()));
+  }
+
+  @Test
+  public void testQuery() {
+    expect(bigquery.getTable(TABLE_ID, LAST_MODIFIED_OPTION)).andReturn(table(10L)).times(3);
+    expectQuery(REQUEST);
+    replay(bigquery);
+    QueryCache cache = QueryCache.builder(bigquery).build();
+    assertCachedResult(cache.query(REQUEST));
+    assertEquals(1, cache.size());
+    assertCachedResult(cache.query(REQUEST));
+    assertCachedResult(cache.query(QueryRequest.of("  SELECT field\n  FROM dataset.table ")));
+  }
+
+  @Test
+  public void testQueryTableModified() {
+    expect(bigquery.getTable(TABLE_ID, LAST_MODIFIED_OPTION)).andReturn(table(10L));
+    expectQuery(REQUEST);
+    expect(bigquery.getTable(TABLE_ID, LAST_MODIFIED_OPTION)).andReturn(table(20L)).times(2);
+    expectQuery(REQUEST);
+    replay(bigquery);
+    QueryCache cache = QueryCache.builder(bigquery).build();
+    cache.query(REQUEST);
+    cache.query(REQUEST);
+  }
+
+  @Test
+  public void testQueryTableDeleted() {
+    expect(bigquery.getTable(TABLE_ID, LAST_MODIFIED_OPTION)).andReturn(table(10L));
+    expectQuery(REQUEST);
+    expect(bigquery.getTable(TABLE_ID, LAST_MODIFIED_OPTION)).andReturn(null).times(2);
+    expectQuery(REQUEST);
+    replay(bigquery);
+    QueryCache cache = QueryCache.builder(bigquery).build();
+    cache.query(REQUEST);
+    cache.query(REQUEST);
+  }
+
+  @Test
+  public void testQueryExpired() {
+    expect(bigquery.getTable(TABLE_ID, LAST_MODIFIED_OPTION)).andReturn(table(10L)).times(2);
+    expectQuery(REQUEST);
+    expectQuery(REQUEST);
+    replay(bigquery);
+    QueryCache cache = QueryCache.builder(bigquery).expireAfter(1, TimeUnit.MINUTES).build();
+    cache.query(REQUEST);
+    clock.millis += TimeUnit.MINUTES.toMillis(1);
+    cache.query(REQUEST);
+  }
+
+  @Test
+  public void testQueryWithTableCheckInterval() {
+    expect(bigquery.getTable(TABLE_ID, LAST_MODIFIED_OPTION)).andReturn(table(10L)).times(2);
+    expectQuery(REQUEST);
+    replay(bigquery);
+    QueryCache cache = QueryCache.builder(bigquery)
+        .tableCheckInterval(10, TimeUnit.SECONDS)
+        .build();
+    cache.query(REQUEST);
+    clock.millis += TimeUnit.SECONDS.toMillis(5);
+    assertCachedResult(cache.query(REQUEST));
+    clock.millis += TimeUnit.SECONDS.toMillis(5);
+    assertCachedResult(cache.query(REQUEST));
+  }
+
+  @Test
+  public void testQueryTooLarge() {
+    expect(bigquery.getTable(TABLE_ID, LAST_MODIFIED_OPTION)).andReturn(table(10L)).times(2);
+    expectQuery(REQUEST);
+    expectQuery(REQUEST);
+    replay(bigquery);
+    QueryCache cache = QueryCache.builder(bigquery).maxBytes(1).build();
+    assertFalse(cache.query(REQUEST).cacheHit());
+    assertFalse(cache.query(REQUEST).cacheHit());
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void testQueryNotCached() {
+    QueryRequest dryRun = REQUEST.toBuilder().dryRun(true).build();
+    QueryRequest noCache = REQUEST.toBuilder().useQueryCache(false).build();
+    expectQuery(dryRun);
+    expectQuery(dryRun);
+    expectQuery(noCache);
+    replay(bigquery);
+    QueryCache cache = QueryCache.builder(bigquery).build();
+    cache.query(dryRun);
+    cache.query(dryRun);
+    cache.query(noCache);
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void testQueryNonDeterministicNotCached() {
+    QueryRequest request = QueryRequest.of("SELECT field, CURRENT_TIMESTAMP() FROM dataset.table");
+    expectQuery(request);
+    expectQuery(request);
+    replay(bigquery);
+    QueryCache cache = QueryCache.builder(bigquery).build();
+    assertFalse(cache.query(request).cacheHit());
+    assertFalse(cache.query(request).cacheHit());
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void testQueryFailure() {
+    BigQueryException exception = new BigQueryException(400, "invalid query");
+    expect(bigquery.getTable(TABLE_ID, LAST_MODIFIED_OPTION)).andReturn(table(10L));
+    expect(bigquery.queryAsync(REQUEST))
+        .andReturn(Futures.<QueryResult>immediateFailedFuture(exception));
+    replay(bigquery);
+    QueryCache cache = QueryCache.builder(bigquery).build();
+    try {
+      cache.query(REQUEST);
+      fail("BigQueryException expected");
+    } catch (BigQueryException ex) {
+      assertSame(exception, ex);
+    }
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void testInvalidate() {
+    expect(bigquery.getTable(TABLE_ID, LAST_MODIFIED_OPTION)).andReturn(table(10L)).times(3);
+    expectQuery(REQUEST);
+    expectQuery(REQUEST);
+    expectQuery(REQUEST);
+    replay(bigquery);
+    QueryCache cache = QueryCache.builder(bigquery).build();
+    cache.query(REQUEST);
+    cache.invalidate(REQUEST);
+    cache.query(REQUEST);
+    cache.invalidateAll();
+    cache.query(REQUEST);
+  }
+
+  @Test
+  public void testReferencedTables() {
+    replay(bigquery);
+    DatasetId defaultDataset = DatasetId.of("default");
+    assertEquals(ImmutableSet.of(TableId.of("p", "d", "t1"), TableId.of("d", "t2")),
+        QueryCache.referencedTables("SELECT a FROM [p:d.t1] JOIN [d.t2] ON x", null));
+    assertEquals(ImmutableSet.of(TableId.of("example.com:p", "d", "t"), TableId.of("d", "t")),
+        QueryCache.referencedTables("SELECT a FROM `example.com:p.d.t`, `d.t`", null));
+    assertEquals(ImmutableSet.of(TableId.of("d", "t1"), TableId.of("default", "t2")),
+        QueryCache.referencedTables(
+            "select a from d.t1 left join t2 using (a) cross join unnest(b)", defaultDataset));
+    assertEquals(ImmutableSet.of(),
+        QueryCache.referencedTables("SELECT a FROM t2, (SELECT 1)", null));
+  }
+
+  @Test
+  public void testIsDeterministic() {
+    replay(bigquery);
+    assertTrue(QueryCache.isDeterministic("SELECT rand, now_ms, current_dates FROM d.t"));
+    assertFalse(QueryCache.isDeterministic("SELECT a FROM d.t WHERE ts < NOW()"));
+    assertFalse(QueryCache.isDeterministic("SELECT a, rand () FROM d.t"));
+    assertFalse(QueryCache.isDeterministic("SELECT a FROM d.t WHERE day = current_date"));
+    assertFalse(QueryCache.isDeterministic("SELECT CURRENT_TIMESTAMP()"));
+    assertFalse(QueryCache.isDeterministic("SELECT GENERATE_UUID() AS id"));
+  }
+
+  @Test
+  public void testNormalize() {
+    replay(bigquery);
+    assertEquals("SELECT a FROM t WHERE b = '  x\\'  y'",
+        QueryCache.normalize("\n SELECT  a\tFROM t\n WHERE b = '  x\\'  y'  "));
+    assertEquals("SELECT `a  b`", QueryCache.normalize("SELECT   `a  b`"));
+  }
+}
@@ -17,7 +17,10 @@
 package com.google.cloud.bigquery;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import com.google.api.client.util.Data;
 import com.google.common.collect.ImmutableList;
 
 import org.junit.Test;
@@ -72,6 +75,32 @@ public class QueryResultTest {
     assertEquals(null, QUERY_RESULT_INCOMPLETE.nextPage());
   }
 
+  @Test
+  public void testColumns() {
+    QueryResult result = QueryResult.builder()
+        .schema(SCHEMA)
+        .results(ImmutableList.<List<FieldValue>>of(
+            ImmutableList.of(FieldValue.fromPb("value")),
+            ImmutableList.of(FieldValue.fromPb(Data.nullOf(String.class)))))
+        .build();
+    ColumnBatch batch = result.columns();
+    assertEquals(SCHEMA, batch.schema());
+    assertEquals(2, batch.rowCount());
+    ColumnBatch.StringColumn column = batch.column("StringField");
+    assertEquals("value", column.stringValue(0));
+    assertTrue(column.isNull(1));
+  }
+
+  @Test
+  public void testColumnsWithoutSchema() {
+    try {
+      QUERY_RESULT_INCOMPLETE.columns();
+      fail("IllegalStateException expected");
+    } catch (IllegalStateException ex) {
+      // expected
+    }
+  }
+
   @Test
   public void testEquals() {
     compareQueryResult(QUERY_RESULT, QUERY_RESULT);
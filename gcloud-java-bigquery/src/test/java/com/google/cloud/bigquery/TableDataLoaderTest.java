@@ -0,0 +1,292 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.bigquery;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.api.services.bigquery.model.JobConfiguration;
+import com.google.cloud.RetryParams;
+import com.google.cloud.bigquery.spi.BigQueryRpc;
+import com.google.cloud.bigquery.spi.BigQueryRpcFactory;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import org.easymock.Capture;
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.Timeout;
+
+import java.io.ByteArrayOutputStream;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class TableDataLoaderTest {
+
+  private static final TableId TABLE_ID = TableId.of("dataset", "table");
+  private static final Field STRING_FIELD = Field.of("string", Field.Type.string());
+  private static final Field INTEGER_FIELD = Field.of("integer", Field.Type.integer());
+  private static final Field BYTES_FIELD = Field.of("bytes", Field.Type.bytes());
+  private static final Field REPEATED_FIELD = Field.builder("repeated", Field.Type.floatingPoint())
+      .mode(Field.Mode.REPEATED)
+      .build();
+  private static final Field RECORD_FIELD = Field.of("record", Field.Type.record(
+      Field.of("bool", Field.Type.bool())));
+  private static final Schema JSON_SCHEMA =
+      Schema.of(STRING_FIELD, INTEGER_FIELD, BYTES_FIELD, REPEATED_FIELD, RECORD_FIELD);
+  private static final Schema CSV_SCHEMA = Schema.of(STRING_FIELD, INTEGER_FIELD);
+  private static final WriteChannelConfiguration JSON_CONFIGURATION =
+      WriteChannelConfiguration.builder(TABLE_ID)
+          .formatOptions(FormatOptions.json())
+          .schema(JSON_SCHEMA)
+          .build();
+  private static final WriteChannelConfiguration CSV_CONFIGURATION =
+      WriteChannelConfiguration.builder(TABLE_ID)
+          .formatOptions(FormatOptions.csv())
+          .schema(CSV_SCHEMA)
+          .build();
+  private static final int BUFFER_SIZE = 256 * 1024;
+
+  @Rule
+  public Timeout globalTimeout = Timeout.seconds(60);
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  private BigQueryRpc bigqueryRpcMock;
+  private BigQuery bigquery;
+  private Map<String, ByteArrayOutputStream> uploads;
+
+  @Before
+  public void setUp() {
+    BigQueryRpcFactory rpcFactoryMock = EasyMock.createMock(BigQueryRpcFactory.class);
+    bigqueryRpcMock = EasyMock.createMock(BigQueryRpc.class);
+    EasyMock.expect(rpcFactoryMock.create(EasyMock.anyObject(BigQueryOptions.class)))
+        .andReturn(bigqueryRpcMock);
+    EasyMock.replay(rpcFactoryMock);
+    bigquery = BigQueryOptions.builder()
+        .projectId("project")
+        .serviceRpcFactory(rpcFactoryMock)
+        .retryParams(RetryParams.noRetries())
+        .build()
+        .service();
+    uploads = new LinkedHashMap<>();
+  }
+
+  @After
+  public void tearDown() {
+    EasyMock.verify(bigqueryRpcMock);
+  }
+
+  private void expectUpload(String uploadId) {
+    expectUpload(uploadId, Capture.<JobConfiguration>newInstance());
+  }
+
+  private void expectUpload(final String uploadId, Capture<JobConfiguration> configuration) {
+    EasyMock.expect(bigqueryRpcMock.open(EasyMock.capture(configuration))).andReturn(uploadId);
+    bigqueryRpcMock.write(EasyMock.eq(uploadId), EasyMock.anyObject(byte[].class),
+        EasyMock.anyInt(), EasyMock.anyLong(), EasyMock.anyInt(), EasyMock.anyBoolean());
+    EasyMock.expectLastCall().andAnswer(new IAnswer<Void>() {
+      @Override
+      public Void answer() throws Throwable {
+        Object[] arguments = EasyMock.getCurrentArguments();
+        ByteArrayOutputStream upload = uploads.get(uploadId);
+        if (upload == null) {
+          upload = new ByteArrayOutputStream();
+          uploads.put(uploadId, upload);
+        }
+        upload.write((byte[]) arguments[1], (Integer) arguments[2], (Integer) arguments[4]);
+        return null;
+      }
+    }).anyTimes();
+  }
+
+  private String uploaded(String uploadId) {
+    return new String(uploads.get(uploadId).toByteArray(), UTF_8);
+  }
+
+  @Test
+  public void testWriteJson() {
+    expectUpload("upload-1");
+    EasyMock.replay(bigqueryRpcMock);
+    Map<String, Object> row = new LinkedHashMap<>();
+    row.put("string", "a\"b\\c\nd\u0001\u00e9\uD83D\uDE00");
+    row.put("integer", 42L);
+    row.put("bytes", new byte[]{1, 2, 3});
+    row.put("repeated", ImmutableList.of(1.5, Double.NaN));
+    row.put("record", ImmutableMap.of("bool", true));
+    try (TableDataLoader loader =
+        TableDataLoader.builder(bigquery, JSON_CONFIGURATION).build()) {
+      loader.write(row);
+      loader.write(ImmutableMap.of("integer", 7));
+      assertEquals(2, loader.rowCount());
+    }
+    assertEquals("{\"string\":\"a\\\"b\\\\c\\nd\\u0001\u00e9\uD83D\uDE00\",\"integer\":42,"
+        + "\"bytes\":\"AQID\",\"repeated\":[1.5,\"NaN\"],\"record\":{\"bool\":true}}\n"
+        + "{\"integer\":7}\n", uploaded("upload-1"));
+  }
+
+  @Test
+  public void testWriteCsv() {
+    expectUpload("upload-1");
+    EasyMock.replay(bigqueryRpcMock);
+    try (TableDataLoader loader = TableDataLoader.builder(bigquery, CSV_CONFIGURATION).build()) {
+      loader.write(ImmutableMap.of("string", "plain", "integer", 1));
+      loader.write(ImmutableMap.of("string", "a,\"b\"\nc"));
+      loader.write(ImmutableList.of("", 3));
+      assertEquals(3, loader.rowCount());
+    }
+    assertEquals("plain,1\n\"a,\"\"b\"\"\nc\",\n\"\",3\n", uploaded("upload-1"));
+  }
+
+  @Test
+  public void testWriteCsvWithOptions() {
+    expectUpload("upload-1");
+    EasyMock.replay(bigqueryRpcMock);
+    WriteChannelConfiguration configuration = CSV_CONFIGURATION.toBuilder()
+        .formatOptions(CsvOptions.builder().fieldDelimiter("\t").quote("'").build())
+        .build();
+    try (TableDataLoader loader = TableDataLoader.builder(bigquery, configuration).build()) {
+      loader.write(ImmutableList.of("it's", 1));
+      loader.write(ImmutableList.of("a,b", 2));
+    }
+    assertEquals("'it''s'\t1\na,b\t2\n", uploaded("upload-1"));
+  }
+
+  @Test
+  public void testRollover() {
+    expectUpload("upload-1");
+    expectUpload("upload-2");
+    EasyMock.replay(bigqueryRpcMock);
+    StringBuilder value = new StringBuilder();
+    for (int i = 0; i < 1000; i++) {
+      value.append('x');
+    }
+    String expectedRow = value + ",1\n";
+    int rows = 2 * BUFFER_SIZE / expectedRow.length();
+    TableDataLoader loader = TableDataLoader.builder(bigquery, CSV_CONFIGURATION)
+        .bufferSize(BUFFER_SIZE)
+        .maxBytesPerJob(BUFFER_SIZE + 1)
+        .build();
+    for (int i = 0; i < rows; i++) {
+      loader.write(ImmutableList.of(value.toString(), 1));
+    }
+    loader.close();
+    assertEquals(rows, loader.rowCount());
+    assertEquals(2, loader.jobCount());
+    String first = uploaded("upload-1");
+    String second = uploaded("upload-2");
+    assertEquals(0, first.length() % expectedRow.length());
+    assertEquals(0, second.length() % expectedRow.length());
+    assertTrue(first.length() <= BUFFER_SIZE + 1);
+    assertEquals(rows * expectedRow.length(), first.length() + second.length());
+  }
+
+  @Test
+  public void testRolloverAppends() {
+    Capture<JobConfiguration> firstJob = Capture.newInstance();
+    Capture<JobConfiguration> secondJob = Capture.newInstance();
+    expectUpload("upload-1", firstJob);
+    expectUpload("upload-2", secondJob);
+    EasyMock.replay(bigqueryRpcMock);
+    WriteChannelConfiguration configuration = CSV_CONFIGURATION.toBuilder()
+        .writeDisposition(JobInfo.WriteDisposition.WRITE_TRUNCATE)
+        .build();
+    StringBuilder value = new StringBuilder();
+    for (int i = 0; i < 1000; i++) {
+      value.append('x');
+    }
+    int rows = 2 * BUFFER_SIZE / (value.length() + 3);
+    try (TableDataLoader loader = TableDataLoader.builder(bigquery, configuration)
+        .bufferSize(BUFFER_SIZE)
+        .maxBytesPerJob(BUFFER_SIZE + 1)
+        .build()) {
+      for (int i = 0; i < rows; i++) {
+        loader.write(ImmutableList.of(value.toString(), 1));
+      }
+    }
+    assertEquals("WRITE_TRUNCATE", firstJob.getValue().getLoad().getWriteDisposition());
+    assertEquals("WRITE_APPEND", secondJob.getValue().getLoad().getWriteDisposition());
+  }
+
+  @Test
+  public void testUploadFailure() {
+    BigQueryException exception = new BigQueryException(400, "invalid");
+    EasyMock.expect(bigqueryRpcMock.open(EasyMock.anyObject(JobConfiguration.class)))
+        .andThrow(exception);
+    EasyMock.replay(bigqueryRpcMock);
+    TableDataLoader loader = TableDataLoader.builder(bigquery, CSV_CONFIGURATION).build();
+    loader.write(ImmutableList.of("a", 1));
+    try {
+      loader.close();
+      fail("BigQueryException expected");
+    } catch (BigQueryException ex) {
+      assertEquals(400, ex.code());
+    }
+  }
+
+  @Test
+  public void testWriteAfterClose() {
+    EasyMock.replay(bigqueryRpcMock);
+    TableDataLoader loader = TableDataLoader.builder(bigquery, CSV_CONFIGURATION).build();
+    loader.close();
+    thrown.expect(IllegalStateException.class);
+    loader.write(ImmutableList.of("a", 1));
+  }
+
+  @Test
+  public void testWrongNumberOfValues() {
+    EasyMock.replay(bigqueryRpcMock);
+    try (TableDataLoader loader = TableDataLoader.builder(bigquery, CSV_CONFIGURATION).build()) {
+      List<Object> values = ImmutableList.<Object>of("a");
+      thrown.expect(IllegalArgumentException.class);
+      loader.write(values);
+    }
+  }
+
+  @Test
+  public void testCsvWithRecordField() {
+    EasyMock.replay(bigqueryRpcMock);
+    thrown.expect(IllegalArgumentException.class);
+    TableDataLoader.builder(bigquery, CSV_CONFIGURATION).schema(JSON_SCHEMA).build();
+  }
+
+  @Test
+  public void testCsvSkipLeadingRows() {
+    EasyMock.replay(bigqueryRpcMock);
+    WriteChannelConfiguration configuration = CSV_CONFIGURATION.toBuilder()
+        .formatOptions(CsvOptions.builder().skipLeadingRows(1).build())
+        .build();
+    thrown.expect(IllegalArgumentException.class);
+    TableDataLoader.builder(bigquery, configuration).build();
+  }
+
+  @Test
+  public void testMissingSchema() {
+    EasyMock.replay(bigqueryRpcMock);
+    thrown.expect(IllegalArgumentException.class);
+    TableDataLoader.builder(bigquery, WriteChannelConfiguration.of(TABLE_ID)).build();
+  }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.bigquery;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.eq;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import com.google.cloud.Page;
+import com.google.cloud.PageImpl;
+import com.google.cloud.bigquery.BigQuery.TableDataListOption;
+import com.google.cloud.bigquery.spi.BigQueryRpc;
+import com.google.common.collect.ImmutableList;
+
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class TableDataReaderTest {
+
+  private static final TableId TABLE_ID = TableId.of("dataset", "table");
+  private static final int TOTAL_ROWS = 10;
+
+  private BigQuery bigquery;
+
+  /**
+   * Answers {@code listTableData} calls with rows whose only value is the row index. At most
+   * {@code maxPageSize} rows are returned per call.
+   */
+  private static IAnswer<Page<List<FieldValue>>> rowsAnswer(final int maxPageSize) {
+    return new IAnswer<Page<List<FieldValue>>>() {
+      @Override
+      public Page<List<FieldValue>> answer() throws Throwable {
+        long startIndex = 0;
+        long maxResults = Long.MAX_VALUE;
+        Object[] arguments = EasyMock.getCurrentArguments();
+        for (int i = 1; i < arguments.length; i++) {
+          TableDataListOption option = (TableDataListOption) arguments[i];
+          if (option.rpcOption() == BigQueryRpc.Option.START_INDEX) {
+            startIndex = (Long) option.value();
+          } else if (option.rpcOption() == BigQueryRpc.Option.MAX_RESULTS) {
+            maxResults = (Long) option.value();
+          }
+        }
+        long end = Math.min(Math.min(startIndex + maxResults, startIndex + maxPageSize),
+            TOTAL_ROWS);
+        List<List<FieldValue>> rows = new ArrayList<>();
+        for (long i = startIndex; i < end; i++) {
+          rows.add(ImmutableList.of(
+              new FieldValue(FieldValue.Attribute.PRIMITIVE, String.valueOf(i))));
+        }
+        return new PageImpl<>(null, null, rows);
+      }
+    };
+  }
+
+  @Before
+  public void setUp() {
+    bigquery = createMock(BigQuery.class);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    verify(bigquery);
+  }
+
+  private static List<Long> readAll(TableDataReader reader) {
+    List<Long> values = new ArrayList<>();
+    while (reader.hasNext()) {
+      values.add(reader.next().get(0).longValue());
+    }
+    return values;
+  }
+
+  private static List<Long> expectedValues() {
+    List<Long> values = new ArrayList<>();
+    for (long i = 0; i < TOTAL_ROWS; i++) {
+      values.add(i);
+    }
+    return values;
+  }
+
+  @Test
+  public void testReadOrdered() {
+    expect(bigquery.listTableData(eq(TABLE_ID), anyObject(TableDataListOption.class),
+        anyObject(TableDataListOption.class))).andAnswer(rowsAnswer(2)).times(5);
+    replay(bigquery);
+    try (TableDataReader reader = TableDataReader.builder(bigquery, TABLE_ID)
+        .totalRows(TOTAL_ROWS)
+        .rowsPerRange(4)
+        .parallelism(3)
+        .maxBufferedRanges(2)
+        .build()) {
+      assertEquals(TOTAL_ROWS, reader.totalRows());
+      assertEquals(expectedValues(), readAll(reader));
+      assertFalse(reader.hasNext());
+    }
+  }
+
+  @Test
+  public void testReadUnordered() {
+    expect(bigquery.listTableData(eq(TABLE_ID), anyObject(TableDataListOption.class),
+        anyObject(TableDataListOption.class))).andAnswer(rowsAnswer(3)).times(5);
+    replay(bigquery);
+    try (TableDataReader reader = TableDataReader.builder(bigquery, TABLE_ID)
+        .totalRows(TOTAL_ROWS)
+        .rowsPerRange(4)
+        .pageSize(3)
+        .ordered(false)
+        .build()) {
+      List<Long> values = readAll(reader);
+      Collections.sort(values);
+      assertEquals(expectedValues(), values);
+    }
+  }
+
+  @Test
+  public void testReadTableRows() {
+    TableInfo tableInfo = TableInfo.of(TABLE_ID,
+        StandardTableDefinition.builder().numRows((long) TOTAL_ROWS).build());
+    BigQuery tableService = createNiceMock(BigQuery.class);
+    replay(tableService);
+    Table table = new Table(tableService, new TableInfo.BuilderImpl(tableInfo));
+    expect(bigquery.getTable(TABLE_ID, BigQuery.TableOption.fields(BigQuery.TableField.NUM_ROWS)))
+        .andReturn(table);
+    expect(bigquery.listTableData(eq(TABLE_ID), anyObject(TableDataListOption.class),
+        anyObject(TableDataListOption.class))).andAnswer(rowsAnswer(TOTAL_ROWS));
+    replay(bigquery);
+    try (TableDataReader reader = TableDataReader.builder(bigquery, TABLE_ID).build()) {
+      assertEquals(TOTAL_ROWS, reader.totalRows());
+      assertEquals(expectedValues(), readAll(reader));
+    }
+  }
+
+  @Test
+  public void testReadTableNotFound() {
+    expect(bigquery.getTable(TABLE_ID, BigQuery.TableOption.fields(BigQuery.TableField.NUM_ROWS)))
+        .andReturn(null);
+    replay(bigquery);
+    try {
+      TableDataReader.builder(bigquery, TABLE_ID).build();
+      fail("IllegalArgumentException expected");
+    } catch (IllegalArgumentException ex) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testReadFailure() {
+    BigQueryException exception = new BigQueryException(500, "error");
+    expect(bigquery.listTableData(eq(TABLE_ID), anyObject(TableDataListOption.class),
+        anyObject(TableDataListOption.class))).andThrow(exception);
+    replay(bigquery);
+    try (TableDataReader reader = TableDataReader.builder(bigquery, TABLE_ID)
+        .totalRows(TOTAL_ROWS)
+        .build()) {
+      reader.hasNext();
+      fail("BigQueryException expected");
+    } catch (BigQueryException ex) {
+      assertEquals(exception, ex);
+    }
+  }
+
+  @Test
+  public void testReadEmptyTable() {
+    replay(bigquery);
+    try (TableDataReader reader = TableDataReader.builder(bigquery, TABLE_ID)
+        .totalRows(0)
+        .build()) {
+      assertFalse(reader.hasNext());
+    }
+  }
+
+  @Test
+  public void testReadFewerRowsThanExpected() {
+    expect(bigquery.listTableData(eq(TABLE_ID), anyObject(TableDataListOption.class),
+        anyObject(TableDataListOption.class))).andAnswer(rowsAnswer(TOTAL_ROWS)).times(2);
+    replay(bigquery);
+    try (TableDataReader reader = TableDataReader.builder(bigquery, TABLE_ID)
+        .totalRows(TOTAL_ROWS + 5)
+        .rowsPerRange(TOTAL_ROWS)
+        .build()) {
+      assertEquals(expectedValues(), readAll(reader));
+      assertFalse(reader.hasNext());
+    }
+  }
+}
@@ -0,0 +1,370 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.bigquery;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.cloud.Clock;
+import com.google.cloud.Page;
+import com.google.cloud.ReadChannel;
+import com.google.cloud.RestorableState;
+import com.google.cloud.WaitForOption;
+import com.google.cloud.storage.Blob;
+import com.google.cloud.storage.BlobId;
+import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.Storage.BlobListOption;
+import com.google.common.collect.ImmutableList;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.rules.Timeout;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+public class TableExtractorTest {
+
+  private static final TableId TABLE_ID = TableId.of("dataset", "table");
+  private static final JobId JOB_ID = JobId.of("project", "job");
+  private static final String BUCKET = "bucket";
+  private static final Schema SCHEMA = Schema.of(
+      Field.of("id", Field.Type.integer()),
+      Field.of("name", Field.Type.string()),
+      Field.of("created", Field.Type.timestamp()));
+  private static final ExtractJobConfiguration CSV_CONFIGURATION =
+      ExtractJobConfiguration.of(TABLE_ID, "gs://bucket/export/table-*.csv");
+  private static final String SHARD1 = "id,name,created\n"
+      + "1,\"a, \"\"quoted\"\"\nname\",2014-08-19 12:41:35.220 UTC\r\n"
+      + "2,,\n";
+  private static final String SHARD2 = "id,name,created\n"
+      + "3,c,1970-01-01 00:00:42 UTC\n";
+
+  @Rule
+  public Timeout globalTimeout = Timeout.seconds(60);
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private BigQuery bigquery;
+  private BigQuery jobService;
+  private BigQuery infoService;
+  private BigQueryOptions options;
+  private Storage storage;
+
+  private static final class ByteArrayReadChannel implements ReadChannel {
+
+    private final ByteBuffer content;
+    private boolean open = true;
+
+    ByteArrayReadChannel(String content) {
+      this.content = ByteBuffer.wrap(content.getBytes(UTF_8));
+    }
+
+    @Override
+    public int read(ByteBuffer dst) {
+      if (!content.hasRemaining()) {
+        return -1;
+      }
+      int length = Math.min(dst.remaining(), content.remaining());
+      ByteBuffer slice = content.slice();
+      slice.limit(length);
+      dst.put(slice);
+      content.position(content.position() + length);
+      return length;
+    }
+
+    @Override
+    public boolean isOpen() {
+      return open;
+    }
+
+    @Override
+    public void close() {
+      open = false;
+    }
+
+    @Override
+    public void seek(long position) {
+      content.position((int) position);
+    }
+
+    @Override
+    public void chunkSize(int chunkSize) {
+      // ignored
+    }
+
+    @Override
+    public RestorableState<ReadChannel> capture() {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  @Before
+  public void setUp() {
+    bigquery = createMock(BigQuery.class);
+    jobService = createMock(BigQuery.class);
+    storage = createMock(Storage.class);
+    options = createNiceMock(BigQueryOptions.class);
+    expect(options.clock()).andReturn(Clock.defaultClock()).anyTimes();
+    infoService = createNiceMock(BigQuery.class);
+    expect(infoService.options()).andReturn(options).anyTimes();
+    replay(options, infoService);
+  }
+
+  @After
+  public void tearDown() {
+    verify(bigquery, jobService, storage);
+  }
+
+  private Job job(JobStatus status) {
+    return new Job(infoService, new JobInfo.BuilderImpl(JobInfo.builder(CSV_CONFIGURATION)
+        .jobId(JOB_ID)
+        .status(status)
+        .build()));
+  }
+
+  private void expectJob(ExtractJobConfiguration configuration, JobStatus status) {
+    Job completedJob = job(status);
+    expect(jobService.options()).andReturn(options);
+    expect(jobService.getJob(JOB_ID, BigQuery.JobOption.fields(BigQuery.JobField.STATUS)))
+        .andReturn(completedJob);
+    expect(jobService.getJob(JOB_ID)).andReturn(completedJob);
+    replay(jobService);
+    Job job = new Job(jobService, new JobInfo.BuilderImpl(JobInfo.builder(configuration)
+        .jobId(JOB_ID)
+        .status(new JobStatus(JobStatus.State.PENDING))
+        .build()));
+    expect(bigquery.create(JobInfo.of(configuration))).andReturn(job);
+  }
+
+  private static Blob blob(String name) {
+    Blob blob = createMock(Blob.class);
+    expect(blob.name()).andReturn(name).anyTimes();
+    replay(blob);
+    return blob;
+  }
+
+  @SuppressWarnings("unchecked")
+  private void expectShards(String prefix, String... names) {
+    List<Blob> blobs = new ArrayList<>();
+    for (String name : names) {
+      blobs.add(blob(name));
+    }
+    Page<Blob> page = createMock(Page.class);
+    expect(page.iterateAll()).andReturn(blobs.iterator());
+    replay(page);
+    expect(storage.list(BUCKET, BlobListOption.prefix(prefix))).andReturn(page);
+  }
+
+  private void expectShardContent(String name, String content) {
+    ReadChannel channel = new ByteArrayReadChannel(content);
+    expect(storage.reader(BlobId.of(BUCKET, name))).andReturn(channel);
+  }
+
+  private TableExtractor extractor(ExtractJobConfiguration configuration) {
+    return TableExtractor.builder(bigquery, storage, configuration)
+        .waitOptions(WaitForOption.checkEvery(1, TimeUnit.MILLISECONDS))
+        .build();
+  }
+
+  @Test
+  public void testExtract() throws Exception {
+    ExtractJobConfiguration configuration = ExtractJobConfiguration.of(TABLE_ID,
+        ImmutableList.of("gs://bucket/export/table-*.csv", "gs://bucket/single.csv"));
+    expectJob(configuration, new JobStatus(JobStatus.State.DONE));
+    expectShards("export/table-", "export/table-000000000000.csv",
+        "export/table-000000000001.csv", "export/table-other.csv", "export/table-000.json");
+    replay(bigquery, storage);
+    List<BlobId> shards = extractor(configuration).extract().get();
+    assertEquals(ImmutableList.of(BlobId.of(BUCKET, "export/table-000000000000.csv"),
+        BlobId.of(BUCKET, "export/table-000000000001.csv"), BlobId.of(BUCKET, "single.csv")),
+        shards);
+  }
+
+  @Test
+  public void testExtractFails() throws Exception {
+    BigQueryError error = new BigQueryError("invalid", "location", "message");
+    expectJob(CSV_CONFIGURATION, new JobStatus(JobStatus.State.DONE, error, null));
+    replay(bigquery, storage);
+    try {
+      extractor(CSV_CONFIGURATION).extract().get();
+      fail("ExecutionException expected");
+    } catch (ExecutionException ex) {
+      assertEquals(error, ((BigQueryException) ex.getCause()).error());
+    }
+  }
+
+  @Test
+  public void testDownloadTo() throws Exception {
+    expectJob(CSV_CONFIGURATION, new JobStatus(JobStatus.State.DONE));
+    expectShards("export/table-", "export/table-000000000000.csv",
+        "export/table-000000000001.csv");
+    expectShardContent("export/table-000000000000.csv", SHARD1);
+    expectShardContent("export/table-000000000001.csv", SHARD2);
+    replay(bigquery, storage);
+    Path directory = folder.getRoot().toPath();
+    List<Path> files = extractor(CSV_CONFIGURATION).downloadTo(directory).get();
+    assertEquals(ImmutableList.of(directory.resolve("table-000000000000.csv"),
+        directory.resolve("table-000000000001.csv")), files);
+    assertArrayEquals(SHARD1.getBytes(UTF_8), Files.readAllBytes(files.get(0)));
+    assertArrayEquals(SHARD2.getBytes(UTF_8), Files.readAllBytes(files.get(1)));
+  }
+
+  @Test
+  public void testDownloadToMultipleUris() throws Exception {
+    ExtractJobConfiguration configuration = ExtractJobConfiguration.of(TABLE_ID,
+        ImmutableList.of("gs://bucket/export/table-*.csv", "gs://bucket/backup/table-*.csv"));
+    expectJob(configuration, new JobStatus(JobStatus.State.DONE));
+    expectShards("export/table-", "export/table-000000000000.csv");
+    expectShards("backup/table-", "backup/table-000000000000.csv");
+    expectShardContent("export/table-000000000000.csv", SHARD1);
+    expectShardContent("backup/table-000000000000.csv", SHARD2);
+    replay(bigquery, storage);
+    Path directory = folder.getRoot().toPath();
+    List<Path> files = extractor(configuration).downloadTo(directory).get();
+    assertEquals(ImmutableList.of(directory.resolve("0/table-000000000000.csv"),
+        directory.resolve("1/table-000000000000.csv")), files);
+    assertArrayEquals(SHARD1.getBytes(UTF_8), Files.readAllBytes(files.get(0)));
+    assertArrayEquals(SHARD2.getBytes(UTF_8), Files.readAllBytes(files.get(1)));
+  }
+
+  @Test
+  public void testReadRows() throws Exception {
+    expectJob(CSV_CONFIGURATION, new JobStatus(JobStatus.State.DONE));
+    expectShards("export/table-", "export/table-000000000000.csv",
+        "export/table-000000000001.csv");
+    expectShardContent("export/table-000000000000.csv", SHARD1);
+    expectShardContent("export/table-000000000001.csv", SHARD2);
+    Table table = new Table(infoService,
+        new TableInfo.BuilderImpl(TableInfo.of(TABLE_ID, StandardTableDefinition.of(SCHEMA))));
+    expect(bigquery.getTable(TABLE_ID, BigQuery.TableOption.fields(BigQuery.TableField.SCHEMA)))
+        .andReturn(table);
+    replay(bigquery, storage);
+    Set<Long> ids = new HashSet<>();
+    try (TableExtractor.RowIterator rows = extractor(CSV_CONFIGURATION).readRows().get()) {
+      while (rows.hasNext()) {
+        List<FieldValue> row = rows.next();
+        long id = row.get(0).longValue();
+        ids.add(id);
+        if (id == 1) {
+          assertEquals("a, \"quoted\"\nname", row.get(1).stringValue());
+          assertEquals(1408452095220000L, row.get(2).timestampValue());
+        } else if (id == 2) {
+          assertTrue(row.get(1).isNull());
+          assertTrue(row.get(2).isNull());
+        } else {
+          assertEquals("c", row.get(1).stringValue());
+          assertEquals(42000000L, row.get(2).timestampValue());
+        }
+      }
+      assertFalse(rows.hasNext());
+    }
+    assertEquals(new HashSet<>(ImmutableList.of(1L, 2L, 3L)), ids);
+  }
+
+  @Test
+  public void testReadRowsUnsupportedFormat() {
+    replay(bigquery, jobService, storage);
+    ExtractJobConfiguration configuration = CSV_CONFIGURATION.toBuilder().format("AVRO").build();
+    try {
+      extractor(configuration).readRows();
+      fail("UnsupportedOperationException expected");
+    } catch (UnsupportedOperationException ex) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testCsvDecoder() throws IOException {
+    replay(bigquery, jobService, storage);
+    TableExtractor.CsvDecoder decoder = new TableExtractor.CsvDecoder(SCHEMA,
+        new StringReader("4\t\"\"\t\n5\tx\ty"), '\t', false);
+    List<FieldValue> row = decoder.next();
+    assertEquals(4L, row.get(0).longValue());
+    assertEquals("", row.get(1).stringValue());
+    assertTrue(row.get(2).isNull());
+    row = decoder.next();
+    assertEquals(5L, row.get(0).longValue());
+    assertEquals("x", row.get(1).stringValue());
+    assertEquals("y", row.get(2).stringValue());
+    assertNull(decoder.next());
+  }
+
+  @Test
+  public void testJsonDecoder() throws IOException {
+    replay(bigquery, jobService, storage);
+    Schema schema = Schema.of(
+        Field.of("id", Field.Type.integer()),
+        Field.builder("tags", Field.Type.string()).mode(Field.Mode.REPEATED).build(),
+        Field.of("record", Field.Type.record(Field.of("flag", Field.Type.bool()),
+            Field.of("time", Field.Type.timestamp()))),
+        Field.of("missing", Field.Type.floatingPoint()));
+    TableExtractor.JsonDecoder decoder = new TableExtractor.JsonDecoder(schema, new StringReader(
+        "{\"id\":\"1\",\"tags\":[\"a\",\"b\"],"
+            + "\"record\":{\"flag\":true,\"time\":\"1970-01-01 00:00:01.5 UTC\"}}\n"
+            + "\n"
+            + "{\"id\":\"2\",\"tags\":[],\"record\":null,\"missing\":1.5}\n"));
+    List<FieldValue> row = decoder.next();
+    assertEquals(1L, row.get(0).longValue());
+    List<FieldValue> tags = row.get(1).repeatedValue();
+    assertEquals(2, tags.size());
+    assertEquals("b", tags.get(1).stringValue());
+    List<FieldValue> record = row.get(2).recordValue();
+    assertTrue(record.get(0).booleanValue());
+    assertEquals(1500000L, record.get(1).timestampValue());
+    assertTrue(row.get(3).isNull());
+    row = decoder.next();
+    assertEquals(2L, row.get(0).longValue());
+    assertTrue(row.get(1).repeatedValue().isEmpty());
+    assertTrue(row.get(2).isNull());
+    assertEquals(1.5, row.get(3).doubleValue(), 0);
+    assertNull(decoder.next());
+  }
+
+  @Test
+  public void testToTimestamp() {
+    replay(bigquery, jobService, storage);
+    assertEquals("1408452095.220", TableExtractor.toTimestamp("2014-08-19 12:41:35.220 UTC"));
+    assertEquals("42", TableExtractor.toTimestamp("1970-01-01 00:00:42 UTC"));
+    assertEquals("-99.5", TableExtractor.toTimestamp("1969-12-31 23:58:20.5 UTC"));
+    assertEquals("1408452095.22", TableExtractor.toTimestamp("1408452095.22"));
+    assertEquals("-1.5", TableExtractor.toTimestamp("-1.5"));
+  }
+}
@@ -0,0 +1,290 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.bigquery;
+
+import static org.easymock.EasyMock.capture;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.cloud.RetryParams;
+import com.google.cloud.bigquery.InsertAllRequest.RowToInsert;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import org.easymock.Capture;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class TableStreamWriterTest {
+
+  private static final TableId TABLE_ID = TableId.of("dataset", "table");
+  private static final Map<String, Object> CONTENT1 =
+      ImmutableMap.<String, Object>of("field", "value1");
+  private static final Map<String, Object> CONTENT2 =
+      ImmutableMap.<String, Object>of("field", "value2");
+  private static final RowToInsert ROW1 = RowToInsert.of("id1", CONTENT1);
+  private static final RowToInsert ROW2 = RowToInsert.of("id2", CONTENT2);
+  private static final RetryParams RETRY_PARAMS = RetryParams.builder()
+      .retryMaxAttempts(3)
+      .initialRetryDelayMillis(1)
+      .maxRetryDelayMillis(10)
+      .build();
+  private static final InsertAllResponse SUCCESS = new InsertAllResponse(null);
+
+  @Rule
+  public Timeout globalTimeout = Timeout.seconds(60);
+
+  private BigQuery bigquery;
+
+  @Before
+  public void setUp() {
+    bigquery = createMock(BigQuery.class);
+  }
+
+  @After
+  public void tearDown() {
+    verify(bigquery);
+  }
+
+  private TableStreamWriter.Builder writerBuilder() {
+    return TableStreamWriter.builder(bigquery, TABLE_ID)
+        .retryParams(RETRY_PARAMS)
+        .maxBatchDelay(1, TimeUnit.HOURS);
+  }
+
+  private static InsertAllRequest request(RowToInsert... rows) {
+    return InsertAllRequest.builder(TABLE_ID, rows)
+        .skipInvalidRows(false)
+        .ignoreUnknownValues(false)
+        .build();
+  }
+
+  @Test
+  public void testBatchByRows() throws Exception {
+    expect(bigquery.insertAll(request(ROW1, ROW2))).andReturn(SUCCESS);
+    replay(bigquery);
+    try (TableStreamWriter writer = writerBuilder().maxBatchRows(2).build()) {
+      Future<Void> future1 = writer.insert(ROW1);
+      Future<Void> future2 = writer.insert(ROW2);
+      assertNull(future1.get());
+      assertNull(future2.get());
+    }
+  }
+
+  @Test
+  public void testBatchByBytes() throws Exception {
+    expect(bigquery.insertAll(request(ROW1))).andReturn(SUCCESS);
+    expect(bigquery.insertAll(request(ROW2))).andReturn(SUCCESS);
+    replay(bigquery);
+    try (TableStreamWriter writer = writerBuilder().maxBatchBytes(1).build()) {
+      writer.insert(ROW1).get();
+      writer.insert(ROW2).get();
+    }
+  }
+
+  @Test
+  public void testBatchByDelay() throws Exception {
+    expect(bigquery.insertAll(request(ROW1))).andReturn(SUCCESS);
+    replay(bigquery);
+    try (TableStreamWriter writer = writerBuilder()
+        .maxBatchDelay(10, TimeUnit.MILLISECONDS)
+        .build()) {
+      assertNull(writer.insert(ROW1).get());
+    }
+  }
+
+  @Test
+  public void testFlushAndClose() throws Exception {
+    expect(bigquery.insertAll(request(ROW1))).andReturn(SUCCESS);
+    expect(bigquery.insertAll(request(ROW2))).andReturn(SUCCESS);
+    replay(bigquery);
+    TableStreamWriter writer = writerBuilder().build();
+    Future<Void> future1 = writer.insert(ROW1);
+    writer.flush();
+    assertNull(future1.get());
+    Future<Void> future2 = writer.insert(ROW2);
+    writer.close();
+    assertTrue(future2.isDone());
+    try {
+      writer.insert(ROW1);
+      fail("IllegalStateException expected");
+    } catch (IllegalStateException ex) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testGeneratedInsertId() throws Exception {
+    Capture<InsertAllRequest> capturedRequest = Capture.newInstance();
+    expect(bigquery.insertAll(capture(capturedRequest))).andReturn(SUCCESS);
+    replay(bigquery);
+    try (TableStreamWriter writer = writerBuilder().maxBatchRows(2).build()) {
+      writer.insert(CONTENT1);
+      writer.insert(RowToInsert.of(CONTENT2)).get();
+    }
+    List<RowToInsert> rows = capturedRequest.getValue().rows();
+    assertEquals(2, rows.size());
+    assertNotNull(rows.get(0).id());
+    assertNotNull(rows.get(1).id());
+    assertFalse(rows.get(0).id().equals(rows.get(1).id()));
+    assertEquals(CONTENT1, rows.get(0).content());
+    assertEquals(CONTENT2, rows.get(1).content());
+  }
+
+  @Test
+  public void testRetryFailedRows() throws Exception {
+    BigQueryError stopped = new BigQueryError("stopped", null, "stopped");
+    expect(bigquery.insertAll(request(ROW1, ROW2))).andReturn(new InsertAllResponse(
+        ImmutableMap.<Long, List<BigQueryError>>of(1L, ImmutableList.of(stopped))));
+    expect(bigquery.insertAll(request(ROW2))).andReturn(SUCCESS);
+    replay(bigquery);
+    try (TableStreamWriter writer = writerBuilder().maxBatchRows(2).build()) {
+      Future<Void> future1 = writer.insert(ROW1);
+      Future<Void> future2 = writer.insert(ROW2);
+      assertNull(future1.get());
+      assertNull(future2.get());
+    }
+  }
+
+  @Test
+  public void testRetryExhausted() throws Exception {
+    BigQueryError backendError = new BigQueryError("backendError", null, "backend error");
+    InsertAllResponse response = new InsertAllResponse(
+        ImmutableMap.<Long, List<BigQueryError>>of(0L, ImmutableList.of(backendError)));
+    expect(bigquery.insertAll(request(ROW1))).andReturn(response).times(3);
+    replay(bigquery);
+    try (TableStreamWriter writer = writerBuilder().maxBatchRows(1).build()) {
+      Future<Void> future = writer.insert(ROW1);
+      try {
+        future.get();
+        fail("ExecutionException expected");
+      } catch (ExecutionException ex) {
+        assertEquals(backendError, ((BigQueryException) ex.getCause()).error());
+      }
+    }
+  }
+
+  @Test
+  public void testInvalidRowNotRetried() throws Exception {
+    BigQueryError invalid = new BigQueryError("invalid", "field", "invalid value");
+    expect(bigquery.insertAll(request(ROW1, ROW2))).andReturn(new InsertAllResponse(
+        ImmutableMap.<Long, List<BigQueryError>>of(0L, ImmutableList.of(invalid))));
+    replay(bigquery);
+    try (TableStreamWriter writer = writerBuilder().maxBatchRows(2).build()) {
+      Future<Void> future1 = writer.insert(ROW1);
+      Future<Void> future2 = writer.insert(ROW2);
+      assertNull(future2.get());
+      try {
+        future1.get();
+        fail("ExecutionException expected");
+      } catch (ExecutionException ex) {
+        BigQueryException exception = (BigQueryException) ex.getCause();
+        assertEquals(invalid, exception.error());
+        assertEquals("invalid value", exception.getMessage());
+      }
+    }
+  }
+
+  @Test
+  public void testRetryableRequestFailure() throws Exception {
+    expect(bigquery.insertAll(request(ROW1)))
+        .andThrow(new BigQueryException(503, "unavailable"));
+    expect(bigquery.insertAll(request(ROW1))).andReturn(SUCCESS);
+    replay(bigquery);
+    try (TableStreamWriter writer = writerBuilder().maxBatchRows(1).build()) {
+      assertNull(writer.insert(ROW1).get());
+    }
+  }
+
+  @Test
+  public void testRetryableRequestFailureExhausted() throws Exception {
+    BigQueryException exception = new BigQueryException(503, "unavailable");
+    expect(bigquery.insertAll(request(ROW1))).andThrow(exception).times(3);
+    replay(bigquery);
+    try (TableStreamWriter writer = writerBuilder().maxBatchRows(1).build()) {
+      Future<Void> future = writer.insert(ROW1);
+      try {
+        future.get();
+        fail("ExecutionException expected");
+      } catch (ExecutionException ex) {
+        assertSame(exception, ex.getCause());
+      }
+    }
+  }
+
+  @Test
+  public void testRequestFailure() throws Exception {
+    BigQueryException exception = new BigQueryException(400, "bad request");
+    expect(bigquery.insertAll(request(ROW1, ROW2))).andThrow(exception);
+    replay(bigquery);
+    try (TableStreamWriter writer = writerBuilder().maxBatchRows(2).build()) {
+      Future<Void> future1 = writer.insert(ROW1);
+      Future<Void> future2 = writer.insert(ROW2);
+      for (Future<Void> future : ImmutableList.of(future1, future2)) {
+        try {
+          future.get();
+          fail("ExecutionException expected");
+        } catch (ExecutionException ex) {
+          assertSame(exception, ex.getCause());
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testRetryDelay() {
+    replay(bigquery);
+    RetryParams retryParams = RetryParams.builder()
+        .initialRetryDelayMillis(100)
+        .retryDelayBackoffFactor(2)
+        .maxRetryDelayMillis(1000)
+        .build();
+    assertEquals(100, TableStreamWriter.retryDelayMillis(retryParams, 1));
+    assertEquals(200, TableStreamWriter.retryDelayMillis(retryParams, 2));
+    assertEquals(800, TableStreamWriter.retryDelayMillis(retryParams, 4));
+    assertEquals(1000, TableStreamWriter.retryDelayMillis(retryParams, 10));
+  }
+
+  @Test
+  public void testEstimateBytes() {
+    replay(bigquery);
+    assertEquals(7, TableStreamWriter.estimateBytes("value"));
+    assertEquals(4, TableStreamWriter.estimateBytes(null));
+    assertEquals(2, TableStreamWriter.estimateBytes(42));
+    assertEquals(2 + 5 + 4 + 7,
+        TableStreamWriter.estimateBytes(ImmutableMap.of("field", "value")));
+    assertEquals(2 + 4 + 4, TableStreamWriter.estimateBytes(ImmutableList.of("a", "b")));
+  }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.bigquery.spi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.api.client.json.jackson.JacksonFactory;
+import com.google.api.client.util.Data;
+import com.google.cloud.bigquery.BigQueryException;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import org.junit.Test;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+public class JsonRowPageTest {
+
+  private static final JacksonFactory JSON_FACTORY = new JacksonFactory();
+
+  private static class TestResponse implements Closeable {
+
+    private boolean closed;
+
+    @Override
+    public void close() {
+      closed = true;
+    }
+  }
+
+  private static JsonRowPage page(String json, TestResponse response) throws IOException {
+    return new JsonRowPage(JSON_FACTORY.createJsonParser(json), response);
+  }
+
+  @Test
+  public void testTableData() throws IOException {
+    String json = "{\"kind\":\"bigquery#tableDataList\",\"etag\":\"etag\",\"totalRows\":\"2\","
+        + "\"pageToken\":\"token\",\"rows\":["
+        + "{\"f\":[{\"v\":\"a\"},{\"v\":null},{\"v\":[{\"v\":\"1\"},{\"v\":\"2\"}]},"
+        + "{\"v\":{\"f\":[{\"v\":\"true\"}]}}]},"
+        + "{\"f\":[{\"v\":\"b\"},{\"v\":\"1.5\"},{\"v\":[]},{\"v\":null}]}]}";
+    TestResponse response = new TestResponse();
+    JsonRowPage page = page(json, response);
+    assertEquals("token", page.pageToken());
+    assertTrue(page.hasNext());
+    List<Object> row = page.next();
+    assertEquals(4, row.size());
+    assertEquals("a", row.get(0));
+    assertSame(Data.NULL_STRING, row.get(1));
+    assertEquals(ImmutableList.of(ImmutableMap.of("v", "1"), ImmutableMap.of("v", "2")),
+        row.get(2));
+    assertEquals(ImmutableMap.of("f", ImmutableList.of(ImmutableMap.of("v", "true"))),
+        row.get(3));
+    row = page.next();
+    assertEquals(ImmutableList.of("b", "1.5", ImmutableList.of(), Data.NULL_STRING), row);
+    assertFalse(page.hasNext());
+    assertTrue(page.jobComplete());
+    assertFalse(response.closed);
+    page.close();
+    assertTrue(response.closed);
+  }
+
+  @Test
+  public void testQueryResults() throws IOException {
+    String json = "{\"rows\":[{\"f\":[{\"v\":\"a\"}]}],\"pageToken\":\"token\","
+        + "\"totalBytesProcessed\":\"42\",\"jobComplete\":true}";
+    JsonRowPage page = page(json, new TestResponse());
+    assertNull(page.pageToken());
+    assertEquals(ImmutableList.of("a"), page.next());
+    assertFalse(page.hasNext());
+    assertEquals("token", page.pageToken());
+    assertTrue(page.jobComplete());
+  }
+
+  @Test
+  public void testQueryResultsIncomplete() throws IOException {
+    JsonRowPage page = page("{\"jobReference\":{\"jobId\":\"job\"},\"jobComplete\":false}",
+        new TestResponse());
+    assertFalse(page.hasNext());
+    assertFalse(page.jobComplete());
+    assertNull(page.pageToken());
+  }
+
+  @Test
+  public void testCloseBeforeEnd() throws IOException {
+    TestResponse response = new TestResponse();
+    JsonRowPage page = page("{\"rows\":[{\"f\":[{\"v\":\"a\"}]},{\"f\":[{\"v\":\"b\"}]}]}",
+        response);
+    assertEquals(ImmutableList.of("a"), page.next());
+    page.close();
+    assertTrue(response.closed);
+    assertFalse(page.hasNext());
+  }
+
+  @Test
+  public void testMalformed() throws IOException {
+    TestResponse response = new TestResponse();
+    JsonRowPage page = page("{\"rows\":[{\"f\":[{\"v\":\"a\"}]},{\"f\":[{\"v\":", response);
+    assertEquals(ImmutableList.of("a"), page.next());
+    try {
+      page.hasNext();
+      fail("BigQueryException expected");
+    } catch (BigQueryException ex) {
+      assertTrue(response.closed);
+    }
+  }
+
+  @Test
+  public void testNotAnObject() throws IOException {
+    TestResponse response = new TestResponse();
+    try {
+      page("[]", response);
+      fail("BigQueryException expected");
+    } catch (BigQueryException ex) {
+      assertTrue(response.closed);
+    }
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.storage.contrib.nio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.channels.FileLock;
+import java.nio.channels.NonWritableChannelException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Cloud Storage read-only {@link AsynchronousFileChannel}.
+ *
+ * <p>Each read runs on the executor of the channel as an independent ranged request, using
+ * {@link CloudStorageReadChannel#read(ByteBuffer, long)}, so reads of different regions of the
+ * same object proceed in parallel.
+ */
+@ThreadSafe
+final class CloudStorageAsynchronousFileChannel extends AsynchronousFileChannel {
+
+  private final CloudStorageReadChannel channel;
+  private final ExecutorService executor;
+
+  CloudStorageAsynchronousFileChannel(CloudStorageReadChannel channel, ExecutorService executor) {
+    this.channel = channel;
+    this.executor = executor;
+  }
+
+  @Override
+  public boolean isOpen() {
+    return channel.isOpen();
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  @Override
+  public long size() throws IOException {
+    return channel.size();
+  }
+
+  @Override
+  public AsynchronousFileChannel truncate(long size) throws IOException {
+    throw new NonWritableChannelException();
+  }
+
+  @Override
+  public void force(boolean metaData) throws IOException {
+    // Nothing is ever written.
+  }
+
+  @Override
+  public <A> void lock(long position, long size, boolean shared, A attachment,
+      CompletionHandler<FileLock, ? super A> handler) {
+    throw new UnsupportedOperationException("Cloud Storage doesn't support file locks");
+  }
+
+  @Override
+  public Future<FileLock> lock(long position, long size, boolean shared) {
+    throw new UnsupportedOperationException("Cloud Storage doesn't support file locks");
+  }
+
+  @Override
+  public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+    throw new UnsupportedOperationException("Cloud Storage doesn't support file locks");
+  }
+
+  @Override
+  public <A> void read(final ByteBuffer dst, final long position, final A attachment,
+      final CompletionHandler<Integer, ? super A> handler) {
+    executor.execute(new Runnable() {
+      @Override
+      public void run() {
+        int amt;
+        try {
+          amt = channel.read(dst, position);
+        } catch (Throwable t) {
+          handler.failed(t, attachment);
+          return;
+        }
+        handler.completed(amt, attachment);
+      }
+    });
+  }
+
+  @Override
+  public Future<Integer> read(final ByteBuffer dst, final long position) {
+    return executor.submit(new Callable<Integer>() {
+      @Override
+      public Integer call() throws IOException {
+        return channel.read(dst, position);
+      }
+    });
+  }
+
+  @Override
+  public <A> void write(ByteBuffer src, long position, A attachment,
+      CompletionHandler<Integer, ? super A> handler) {
+    throw new NonWritableChannelException();
+  }
+
+  @Override
+  public Future<Integer> write(ByteBuffer src, long position) {
+    throw new NonWritableChannelException();
+  }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.storage.contrib.nio;
+
+import com.google.cloud.storage.BlobId;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Cache of object content for a {@link CloudStorageFileSystem}, made of blocks of
+ * {@link CloudStorageConfiguration#blockSize()} bytes aligned to multiples of the block size.
+ * Blocks are keyed by object generation, so channels reading the same generation share them, and
+ * the least recently used blocks are evicted first.
+ *
+ * <p>Blocks are also keyed by an epoch of their object, which changes when the object is
+ * invalidated. Invalidating an object doesn't scan the cache: its blocks can't be found anymore,
+ * and are evicted like any other unused block.
+ *
+ * @see CloudStorageConfiguration#blockCacheSize()
+ * @see CloudStorageCachedReadChannel
+ */
+@ThreadSafe
+final class CloudStorageBlockCache {
+
+  private final int blockSize;
+  private final int readAheadBlocks;
+  @Nullable
+  private final Cache<BlockKey, byte[]> cache;
+  // current epoch of each object, by bucket and name
+  @Nullable
+  private final Cache<BlobId, Long> epochs;
+  private final AtomicLong lastEpoch = new AtomicLong();
+
+  private CloudStorageBlockCache(int blockSize, int readAheadBlocks,
+      @Nullable Cache<BlockKey, byte[]> cache, @Nullable Cache<BlobId, Long> epochs) {
+    this.blockSize = blockSize;
+    this.readAheadBlocks = readAheadBlocks;
+    this.cache = cache;
+    this.epochs = epochs;
+  }
+
+  /**
+   * Returns a cache configured by {@code config}, which doesn't cache anything if
+   * {@link CloudStorageConfiguration#blockCacheSize()} is zero.
+   */
+  static CloudStorageBlockCache create(CloudStorageConfiguration config) {
+    return create(config.blockSize(), config.blockCacheSize(), config.readAheadBlocks());
+  }
+
+  @VisibleForTesting
+  static CloudStorageBlockCache create(int blockSize, int blocks, int readAheadBlocks) {
+    Cache<BlockKey, byte[]> cache = null;
+    Cache<BlobId, Long> epochs = null;
+    if (blocks > 0) {
+      cache = CacheBuilder.newBuilder().maximumSize(blocks).<BlockKey, byte[]>build();
+      // there can't be more objects with cached blocks than blocks
+      epochs = CacheBuilder.newBuilder().maximumSize(blocks).<BlobId, Long>build();
+    }
+    return new CloudStorageBlockCache(blockSize, readAheadBlocks, cache, epochs);
+  }
+
+  /**
+   * Returns {@code true} if this cache stores blocks, {@code false} if channels should read
+   * objects directly.
+   */
+  boolean isEnabled() {
+    return cache != null;
+  }
+
+  int blockSize() {
+    return blockSize;
+  }
+
+  int readAheadBlocks() {
+    return readAheadBlocks;
+  }
+
+  /**
+   * Returns the block of {@code blob} at {@code index}, or {@code null} if it isn't cached. The
+   * returned array must not be modified.
+   */
+  @Nullable
+  byte[] get(BlobId blob, long index) {
+    return cache == null ? null : cache.getIfPresent(new BlockKey(blob, epoch(blob), index));
+  }
+
+  /**
+   * Caches the block of {@code blob} at {@code index}. Only the last block of an object may be
+   * shorter than the block size.
+   */
+  void put(BlobId blob, long index, byte[] block) {
+    if (cache != null) {
+      cache.put(new BlockKey(blob, epoch(blob), index), block);
+    }
+  }
+
+  /**
+   * Discards the cached blocks of all the generations of {@code blob}, in constant time.
+   */
+  void invalidate(BlobId blob) {
+    if (epochs != null) {
+      epochs.invalidate(BlobId.of(blob.bucket(), blob.name()));
+    }
+  }
+
+  /**
+   * Discards all cached blocks.
+   */
+  void invalidateAll() {
+    if (cache != null) {
+      cache.invalidateAll();
+      epochs.invalidateAll();
+    }
+  }
+
+  /**
+   * Returns the current epoch of the object of {@code blob}. Evicting an epoch has the same effect
+   * as invalidating the object.
+   */
+  private long epoch(BlobId blob) {
+    BlobId object = BlobId.of(blob.bucket(), blob.name());
+    Long epoch = epochs.getIfPresent(object);
+    if (epoch == null) {
+      Long created = lastEpoch.incrementAndGet();
+      epoch = epochs.asMap().putIfAbsent(object, created);
+      if (epoch == null) {
+        epoch = created;
+      }
+    }
+    return epoch;
+  }
+
+  private static final class BlockKey {
+
+    private final BlobId blob;
+    private final long epoch;
+    private final long index;
+
+    BlockKey(BlobId blob, long epoch, long index) {
+      this.blob = blob;
+      this.epoch = epoch;
+      this.index = index;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (this == other) {
+        return true;
+      }
+      if (!(other instanceof BlockKey)) {
+        return false;
+      }
+      BlockKey that = (BlockKey) other;
+      return index == that.index && epoch == that.epoch && blob.equals(that.blob);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(blob, epoch, index);
+    }
+  }
+}
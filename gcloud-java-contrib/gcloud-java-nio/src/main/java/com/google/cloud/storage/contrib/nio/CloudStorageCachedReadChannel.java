@@ -0,0 +1,211 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.storage.contrib.nio;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.cloud.ReadChannel;
+import com.google.cloud.storage.BlobId;
+import com.google.cloud.storage.BlobInfo;
+import com.google.cloud.storage.Storage;
+import com.google.common.primitives.Ints;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.util.Arrays;
+
+import javax.annotation.CheckReturnValue;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Cloud Storage read channel that reads an object generation through a
+ * {@link CloudStorageBlockCache}. Changing the position doesn't cost anything, and blocks already
+ * read by this or another channel are not fetched again. When blocks are read in order, the
+ * following {@link CloudStorageBlockCache#readAheadBlocks()} blocks are fetched in the same
+ * request.
+ *
+ * @see CloudStorageReadChannel
+ */
+@ThreadSafe
+final class CloudStorageCachedReadChannel implements SeekableByteChannel {
+
+  private final Storage gcsStorage;
+  private final BlobId file;
+  private final long size;
+  private final CloudStorageBlockCache cache;
+  private final int blockSize;
+  private ReadChannel channel;
+  private long channelPosition = -1;
+  private long lastBlock = -1;
+  private long position;
+  private boolean open = true;
+
+  /**
+   * Creates a channel for {@code blobInfo}. Reads are pinned to the generation of
+   * {@code blobInfo}, if set.
+   */
+  @CheckReturnValue
+  static CloudStorageCachedReadChannel create(
+      Storage gcsStorage, BlobInfo blobInfo, CloudStorageBlockCache cache) {
+    return new CloudStorageCachedReadChannel(gcsStorage, blobInfo.blobId(), blobInfo.size(), cache);
+  }
+
+  private CloudStorageCachedReadChannel(
+      Storage gcsStorage, BlobId file, long size, CloudStorageBlockCache cache) {
+    this.gcsStorage = gcsStorage;
+    this.file = file;
+    this.size = size;
+    this.cache = cache;
+    this.blockSize = cache.blockSize();
+  }
+
+  @Override
+  public boolean isOpen() {
+    synchronized (this) {
+      return open;
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    synchronized (this) {
+      open = false;
+      if (channel != null) {
+        channel.close();
+        channel = null;
+      }
+    }
+  }
+
+  @Override
+  public int read(ByteBuffer dst) throws IOException {
+    synchronized (this) {
+      checkOpen();
+      if (position >= size) {
+        return -1;
+      }
+      int amt = 0;
+      while (dst.hasRemaining() && position < size) {
+        long index = position / blockSize;
+        byte[] block = block(index);
+        int offset = (int) (position - index * blockSize);
+        int length = Math.min(dst.remaining(), block.length - offset);
+        if (length <= 0) {
+          // the object is shorter than its metadata says
+          break;
+        }
+        dst.put(block, offset, length);
+        position += length;
+        amt += length;
+      }
+      return amt > 0 ? amt : -1;
+    }
+  }
+
+  @Override
+  public long size() throws IOException {
+    synchronized (this) {
+      checkOpen();
+      return size;
+    }
+  }
+
+  @Override
+  public long position() throws IOException {
+    synchronized (this) {
+      checkOpen();
+      return position;
+    }
+  }
+
+  @Override
+  public SeekableByteChannel position(long newPosition) throws IOException {
+    checkArgument(newPosition >= 0);
+    synchronized (this) {
+      checkOpen();
+      position = newPosition;
+      return this;
+    }
+  }
+
+  @Override
+  public int write(ByteBuffer src) throws IOException {
+    throw new NonWritableChannelException();
+  }
+
+  @Override
+  public SeekableByteChannel truncate(long size) throws IOException {
+    throw new NonWritableChannelException();
+  }
+
+  private void checkOpen() throws ClosedChannelException {
+    if (!open) {
+      throw new ClosedChannelException();
+    }
+  }
+
+  private byte[] block(long index) throws IOException {
+    byte[] block = cache.get(file, index);
+    if (block == null) {
+      int blocks = index == lastBlock + 1 ? 1 + cache.readAheadBlocks() : 1;
+      block = fetch(index, blocks);
+    }
+    lastBlock = index;
+    return block;
+  }
+
+  /**
+   * Fetches {@code blocks} blocks starting at {@code index} with a single request, caches them and
+   * returns the first one.
+   */
+  private byte[] fetch(long index, int blocks) throws IOException {
+    long start = index * blockSize;
+    long end = Math.min(size, start + (long) blocks * blockSize);
+    if (channel == null) {
+      channel = gcsStorage.reader(file);
+    }
+    if (channelPosition != start) {
+      channel.seek(start);
+      channelPosition = start;
+    }
+    channel.chunkSize(Ints.saturatedCast(end - start));
+    byte[] first = null;
+    for (long blockStart = start; blockStart < end; blockStart += blockSize, index++) {
+      byte[] block = new byte[(int) Math.min(blockSize, end - blockStart)];
+      ByteBuffer buffer = ByteBuffer.wrap(block);
+      while (buffer.hasRemaining()) {
+        if (channel.read(buffer) < 0) {
+          break;
+        }
+      }
+      channelPosition += buffer.position();
+      if (buffer.hasRemaining()) {
+        // premature end of the object, don't cache a partial block
+        block = Arrays.copyOf(block, buffer.position());
+        return first != null ? first : block;
+      }
+      cache.put(file, index, block);
+      if (first == null) {
+        first = block;
+      }
+    }
+    return first;
+  }
+}
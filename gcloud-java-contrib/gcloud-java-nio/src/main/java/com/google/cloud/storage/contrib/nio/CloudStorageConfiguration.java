@@ -22,6 +22,8 @@ import com.google.auto.value.AutoValue;
 
 import java.util.Map;
 
+import javax.annotation.Nullable;
+
 /**
  * Configuration for {@link CloudStorageFileSystem} instances.
  */
@@ -59,6 +61,70 @@ public abstract class CloudStorageConfiguration {
    */
   public abstract int blockSize();
 
+  /**
+   * Returns the maximum number of objects whose metadata is cached by the file system, or zero if
+   * metadata is not cached.
+   *
+   * @see Builder#statCacheSize(int)
+   */
+  public abstract int statCacheSize();
+
+  /**
+   * Returns the time (in milliseconds) after which cached object metadata expires.
+   */
+  public abstract long statCacheTtlMillis();
+
+  /**
+   * Returns the maximum number of {@link #blockSize()} blocks of object content cached by the file
+   * system, or zero if content is not cached.
+   *
+   * @see Builder#blockCacheSize(int)
+   */
+  public abstract int blockCacheSize();
+
+  /**
+   * Returns the number of blocks read ahead when a channel reads an object sequentially.
+   */
+  public abstract int readAheadBlocks();
+
+  /**
+   * Returns {@code true} if write channels upload a block in the background while the next one is
+   * being written.
+   *
+   * @see Builder#pipelineUploads(boolean)
+   */
+  public abstract boolean pipelineUploads();
+
+  /**
+   * Returns {@code true} if directories are listed with a single flat listing of all the objects
+   * below them, shared with the listings of their subdirectories.
+   *
+   * @see Builder#recursiveListings(boolean)
+   */
+  public abstract boolean recursiveListings();
+
+  /**
+   * Returns {@code true} if paths of directories are interned, so that the paths of the files in
+   * a directory share a single instance of their parent.
+   *
+   * @see Builder#internDirectoryPaths(boolean)
+   */
+  public abstract boolean internDirectoryPaths();
+
+  /**
+   * Returns the local directory where object content is cached, or {@code null} if content isn't
+   * cached on local disk.
+   *
+   * @see Builder#localCacheDirectory(String)
+   */
+  @Nullable
+  public abstract String localCacheDirectory();
+
+  /**
+   * Returns the maximum number of bytes held in {@link #localCacheDirectory()}.
+   */
+  public abstract long localCacheBytes();
+
   /**
    * Creates a new builder, initialized with the following settings:
    *
@@ -66,6 +132,7 @@ public abstract class CloudStorageConfiguration {
    * <li>Performing I/O on paths with extra slashes, e.g. {@code a//b} will throw an error.
    * <li>The prefix slash on absolute paths will be removed when converting to an object name.
    * <li>Pseudo-directories are enabled, so any path with a trailing slash is a fake directory.
+   * <li>Object metadata and content are not cached, in memory or on local disk.
    * </ul>
    */
   public static Builder builder() {
@@ -82,6 +149,15 @@ public abstract class CloudStorageConfiguration {
     private boolean stripPrefixSlash = true;
     private boolean usePseudoDirectories = true;
     private int blockSize = CloudStorageFileSystem.BLOCK_SIZE_DEFAULT;
+    private int statCacheSize;
+    private long statCacheTtlMillis = 10_000;
+    private int blockCacheSize;
+    private int readAheadBlocks = 1;
+    private boolean pipelineUploads;
+    private boolean recursiveListings;
+    private boolean internDirectoryPaths;
+    @Nullable private String localCacheDirectory;
+    private long localCacheBytes = 1L << 30;
 
     /**
      * Changes current working directory for new filesystem. This defaults to the root directory.
@@ -125,15 +201,170 @@ public abstract class CloudStorageConfiguration {
     }
 
     /**
-     * Sets the block size in bytes that should be used for each HTTP request to the API.
+     * Sets the block size in bytes that should be used for each HTTP request to the API. This is
+     * also the size of the blocks held by the block cache, and the size of the chunks uploaded by
+     * write channels, rounded down to a multiple of 256 KiB. It can be overridden for a single
+     * channel with {@link CloudStorageOptions#withBlockSize(int)}.
      *
      * <p>The default is {@value CloudStorageFileSystem#BLOCK_SIZE_DEFAULT}.
      */
     public Builder blockSize(int value) {
+      checkArgument(value > 0, "blockSize must be > 0: %s", value);
       blockSize = value;
       return this;
     }
 
+    /**
+     * Sets the maximum number of objects whose metadata is cached by the file system. The cache
+     * serves {@code Files.exists}, {@code Files.size}, {@code Files.readAttributes} and the size
+     * lookup of {@code Files.newByteChannel}, and is populated by directory listings as well.
+     * Objects that don't exist are cached too. Writes, deletes and copies made through the file
+     * system invalidate the affected entries, but changes made by other clients are only seen once
+     * the cached entries expire.
+     *
+     * <p>The default is zero, which disables the cache.
+     *
+     * @see #statCacheTtlMillis(long)
+     */
+    public Builder statCacheSize(int value) {
+      checkArgument(value >= 0, "statCacheSize must be >= 0: %s", value);
+      statCacheSize = value;
+      return this;
+    }
+
+    /**
+     * Sets the time (in milliseconds) after which cached object metadata expires.
+     *
+     * <p>The default is 10 seconds.
+     */
+    public Builder statCacheTtlMillis(long value) {
+      checkArgument(value > 0, "statCacheTtlMillis must be > 0: %s", value);
+      statCacheTtlMillis = value;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of blocks of object content cached by the file system. Channels
+     * opened with {@code Files.newByteChannel} then read objects in aligned blocks of
+     * {@link #blockSize(int)} bytes, which are shared by all the channels reading the same object
+     * generation and evicted least recently used first, so that seeking back and forth, e.g. to
+     * read a file footer and then its sections, doesn't fetch the same bytes again. The cache holds
+     * up to {@code blockCacheSize * blockSize} bytes. Writes, deletes and copies made through the
+     * file system invalidate the blocks of the affected objects.
+     *
+     * <p>The default is zero, which disables the cache.
+     *
+     * @see #readAheadBlocks(int)
+     */
+    public Builder blockCacheSize(int value) {
+      checkArgument(value >= 0, "blockCacheSize must be >= 0: %s", value);
+      blockCacheSize = value;
+      return this;
+    }
+
+    /**
+     * Sets the number of blocks fetched together with a missing block when a channel reads an
+     * object sequentially. Only used if the block cache is enabled.
+     *
+     * <p>The default is 1.
+     *
+     * @see #blockCacheSize(int)
+     */
+    public Builder readAheadBlocks(int value) {
+      checkArgument(value >= 0, "readAheadBlocks must be >= 0: %s", value);
+      readAheadBlocks = value;
+      return this;
+    }
+
+    /**
+     * Configures whether write channels upload each block in the background while the caller
+     * writes the next one, instead of blocking every {@link #blockSize(int)} bytes until the block
+     * has been sent. This keeps the network busy when writing large objects, e.g. with
+     * {@code Files.copy(InputStream, Path)}, at the cost of a second block of memory per channel.
+     * If a background upload fails, the failure is thrown by the next write or by {@code close},
+     * and the object isn't created.
+     *
+     * <p>The default is {@code false}.
+     */
+    public Builder pipelineUploads(boolean value) {
+      pipelineUploads = value;
+      return this;
+    }
+
+    /**
+     * Configures whether {@code Files.newDirectoryStream} lists all the objects below a directory
+     * with a single flat listing, fetching its pages in the background, instead of listing the
+     * directory itself with a delimiter. The entries of the directory are synthesized from the
+     * object names, and the streams of subdirectories opened while the stream of their parent is
+     * positioned on them continue the same listing. So {@code Files.walkFileTree}, as well as
+     * {@code Files.walk} and {@code Files.find} on Java 8, list a whole tree with a single listing
+     * instead of one per directory, e.g.:<pre>   {@code
+     *
+     *   CloudStorageFileSystem fs = CloudStorageFileSystem.forBucket("bucket",
+     *       CloudStorageConfiguration.builder()
+     *           .recursiveListings(true)
+     *           .statCacheSize(10_000)
+     *           .build());
+     *   Files.walkFileTree(fs.getPath("data/"), visitor);}</pre>
+     *
+     * <p>Walks read the attributes of every entry, so the metadata cache should be enabled with
+     * {@link #statCacheSize(int)} to serve them from the listing. On the other hand, listing a
+     * single directory reads all the objects below it. Streams must be iterated depth first, as
+     * walks do: a subdirectory stream that is read after its parent stream moved on throws
+     * {@link java.util.ConcurrentModificationException}.
+     *
+     * <p>The default is {@code false}.
+     */
+    public Builder recursiveListings(boolean value) {
+      recursiveListings = value;
+      return this;
+    }
+
+    /**
+     * Configures whether paths ending with a slash and the paths returned by
+     * {@link java.nio.file.Path#getParent()} are interned. Applications holding on to many paths,
+     * e.g. to all the files of a tree, then keep a single instance of each directory, at the cost
+     * of a lookup in a weak map whenever such a path is created.
+     *
+     * <p>The default is {@code false}.
+     */
+    public Builder internDirectoryPaths(boolean value) {
+      internDirectoryPaths = value;
+      return this;
+    }
+
+    /**
+     * Sets a local directory where channels opened with {@code Files.newByteChannel} cache the
+     * objects they read. The first read of an object generation downloads it whole into the
+     * directory, checking its content against the CRC32C and MD5 checksums of its metadata, and
+     * reads of the same generation are then served from a memory-mapped file, including by other
+     * file systems and processes using the same directory. The least recently read objects are
+     * deleted once the directory holds more than {@link #localCacheBytes(long)} bytes. Objects
+     * larger than that, or whose generation isn't known, are read directly.
+     *
+     * <p>This is meant for objects read over and over by jobs running on the same machine, e.g.
+     * dictionaries or model shards. Since cached files are keyed by generation, overwritten objects
+     * are downloaded again and their old generation is evicted in due time.
+     *
+     * <p>The default is {@code null}, which disables the cache.
+     */
+    public Builder localCacheDirectory(@Nullable String path) {
+      localCacheDirectory = path;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of bytes of object content held in
+     * {@link #localCacheDirectory(String)}.
+     *
+     * <p>The default is 1 GiB.
+     */
+    public Builder localCacheBytes(long value) {
+      checkArgument(value > 0, "localCacheBytes must be > 0: %s", value);
+      localCacheBytes = value;
+      return this;
+    }
+
     /**
      * Creates new instance without destroying builder.
      */
@@ -143,7 +374,16 @@ public abstract class CloudStorageConfiguration {
           permitEmptyPathComponents,
           stripPrefixSlash,
           usePseudoDirectories,
-          blockSize);
+          blockSize,
+          statCacheSize,
+          statCacheTtlMillis,
+          blockCacheSize,
+          readAheadBlocks,
+          pipelineUploads,
+          recursiveListings,
+          internDirectoryPaths,
+          localCacheDirectory,
+          localCacheBytes);
     }
 
     Builder() {}
@@ -168,6 +408,33 @@ public abstract class CloudStorageConfiguration {
         case "blockSize":
           builder.blockSize((Integer) entry.getValue());
           break;
+        case "statCacheSize":
+          builder.statCacheSize((Integer) entry.getValue());
+          break;
+        case "statCacheTtlMillis":
+          builder.statCacheTtlMillis(((Number) entry.getValue()).longValue());
+          break;
+        case "blockCacheSize":
+          builder.blockCacheSize((Integer) entry.getValue());
+          break;
+        case "readAheadBlocks":
+          builder.readAheadBlocks((Integer) entry.getValue());
+          break;
+        case "pipelineUploads":
+          builder.pipelineUploads((Boolean) entry.getValue());
+          break;
+        case "recursiveListings":
+          builder.recursiveListings((Boolean) entry.getValue());
+          break;
+        case "internDirectoryPaths":
+          builder.internDirectoryPaths((Boolean) entry.getValue());
+          break;
+        case "localCacheDirectory":
+          builder.localCacheDirectory((String) entry.getValue());
+          break;
+        case "localCacheBytes":
+          builder.localCacheBytes(((Number) entry.getValue()).longValue());
+          break;
         default:
           throw new IllegalArgumentException(entry.getKey());
       }
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.storage.contrib.nio;
+
+import java.nio.file.Path;
+
+/**
+ * Listener notified of the progress of
+ * {@link CloudStorageFileSystemProvider#copyTree(Path, Path, java.nio.file.CopyOption...)} and
+ * {@link CloudStorageFileSystemProvider#moveTree(Path, Path, java.nio.file.CopyOption...)}.
+ *
+ * <p>Methods are called by the threads copying the objects, so implementations must be
+ * thread-safe.
+ *
+ * @see CloudStorageOptions#withCopyListener(CloudStorageCopyListener)
+ */
+public interface CloudStorageCopyListener {
+
+  /**
+   * Called each time a chunk of {@code source} has been copied to {@code target}. The last call
+   * for an object has {@code bytesCopied == totalBytes}.
+   */
+  void onProgress(Path source, Path target, long bytesCopied, long totalBytes);
+}
@@ -57,7 +57,7 @@ public final class CloudStorageFileAttributeView implements BasicFileAttributeVi
     if (path.seemsLikeADirectory() && path.getFileSystem().config().usePseudoDirectories()) {
       return new CloudStoragePseudoDirectoryAttributes(path);
     }
-    BlobInfo blobInfo = storage.get(path.getBlobId());
+    BlobInfo blobInfo = path.getFileSystem().statCache().get(storage, path.getBlobId());
     if (blobInfo == null) {
       throw new NoSuchFileException(path.toUri().toString());
     }
@@ -19,8 +19,11 @@ package com.google.cloud.storage.contrib.nio;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import com.google.cloud.storage.BlobId;
 import com.google.cloud.storage.StorageOptions;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 
 import java.io.IOException;
 import java.net.URI;
@@ -54,12 +57,24 @@ public final class CloudStorageFileSystem extends FileSystem {
   public static final String GCS_VIEW = "gcs";
   public static final String BASIC_VIEW = "basic";
   public static final int BLOCK_SIZE_DEFAULT = 2 * 1024 * 1024;
+  public static final int COPY_PARALLELISM_DEFAULT = 16;
   public static final FileTime FILE_TIME_UNKNOWN = FileTime.fromMillis(0);
   public static final ImmutableSet<String> SUPPORTED_VIEWS = ImmutableSet.of(BASIC_VIEW, GCS_VIEW);
 
+  /**
+   * Bucket names of all file systems, so that the many file systems created for the same bucket
+   * by {@link CloudStorageFileSystemProvider#getPath(URI)} share their name.
+   */
+  private static final Interner<String> BUCKETS = Interners.newWeakInterner();
+
   private final CloudStorageFileSystemProvider provider;
   private final String bucket;
   private final CloudStorageConfiguration config;
+  private final CloudStorageStatCache statCache;
+  private final CloudStorageBlockCache blockCache;
+  private final CloudStorageLocalCache localCache;
+  private final CloudStorageTreeLister treeLister;
+  @Nullable private final Interner<UnixPath> directories;
 
   /**
    * Returns Google Cloud Storage {@link FileSystem} object for {@code bucket}.
@@ -122,8 +137,14 @@ public final class CloudStorageFileSystem extends FileSystem {
       CloudStorageFileSystemProvider provider, String bucket, CloudStorageConfiguration config) {
     checkArgument(!bucket.isEmpty(), "bucket");
     this.provider = provider;
-    this.bucket = bucket;
+    this.bucket = BUCKETS.intern(bucket);
     this.config = config;
+    this.statCache = CloudStorageStatCache.create(config);
+    this.blockCache = CloudStorageBlockCache.create(config);
+    this.localCache = CloudStorageLocalCache.create(config);
+    this.treeLister = new CloudStorageTreeLister(this);
+    this.directories =
+        config.internDirectoryPaths() ? Interners.<UnixPath>newWeakInterner() : null;
   }
 
   @Override
@@ -145,6 +166,60 @@ public final class CloudStorageFileSystem extends FileSystem {
     return config;
   }
 
+  /**
+   * Returns the object metadata cache of this file system instance.
+   */
+  CloudStorageStatCache statCache() {
+    return statCache;
+  }
+
+  /**
+   * Returns the object content cache of this file system instance.
+   */
+  CloudStorageBlockCache blockCache() {
+    return blockCache;
+  }
+
+  /**
+   * Returns the local disk cache of object content of this file system instance.
+   */
+  CloudStorageLocalCache localCache() {
+    return localCache;
+  }
+
+  /**
+   * Returns the lister of directories of this file system instance, used if
+   * {@link CloudStorageConfiguration#recursiveListings()} is enabled.
+   */
+  CloudStorageTreeLister treeLister() {
+    return treeLister;
+  }
+
+  /**
+   * Returns the shared instance of the directory path {@code dir} if
+   * {@link CloudStorageConfiguration#internDirectoryPaths()} is enabled, or {@code dir} itself.
+   */
+  UnixPath internDirectory(UnixPath dir) {
+    return directories != null ? directories.intern(dir) : dir;
+  }
+
+  /**
+   * Discards the cached metadata and content of {@code file}, after it was changed through this
+   * file system.
+   */
+  void invalidate(BlobId file) {
+    statCache.invalidate(file);
+    blockCache.invalidate(file);
+  }
+
+  /**
+   * Discards all cached object metadata and content.
+   */
+  void invalidateAll() {
+    statCache.invalidateAll();
+    blockCache.invalidateAll();
+  }
+
   /**
    * Converts Cloud Storage object name to a {@link Path} object.
    */
@@ -158,12 +233,13 @@ public final class CloudStorageFileSystem extends FileSystem {
   }
 
   /**
-   * Does nothing currently. This method <i>might</i> be updated in the future to close all channels
-   * associated with this file system object. However it's unlikely that even then, calling this
-   * method will become mandatory.
+   * Discards cached object metadata and content, if any. This method <i>might</i> be updated in
+   * the future to close all channels associated with this file system object. However it's
+   * unlikely that even then, calling this method will become mandatory.
    */
   @Override
   public void close() throws IOException {
+    invalidateAll();
     // TODO(#809): Synchronously close all channels associated with this FileSystem instance.
   }
 
@@ -21,6 +21,7 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Strings.isNullOrEmpty;
 
 import com.google.auto.service.AutoService;
+import com.google.cloud.WriteChannel;
 import com.google.cloud.storage.Acl;
 import com.google.cloud.storage.Blob;
 import com.google.cloud.storage.BlobId;
@@ -33,13 +34,14 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Throwables;
 import com.google.common.collect.AbstractIterator;
-import com.google.common.primitives.Ints;
 
 import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
+import java.nio.channels.AsynchronousFileChannel;
 import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.AccessMode;
 import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.CopyOption;
@@ -67,6 +69,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
@@ -105,7 +108,9 @@ public final class CloudStorageFileSystemProvider extends FileSystemProvider {
     @Override
     protected Path computeNext() {
       while (blobIterator.hasNext()) {
-        Path path = fileSystem.getPath(blobIterator.next().name());
+        Blob blob = blobIterator.next();
+        fileSystem.statCache().put(blob);
+        Path path = fileSystem.getPath(blob.name());
         try {
           if (filter.accept(path)) {
             return path;
@@ -208,8 +213,47 @@ public final class CloudStorageFileSystemProvider extends FileSystemProvider {
     }
   }
 
+  /**
+   * Returns a read-only {@link AsynchronousFileChannel}, whose reads are sent as independent
+   * ranged requests on {@code executor}, or on a shared pool of daemon threads if
+   * {@code executor} is {@code null}.
+   */
+  @Override
+  public AsynchronousFileChannel newAsynchronousFileChannel(
+      Path path,
+      Set<? extends OpenOption> options,
+      @Nullable ExecutorService executor,
+      FileAttribute<?>... attrs) throws IOException {
+    checkNotNull(path);
+    CloudStorageUtil.checkNotNullArray(attrs);
+    BlobInfo blobInfo = getReadableBlob(CloudStorageUtil.checkPath(path), options);
+    return new CloudStorageAsynchronousFileChannel(
+        CloudStorageReadChannel.create(storage, blobInfo.blobId(), 0, blobInfo.size()),
+        executor != null ? executor : CloudStorageUtil.defaultExecutor());
+  }
+
   private SeekableByteChannel newReadChannel(Path path, Set<? extends OpenOption> options)
       throws IOException {
+    CloudStoragePath cloudPath = CloudStorageUtil.checkPath(path);
+    CloudStorageFileSystem fileSystem = cloudPath.getFileSystem();
+    BlobInfo blobInfo = getReadableBlob(cloudPath, options);
+    if (fileSystem.localCache().isEnabled()) {
+      SeekableByteChannel channel = fileSystem.localCache().open(storage, blobInfo);
+      if (channel != null) {
+        return channel;
+      }
+    }
+    if (fileSystem.blockCache().isEnabled()) {
+      return CloudStorageCachedReadChannel.create(storage, blobInfo, fileSystem.blockCache());
+    }
+    return CloudStorageReadChannel.create(storage, blobInfo.blobId(), 0, blobInfo.size());
+  }
+
+  /**
+   * Checks that {@code options} only allow reading, and returns the metadata of the object.
+   */
+  private BlobInfo getReadableBlob(CloudStoragePath cloudPath, Set<? extends OpenOption> options)
+      throws IOException {
     for (OpenOption option : options) {
       if (option instanceof StandardOpenOption) {
         switch ((StandardOpenOption) option) {
@@ -235,11 +279,15 @@ public final class CloudStorageFileSystemProvider extends FileSystemProvider {
         throw new UnsupportedOperationException(option.toString());
       }
     }
-    CloudStoragePath cloudPath = CloudStorageUtil.checkPath(path);
     if (cloudPath.seemsLikeADirectoryAndUsePseudoDirectories()) {
       throw new CloudStoragePseudoDirectoryException(cloudPath);
     }
-    return CloudStorageReadChannel.create(storage, cloudPath.getBlobId(), 0);
+    BlobId file = cloudPath.getBlobId();
+    BlobInfo blobInfo = cloudPath.getFileSystem().statCache().get(storage, file);
+    if (blobInfo == null) {
+      throw new NoSuchFileException(String.format("gs://%s/%s", file.bucket(), file.name()));
+    }
+    return blobInfo;
   }
 
   private SeekableByteChannel newWriteChannel(Path path, Set<? extends OpenOption> options)
@@ -249,10 +297,12 @@ public final class CloudStorageFileSystemProvider extends FileSystemProvider {
     if (cloudPath.seemsLikeADirectoryAndUsePseudoDirectories()) {
       throw new CloudStoragePseudoDirectoryException(cloudPath);
     }
-    BlobId file = cloudPath.getBlobId();
+    final BlobId file = cloudPath.getBlobId();
     BlobInfo.Builder infoBuilder = BlobInfo.builder(file);
     List<Storage.BlobWriteOption> writeOptions = new ArrayList<>();
     List<Acl> acls = new ArrayList<>();
+    final CloudStorageFileSystem fileSystem = cloudPath.getFileSystem();
+    int blockSize = fileSystem.config().blockSize();
 
     HashMap<String, String> metas = new HashMap<>();
     for (OpenOption option : options) {
@@ -270,7 +320,7 @@ public final class CloudStorageFileSystemProvider extends FileSystemProvider {
       } else if (option instanceof OptionAcl) {
         acls.add(((OptionAcl) option).acl());
       } else if (option instanceof OptionBlockSize) {
-        // TODO: figure out how to plumb in block size.
+        blockSize = ((OptionBlockSize) option).size();
       } else if (option instanceof StandardOpenOption) {
         switch ((StandardOpenOption) option) {
           case CREATE:
@@ -307,10 +357,24 @@ public final class CloudStorageFileSystemProvider extends FileSystemProvider {
       infoBuilder.acl(acls);
     }
 
+    fileSystem.invalidate(file);
     try {
+      WriteChannel writer = storage.writer(infoBuilder.build(),
+          writeOptions.toArray(new Storage.BlobWriteOption[writeOptions.size()]));
+      writer.chunkSize(blockSize);
+      WritableByteChannel channel = writer;
+      if (fileSystem.config().pipelineUploads()) {
+        channel = new CloudStoragePipelinedWriteChannel(
+            writer, CloudStorageUtil.defaultExecutor(), blockSize);
+      }
       return new CloudStorageWriteChannel(
-          storage.writer(infoBuilder.build(),
-              writeOptions.toArray(new Storage.BlobWriteOption[writeOptions.size()])));
+          channel,
+          new Runnable() {
+            @Override
+            public void run() {
+              fileSystem.invalidate(file);
+            }
+          });
     } catch (StorageException oops) {
       throw asIoException(oops);
     }
@@ -335,7 +399,11 @@ public final class CloudStorageFileSystemProvider extends FileSystemProvider {
     if (cloudPath.seemsLikeADirectoryAndUsePseudoDirectories()) {
       throw new CloudStoragePseudoDirectoryException(cloudPath);
     }
-    return storage.delete(cloudPath.getBlobId());
+    try {
+      return storage.delete(cloudPath.getBlobId());
+    } finally {
+      cloudPath.getFileSystem().invalidate(cloudPath.getBlobId());
+    }
   }
 
   @Override
@@ -412,14 +480,6 @@ public final class CloudStorageFileSystemProvider extends FileSystemProvider {
 
     CloudStoragePath fromPath = CloudStorageUtil.checkPath(source);
 
-    blockSize =
-        blockSize != -1
-            ? blockSize
-            : Ints.max(
-                fromPath.getFileSystem().config().blockSize(),
-                toPath.getFileSystem().config().blockSize());
-    // TODO: actually use blockSize
-
     if (fromPath.seemsLikeADirectory() && toPath.seemsLikeADirectory()) {
       if (fromPath.getFileSystem().config().usePseudoDirectories()
           && toPath.getFileSystem().config().usePseudoDirectories()) {
@@ -441,7 +501,7 @@ public final class CloudStorageFileSystemProvider extends FileSystemProvider {
 
     try {
       if (wantCopyAttributes) {
-        BlobInfo blobInfo = storage.get(fromPath.getBlobId());
+        BlobInfo blobInfo = fromPath.getFileSystem().statCache().get(storage, fromPath.getBlobId());
         if (null == blobInfo) {
           throw new NoSuchFileException(fromPath.toString());
         }
@@ -469,13 +529,110 @@ public final class CloudStorageFileSystemProvider extends FileSystemProvider {
       } else {
         copyReqBuilder = copyReqBuilder.target(tgtInfo, Storage.BlobTargetOption.doesNotExist());
       }
-      CopyWriter copyWriter = storage.copy(copyReqBuilder.build());
-      copyWriter.result();
+      if (blockSize != -1) {
+        // Otherwise let the server pick how much is rewritten by each request.
+        copyReqBuilder.megabytesCopiedPerChunk(megabytesPerChunk(blockSize));
+      }
+      try {
+        CopyWriter copyWriter = storage.copy(copyReqBuilder.build());
+        copyWriter.result();
+      } finally {
+        toPath.getFileSystem().invalidate(toPath.getBlobId());
+      }
     } catch (StorageException oops) {
       throw asIoException(oops);
     }
   }
 
+  /**
+   * Copies all the objects under the {@code source} directory to the same relative names under
+   * the {@code target} directory, and returns the number of objects copied. The objects are
+   * copied concurrently with server-side rewrites, so their content doesn't transit through this
+   * process, and their attributes are always copied. This is meant for large trees, e.g. to back
+   * up a directory:<pre>   {@code
+   *
+   *   CloudStorageFileSystem fs = CloudStorageFileSystem.forBucket("bucket");
+   *   fs.provider().copyTree(fs.getPath("data"), fs.getPath("backup/data"),
+   *       CloudStorageOptions.withParallelism(64));}</pre>
+   *
+   * <p>Supported options are {@link StandardCopyOption#REPLACE_EXISTING}, without which the copy
+   * fails if a target object exists, {@link StandardCopyOption#COPY_ATTRIBUTES},
+   * {@link CloudStorageOptions#withBlockSize(int)}, which sets the amount of data rewritten by each
+   * request (rounded down to a multiple of 1 MiB), {@link CloudStorageOptions#withParallelism(int)}
+   * and {@link CloudStorageOptions#withCopyListener(CloudStorageCopyListener)}.
+   *
+   * <p>If a copy fails, the objects already copied are left in place.
+   *
+   * @throws NoSuchFileException if there are no objects under {@code source}
+   * @throws FileAlreadyExistsException if a target object exists and
+   *     {@link StandardCopyOption#REPLACE_EXISTING} isn't specified
+   * @throws IllegalArgumentException if {@code target} is under {@code source}
+   */
+  public long copyTree(Path source, Path target, CopyOption... options) throws IOException {
+    return copyTree(source, target, false, options);
+  }
+
+  /**
+   * Moves all the objects under the {@code source} directory to the same relative names under the
+   * {@code target} directory, and returns the number of objects moved. This works like
+   * {@link #copyTree(Path, Path, CopyOption...)}, and then deletes the source objects with batch
+   * requests as they are copied.
+   *
+   * <p>If a copy fails, the objects already copied are deleted from {@code source} and the
+   * others are left in place.
+   *
+   * @throws AtomicMoveNotSupportedException if {@link StandardCopyOption#ATOMIC_MOVE} is specified
+   */
+  public long moveTree(Path source, Path target, CopyOption... options) throws IOException {
+    for (CopyOption option : options) {
+      if (option == StandardCopyOption.ATOMIC_MOVE) {
+        throw new AtomicMoveNotSupportedException(
+            source.toString(),
+            target.toString(),
+            "Google Cloud Storage does not support atomic move operations.");
+      }
+    }
+    return copyTree(source, target, true, options);
+  }
+
+  private long copyTree(Path source, Path target, boolean deleteSource, CopyOption... options)
+      throws IOException {
+    CloudStoragePath fromPath = CloudStorageUtil.checkPath(source);
+    CloudStoragePath toPath = CloudStorageUtil.checkPath(target);
+    boolean replaceExisting = false;
+    int parallelism = CloudStorageFileSystem.COPY_PARALLELISM_DEFAULT;
+    Long megabytesCopiedPerChunk = null;
+    CloudStorageCopyListener listener = null;
+    for (CopyOption option : options) {
+      if (option == StandardCopyOption.REPLACE_EXISTING) {
+        replaceExisting = true;
+      } else if (option == StandardCopyOption.COPY_ATTRIBUTES) {
+        // Rewrites always copy attributes.
+      } else if (option instanceof OptionBlockSize) {
+        megabytesCopiedPerChunk = megabytesPerChunk(((OptionBlockSize) option).size());
+      } else if (option instanceof OptionParallelism) {
+        parallelism = ((OptionParallelism) option).parallelism();
+      } else if (option instanceof OptionCopyListener) {
+        listener = ((OptionCopyListener) option).listener();
+      } else {
+        throw new UnsupportedOperationException(option.toString());
+      }
+    }
+    try {
+      return new CloudStorageTreeCopier(storage, fromPath, toPath, replaceExisting, deleteSource,
+          parallelism, megabytesCopiedPerChunk, listener).run();
+    } catch (StorageException oops) {
+      throw asIoException(oops);
+    }
+  }
+
+  /**
+   * Converts a block size to the number of megabytes rewritten by each request of a copy.
+   */
+  private static long megabytesPerChunk(int blockSize) {
+    return Math.max(1L, blockSize >> 20);
+  }
+
   @Override
   public boolean isSameFile(Path path, Path path2) {
     return CloudStorageUtil.checkPath(path).equals(CloudStorageUtil.checkPath(path2));
@@ -506,8 +663,16 @@ public final class CloudStorageFileSystemProvider extends FileSystemProvider {
     if (cloudPath.seemsLikeADirectoryAndUsePseudoDirectories()) {
       return;
     }
-    if (storage.get(cloudPath.getBlobId(), Storage.BlobGetOption.fields(Storage.BlobField.ID))
-        == null) {
+    CloudStorageStatCache statCache = cloudPath.getFileSystem().statCache();
+    BlobInfo blobInfo;
+    if (statCache.isEnabled()) {
+      // cached metadata is also used by other calls, so all fields are fetched
+      blobInfo = statCache.get(storage, cloudPath.getBlobId());
+    } else {
+      blobInfo =
+          storage.get(cloudPath.getBlobId(), Storage.BlobGetOption.fields(Storage.BlobField.ID));
+    }
+    if (blobInfo == null) {
       throw new NoSuchFileException(path.toString());
     }
   }
@@ -526,7 +691,7 @@ public final class CloudStorageFileSystemProvider extends FileSystemProvider {
       A result = (A) new CloudStoragePseudoDirectoryAttributes(cloudPath);
       return result;
     }
-    BlobInfo blobInfo = storage.get(cloudPath.getBlobId());
+    BlobInfo blobInfo = cloudPath.getFileSystem().statCache().get(storage, cloudPath.getBlobId());
     // null size indicate a file that we haven't closed yet, so GCS treats it as not there yet.
     if (null == blobInfo || blobInfo.size() == null) {
       throw new NoSuchFileException(
@@ -574,10 +739,17 @@ public final class CloudStorageFileSystemProvider extends FileSystemProvider {
   public DirectoryStream<Path> newDirectoryStream(Path dir, final Filter<? super Path> filter) {
     final CloudStoragePath cloudPath = CloudStorageUtil.checkPath(dir);
     checkNotNull(filter);
+    if (cloudPath.getFileSystem().config().recursiveListings()) {
+      return cloudPath.getFileSystem().treeLister().newDirectoryStream(storage, cloudPath, filter);
+    }
     String prefix = cloudPath.toString();
+    // if metadata is cached, list all the fields to populate the cache
+    Storage.BlobListOption fields = cloudPath.getFileSystem().statCache().isEnabled()
+        ? Storage.BlobListOption.fields(Storage.BlobField.values())
+        : Storage.BlobListOption.fields();
     final Iterator<Blob> blobIterator = storage.list(cloudPath.bucket(),
         Storage.BlobListOption.prefix(prefix), Storage.BlobListOption.currentDirectory(),
-        Storage.BlobListOption.fields()).iterateAll();
+        fields).iterateAll();
     return new DirectoryStream<Path>() {
       @Override
       public Iterator<Path> iterator() {
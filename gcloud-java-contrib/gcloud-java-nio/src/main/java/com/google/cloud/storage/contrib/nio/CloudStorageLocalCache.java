@@ -0,0 +1,259 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.storage.contrib.nio;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.cloud.ReadChannel;
+import com.google.cloud.storage.BlobId;
+import com.google.cloud.storage.BlobInfo;
+import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.StorageException;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.hash.Hashing;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Cache of whole objects in a local directory, configured by
+ * {@link CloudStorageConfiguration#localCacheDirectory()}.
+ *
+ * <p>Each object generation is stored in a file named after a hash of its bucket, name and
+ * generation. Files are downloaded to a temporary file, checked against the size and checksum of
+ * the object, and then atomically renamed, so readers only ever see complete files. Reading a file
+ * sets its last modified time, and after each download the files read least recently are deleted
+ * until the directory fits in {@link CloudStorageConfiguration#localCacheBytes()}. The cache keeps
+ * no state in memory, so it can be shared by several file systems and processes.
+ *
+ * @see CloudStorageMappedReadChannel
+ */
+@ThreadSafe
+final class CloudStorageLocalCache {
+
+  private static final String SUFFIX = ".blob";
+
+  // downloads in progress in this process, held by the downloading channel until its file is
+  // renamed, so that other channels wait for it instead of downloading the same generation
+  private static final ConcurrentMap<Path, Lock> DOWNLOADS = new ConcurrentHashMap<>();
+
+  @Nullable
+  private final Path directory;
+  private final long maxBytes;
+  private final int blockSize;
+
+  private CloudStorageLocalCache(@Nullable Path directory, long maxBytes, int blockSize) {
+    this.directory = directory;
+    this.maxBytes = maxBytes;
+    this.blockSize = blockSize;
+  }
+
+  /**
+   * Returns a cache configured by {@code config}, which doesn't cache anything if
+   * {@link CloudStorageConfiguration#localCacheDirectory()} is {@code null}.
+   */
+  static CloudStorageLocalCache create(CloudStorageConfiguration config) {
+    String directory = config.localCacheDirectory();
+    return create(directory != null ? Paths.get(directory) : null, config.localCacheBytes(),
+        config.blockSize());
+  }
+
+  @VisibleForTesting
+  static CloudStorageLocalCache create(@Nullable Path directory, long maxBytes, int blockSize) {
+    return new CloudStorageLocalCache(directory, maxBytes, blockSize);
+  }
+
+  /**
+   * Returns {@code true} if this cache stores objects, {@code false} if channels should read
+   * objects directly.
+   */
+  boolean isEnabled() {
+    return directory != null;
+  }
+
+  /**
+   * Returns a channel reading the generation of {@code blobInfo} from its cached file, downloading
+   * it first if it isn't cached. Returns {@code null} if the object can't be cached, because its
+   * generation or size isn't known or it is larger than the cache.
+   *
+   * @throws IOException if the download fails, or if the downloaded content doesn't match the
+   *     size or checksum of {@code blobInfo}
+   */
+  @Nullable
+  SeekableByteChannel open(Storage gcsStorage, BlobInfo blobInfo) throws IOException {
+    if (directory == null || blobInfo.generation() == null || blobInfo.size() == null
+        || blobInfo.size() > maxBytes) {
+      return null;
+    }
+    Path file = directory.resolve(fileName(blobInfo.blobId()));
+    while (true) {
+      SeekableByteChannel channel = openCached(file, blobInfo.size());
+      if (channel != null) {
+        return channel;
+      }
+      Lock download = new ReentrantLock();
+      download.lock();
+      Lock inProgress = DOWNLOADS.putIfAbsent(file, download);
+      if (inProgress == null) {
+        try {
+          // another channel may have renamed its download since we looked
+          channel = openCached(file, blobInfo.size());
+          if (channel != null) {
+            return channel;
+          }
+          download(gcsStorage, blobInfo, file);
+          channel = CloudStorageMappedReadChannel.create(file);
+        } finally {
+          DOWNLOADS.remove(file, download);
+          download.unlock();
+        }
+        // the file stays mapped if it's evicted by another process meanwhile
+        evict();
+        return channel;
+      }
+      // wait for the other download, then open its file or download it if it failed
+      inProgress.lock();
+      inProgress.unlock();
+    }
+  }
+
+  @VisibleForTesting
+  static String fileName(BlobId blob) {
+    return Hashing.sha256().newHasher()
+        .putString(blob.bucket(), UTF_8)
+        .putByte((byte) 0)
+        .putString(blob.name(), UTF_8)
+        .putByte((byte) 0)
+        .putLong(blob.generation())
+        .hash() + SUFFIX;
+  }
+
+  @Nullable
+  private static SeekableByteChannel openCached(Path file, long size) throws IOException {
+    SeekableByteChannel channel;
+    try {
+      channel = CloudStorageMappedReadChannel.create(file);
+    } catch (NoSuchFileException e) {
+      return null;
+    }
+    if (channel.size() != size) {
+      // changed behind our back
+      channel.close();
+      Files.deleteIfExists(file);
+      return null;
+    }
+    try {
+      Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+    } catch (NoSuchFileException e) {
+      // evicted by another process, but still mapped
+    }
+    return channel;
+  }
+
+  private void download(Storage gcsStorage, BlobInfo blobInfo, Path file) throws IOException {
+    Files.createDirectories(directory);
+    Path temp = Files.createTempFile(directory, "download-", ".tmp");
+    try {
+      long size = 0;
+      // the reader validates the content against the CRC32C, or MD5, checksum of blobInfo
+      try (ReadChannel reader = gcsStorage.reader(blobInfo);
+          FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+        reader.chunkSize(blockSize);
+        ByteBuffer buffer = ByteBuffer.allocate(blockSize);
+        int read;
+        while ((read = reader.read(buffer)) >= 0) {
+          buffer.flip();
+          while (buffer.hasRemaining()) {
+            out.write(buffer);
+          }
+          buffer.clear();
+          size += read;
+        }
+      } catch (StorageException e) {
+        throw new IOException(e.getMessage(), e);
+      }
+      BlobId blob = blobInfo.blobId();
+      if (size != blobInfo.size()) {
+        throw new IOException(String.format("Read %d bytes of gs://%s/%s#%d, expected %d", size,
+            blob.bucket(), blob.name(), blob.generation(), blobInfo.size()));
+      }
+      Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  /**
+   * Deletes the files read least recently until the cache fits in its size.
+   */
+  private void evict() throws IOException {
+    final Map<Path, BasicFileAttributes> files = new HashMap<>();
+    long total = 0;
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+      for (Path file : stream) {
+        try {
+          BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+          files.put(file, attributes);
+          total += attributes.size();
+        } catch (NoSuchFileException e) {
+          // evicted by another process
+        }
+      }
+    }
+    if (total <= maxBytes) {
+      return;
+    }
+    List<Path> leastRecentlyUsed = new ArrayList<>(files.keySet());
+    Collections.sort(leastRecentlyUsed, new Comparator<Path>() {
+      @Override
+      public int compare(Path a, Path b) {
+        return files.get(a).lastModifiedTime().compareTo(files.get(b).lastModifiedTime());
+      }
+    });
+    for (Path file : leastRecentlyUsed) {
+      if (total <= maxBytes) {
+        break;
+      }
+      Files.deleteIfExists(file);
+      total -= files.get(file).size();
+    }
+  }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.storage.contrib.nio;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import javax.annotation.CheckReturnValue;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Read channel over a local file mapped in memory, used to read objects from a
+ * {@link CloudStorageLocalCache}. Files larger than 1 GiB are mapped in several segments.
+ *
+ * <p>Mappings can't be released explicitly: closing the channel only drops its references to
+ * them, and the memory is unmapped once they are garbage collected. The mapped file may be
+ * deleted while the channel is open.
+ */
+@ThreadSafe
+final class CloudStorageMappedReadChannel implements SeekableByteChannel {
+
+  private static final int SEGMENT_SIZE = 1 << 30;
+
+  private final long size;
+  private final int segmentSize;
+  private MappedByteBuffer[] segments;
+  private long position;
+
+  @CheckReturnValue
+  static CloudStorageMappedReadChannel create(Path file) throws IOException {
+    return create(file, SEGMENT_SIZE);
+  }
+
+  @VisibleForTesting
+  static CloudStorageMappedReadChannel create(Path file, int segmentSize) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long size = channel.size();
+      MappedByteBuffer[] segments =
+          new MappedByteBuffer[(int) ((size + segmentSize - 1) / segmentSize)];
+      for (int i = 0; i < segments.length; i++) {
+        long start = (long) i * segmentSize;
+        segments[i] = channel.map(
+            FileChannel.MapMode.READ_ONLY, start, Math.min(segmentSize, size - start));
+      }
+      return new CloudStorageMappedReadChannel(size, segmentSize, segments);
+    }
+  }
+
+  private CloudStorageMappedReadChannel(
+      long size, int segmentSize, MappedByteBuffer[] segments) {
+    this.size = size;
+    this.segmentSize = segmentSize;
+    this.segments = segments;
+  }
+
+  @Override
+  public boolean isOpen() {
+    synchronized (this) {
+      return segments != null;
+    }
+  }
+
+  @Override
+  public void close() {
+    synchronized (this) {
+      segments = null;
+    }
+  }
+
+  @Override
+  public int read(ByteBuffer dst) throws IOException {
+    synchronized (this) {
+      checkOpen();
+      if (position >= size) {
+        return -1;
+      }
+      int amt = 0;
+      while (dst.hasRemaining() && position < size) {
+        ByteBuffer segment = segments[(int) (position / segmentSize)].duplicate();
+        segment.position((int) (position % segmentSize));
+        if (segment.remaining() > dst.remaining()) {
+          segment.limit(segment.position() + dst.remaining());
+        }
+        int length = segment.remaining();
+        dst.put(segment);
+        position += length;
+        amt += length;
+      }
+      return amt;
+    }
+  }
+
+  @Override
+  public long size() throws IOException {
+    synchronized (this) {
+      checkOpen();
+      return size;
+    }
+  }
+
+  @Override
+  public long position() throws IOException {
+    synchronized (this) {
+      checkOpen();
+      return position;
+    }
+  }
+
+  @Override
+  public SeekableByteChannel position(long newPosition) throws IOException {
+    checkArgument(newPosition >= 0);
+    synchronized (this) {
+      checkOpen();
+      position = newPosition;
+      return this;
+    }
+  }
+
+  @Override
+  public int write(ByteBuffer src) throws IOException {
+    throw new NonWritableChannelException();
+  }
+
+  @Override
+  public SeekableByteChannel truncate(long size) throws IOException {
+    throw new NonWritableChannelException();
+  }
+
+  private void checkOpen() throws ClosedChannelException {
+    if (segments == null) {
+      throw new ClosedChannelException();
+    }
+  }
+}
@@ -16,6 +16,9 @@
 
 package com.google.cloud.storage.contrib.nio;
 
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
 import com.google.cloud.storage.Acl;
 
 /**
@@ -83,13 +86,36 @@ public final class CloudStorageOptions {
   }
 
   /**
-   * Sets the block size (in bytes) when talking to the Google Cloud Storage server.
+   * Sets the block size (in bytes) when talking to the Google Cloud Storage server. When writing,
+   * this is the size of each uploaded chunk, rounded down to a multiple of 256 KiB. When copying,
+   * this is the amount of data rewritten by each request, rounded down to whole megabytes.
    *
-   * <p>The default is {@value CloudStorageFileSystem#BLOCK_SIZE_DEFAULT}.
+   * <p>The default is {@link CloudStorageConfiguration#blockSize()} when reading and writing,
+   * while copies let the server decide.
    */
   public static CloudStorageOption.OpenCopy withBlockSize(int size) {
     return OptionBlockSize.create(size);
   }
 
+  /**
+   * Sets the maximum number of objects copied concurrently by
+   * {@link CloudStorageFileSystemProvider#copyTree} and
+   * {@link CloudStorageFileSystemProvider#moveTree}.
+   *
+   * <p>The default is {@value CloudStorageFileSystem#COPY_PARALLELISM_DEFAULT}.
+   */
+  public static CloudStorageOption.Copy withParallelism(int parallelism) {
+    checkArgument(parallelism > 0, "parallelism must be > 0: %s", parallelism);
+    return OptionParallelism.create(parallelism);
+  }
+
+  /**
+   * Sets a listener notified of the progress of {@link CloudStorageFileSystemProvider#copyTree}
+   * and {@link CloudStorageFileSystemProvider#moveTree}.
+   */
+  public static CloudStorageOption.Copy withCopyListener(CloudStorageCopyListener listener) {
+    return OptionCopyListener.create(checkNotNull(listener));
+  }
+
   private CloudStorageOptions() {}
 }
@@ -59,8 +59,12 @@ public final class CloudStoragePath implements Path {
   }
 
   static CloudStoragePath getPath(CloudStorageFileSystem fileSystem, String path, String... more) {
-    return new CloudStoragePath(
-        fileSystem, UnixPath.getPath(fileSystem.config().permitEmptyPathComponents(), path, more));
+    UnixPath unixPath =
+        UnixPath.getPath(fileSystem.config().permitEmptyPathComponents(), path, more);
+    if (unixPath.hasTrailingSeparator()) {
+      unixPath = fileSystem.internDirectory(unixPath);
+    }
+    return new CloudStoragePath(fileSystem, unixPath);
   }
 
   /**
@@ -180,7 +184,8 @@ public final class CloudStoragePath implements Path {
   @Nullable
   @Override
   public CloudStoragePath getParent() {
-    return newPath(path.getParent());
+    UnixPath parent = path.getParent();
+    return newPath(parent != null ? fileSystem.internDirectory(parent) : null);
   }
 
   @Nullable
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.storage.contrib.nio;
+
+import com.google.cloud.WriteChannel;
+import com.google.common.base.Throwables;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Channel that writes to a Cloud Storage {@link WriteChannel} with two buffers of
+ * {@code blockSize} bytes: while one block is uploaded on an executor, the caller fills the other
+ * one. Writes only block when the caller gets a full block ahead of the network.
+ *
+ * <p>If an upload fails, the next write or {@link #close()} throws its failure, and the underlying
+ * channel is never closed, so that the object isn't created with missing content.
+ *
+ * @see CloudStorageConfiguration#pipelineUploads()
+ */
+@NotThreadSafe
+final class CloudStoragePipelinedWriteChannel implements WritableByteChannel {
+
+  private final WriteChannel channel;
+  private final ExecutorService executor;
+  private final int blockSize;
+  private ByteBuffer buffer;
+  @Nullable private ByteBuffer spare;
+  @Nullable private Future<Void> upload;
+  private boolean open = true;
+
+  CloudStoragePipelinedWriteChannel(WriteChannel channel, ExecutorService executor, int blockSize) {
+    this.channel = channel;
+    this.executor = executor;
+    this.blockSize = blockSize;
+    this.buffer = ByteBuffer.allocate(blockSize);
+  }
+
+  @Override
+  public boolean isOpen() {
+    return open;
+  }
+
+  @Override
+  public int write(ByteBuffer src) throws IOException {
+    if (!open) {
+      throw new ClosedChannelException();
+    }
+    int amt = src.remaining();
+    while (src.hasRemaining()) {
+      int length = Math.min(src.remaining(), buffer.remaining());
+      ByteBuffer slice = src.slice();
+      slice.limit(length);
+      buffer.put(slice);
+      src.position(src.position() + length);
+      if (!buffer.hasRemaining()) {
+        uploadBuffer();
+      }
+    }
+    return amt;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (!open) {
+      return;
+    }
+    open = false;
+    awaitUpload();
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer = null;
+    spare = null;
+    channel.close();
+  }
+
+  /**
+   * Waits for the previous upload, and then uploads the current buffer in the background and
+   * switches to the other buffer.
+   */
+  private void uploadBuffer() throws IOException {
+    awaitUpload();
+    final ByteBuffer block = buffer;
+    block.flip();
+    buffer = spare != null ? spare : ByteBuffer.allocate(blockSize);
+    spare = block;
+    upload = executor.submit(new Callable<Void>() {
+      @Override
+      public Void call() throws IOException {
+        while (block.hasRemaining()) {
+          channel.write(block);
+        }
+        block.clear();
+        return null;
+      }
+    });
+  }
+
+  /**
+   * Waits for the pending upload, if any. If it failed, closes this channel and throws its
+   * failure.
+   */
+  private void awaitUpload() throws IOException {
+    if (upload == null) {
+      return;
+    }
+    try {
+      upload.get();
+      upload = null;
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      open = false;
+      throw new InterruptedIOException("Interrupted while uploading a block");
+    } catch (ExecutionException ex) {
+      open = false;
+      Throwables.propagateIfInstanceOf(ex.getCause(), IOException.class);
+      throw Throwables.propagate(ex.getCause());
+    }
+  }
+}
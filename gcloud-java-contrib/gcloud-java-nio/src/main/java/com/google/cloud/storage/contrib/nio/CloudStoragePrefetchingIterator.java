@@ -0,0 +1,119 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.storage.contrib.nio;
+
+import com.google.cloud.Page;
+import com.google.cloud.storage.Blob;
+import com.google.cloud.storage.Storage;
+import com.google.common.base.Throwables;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableList;
+
+import java.io.Closeable;
+import java.io.InterruptedIOException;
+import java.nio.file.DirectoryIteratorException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Iterator over the objects returned by a listing, whose pages are fetched in the background up
+ * to {@value #PREFETCH_PAGES} pages ahead of the caller. Closing the iterator stops the background
+ * listing.
+ */
+@NotThreadSafe
+final class CloudStoragePrefetchingIterator extends AbstractIterator<Blob> implements Closeable {
+
+  /**
+   * Number of pages fetched but not yet iterated, after which the background listing waits.
+   */
+  static final int PREFETCH_PAGES = 2;
+
+  private final BlockingQueue<Iterator<Blob>> pages = new ArrayBlockingQueue<>(PREFETCH_PAGES);
+  private final Iterator<Blob> endOfPages = new ArrayList<Blob>().iterator();
+  private final Future<?> fetcher;
+  private volatile Throwable failure;
+  private volatile boolean closed;
+  private Iterator<Blob> page = ImmutableList.<Blob>of().iterator();
+
+  CloudStoragePrefetchingIterator(final Storage storage, final String bucket,
+      ExecutorService executor, final Storage.BlobListOption... options) {
+    fetcher = executor.submit(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          try {
+            Page<Blob> page = storage.list(bucket, options);
+            while (page != null) {
+              pages.put(page.values().iterator());
+              page = page.nextPage();
+            }
+          } catch (RuntimeException | Error ex) {
+            failure = ex;
+          }
+          pages.put(endOfPages);
+        } catch (InterruptedException ex) {
+          // closed
+        }
+      }
+    });
+  }
+
+  /**
+   * Returns the next object, waiting for its page if needed.
+   *
+   * @throws com.google.cloud.storage.StorageException if the listing failed
+   */
+  @Override
+  protected Blob computeNext() {
+    if (closed) {
+      return endOfData();
+    }
+    while (!page.hasNext()) {
+      if (page == endOfPages) {
+        return endOfData();
+      }
+      try {
+        page = pages.take();
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        throw new DirectoryIteratorException(
+            new InterruptedIOException("Interrupted while listing objects"));
+      }
+      if (page == endOfPages && failure != null) {
+        throw Throwables.propagate(failure);
+      }
+    }
+    return page.next();
+  }
+
+  /**
+   * Stops the background listing. The iterator then ends, even if objects are left.
+   */
+  @Override
+  public void close() {
+    closed = true;
+    fetcher.cancel(true);
+    pages.clear();
+    pages.offer(endOfPages);
+  }
+}
@@ -22,6 +22,7 @@ import com.google.cloud.ReadChannel;
 import com.google.cloud.storage.BlobId;
 import com.google.cloud.storage.BlobInfo;
 import com.google.cloud.storage.Storage;
+import com.google.common.primitives.Ints;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
@@ -41,6 +42,8 @@ import javax.annotation.concurrent.ThreadSafe;
 @ThreadSafe
 final class CloudStorageReadChannel implements SeekableByteChannel {
 
+  private final Storage gcsStorage;
+  private final BlobId file;
   private final ReadChannel channel;
   private long position;
   private long size;
@@ -50,15 +53,27 @@ final class CloudStorageReadChannel implements SeekableByteChannel {
   static CloudStorageReadChannel create(Storage gcsStorage, BlobId file, long position)
       throws IOException {
     // XXX: Reading size and opening file should be atomic.
-    long size = fetchSize(gcsStorage, file);
+    return create(gcsStorage, file, position, fetchSize(gcsStorage, file));
+  }
+
+  /**
+   * Creates a channel for an object whose size is already known, e.g. from cached metadata.
+   */
+  @CheckReturnValue
+  @SuppressWarnings("resource")
+  static CloudStorageReadChannel create(
+      Storage gcsStorage, BlobId file, long position, long size) throws IOException {
     ReadChannel channel = gcsStorage.reader(file);
     if (position > 0) {
       channel.seek((int) position);
     }
-    return new CloudStorageReadChannel(position, size, channel);
+    return new CloudStorageReadChannel(gcsStorage, file, position, size, channel);
   }
 
-  private CloudStorageReadChannel(long position, long size, ReadChannel channel) {
+  private CloudStorageReadChannel(
+      Storage gcsStorage, BlobId file, long position, long size, ReadChannel channel) {
+    this.gcsStorage = gcsStorage;
+    this.file = file;
     this.position = position;
     this.size = size;
     this.channel = channel;
@@ -94,6 +109,43 @@ final class CloudStorageReadChannel implements SeekableByteChannel {
     }
   }
 
+  /**
+   * Reads bytes into {@code dst} starting at {@code position} in the object, like
+   * {@link java.nio.channels.FileChannel#read(ByteBuffer, long)}. The bytes are fetched with a
+   * ranged request of their own, so the position of this channel isn't changed and concurrent
+   * calls don't wait for each other.
+   *
+   * @return the number of bytes read, or -1 if {@code position} is at or past the end of the
+   *     object
+   */
+  public int read(ByteBuffer dst, long position) throws IOException {
+    checkArgument(position >= 0);
+    long size;
+    synchronized (this) {
+      checkOpen();
+      size = this.size;
+    }
+    if (position >= size) {
+      return -1;
+    }
+    if (!dst.hasRemaining()) {
+      return 0;
+    }
+    int amt = 0;
+    try (ReadChannel rangeChannel = gcsStorage.reader(file)) {
+      rangeChannel.seek(position);
+      rangeChannel.chunkSize(Ints.saturatedCast(Math.min(dst.remaining(), size - position)));
+      while (dst.hasRemaining()) {
+        int read = rangeChannel.read(dst);
+        if (read < 0) {
+          break;
+        }
+        amt += read;
+      }
+    }
+    return amt > 0 ? amt : -1;
+  }
+
   @Override
   public long size() throws IOException {
     synchronized (this) {
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.storage.contrib.nio;
+
+import com.google.cloud.storage.BlobId;
+import com.google.cloud.storage.BlobInfo;
+import com.google.cloud.storage.Storage;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Optional;
+import com.google.common.base.Throwables;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Cache of object metadata for a {@link CloudStorageFileSystem}, so that a sequence of metadata
+ * lookups for the same object, e.g. {@code Files.exists}, {@code Files.size} then
+ * {@code Files.newByteChannel}, costs a single RPC. Objects that don't exist are cached as well.
+ *
+ * <p>Entries expire {@link CloudStorageConfiguration#statCacheTtlMillis()} milliseconds after they
+ * were loaded, so changes made by other clients are visible after at most that long. Changes made
+ * through {@link CloudStorageFileSystemProvider} invalidate the affected entries immediately.
+ *
+ * @see CloudStorageConfiguration#statCacheSize()
+ */
+@ThreadSafe
+final class CloudStorageStatCache {
+
+  private static final CloudStorageStatCache DISABLED = new CloudStorageStatCache(null);
+
+  @Nullable
+  private final Cache<BlobId, Optional<BlobInfo>> cache;
+
+  private CloudStorageStatCache(@Nullable Cache<BlobId, Optional<BlobInfo>> cache) {
+    this.cache = cache;
+  }
+
+  /**
+   * Returns a cache configured by {@code config}, which doesn't cache anything if
+   * {@link CloudStorageConfiguration#statCacheSize()} is zero.
+   */
+  static CloudStorageStatCache create(CloudStorageConfiguration config) {
+    return create(config.statCacheSize(), config.statCacheTtlMillis(), Ticker.systemTicker());
+  }
+
+  @VisibleForTesting
+  static CloudStorageStatCache create(int size, long ttlMillis, Ticker ticker) {
+    if (size <= 0 || ttlMillis <= 0) {
+      return DISABLED;
+    }
+    return new CloudStorageStatCache(CacheBuilder.newBuilder()
+        .maximumSize(size)
+        .expireAfterWrite(ttlMillis, TimeUnit.MILLISECONDS)
+        .ticker(ticker)
+        .<BlobId, Optional<BlobInfo>>build());
+  }
+
+  /**
+   * Returns {@code true} if this cache stores metadata, {@code false} if every lookup is sent to
+   * the service.
+   */
+  boolean isEnabled() {
+    return cache != null;
+  }
+
+  /**
+   * Returns the metadata of {@code blob}, or {@code null} if it doesn't exist, loading it with
+   * {@code storage} if it isn't cached.
+   */
+  @Nullable
+  BlobInfo get(final Storage storage, BlobId blob) {
+    if (cache == null) {
+      return storage.get(blob);
+    }
+    final BlobId key = key(blob);
+    try {
+      return cache.get(key, new Callable<Optional<BlobInfo>>() {
+        @Override
+        public Optional<BlobInfo> call() {
+          return Optional.<BlobInfo>fromNullable(storage.get(key));
+        }
+      }).orNull();
+    } catch (ExecutionException | UncheckedExecutionException ex) {
+      throw Throwables.propagate(ex.getCause());
+    }
+  }
+
+  /**
+   * Caches metadata obtained by other means, e.g. when listing a directory. Pseudo-directories and
+   * objects with no size, as returned by listings that only request some fields, are ignored.
+   */
+  void put(BlobInfo blobInfo) {
+    if (cache != null && !blobInfo.isDirectory() && blobInfo.size() != null) {
+      cache.put(key(blobInfo.blobId()), Optional.of(blobInfo));
+    }
+  }
+
+  /**
+   * Discards the cached metadata of {@code blob}, if any.
+   */
+  void invalidate(BlobId blob) {
+    if (cache != null) {
+      cache.invalidate(key(blob));
+    }
+  }
+
+  /**
+   * Discards all cached metadata.
+   */
+  void invalidateAll() {
+    if (cache != null) {
+      cache.invalidateAll();
+    }
+  }
+
+  private static BlobId key(BlobId blob) {
+    return blob.generation() == null ? blob : BlobId.of(blob.bucket(), blob.name());
+  }
+}
@@ -0,0 +1,250 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.storage.contrib.nio;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.cloud.storage.Blob;
+import com.google.cloud.storage.BlobId;
+import com.google.cloud.storage.CopyWriter;
+import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.StorageBatch;
+import com.google.cloud.storage.StorageBatchResult;
+import com.google.cloud.storage.StorageException;
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.io.InterruptedIOException;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.annotation.Nullable;
+
+/**
+ * Copies or moves all the objects under a directory with server-side rewrites, running up to
+ * {@code parallelism} rewrites at a time. Each rewrite is driven one chunk at a time, so that
+ * progress can be reported for large objects. When moving, source objects are deleted in batches
+ * once they have been copied. Each copy reads the generation of the source object that was listed,
+ * and each delete only succeeds if that generation is still the live one, so that an object
+ * overwritten while being moved is never deleted.
+ *
+ * @see CloudStorageFileSystemProvider#copyTree
+ * @see CloudStorageFileSystemProvider#moveTree
+ */
+final class CloudStorageTreeCopier {
+
+  /**
+   * Number of deletes sent in one batch request, the maximum allowed by Cloud Storage.
+   */
+  private static final int DELETE_BATCH_SIZE = 100;
+
+  private final Storage storage;
+  private final CloudStoragePath source;
+  private final CloudStoragePath target;
+  private final String sourcePrefix;
+  private final String targetPrefix;
+  private final boolean replaceExisting;
+  private final boolean deleteSource;
+  private final int parallelism;
+  @Nullable private final Long megabytesCopiedPerChunk;
+  @Nullable private final CloudStorageCopyListener listener;
+  private final List<BlobId> toDelete = new ArrayList<>();
+
+  CloudStorageTreeCopier(
+      Storage storage,
+      CloudStoragePath source,
+      CloudStoragePath target,
+      boolean replaceExisting,
+      boolean deleteSource,
+      int parallelism,
+      @Nullable Long megabytesCopiedPerChunk,
+      @Nullable CloudStorageCopyListener listener) {
+    this.storage = storage;
+    this.source = source;
+    this.target = target;
+    this.sourcePrefix = prefix(source);
+    this.targetPrefix = prefix(target);
+    checkArgument(
+        !source.bucket().equals(target.bucket()) || !targetPrefix.startsWith(sourcePrefix),
+        "Can't copy %s into itself: %s", source, target);
+    this.replaceExisting = replaceExisting;
+    this.deleteSource = deleteSource;
+    this.parallelism = parallelism;
+    this.megabytesCopiedPerChunk = megabytesCopiedPerChunk;
+    this.listener = listener;
+  }
+
+  /**
+   * Copies the objects, and returns how many were copied.
+   *
+   * @throws StorageException if listing, copying or deleting fails. Objects copied before the
+   *     failure are not rolled back; when moving, they are deleted from the source.
+   */
+  long run() throws NoSuchFileException, InterruptedIOException {
+    ExecutorService executor = Executors.newFixedThreadPool(parallelism,
+        new ThreadFactoryBuilder().setDaemon(true).setNameFormat("cloud-storage-copy-%d").build());
+    CompletionService<BlobId> completionService = new ExecutorCompletionService<>(executor);
+    StorageException failure = null;
+    long submitted = 0;
+    long copied = 0;
+    try {
+      Iterator<Blob> blobs = storage.list(source.bucket(),
+          Storage.BlobListOption.prefix(sourcePrefix),
+          Storage.BlobListOption.fields(Storage.BlobField.GENERATION))
+          .iterateAll();
+      while (failure == null && blobs.hasNext()) {
+        final BlobId blobId = blobs.next().blobId();
+        completionService.submit(new Callable<BlobId>() {
+          @Override
+          public BlobId call() {
+            return copy(blobId);
+          }
+        });
+        submitted++;
+        // bound the number of pending copies, since trees may hold millions of objects
+        if (submitted - copied >= 2 * parallelism) {
+          failure = complete(completionService.take());
+          copied++;
+        }
+      }
+      while (copied < submitted) {
+        StorageException exception = complete(completionService.take());
+        failure = failure != null ? failure : exception;
+        copied++;
+      }
+      if (deleteSource) {
+        StorageException exception = deletePending();
+        failure = failure != null ? failure : exception;
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while copying " + source);
+    } finally {
+      executor.shutdownNow();
+      source.getFileSystem().invalidateAll();
+      target.getFileSystem().invalidateAll();
+    }
+    if (failure != null) {
+      throw failure;
+    }
+    if (submitted == 0) {
+      throw new NoSuchFileException(source.toString());
+    }
+    return submitted;
+  }
+
+  /**
+   * Copies the generation of the object identified by {@code sourceBlob}, and returns its id.
+   */
+  private BlobId copy(BlobId sourceBlob) {
+    String relativeName = sourceBlob.name().substring(sourcePrefix.length());
+    Storage.CopyRequest.Builder request = Storage.CopyRequest.builder()
+        .source(sourceBlob)
+        .target(BlobId.of(target.bucket(), targetPrefix + relativeName));
+    if (!replaceExisting) {
+      request.targetOptions(Storage.BlobTargetOption.doesNotExist());
+    }
+    if (megabytesCopiedPerChunk != null) {
+      request.megabytesCopiedPerChunk(megabytesCopiedPerChunk);
+    }
+    CopyWriter copyWriter = storage.copy(request.build());
+    CloudStoragePath sourcePath = null;
+    CloudStoragePath targetPath = null;
+    if (listener != null) {
+      sourcePath = source.resolve(relativeName);
+      targetPath = target.resolve(relativeName);
+      listener.onProgress(
+          sourcePath, targetPath, copyWriter.totalBytesCopied(), copyWriter.blobSize());
+    }
+    while (!copyWriter.isDone()) {
+      copyWriter.copyChunk();
+      if (listener != null) {
+        listener.onProgress(
+            sourcePath, targetPath, copyWriter.totalBytesCopied(), copyWriter.blobSize());
+      }
+    }
+    return sourceBlob;
+  }
+
+  /**
+   * Waits for a copy, schedules the deletion of its source if moving, and returns its failure.
+   */
+  @Nullable
+  private StorageException complete(Future<BlobId> copy) throws InterruptedException {
+    BlobId copied;
+    try {
+      copied = copy.get();
+    } catch (ExecutionException ex) {
+      if (ex.getCause() instanceof StorageException) {
+        return (StorageException) ex.getCause();
+      }
+      throw Throwables.propagate(ex.getCause());
+    }
+    if (deleteSource) {
+      toDelete.add(copied);
+      if (toDelete.size() == DELETE_BATCH_SIZE) {
+        return deletePending();
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Deletes the copied source objects with a batch request, and returns the first failure.
+   * Objects overwritten since they were listed are not deleted, and fail with a precondition error.
+   */
+  @Nullable
+  private StorageException deletePending() {
+    if (toDelete.isEmpty()) {
+      return null;
+    }
+    StorageBatch batch = storage.batch();
+    List<StorageBatchResult<Boolean>> results = new ArrayList<>(toDelete.size());
+    for (BlobId blob : toDelete) {
+      results.add(blob.generation() != null
+          ? batch.delete(blob, Storage.BlobSourceOption.generationMatch())
+          : batch.delete(blob));
+    }
+    toDelete.clear();
+    batch.submit();
+    for (StorageBatchResult<Boolean> result : results) {
+      try {
+        result.get();
+      } catch (StorageException ex) {
+        return ex;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns the object name prefix of the objects under {@code dir}.
+   */
+  private static String prefix(CloudStoragePath dir) {
+    String name = dir.getBlobId().name();
+    return name.isEmpty() || name.endsWith("/") ? name : name + "/";
+  }
+}
@@ -0,0 +1,290 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.storage.contrib.nio;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.cloud.storage.Blob;
+import com.google.cloud.storage.Storage;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.PeekingIterator;
+
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ConcurrentModificationException;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Lists the directories of a {@link CloudStorageFileSystem} with flat listings, when
+ * {@link CloudStorageConfiguration#recursiveListings()} is enabled.
+ *
+ * <p>A directory is listed with a single listing of all the objects below it, fetched in the
+ * background by a {@link CloudStoragePrefetchingIterator}. Its entries are synthesized from the
+ * object names: objects directly in the directory are returned as files, and each subdirectory is
+ * returned once, when its first object is reached. Since objects are listed in name order, the
+ * objects of a subdirectory follow each other. So if the subdirectory is opened before the stream
+ * of its parent moves on, as {@code Files.walkFileTree} does, its stream continues the same
+ * listing, and walking a whole tree costs a single listing.
+ */
+@ThreadSafe
+final class CloudStorageTreeLister {
+
+  private final CloudStorageFileSystem fileSystem;
+
+  // Directories returned by a stream and not opened yet, by object name prefix. Their listing is
+  // positioned at their first object.
+  private final ConcurrentMap<String, Listing> pending = new ConcurrentHashMap<>();
+
+  CloudStorageTreeLister(CloudStorageFileSystem fileSystem) {
+    this.fileSystem = fileSystem;
+  }
+
+  DirectoryStream<Path> newDirectoryStream(
+      Storage storage, CloudStoragePath dir, DirectoryStream.Filter<? super Path> filter) {
+    String prefix = prefix(dir);
+    Listing listing = pending.get(prefix);
+    if (listing != null) {
+      synchronized (listing) {
+        if (pending.remove(prefix, listing)) {
+          return listing.open(prefix, filter, false);
+        }
+      }
+    }
+    // if metadata is cached, list all the fields to populate the cache
+    Storage.BlobListOption fields = fileSystem.statCache().isEnabled()
+        ? Storage.BlobListOption.fields(Storage.BlobField.values())
+        : Storage.BlobListOption.fields();
+    listing = new Listing(new CloudStoragePrefetchingIterator(storage, dir.bucket(),
+        CloudStorageUtil.defaultExecutor(), Storage.BlobListOption.prefix(prefix), fields));
+    synchronized (listing) {
+      return listing.open(prefix, filter, true);
+    }
+  }
+
+  /**
+   * Returns the object name prefix of the objects under {@code dir}.
+   */
+  private static String prefix(CloudStoragePath dir) {
+    String name = dir.getBlobId().name();
+    return name.isEmpty() || name.endsWith("/") ? name : name + "/";
+  }
+
+  /**
+   * Listing of the objects under a directory, shared by the streams of that directory and of the
+   * subdirectories opened while walking it.
+   */
+  private final class Listing {
+
+    private final CloudStoragePrefetchingIterator iterator;
+    private final PeekingIterator<Blob> objects;
+
+    // open streams, the innermost directory first
+    @GuardedBy("this")
+    private final Deque<Stream> streams = new ArrayDeque<>();
+
+    Listing(CloudStoragePrefetchingIterator iterator) {
+      this.iterator = iterator;
+      this.objects = Iterators.peekingIterator(iterator);
+    }
+
+    @GuardedBy("this")
+    Stream open(String prefix, DirectoryStream.Filter<? super Path> filter, boolean root) {
+      Stream stream = new Stream(this, prefix, filter, root);
+      streams.push(stream);
+      return stream;
+    }
+
+    /**
+     * Makes {@code stream} the innermost stream, detaching the streams of the subdirectories it
+     * moves past.
+     */
+    @GuardedBy("this")
+    void moveTo(Stream stream) {
+      while (streams.peek() != stream) {
+        Stream inner = streams.pop();
+        inner.detach();
+      }
+    }
+
+    /**
+     * Removes {@code stream} once it is closed or exhausted. Once the root stream is removed, the
+     * listing is stopped and the remaining streams are detached.
+     */
+    @GuardedBy("this")
+    void remove(Stream stream) {
+      streams.remove(stream);
+      if (stream.root) {
+        iterator.close();
+        while (!streams.isEmpty()) {
+          streams.pop().detach();
+        }
+      }
+    }
+  }
+
+  /**
+   * Stream of the entries of one directory, read from a shared {@link Listing}.
+   */
+  private final class Stream implements DirectoryStream<Path> {
+
+    private final Listing listing;
+    private final String prefix;
+    private final DirectoryStream.Filter<? super Path> filter;
+    private final boolean root;
+
+    @GuardedBy("listing")
+    @Nullable
+    private String child;
+    @GuardedBy("listing")
+    private boolean detached;
+    @GuardedBy("listing")
+    private boolean closed;
+    private boolean iterated;
+
+    Stream(Listing listing, String prefix, DirectoryStream.Filter<? super Path> filter,
+        boolean root) {
+      this.listing = listing;
+      this.prefix = prefix;
+      this.filter = filter;
+      this.root = root;
+    }
+
+    @Override
+    public Iterator<Path> iterator() {
+      checkState(!iterated, "Iterator already obtained");
+      iterated = true;
+      return new AbstractIterator<Path>() {
+        @Override
+        protected Path computeNext() {
+          synchronized (listing) {
+            Path path = closed ? null : next();
+            return path != null ? path : endOfData();
+          }
+        }
+      };
+    }
+
+    @Override
+    public void close() {
+      synchronized (listing) {
+        if (!closed) {
+          closed = true;
+          if (child != null) {
+            pending.remove(child, listing);
+          }
+          listing.remove(this);
+        }
+      }
+    }
+
+    /**
+     * Returns the next entry, or {@code null} at the end of the directory.
+     */
+    @GuardedBy("listing")
+    @Nullable
+    private Path next() {
+      if (detached) {
+        throw new ConcurrentModificationException(
+            "The stream of a parent directory moved past or closed " + prefix);
+      }
+      listing.moveTo(this);
+      leave();
+      PeekingIterator<Blob> objects = listing.objects;
+      while (objects.hasNext()) {
+        Blob blob = objects.peek();
+        String name = blob.name();
+        if (!name.startsWith(prefix)) {
+          break;
+        }
+        if (name.length() == prefix.length()) {
+          // object standing for this directory
+          objects.next();
+          continue;
+        }
+        int slash = name.indexOf('/', prefix.length());
+        if (slash < 0) {
+          objects.next();
+          fileSystem.statCache().put(blob);
+          Path path = fileSystem.getPath(name);
+          if (accept(path)) {
+            return path;
+          }
+        } else {
+          String dir = name.substring(0, slash + 1);
+          Path path = fileSystem.getPath(dir);
+          if (accept(path)) {
+            child = dir;
+            pending.put(dir, listing);
+            return path;
+          }
+          skip(dir);
+        }
+      }
+      closed = true;
+      listing.remove(this);
+      return null;
+    }
+
+    /**
+     * Skips the rest of the subdirectory last returned, if any.
+     */
+    @GuardedBy("listing")
+    private void leave() {
+      if (child != null) {
+        pending.remove(child, listing);
+        skip(child);
+        child = null;
+      }
+    }
+
+    @GuardedBy("listing")
+    private void skip(String dir) {
+      PeekingIterator<Blob> objects = listing.objects;
+      while (objects.hasNext() && objects.peek().name().startsWith(dir)) {
+        objects.next();
+      }
+    }
+
+    @GuardedBy("listing")
+    private void detach() {
+      detached = true;
+      if (child != null) {
+        pending.remove(child, listing);
+        child = null;
+      }
+    }
+
+    private boolean accept(Path path) {
+      try {
+        return filter.accept(path);
+      } catch (IOException ex) {
+        throw new DirectoryIteratorException(ex);
+      }
+    }
+  }
+}
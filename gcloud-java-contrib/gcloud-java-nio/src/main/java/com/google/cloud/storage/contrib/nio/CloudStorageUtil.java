@@ -19,10 +19,14 @@ package com.google.cloud.storage.contrib.nio;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.file.Path;
 import java.nio.file.ProviderMismatchException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.regex.Pattern;
 
 final class CloudStorageUtil {
@@ -76,5 +80,21 @@ final class CloudStorageUtil {
     }
   }
 
+  /**
+   * Returns the executor used for background work, e.g. by asynchronous channels opened without
+   * one: a cached pool of daemon threads.
+   */
+  static ExecutorService defaultExecutor() {
+    return DefaultExecutorHolder.EXECUTOR;
+  }
+
+  private static final class DefaultExecutorHolder {
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(
+        new ThreadFactoryBuilder()
+            .setDaemon(true)
+            .setNameFormat("cloud-storage-nio-%d")
+            .build());
+  }
+
   private CloudStorageUtil() {}
 }
@@ -16,14 +16,14 @@
 
 package com.google.cloud.storage.contrib.nio;
 
-import com.google.cloud.WriteChannel;
-
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.NonReadableChannelException;
 import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
 
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 
 /**
@@ -36,12 +36,22 @@ import javax.annotation.concurrent.ThreadSafe;
 @ThreadSafe
 final class CloudStorageWriteChannel implements SeekableByteChannel {
 
-  private final WriteChannel channel;
+  private final WritableByteChannel channel;
+  @Nullable private final Runnable closeListener;
   private long position;
   private long size;
 
-  CloudStorageWriteChannel(WriteChannel channel) {
+  CloudStorageWriteChannel(WritableByteChannel channel) {
+    this(channel, null);
+  }
+
+  /**
+   * Creates a channel that runs {@code closeListener} once the underlying channel is closed, even
+   * if closing it failed.
+   */
+  CloudStorageWriteChannel(WritableByteChannel channel, @Nullable Runnable closeListener) {
     this.channel = channel;
+    this.closeListener = closeListener;
   }
 
   @Override
@@ -54,7 +64,13 @@ final class CloudStorageWriteChannel implements SeekableByteChannel {
   @Override
   public void close() throws IOException {
     synchronized (this) {
-      channel.close();
+      try {
+        channel.close();
+      } finally {
+        if (closeListener != null) {
+          closeListener.run();
+        }
+      }
     }
   }
 
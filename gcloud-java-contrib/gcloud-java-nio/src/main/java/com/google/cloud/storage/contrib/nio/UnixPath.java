@@ -19,17 +19,10 @@ package com.google.cloud.storage.contrib.nio;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
-import com.google.common.base.Joiner;
-import com.google.common.base.Splitter;
-import com.google.common.collect.Iterators;
-import com.google.common.collect.Lists;
-import com.google.common.collect.Ordering;
-import com.google.common.collect.PeekingIterator;
-
-import java.util.ArrayList;
-import java.util.Collections;
+import com.google.common.collect.UnmodifiableIterator;
+
 import java.util.Iterator;
-import java.util.List;
+import java.util.NoSuchElementException;
 
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
@@ -44,6 +37,10 @@ import javax.annotation.concurrent.Immutable;
  * preserve trailing backslashes, in order to ensure the path will continue to be recognized as a
  * directory.
  *
+ * <p>Paths only hold their string. The offsets of its components are computed the first time they
+ * are needed, and components are compared in place, so that only the strings of new paths are
+ * allocated.
+ *
  * <p><b>Note:</b> This code might not play nice with
  * <a href="http://docs.oracle.com/javase/tutorial/i18n/text/supplementaryChars.html">Supplementary
  * Characters as Surrogates</a>.
@@ -59,13 +56,10 @@ final class UnixPath implements CharSequence {
   public static final UnixPath EMPTY_PATH = new UnixPath(false, "");
   public static final UnixPath ROOT_PATH = new UnixPath(false, ROOT);
 
-  private static final Splitter SPLITTER = Splitter.on(SEPARATOR).omitEmptyStrings();
-  private static final Splitter SPLITTER_PERMIT_EMPTY_COMPONENTS = Splitter.on(SEPARATOR);
-  private static final Joiner JOINER = Joiner.on(SEPARATOR);
-  private static final Ordering<Iterable<String>> ORDERING = Ordering.natural().lexicographical();
+  private static final int[] NO_OFFSETS = {};
 
   private final String path;
-  private List<String> lazyStringParts;
+  private int[] lazyOffsets;
   private final boolean permitEmptyComponents;
 
   private UnixPath(boolean permitEmptyComponents, String path) {
@@ -173,11 +167,12 @@ final class UnixPath implements CharSequence {
     } else if (isRoot()) {
       return null;
     } else {
-      List<String> parts = getParts();
-      String last = parts.get(parts.size() - 1);
-      return parts.size() == 1 && path.equals(last)
+      int[] offsets = getOffsets();
+      int start = offsets[offsets.length - 2];
+      int end = offsets[offsets.length - 1];
+      return start == 0 && end == path.length()
           ? this
-          : new UnixPath(permitEmptyComponents, last);
+          : new UnixPath(permitEmptyComponents, path.substring(start, end));
     }
   }
 
@@ -221,14 +216,17 @@ final class UnixPath implements CharSequence {
     if (path.isEmpty() && beginIndex == 0 && endIndex == 1) {
       return this;
     }
-    checkArgument(beginIndex >= 0 && endIndex > beginIndex);
-    List<String> subList;
-    try {
-      subList = getParts().subList(beginIndex, endIndex);
-    } catch (IndexOutOfBoundsException e) {
-      throw new IllegalArgumentException();
+    int[] offsets = getOffsets();
+    checkArgument(beginIndex >= 0 && endIndex > beginIndex && endIndex <= offsets.length / 2);
+    int start = offsets[2 * beginIndex];
+    int end = offsets[2 * endIndex - 1];
+    for (int i = 2 * beginIndex + 1; i < 2 * endIndex - 1; i += 2) {
+      if (offsets[i + 1] != offsets[i] + 1) {
+        // extra separators between the components are dropped
+        return new UnixPath(permitEmptyComponents, join(offsets, beginIndex, endIndex));
+      }
     }
-    return new UnixPath(permitEmptyComponents, JOINER.join(subList));
+    return new UnixPath(permitEmptyComponents, path.substring(start, end));
   }
 
   /**
@@ -242,7 +240,7 @@ final class UnixPath implements CharSequence {
     } else if (isRoot()) {
       return 0;
     } else {
-      return getParts().size();
+      return getOffsets().length / 2;
     }
   }
 
@@ -255,11 +253,9 @@ final class UnixPath implements CharSequence {
     if (path.isEmpty()) {
       return this;
     }
-    try {
-      return new UnixPath(permitEmptyComponents, getParts().get(index));
-    } catch (IndexOutOfBoundsException e) {
-      throw new IllegalArgumentException();
-    }
+    int[] offsets = getOffsets();
+    checkArgument(index >= 0 && index < offsets.length / 2);
+    return new UnixPath(permitEmptyComponents, component(offsets, index));
   }
 
   /**
@@ -268,46 +264,72 @@ final class UnixPath implements CharSequence {
    * @see java.nio.file.Path#normalize()
    */
   public UnixPath normalize() {
-    List<String> parts = new ArrayList<>();
-    boolean mutated = false;
+    // the kept parts, each with its trailing separator, as pairs of start and end offsets
+    int[] parts = null;
+    int count = 0;
     int resultLength = 0;
     int mark = 0;
     int index;
     do {
       index = path.indexOf(SEPARATOR, mark);
-      String part = path.substring(mark, index == -1 ? path.length() : index + 1);
-      switch (part) {
-        case CURRENT_DIR:
-        case CURRENT_DIR + SEPARATOR:
-          mutated = true;
-          break;
-        case PARENT_DIR:
-        case PARENT_DIR + SEPARATOR:
-          mutated = true;
-          if (!parts.isEmpty()) {
-            resultLength -= parts.remove(parts.size() - 1).length();
-          }
-          break;
-        default:
-          if (index != mark || index == 0) {
-            parts.add(part);
-            resultLength = part.length();
-          } else {
-            mutated = true;
-          }
+      int end = index == -1 ? path.length() : index + 1;
+      int nameLength = (index == -1 ? path.length() : index) - mark;
+      if (nameLength == 1 && path.charAt(mark) == DOT) {
+        parts = mutated(parts, count);
+      } else if (nameLength == 2 && path.charAt(mark) == DOT && path.charAt(mark + 1) == DOT) {
+        parts = mutated(parts, count);
+        if (count > 0) {
+          count--;
+          resultLength -= parts[2 * count + 1] - parts[2 * count];
+        }
+      } else if (index != mark || index == 0) {
+        if (parts != null) {
+          parts[2 * count] = mark;
+          parts[2 * count + 1] = end;
+        }
+        count++;
+        resultLength += end - mark;
+      } else {
+        parts = mutated(parts, count);
       }
       mark = index + 1;
     } while (index != -1);
-    if (!mutated) {
+    if (parts == null) {
       return this;
     }
     StringBuilder result = new StringBuilder(resultLength);
-    for (String part : parts) {
-      result.append(part);
+    for (int i = 0; i < count; i++) {
+      result.append(path, parts[2 * i], parts[2 * i + 1]);
     }
     return new UnixPath(permitEmptyComponents, result.toString());
   }
 
+  /**
+   * Returns the kept parts of {@link #normalize()} once the path is known to change, allocating
+   * them on the first change: until then, the parts kept are the first {@code count} parts.
+   */
+  private int[] mutated(int[] parts, int count) {
+    if (parts != null) {
+      return parts;
+    }
+    // there are at most as many parts as separators plus one
+    int separators = 0;
+    for (int i = 0; i < path.length(); i++) {
+      if (path.charAt(i) == SEPARATOR) {
+        separators++;
+      }
+    }
+    parts = new int[2 * (separators + 1)];
+    int mark = 0;
+    for (int i = 0; i < count; i++) {
+      int index = path.indexOf(SEPARATOR, mark);
+      parts[2 * i] = mark;
+      parts[2 * i + 1] = index == -1 ? path.length() : index + 1;
+      mark = index + 1;
+    }
+    return parts;
+  }
+
   /**
    * Returns {@code other} appended to {@code path}.
    *
@@ -346,23 +368,20 @@ final class UnixPath implements CharSequence {
     if (path.isEmpty()) {
       return other;
     }
-    PeekingIterator<String> left = Iterators.peekingIterator(split());
-    PeekingIterator<String> right = Iterators.peekingIterator(other.split());
-    while (left.hasNext() && right.hasNext()) {
-      if (!left.peek().equals(right.peek())) {
-        break;
-      }
-      left.next();
-      right.next();
+    int[] left = getOffsets();
+    int[] right = other.getOffsets();
+    int common = 0;
+    while (common < left.length / 2 && common < right.length / 2
+        && componentEquals(left, common, other, right, common)) {
+      common++;
     }
     StringBuilder result = new StringBuilder(path.length() + other.path.length());
-    while (left.hasNext()) {
+    for (int i = common; i < left.length / 2; i++) {
       result.append(PARENT_DIR);
       result.append(SEPARATOR);
-      left.next();
     }
-    while (right.hasNext()) {
-      result.append(right.next());
+    for (int i = common; i < right.length / 2; i++) {
+      result.append(other.path, right[2 * i], right[2 * i + 1]);
       result.append(SEPARATOR);
     }
     if (result.length() > 0 && !other.hasTrailingSeparator()) {
@@ -377,21 +396,21 @@ final class UnixPath implements CharSequence {
    * @see java.nio.file.Path#startsWith(java.nio.file.Path)
    */
   public boolean startsWith(UnixPath other) {
-    UnixPath me = removeTrailingSeparator();
-    other = other.removeTrailingSeparator();
-    if (other.path.length() > me.path.length()) {
+    if (other.lengthWithoutTrailingSeparator() > lengthWithoutTrailingSeparator()) {
       return false;
-    } else if (me.isAbsolute() != other.isAbsolute()) {
+    } else if (isAbsolute() != other.isAbsolute()) {
       return false;
-    } else if (!me.path.isEmpty() && other.path.isEmpty()) {
+    } else if (!path.isEmpty() && other.path.isEmpty()) {
       return false;
     }
-    return startsWith(split(), other.split());
-  }
-
-  private static boolean startsWith(Iterator<String> lefts, Iterator<String> rights) {
-    while (rights.hasNext()) {
-      if (!lefts.hasNext() || !rights.next().equals(lefts.next())) {
+    int[] left = getOffsets();
+    int[] right = other.getOffsets();
+    int rightCount = other.nameCountWithoutTrailingSeparator(right);
+    if (rightCount > nameCountWithoutTrailingSeparator(left)) {
+      return false;
+    }
+    for (int i = 0; i < rightCount; i++) {
+      if (!componentEquals(left, i, other, right, i)) {
         return false;
       }
     }
@@ -404,16 +423,28 @@ final class UnixPath implements CharSequence {
    * @see java.nio.file.Path#endsWith(java.nio.file.Path)
    */
   public boolean endsWith(UnixPath other) {
-    UnixPath me = removeTrailingSeparator();
-    other = other.removeTrailingSeparator();
-    if (other.path.length() > me.path.length()) {
+    int length = lengthWithoutTrailingSeparator();
+    int otherLength = other.lengthWithoutTrailingSeparator();
+    if (otherLength > length) {
       return false;
-    } else if (!me.path.isEmpty() && other.path.isEmpty()) {
+    } else if (!path.isEmpty() && other.path.isEmpty()) {
       return false;
     } else if (other.isAbsolute()) {
-      return me.isAbsolute() && me.path.equals(other.path);
+      return isAbsolute() && length == otherLength && path.regionMatches(0, other.path, 0, length);
+    }
+    int[] left = getOffsets();
+    int[] right = other.getOffsets();
+    int leftCount = nameCountWithoutTrailingSeparator(left);
+    int rightCount = other.nameCountWithoutTrailingSeparator(right);
+    if (rightCount > leftCount) {
+      return false;
     }
-    return startsWith(me.splitReverse(), other.splitReverse());
+    for (int i = 1; i <= rightCount; i++) {
+      if (!componentEquals(left, leftCount - i, other, right, rightCount - i)) {
+        return false;
+      }
+    }
+    return true;
   }
 
   /**
@@ -422,7 +453,23 @@ final class UnixPath implements CharSequence {
    * @see java.nio.file.Path#compareTo(java.nio.file.Path)
    */
   public int compareTo(UnixPath other) {
-    return ORDERING.compare(getParts(), other.getParts());
+    int[] left = getOffsets();
+    int[] right = other.getOffsets();
+    for (int i = 0; i < left.length && i < right.length; i += 2) {
+      int leftEnd = left[i + 1];
+      int rightEnd = right[i + 1];
+      for (int j = left[i], k = right[i]; j < leftEnd && k < rightEnd; j++, k++) {
+        int result = path.charAt(j) - other.path.charAt(k);
+        if (result != 0) {
+          return result;
+        }
+      }
+      int result = (leftEnd - left[i]) - (rightEnd - right[i]);
+      if (result != 0) {
+        return result;
+      }
+    }
+    return left.length - right.length;
   }
 
   /**
@@ -469,14 +516,14 @@ final class UnixPath implements CharSequence {
    * Splits path into components, excluding separators and empty strings.
    */
   public Iterator<String> split() {
-    return getParts().iterator();
+    return new ComponentIterator(getOffsets(), false);
   }
 
   /**
    * Splits path into components in reverse, excluding separators and empty strings.
    */
   public Iterator<String> splitReverse() {
-    return Lists.reverse(getParts()).iterator();
+    return new ComponentIterator(getOffsets(), true);
   }
 
   @Override
@@ -520,22 +567,116 @@ final class UnixPath implements CharSequence {
   }
 
   /**
-   * Returns list of path components, excluding slashes.
+   * Returns the start and end offsets of the path components, excluding slashes: component
+   * {@code i} is {@code path.substring(offsets[2 * i], offsets[2 * i + 1])}.
    */
-  private List<String> getParts() {
-    List<String> result = lazyStringParts;
+  private int[] getOffsets() {
+    int[] result = lazyOffsets;
     return result != null
         ? result
-        : (lazyStringParts =
-            path.isEmpty() || isRoot() ? Collections.<String>emptyList() : createParts());
+        : (lazyOffsets = path.isEmpty() || isRoot() ? NO_OFFSETS : createOffsets());
+  }
+
+  private int[] createOffsets() {
+    // the first pass counts the components, the second one stores their offsets
+    int[] offsets = null;
+    int count = 0;
+    while (true) {
+      int start = permitEmptyComponents && path.charAt(0) == SEPARATOR ? 1 : 0;
+      for (int i = start; i <= path.length(); i++) {
+        if (i < path.length() && path.charAt(i) != SEPARATOR) {
+          continue;
+        }
+        if (permitEmptyComponents || i > start) {
+          if (offsets != null) {
+            offsets[2 * count] = start;
+            offsets[2 * count + 1] = i;
+          }
+          count++;
+        }
+        start = i + 1;
+      }
+      if (offsets != null) {
+        return offsets;
+      }
+      offsets = new int[2 * count];
+      count = 0;
+    }
   }
 
-  private List<String> createParts() {
-    if (permitEmptyComponents) {
-      return SPLITTER_PERMIT_EMPTY_COMPONENTS.splitToList(
-          path.charAt(0) == SEPARATOR ? path.substring(1) : path);
-    } else {
-      return SPLITTER.splitToList(path);
+  private String component(int[] offsets, int index) {
+    return path.substring(offsets[2 * index], offsets[2 * index + 1]);
+  }
+
+  private boolean componentEquals(int[] offsets, int index, UnixPath other, int[] otherOffsets,
+      int otherIndex) {
+    int start = offsets[2 * index];
+    int length = offsets[2 * index + 1] - start;
+    int otherStart = otherOffsets[2 * otherIndex];
+    return length == otherOffsets[2 * otherIndex + 1] - otherStart
+        && path.regionMatches(start, other.path, otherStart, length);
+  }
+
+  /**
+   * Joins the components from {@code beginIndex} to {@code endIndex} with single separators.
+   */
+  private String join(int[] offsets, int beginIndex, int endIndex) {
+    StringBuilder result = new StringBuilder(path.length());
+    for (int i = beginIndex; i < endIndex; i++) {
+      if (i > beginIndex) {
+        result.append(SEPARATOR);
+      }
+      result.append(path, offsets[2 * i], offsets[2 * i + 1]);
+    }
+    return result.toString();
+  }
+
+  /**
+   * Returns the length of {@link #removeTrailingSeparator()}, without creating it.
+   */
+  private int lengthWithoutTrailingSeparator() {
+    return !isRoot() && hasTrailingSeparator() ? path.length() - 1 : path.length();
+  }
+
+  /**
+   * Returns the number of components of {@link #removeTrailingSeparator()}, without creating it.
+   * Only paths permitting empty components end with an empty component after a trailing
+   * separator.
+   */
+  private int nameCountWithoutTrailingSeparator(int[] offsets) {
+    if (!permitEmptyComponents || isRoot() || !hasTrailingSeparator()) {
+      return offsets.length / 2;
+    }
+    // "//" becomes the root
+    return lengthWithoutTrailingSeparator() == 1 && isAbsolute() ? 0 : offsets.length / 2 - 1;
+  }
+
+  /**
+   * Iterator creating the strings of the path components as they are returned.
+   */
+  private final class ComponentIterator extends UnmodifiableIterator<String> {
+
+    private final int[] offsets;
+    private final boolean reverse;
+    private int index;
+
+    ComponentIterator(int[] offsets, boolean reverse) {
+      this.offsets = offsets;
+      this.reverse = reverse;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return index < offsets.length / 2;
+    }
+
+    @Override
+    public String next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      int i = index++;
+      return component(offsets, reverse ? offsets.length / 2 - 1 - i : i);
     }
   }
 }
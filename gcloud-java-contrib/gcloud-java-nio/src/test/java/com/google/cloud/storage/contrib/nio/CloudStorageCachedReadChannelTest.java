@@ -0,0 +1,196 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.storage.contrib.nio;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.mockito.AdditionalAnswers.delegatesTo;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.cloud.ReadChannel;
+import com.google.cloud.storage.BlobId;
+import com.google.cloud.storage.BlobInfo;
+import com.google.cloud.storage.Storage;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+
+/**
+ * Unit tests for {@link CloudStorageCachedReadChannel}.
+ */
+@RunWith(JUnit4.class)
+public class CloudStorageCachedReadChannelTest {
+
+  @Rule public final ExpectedException thrown = ExpectedException.none();
+
+  private final BlobId file = BlobId.of("bucket", "file");
+  private final Storage gcsStorage = mock(Storage.class);
+  private ReadChannel gcsChannel;
+  private BlobInfo blobInfo;
+
+  @Before
+  public void before() {
+    Storage localStorage = LocalStorageHelper.options().service();
+    localStorage.create(BlobInfo.builder(file).build(), "0123456789".getBytes(UTF_8));
+    blobInfo = localStorage.get(file);
+    gcsChannel = mock(ReadChannel.class, delegatesTo(localStorage.reader(file)));
+    when(gcsStorage.reader(blobInfo.blobId())).thenReturn(gcsChannel);
+  }
+
+  private static String read(SeekableByteChannel chan, long position, int length)
+      throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(length);
+    chan.position(position);
+    while (buffer.hasRemaining() && chan.read(buffer) >= 0) {
+      // keep reading
+    }
+    return new String(buffer.array(), 0, buffer.position(), UTF_8);
+  }
+
+  @Test
+  public void testRead_sequentialReadsAhead() throws IOException {
+    CloudStorageBlockCache cache = CloudStorageBlockCache.create(4, 10, 1);
+    try (SeekableByteChannel chan =
+        CloudStorageCachedReadChannel.create(gcsStorage, blobInfo, cache)) {
+      assertThat(chan.size()).isEqualTo(10L);
+      assertThat(read(chan, 0, 10)).isEqualTo("0123456789");
+      assertThat(chan.position()).isEqualTo(10L);
+      assertThat(chan.read(ByteBuffer.allocate(1))).isEqualTo(-1);
+    }
+    // blocks 0 and 1 are fetched together, then block 2 with nothing left to read ahead
+    verify(gcsChannel).chunkSize(8);
+    verify(gcsChannel).chunkSize(2);
+    verify(gcsChannel).seek(0);
+  }
+
+  @Test
+  public void testRead_randomAccessUsesCachedBlocks() throws IOException {
+    CloudStorageBlockCache cache = CloudStorageBlockCache.create(4, 10, 1);
+    try (SeekableByteChannel chan =
+        CloudStorageCachedReadChannel.create(gcsStorage, blobInfo, cache)) {
+      assertThat(read(chan, 8, 2)).isEqualTo("89");
+      assertThat(read(chan, 1, 2)).isEqualTo("12");
+      assertThat(read(chan, 9, 1)).isEqualTo("9");
+      assertThat(read(chan, 2, 6)).isEqualTo("234567");
+    }
+    // the last read is sequential, so block 2 is fetched again as read-ahead of block 1
+    verify(gcsChannel).seek(8);
+    verify(gcsChannel).seek(0);
+    verify(gcsChannel, times(2)).seek(anyLong());
+    verify(gcsChannel).chunkSize(2);
+    verify(gcsChannel).chunkSize(4);
+    verify(gcsChannel).chunkSize(6);
+    verify(gcsChannel, times(3)).chunkSize(anyInt());
+  }
+
+  @Test
+  public void testRead_blocksSharedBetweenChannels() throws IOException {
+    CloudStorageBlockCache cache = CloudStorageBlockCache.create(4, 10, 1);
+    try (SeekableByteChannel chan =
+        CloudStorageCachedReadChannel.create(gcsStorage, blobInfo, cache)) {
+      assertThat(read(chan, 0, 10)).isEqualTo("0123456789");
+    }
+    try (SeekableByteChannel chan =
+        CloudStorageCachedReadChannel.create(gcsStorage, blobInfo, cache)) {
+      assertThat(read(chan, 6, 4)).isEqualTo("6789");
+    }
+    verify(gcsStorage).reader(blobInfo.blobId());
+  }
+
+  @Test
+  public void testRead_evictsBlocks() throws IOException {
+    CloudStorageBlockCache cache = CloudStorageBlockCache.create(4, 1, 0);
+    try (SeekableByteChannel chan =
+        CloudStorageCachedReadChannel.create(gcsStorage, blobInfo, cache)) {
+      assertThat(read(chan, 0, 1)).isEqualTo("0");
+      assertThat(read(chan, 8, 1)).isEqualTo("8");
+      assertThat(read(chan, 0, 1)).isEqualTo("0");
+    }
+    verify(gcsChannel, times(3)).chunkSize(anyInt());
+  }
+
+  @Test
+  public void testInvalidate() throws IOException {
+    CloudStorageBlockCache cache = CloudStorageBlockCache.create(4, 10, 0);
+    try (SeekableByteChannel chan =
+        CloudStorageCachedReadChannel.create(gcsStorage, blobInfo, cache)) {
+      assertThat(read(chan, 0, 1)).isEqualTo("0");
+      cache.invalidate(BlobId.of("bucket", "file", 42L));
+      assertThat(cache.get(file, 0)).isNull();
+      assertThat(read(chan, 0, 1)).isEqualTo("0");
+    }
+    verify(gcsChannel, times(2)).chunkSize(anyInt());
+  }
+
+  @Test
+  public void testInvalidate_otherObject_keepsBlocks() throws IOException {
+    CloudStorageBlockCache cache = CloudStorageBlockCache.create(4, 10, 0);
+    try (SeekableByteChannel chan =
+        CloudStorageCachedReadChannel.create(gcsStorage, blobInfo, cache)) {
+      assertThat(read(chan, 0, 1)).isEqualTo("0");
+      cache.invalidate(BlobId.of("bucket", "file2"));
+      cache.invalidate(BlobId.of("bucket2", "file"));
+      assertThat(cache.get(file, 0)).isNotNull();
+    }
+  }
+
+  @Test
+  public void testPosition_doesNotSeek() throws IOException {
+    CloudStorageBlockCache cache = CloudStorageBlockCache.create(4, 10, 1);
+    try (SeekableByteChannel chan =
+        CloudStorageCachedReadChannel.create(gcsStorage, blobInfo, cache)) {
+      chan.position(7);
+      chan.position(3);
+      assertThat(chan.position()).isEqualTo(3L);
+    }
+    verify(gcsStorage, never()).reader(blobInfo.blobId());
+  }
+
+  @Test
+  public void testWrite_throwsNonWritableChannelException() throws IOException {
+    CloudStorageBlockCache cache = CloudStorageBlockCache.create(4, 10, 1);
+    SeekableByteChannel chan = CloudStorageCachedReadChannel.create(gcsStorage, blobInfo, cache);
+    thrown.expect(NonWritableChannelException.class);
+    chan.write(ByteBuffer.allocate(1));
+  }
+
+  @Test
+  public void testClosed_throwsClosedChannelException() throws IOException {
+    CloudStorageBlockCache cache = CloudStorageBlockCache.create(4, 10, 1);
+    SeekableByteChannel chan = CloudStorageCachedReadChannel.create(gcsStorage, blobInfo, cache);
+    chan.close();
+    assertThat(chan.isOpen()).isFalse();
+    thrown.expect(ClosedChannelException.class);
+    chan.read(ByteBuffer.allocate(1));
+  }
+}
@@ -43,12 +43,30 @@ public class CloudStorageConfigurationTest {
             .stripPrefixSlash(false)
             .usePseudoDirectories(false)
             .blockSize(666)
+            .statCacheSize(100)
+            .statCacheTtlMillis(5000)
+            .blockCacheSize(16)
+            .readAheadBlocks(2)
+            .pipelineUploads(true)
+            .recursiveListings(true)
+            .internDirectoryPaths(true)
+            .localCacheDirectory("/tmp/cache")
+            .localCacheBytes(1000)
             .build();
     assertThat(config.workingDirectory()).isEqualTo("/omg");
     assertThat(config.permitEmptyPathComponents()).isTrue();
     assertThat(config.stripPrefixSlash()).isFalse();
     assertThat(config.usePseudoDirectories()).isFalse();
     assertThat(config.blockSize()).isEqualTo(666);
+    assertThat(config.statCacheSize()).isEqualTo(100);
+    assertThat(config.statCacheTtlMillis()).isEqualTo(5000L);
+    assertThat(config.blockCacheSize()).isEqualTo(16);
+    assertThat(config.readAheadBlocks()).isEqualTo(2);
+    assertThat(config.pipelineUploads()).isTrue();
+    assertThat(config.recursiveListings()).isTrue();
+    assertThat(config.internDirectoryPaths()).isTrue();
+    assertThat(config.localCacheDirectory()).isEqualTo("/tmp/cache");
+    assertThat(config.localCacheBytes()).isEqualTo(1000L);
   }
 
   @Test
@@ -61,12 +79,37 @@ public class CloudStorageConfigurationTest {
                 .put("stripPrefixSlash", false)
                 .put("usePseudoDirectories", false)
                 .put("blockSize", 666)
+                .put("statCacheSize", 100)
+                .put("statCacheTtlMillis", 5000L)
+                .put("blockCacheSize", 16)
+                .put("readAheadBlocks", 2)
+                .put("pipelineUploads", true)
+                .put("recursiveListings", true)
+                .put("internDirectoryPaths", true)
+                .put("localCacheDirectory", "/tmp/cache")
+                .put("localCacheBytes", 1000)
                 .build());
     assertThat(config.workingDirectory()).isEqualTo("/omg");
     assertThat(config.permitEmptyPathComponents()).isTrue();
     assertThat(config.stripPrefixSlash()).isFalse();
     assertThat(config.usePseudoDirectories()).isFalse();
     assertThat(config.blockSize()).isEqualTo(666);
+    assertThat(config.statCacheSize()).isEqualTo(100);
+    assertThat(config.statCacheTtlMillis()).isEqualTo(5000L);
+    assertThat(config.blockCacheSize()).isEqualTo(16);
+    assertThat(config.readAheadBlocks()).isEqualTo(2);
+    assertThat(config.pipelineUploads()).isTrue();
+    assertThat(config.recursiveListings()).isTrue();
+    assertThat(config.internDirectoryPaths()).isTrue();
+    assertThat(config.localCacheDirectory()).isEqualTo("/tmp/cache");
+    assertThat(config.localCacheBytes()).isEqualTo(1000L);
+  }
+
+  @Test
+  public void testCachesDisabledByDefault() {
+    assertThat(CloudStorageConfiguration.DEFAULT.statCacheSize()).isEqualTo(0);
+    assertThat(CloudStorageConfiguration.DEFAULT.blockCacheSize()).isEqualTo(0);
+    assertThat(CloudStorageConfiguration.DEFAULT.localCacheDirectory()).isNull();
   }
 
   @Test
@@ -27,8 +27,15 @@ import static java.nio.file.StandardOpenOption.CREATE_NEW;
 import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
 import static java.nio.file.StandardOpenOption.WRITE;
 
+import com.google.cloud.storage.BlobInfo;
+import com.google.cloud.storage.BucketInfo;
+import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.testing.InMemoryStorageRpc;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.testing.NullPointerTester;
+import com.google.common.util.concurrent.SettableFuture;
 
 import org.junit.Before;
 import org.junit.Rule;
@@ -37,11 +44,15 @@ import org.junit.rules.ExpectedException;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URI;
 import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.channels.NonWritableChannelException;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.SeekableByteChannel;
 import java.nio.file.AtomicMoveNotSupportedException;
@@ -55,6 +66,12 @@ import java.nio.file.OpenOption;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Unit tests for {@link CloudStorageFileSystemProvider}.
@@ -162,6 +179,68 @@ public class CloudStorageFileSystemProviderTest {
     }
   }
 
+  @Test
+  public void testNewAsynchronousFileChannel_read() throws Exception {
+    Path path = Paths.get(URI.create("gs://lol/cat"));
+    Files.write(path, "helloworld".getBytes(UTF_8));
+    try (AsynchronousFileChannel input = AsynchronousFileChannel.open(path)) {
+      assertThat(input.size()).isEqualTo(10);
+      ByteBuffer world = ByteBuffer.allocate(5);
+      ByteBuffer hello = ByteBuffer.allocate(5);
+      Future<Integer> worldRead = input.read(world, 5);
+      Future<Integer> helloRead = input.read(hello, 0);
+      assertThat(worldRead.get()).isEqualTo(5);
+      assertThat(helloRead.get()).isEqualTo(5);
+      assertThat(new String(world.array(), UTF_8)).isEqualTo("world");
+      assertThat(new String(hello.array(), UTF_8)).isEqualTo("hello");
+      assertThat(input.read(ByteBuffer.allocate(1), 10).get()).isEqualTo(-1);
+    }
+  }
+
+  @Test
+  public void testNewAsynchronousFileChannel_completionHandler() throws Exception {
+    Path path = Paths.get(URI.create("gs://lol/cat"));
+    Files.write(path, "helloworld".getBytes(UTF_8));
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try (AsynchronousFileChannel input =
+        AsynchronousFileChannel.open(path, ImmutableSet.<OpenOption>of(), executor)) {
+      final ByteBuffer buffer = ByteBuffer.allocate(3);
+      final SettableFuture<Integer> result = SettableFuture.create();
+      input.read(buffer, 3, null, new CompletionHandler<Integer, Void>() {
+        @Override
+        public void completed(Integer amt, Void attachment) {
+          result.set(amt);
+        }
+
+        @Override
+        public void failed(Throwable exc, Void attachment) {
+          result.setException(exc);
+        }
+      });
+      assertThat(result.get()).isEqualTo(3);
+      assertThat(new String(buffer.array(), UTF_8)).isEqualTo("low");
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testNewAsynchronousFileChannel_write_throwsNonWritableChannelException()
+      throws IOException {
+    Path path = Paths.get(URI.create("gs://lol/cat"));
+    Files.write(path, "helloworld".getBytes(UTF_8));
+    try (AsynchronousFileChannel input = AsynchronousFileChannel.open(path)) {
+      thrown.expect(NonWritableChannelException.class);
+      input.write(ByteBuffer.allocate(1), 0);
+    }
+  }
+
+  @Test
+  public void testNewAsynchronousFileChannel_doesntExist() throws IOException {
+    thrown.expect(NoSuchFileException.class);
+    AsynchronousFileChannel.open(Paths.get(URI.create("gs://lol/dog")));
+  }
+
   @Test
   public void testNewByteChannelRead_seekBeyondSize_reportsEofOnNextRead() throws IOException {
     Path path = Paths.get(URI.create("gs://lol/cat"));
@@ -208,6 +287,29 @@ public class CloudStorageFileSystemProviderTest {
     assertThat(new String(Files.readAllBytes(path), UTF_8)).isEqualTo("fileconten");
   }
 
+  @Test
+  public void testNewByteChannelWrite_blockSize() throws IOException {
+    Path path = Paths.get(URI.create("gs://bucket/tests"));
+    byte[] data = new byte[1024 * 1024 + 1];
+    new Random(42).nextBytes(data);
+    try (SeekableByteChannel output = Files.newByteChannel(
+        path, ImmutableSet.<OpenOption>of(WRITE, CloudStorageOptions.withBlockSize(256 * 1024)))) {
+      assertThat(output.write(ByteBuffer.wrap(data))).isEqualTo(data.length);
+    }
+    assertThat(Files.readAllBytes(path)).isEqualTo(data);
+  }
+
+  @Test
+  public void testNewOutputStream_pipelineUploads() throws IOException {
+    byte[] data = new byte[1024 * 1024 + 1];
+    new Random(42).nextBytes(data);
+    try (CloudStorageFileSystem fs = forBucket("bucket", pipelineUploads())) {
+      Path path = fs.getPath("tests");
+      Files.copy(new ByteArrayInputStream(data), path);
+      assertThat(Files.readAllBytes(path)).isEqualTo(data);
+    }
+  }
+
   @Test
   public void testNewInputStream() throws IOException {
     Path path = Paths.get(URI.create("gs://bucket/wat"));
@@ -403,6 +505,51 @@ public class CloudStorageFileSystemProviderTest {
     assertThat(Files.exists(Paths.get(URI.create("gs://love/fashion")))).isFalse();
   }
 
+  @Test
+  public void testStatCache_invalidatedByWriteAndDelete() throws IOException {
+    try (CloudStorageFileSystem fs = forBucket("love", statCache())) {
+      Path path = fs.getPath("fashion");
+      assertThat(Files.exists(path)).isFalse();
+      Files.write(path, SINGULARITY.getBytes(UTF_8));
+      assertThat(Files.size(path)).isEqualTo(SINGULARITY.getBytes(UTF_8).length);
+      Files.write(path, "xx".getBytes(UTF_8));
+      assertThat(Files.size(path)).isEqualTo(2);
+      Files.delete(path);
+      assertThat(Files.exists(path)).isFalse();
+    }
+  }
+
+  @Test
+  public void testStatCache_invalidatedByCopy() throws IOException {
+    try (CloudStorageFileSystem fs = forBucket("love", statCache())) {
+      Path source = fs.getPath("source");
+      Path target = fs.getPath("target");
+      Files.write(source, SINGULARITY.getBytes(UTF_8));
+      assertThat(Files.exists(target)).isFalse();
+      Files.copy(source, target);
+      assertThat(Files.size(target)).isEqualTo(SINGULARITY.getBytes(UTF_8).length);
+    }
+  }
+
+  @Test
+  public void testBlockCache_invalidatedByWrite() throws IOException {
+    CloudStorageConfiguration config =
+        CloudStorageConfiguration.builder().blockSize(4).blockCacheSize(10).build();
+    try (CloudStorageFileSystem fs = forBucket("love", config)) {
+      Path path = fs.getPath("fashion");
+      Files.write(path, SINGULARITY.getBytes(UTF_8));
+      try (SeekableByteChannel chan = Files.newByteChannel(path)) {
+        ByteBuffer buffer = ByteBuffer.allocate(3);
+        chan.position(5);
+        assertThat(chan.read(buffer)).isEqualTo(3);
+        assertThat(new String(buffer.array(), UTF_8)).isEqualTo("ing");
+      }
+      assertThat(new String(Files.readAllBytes(path), UTF_8)).isEqualTo(SINGULARITY);
+      Files.write(path, "A thing".getBytes(UTF_8));
+      assertThat(new String(Files.readAllBytes(path), UTF_8)).isEqualTo("A thing");
+    }
+  }
+
   @Test
   public void testDelete_dotDirNotNormalized_throwsIae() throws IOException {
     thrown.expect(IllegalArgumentException.class);
@@ -509,6 +656,122 @@ public class CloudStorageFileSystemProviderTest {
     assertThat(Files.exists(target)).isTrue();
   }
 
+  @Test
+  public void testCopyTree() throws IOException {
+    Path source = Paths.get(URI.create("gs://military/fashion/"));
+    Path target = Paths.get(URI.create("gs://greenbean/backup/fashion/"));
+    Files.write(source.resolve("show"), SINGULARITY.getBytes(UTF_8));
+    Files.write(source.resolve("week/milan"), SINGULARITY.getBytes(UTF_8));
+    Files.write(Paths.get(URI.create("gs://military/fashionista")), SINGULARITY.getBytes(UTF_8));
+    final ConcurrentMap<Path, Long> progress = new ConcurrentHashMap<>();
+    CloudStorageCopyListener listener = new CloudStorageCopyListener() {
+      @Override
+      public void onProgress(Path source, Path target, long bytesCopied, long totalBytes) {
+        assertThat(totalBytes).isEqualTo((long) SINGULARITY.length());
+        progress.put(target, bytesCopied);
+      }
+    };
+    long copied = provider(source).copyTree(source, target,
+        CloudStorageOptions.withParallelism(2), CloudStorageOptions.withCopyListener(listener));
+    assertThat(copied).isEqualTo(2L);
+    assertThat(new String(Files.readAllBytes(target.resolve("show")), UTF_8))
+        .isEqualTo(SINGULARITY);
+    assertThat(new String(Files.readAllBytes(target.resolve("week/milan")), UTF_8))
+        .isEqualTo(SINGULARITY);
+    assertThat(Files.exists(Paths.get(URI.create("gs://greenbean/backup/fashionista")))).isFalse();
+    assertThat(Files.exists(source.resolve("show"))).isTrue();
+    assertThat(progress).isEqualTo(ImmutableMap.of(
+        target.resolve("show"), (long) SINGULARITY.length(),
+        target.resolve("week/milan"), (long) SINGULARITY.length()));
+  }
+
+  @Test
+  public void testCopyTree_targetExists_throwsFileAlreadyExistsException() throws IOException {
+    Path source = Paths.get(URI.create("gs://military/fashion/"));
+    Path target = Paths.get(URI.create("gs://greenbean/fashion/"));
+    Files.write(source.resolve("show"), SINGULARITY.getBytes(UTF_8));
+    Files.write(target.resolve("show"), "(✿◕ ‿◕ )ノ".getBytes(UTF_8));
+    thrown.expect(FileAlreadyExistsException.class);
+    provider(source).copyTree(source, target);
+  }
+
+  @Test
+  public void testCopyTree_replaceExisting() throws IOException {
+    Path source = Paths.get(URI.create("gs://military/fashion/"));
+    Path target = Paths.get(URI.create("gs://greenbean/fashion/"));
+    Files.write(source.resolve("show"), SINGULARITY.getBytes(UTF_8));
+    Files.write(target.resolve("show"), "(✿◕ ‿◕ )ノ".getBytes(UTF_8));
+    provider(source).copyTree(source, target, REPLACE_EXISTING);
+    assertThat(new String(Files.readAllBytes(target.resolve("show")), UTF_8))
+        .isEqualTo(SINGULARITY);
+  }
+
+  @Test
+  public void testCopyTree_sourceMissing_throwsNoSuchFileException() throws IOException {
+    Path source = Paths.get(URI.create("gs://military/fashion/"));
+    thrown.expect(NoSuchFileException.class);
+    provider(source).copyTree(source, Paths.get(URI.create("gs://greenbean/fashion/")));
+  }
+
+  @Test
+  public void testCopyTree_targetInsideSource_throwsIae() throws IOException {
+    Path source = Paths.get(URI.create("gs://military/fashion/"));
+    thrown.expect(IllegalArgumentException.class);
+    provider(source).copyTree(source, source.resolve("backup"));
+  }
+
+  @Test
+  public void testMoveTree() throws IOException {
+    Path source = Paths.get(URI.create("gs://military/fashion/"));
+    Path target = Paths.get(URI.create("gs://greenbean/fashion/"));
+    Files.write(source.resolve("show"), SINGULARITY.getBytes(UTF_8));
+    Files.write(source.resolve("week/milan"), SINGULARITY.getBytes(UTF_8));
+    assertThat(provider(source).moveTree(source, target)).isEqualTo(2L);
+    assertThat(Files.exists(source.resolve("show"))).isFalse();
+    assertThat(Files.exists(source.resolve("week/milan"))).isFalse();
+    assertThat(new String(Files.readAllBytes(target.resolve("show")), UTF_8))
+        .isEqualTo(SINGULARITY);
+    assertThat(new String(Files.readAllBytes(target.resolve("week/milan")), UTF_8))
+        .isEqualTo(SINGULARITY);
+  }
+
+  @Test
+  public void testMoveTree_sourceOverwrittenWhileMoving_isNotDeleted() throws IOException {
+    InMemoryStorageRpc rpc = InMemoryStorageRpc.create();
+    final Storage storage = rpc.options().service();
+    storage.create(BucketInfo.of("military"));
+    try (CloudStorageFileSystem fs =
+        forBucket("military", CloudStorageConfiguration.DEFAULT, rpc.options())) {
+      Path source = fs.getPath("fashion/");
+      Path target = fs.getPath("backup/");
+      Files.write(source.resolve("show"), SINGULARITY.getBytes(UTF_8));
+      CloudStorageCopyListener listener = new CloudStorageCopyListener() {
+        @Override
+        public void onProgress(Path source, Path target, long bytesCopied, long totalBytes) {
+          if (bytesCopied == totalBytes) {
+            storage.create(BlobInfo.builder("military", "fashion/show").build(),
+                "(✿◕ ‿◕ )ノ".getBytes(UTF_8));
+          }
+        }
+      };
+      assertThat(provider(source).moveTree(source, target,
+          CloudStorageOptions.withCopyListener(listener))).isEqualTo(1L);
+      assertThat(new String(Files.readAllBytes(target.resolve("show")), UTF_8))
+          .isEqualTo(SINGULARITY);
+      assertThat(new String(Files.readAllBytes(source.resolve("show")), UTF_8))
+          .isEqualTo("(✿◕ ‿◕ )ノ");
+    }
+  }
+
+  @Test
+  public void testMoveTree_atomicMove_throwsAtomicMoveNotSupportedException()
+      throws IOException {
+    Path source = Paths.get(URI.create("gs://military/fashion/"));
+    thrown.expect(AtomicMoveNotSupportedException.class);
+    provider(source).moveTree(
+        source, Paths.get(URI.create("gs://greenbean/fashion/")), ATOMIC_MOVE);
+  }
+
   @Test
   public void testCreateDirectory() throws IOException {
     Path path = Paths.get(URI.create("gs://greenbean/dir/"));
@@ -648,6 +911,18 @@ public class CloudStorageFileSystemProviderTest {
     return CloudStorageConfiguration.builder().permitEmptyPathComponents(value).build();
   }
 
+  private static CloudStorageConfiguration statCache() {
+    return CloudStorageConfiguration.builder().statCacheSize(100).build();
+  }
+
+  private static CloudStorageFileSystemProvider provider(Path path) {
+    return (CloudStorageFileSystemProvider) path.getFileSystem().provider();
+  }
+
+  private static CloudStorageConfiguration pipelineUploads() {
+    return CloudStorageConfiguration.builder().blockSize(256 * 1024).pipelineUploads(true).build();
+  }
+
   private static CloudStorageConfiguration usePseudoDirectories(boolean value) {
     return CloudStorageConfiguration.builder().usePseudoDirectories(value).build();
   }
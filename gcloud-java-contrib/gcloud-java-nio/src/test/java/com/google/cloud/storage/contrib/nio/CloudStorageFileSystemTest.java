@@ -31,10 +31,13 @@ import org.junit.runners.JUnit4;
 import java.io.IOException;
 import java.net.URI;
 import java.nio.file.FileSystem;
+import java.nio.file.FileVisitResult;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -159,4 +162,41 @@ public class CloudStorageFileSystemTest {
       assertThat(got).containsExactlyElementsIn(goodPaths);
     }
   }
+
+  @Test
+  public void testWalkFileTree_recursiveListings() throws IOException {
+    CloudStorageConfiguration config = CloudStorageConfiguration.builder()
+        .recursiveListings(true)
+        .statCacheSize(100)
+        .build();
+    try (FileSystem fs = CloudStorageFileSystem.forBucket("bucket", config)) {
+      List<Path> goodPaths = new ArrayList<>();
+      goodPaths.add(fs.getPath("dir/angel"));
+      goodPaths.add(fs.getPath("dir/alone"));
+      goodPaths.add(fs.getPath("dir/dir2/another_angel"));
+      for (Path path : goodPaths) {
+        Files.write(path, ALONE.getBytes(UTF_8));
+      }
+      Files.write(fs.getPath("atroot"), ALONE.getBytes(UTF_8));
+
+      final List<Path> got = new ArrayList<>();
+      final List<Path> dirs = new ArrayList<>();
+      Files.walkFileTree(fs.getPath("/dir/"), new SimpleFileVisitor<Path>() {
+        @Override
+        public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+          dirs.add(dir);
+          return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+          assertThat(attrs.size()).isEqualTo((long) ALONE.getBytes(UTF_8).length);
+          got.add(file);
+          return FileVisitResult.CONTINUE;
+        }
+      });
+      assertThat(got).containsExactlyElementsIn(goodPaths);
+      assertThat(dirs).containsExactly(fs.getPath("/dir/"), fs.getPath("dir/dir2/"));
+    }
+  }
 }
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.storage.contrib.nio;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.mockito.AdditionalAnswers.delegatesTo;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import com.google.cloud.storage.BlobId;
+import com.google.cloud.storage.BlobInfo;
+import com.google.cloud.storage.BucketInfo;
+import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.testing.InMemoryStorageRpc;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+/**
+ * Unit tests for {@link CloudStorageLocalCache}.
+ */
+@RunWith(JUnit4.class)
+public class CloudStorageLocalCacheTest {
+
+  @Rule public final ExpectedException thrown = ExpectedException.none();
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+  private Storage gcsStorage;
+  private Path directory;
+
+  @Before
+  public void before() throws IOException {
+    Storage storage = InMemoryStorageRpc.create().options().service();
+    storage.create(BucketInfo.of("bucket"));
+    gcsStorage = mock(Storage.class, delegatesTo(storage));
+    directory = folder.newFolder().toPath();
+  }
+
+  private BlobInfo create(String name, String content) {
+    return gcsStorage.create(BlobInfo.builder("bucket", name).build(), content.getBytes(UTF_8));
+  }
+
+  private static String readAll(SeekableByteChannel chan) throws IOException {
+    try (SeekableByteChannel closing = chan) {
+      ByteBuffer buffer = ByteBuffer.allocate((int) chan.size());
+      while (buffer.hasRemaining() && chan.read(buffer) >= 0) {
+        // keep reading
+      }
+      return new String(buffer.array(), 0, buffer.position(), UTF_8);
+    }
+  }
+
+  private Path cachedFile(BlobInfo blobInfo) {
+    return directory.resolve(CloudStorageLocalCache.fileName(blobInfo.blobId()));
+  }
+
+  @Test
+  public void testOpen_coldReadPopulatesCache() throws IOException {
+    BlobInfo blobInfo = create("file", "0123456789");
+    CloudStorageLocalCache cache = CloudStorageLocalCache.create(directory, 100, 4);
+    assertThat(readAll(cache.open(gcsStorage, blobInfo))).isEqualTo("0123456789");
+    assertThat(Files.exists(cachedFile(blobInfo))).isTrue();
+    assertThat(readAll(cache.open(gcsStorage, blobInfo))).isEqualTo("0123456789");
+    verify(gcsStorage, times(1)).reader(blobInfo);
+  }
+
+  @Test
+  public void testOpen_sharedWithOtherCaches() throws IOException {
+    BlobInfo blobInfo = create("file", "0123456789");
+    CloudStorageLocalCache.create(directory, 100, 4).open(gcsStorage, blobInfo).close();
+    CloudStorageLocalCache other = CloudStorageLocalCache.create(directory, 100, 4);
+    assertThat(readAll(other.open(gcsStorage, blobInfo))).isEqualTo("0123456789");
+    verify(gcsStorage, times(1)).reader(blobInfo);
+  }
+
+  @Test
+  public void testOpen_newGenerationIsDownloaded() throws IOException {
+    BlobInfo first = create("file", "first");
+    BlobInfo second = create("file", "second");
+    CloudStorageLocalCache cache = CloudStorageLocalCache.create(directory, 100, 4);
+    assertThat(readAll(cache.open(gcsStorage, first))).isEqualTo("first");
+    assertThat(readAll(cache.open(gcsStorage, second))).isEqualTo("second");
+    assertThat(cachedFile(first)).isNotEqualTo(cachedFile(second));
+  }
+
+  @Test
+  public void testOpen_evictsLeastRecentlyRead() throws IOException {
+    BlobInfo a = create("a", "0123456789");
+    BlobInfo b = create("b", "0123456789");
+    BlobInfo c = create("c", "0123456789");
+    CloudStorageLocalCache cache = CloudStorageLocalCache.create(directory, 25, 4);
+    cache.open(gcsStorage, a).close();
+    cache.open(gcsStorage, b).close();
+    Files.setLastModifiedTime(cachedFile(a), FileTime.fromMillis(1000));
+    Files.setLastModifiedTime(cachedFile(b), FileTime.fromMillis(2000));
+    cache.open(gcsStorage, a).close();
+    cache.open(gcsStorage, c).close();
+    assertThat(Files.exists(cachedFile(a))).isTrue();
+    assertThat(Files.exists(cachedFile(b))).isFalse();
+    assertThat(Files.exists(cachedFile(c))).isTrue();
+  }
+
+  @Test
+  public void testOpen_notCacheable_returnsNull() throws IOException {
+    BlobInfo blobInfo = create("file", "0123456789");
+    CloudStorageLocalCache cache = CloudStorageLocalCache.create(directory, 5, 4);
+    assertThat(cache.open(gcsStorage, blobInfo)).isNull();
+    cache = CloudStorageLocalCache.create(directory, 100, 4);
+    assertThat(cache.open(gcsStorage, BlobInfo.builder(BlobId.of("bucket", "file")).size(10L)
+        .build())).isNull();
+    verify(gcsStorage, never()).reader(any(BlobInfo.class));
+  }
+
+  @Test
+  public void testOpen_checksumMismatch_throwsAndDiscardsDownload() throws IOException {
+    BlobInfo blobInfo = create("file", "0123456789").toBuilder().crc32c("AAAAAA==").build();
+    CloudStorageLocalCache cache = CloudStorageLocalCache.create(directory, 100, 4);
+    try {
+      cache.open(gcsStorage, blobInfo);
+      throw new AssertionError("Expected IOException");
+    } catch (IOException expected) {
+      assertThat(expected.getMessage()).contains("CRC32C AAAAAA==");
+    }
+    assertThat(directory.toFile().list()).isEmpty();
+  }
+
+  @Test
+  public void testDisabled() {
+    CloudStorageConfiguration config = CloudStorageConfiguration.DEFAULT;
+    assertThat(CloudStorageLocalCache.create(config).isEnabled()).isFalse();
+    config = CloudStorageConfiguration.builder()
+        .localCacheDirectory(folder.getRoot() + File.separator + "cache")
+        .build();
+    assertThat(CloudStorageLocalCache.create(config).isEnabled()).isTrue();
+  }
+}
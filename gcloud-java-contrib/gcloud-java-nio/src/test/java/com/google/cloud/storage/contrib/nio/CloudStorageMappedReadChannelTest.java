@@ -0,0 +1,109 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.storage.contrib.nio;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Unit tests for {@link CloudStorageMappedReadChannel}.
+ */
+@RunWith(JUnit4.class)
+public class CloudStorageMappedReadChannelTest {
+
+  @Rule public final ExpectedException thrown = ExpectedException.none();
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+  private Path file;
+
+  @Before
+  public void before() throws IOException {
+    file = folder.newFile().toPath();
+    Files.write(file, "0123456789".getBytes(UTF_8));
+  }
+
+  private static String read(SeekableByteChannel chan, long position, int length)
+      throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(length);
+    chan.position(position);
+    while (buffer.hasRemaining() && chan.read(buffer) >= 0) {
+      // keep reading
+    }
+    return new String(buffer.array(), 0, buffer.position(), UTF_8);
+  }
+
+  @Test
+  public void testRead_acrossSegments() throws IOException {
+    try (SeekableByteChannel chan = CloudStorageMappedReadChannel.create(file, 4)) {
+      assertThat(chan.size()).isEqualTo(10L);
+      assertThat(read(chan, 0, 10)).isEqualTo("0123456789");
+      assertThat(read(chan, 3, 6)).isEqualTo("345678");
+      assertThat(read(chan, 8, 5)).isEqualTo("89");
+      assertThat(chan.position()).isEqualTo(10L);
+      assertThat(chan.read(ByteBuffer.allocate(1))).isEqualTo(-1);
+    }
+  }
+
+  @Test
+  public void testRead_afterFileDeleted() throws IOException {
+    try (SeekableByteChannel chan = CloudStorageMappedReadChannel.create(file)) {
+      Files.delete(file);
+      assertThat(read(chan, 2, 3)).isEqualTo("234");
+    }
+  }
+
+  @Test
+  public void testRead_emptyFile() throws IOException {
+    Files.write(file, new byte[0]);
+    try (SeekableByteChannel chan = CloudStorageMappedReadChannel.create(file)) {
+      assertThat(chan.size()).isEqualTo(0L);
+      assertThat(chan.read(ByteBuffer.allocate(1))).isEqualTo(-1);
+    }
+  }
+
+  @Test
+  public void testWrite_throwsNonWritableChannelException() throws IOException {
+    SeekableByteChannel chan = CloudStorageMappedReadChannel.create(file);
+    thrown.expect(NonWritableChannelException.class);
+    chan.write(ByteBuffer.allocate(1));
+  }
+
+  @Test
+  public void testClosed_throwsClosedChannelException() throws IOException {
+    SeekableByteChannel chan = CloudStorageMappedReadChannel.create(file);
+    chan.close();
+    assertThat(chan.isOpen()).isFalse();
+    thrown.expect(ClosedChannelException.class);
+    chan.read(ByteBuffer.allocate(1));
+  }
+}
@@ -282,6 +282,25 @@ public class CloudStoragePathTest {
     }
   }
 
+  @Test
+  public void testGetParent_internDirectoryPaths() throws IOException {
+    CloudStorageConfiguration config =
+        CloudStorageConfiguration.builder().internDirectoryPaths(true).build();
+    try (CloudStorageFileSystem fs = CloudStorageFileSystem.forBucket("doodle", config)) {
+      String parent = fs.getPath("a/b/c").getParent().toString();
+      assertThat(fs.getPath("a/b/d").getParent().toString()).isSameAs(parent);
+      assertThat(fs.getPath("a/b/").toString()).isSameAs(parent);
+    }
+  }
+
+  @Test
+  public void testBucket_isInterned() throws IOException {
+    try (CloudStorageFileSystem fs1 = CloudStorageFileSystem.forBucket(new String("doodle"));
+        CloudStorageFileSystem fs2 = CloudStorageFileSystem.forBucket(new String("doodle"))) {
+      assertThat(fs1.getPath("a").bucket()).isSameAs(fs2.getPath("b").bucket());
+    }
+  }
+
   @Test
   public void testGetParent_preserveTrailingSlash() throws IOException {
     try (CloudStorageFileSystem fs = CloudStorageFileSystem.forBucket("doodle")) {
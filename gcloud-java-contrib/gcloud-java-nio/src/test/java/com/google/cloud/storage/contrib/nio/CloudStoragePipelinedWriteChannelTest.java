@@ -0,0 +1,116 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.storage.contrib.nio;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.cloud.WriteChannel;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+
+/**
+ * Unit tests for {@link CloudStoragePipelinedWriteChannel}.
+ */
+@RunWith(JUnit4.class)
+public class CloudStoragePipelinedWriteChannelTest {
+
+  @Rule public final ExpectedException thrown = ExpectedException.none();
+
+  private final WriteChannel gcsChannel = mock(WriteChannel.class);
+  private final ByteArrayOutputStream uploaded = new ByteArrayOutputStream();
+  private final CloudStoragePipelinedWriteChannel chan =
+      new CloudStoragePipelinedWriteChannel(
+          gcsChannel, MoreExecutors.newDirectExecutorService(), 4);
+
+  @Before
+  public void before() throws IOException {
+    when(gcsChannel.write(any(ByteBuffer.class))).thenAnswer(new Answer<Integer>() {
+      @Override
+      public Integer answer(InvocationOnMock invocation) {
+        ByteBuffer src = (ByteBuffer) invocation.getArguments()[0];
+        int amt = src.remaining();
+        uploaded.write(src.array(), src.arrayOffset() + src.position(), amt);
+        src.position(src.limit());
+        return amt;
+      }
+    });
+  }
+
+  private static ByteBuffer bytes(String value) {
+    return ByteBuffer.wrap(value.getBytes(UTF_8));
+  }
+
+  @Test
+  public void testWrite_uploadsFullBlocks() throws IOException {
+    assertThat(chan.write(bytes("012"))).isEqualTo(3);
+    assertThat(uploaded.toString("UTF-8")).isEmpty();
+    assertThat(chan.write(bytes("3456789"))).isEqualTo(7);
+    assertThat(uploaded.toString("UTF-8")).isEqualTo("01234567");
+    verify(gcsChannel, never()).close();
+  }
+
+  @Test
+  public void testClose_uploadsRemainingBytes() throws IOException {
+    chan.write(bytes("0123456789"));
+    chan.close();
+    assertThat(uploaded.toString("UTF-8")).isEqualTo("0123456789");
+    assertThat(chan.isOpen()).isFalse();
+    verify(gcsChannel).close();
+  }
+
+  @Test
+  public void testWrite_uploadFailed_throwsAndDoesntCreateObject() throws IOException {
+    doThrow(new IOException("oops")).when(gcsChannel).write(any(ByteBuffer.class));
+    chan.write(bytes("0123"));
+    try {
+      chan.write(bytes("4567"));
+      throw new AssertionError("Expected IOException");
+    } catch (IOException expected) {
+      assertThat(expected).hasMessage("oops");
+    }
+    assertThat(chan.isOpen()).isFalse();
+    chan.close();
+    verify(gcsChannel, never()).close();
+  }
+
+  @Test
+  public void testClosed_throwsClosedChannelException() throws IOException {
+    chan.close();
+    thrown.expect(ClosedChannelException.class);
+    chan.write(bytes("0"));
+  }
+}
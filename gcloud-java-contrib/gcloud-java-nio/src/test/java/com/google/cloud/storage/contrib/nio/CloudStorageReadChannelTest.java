@@ -18,8 +18,10 @@ package com.google.cloud.storage.contrib.nio;
 
 import static com.google.common.truth.Truth.assertThat;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
@@ -36,6 +38,8 @@ import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
@@ -153,4 +157,38 @@ public class CloudStorageReadChannelTest {
     verify(gcsChannel).seek(1);
     verify(gcsChannel, times(5)).isOpen();
   }
+
+  @Test
+  public void testReadAtPosition() throws IOException {
+    ReadChannel rangeChannel = mock(ReadChannel.class);
+    when(gcsStorage.reader(eq(file))).thenReturn(rangeChannel);
+    when(rangeChannel.read(any(ByteBuffer.class))).thenAnswer(new Answer<Integer>() {
+      @Override
+      public Integer answer(InvocationOnMock invocation) {
+        ((ByteBuffer) invocation.getArguments()[0]).put(new byte[] {4, 2});
+        return 2;
+      }
+    });
+    ByteBuffer buffer = ByteBuffer.allocate(2);
+    assertThat(chan.read(buffer, 40)).isEqualTo(2);
+    assertThat(buffer.array()).isEqualTo(new byte[] {4, 2});
+    assertThat(chan.position()).isEqualTo(0L);
+    verify(rangeChannel).seek(40);
+    verify(rangeChannel).chunkSize(2);
+    verify(rangeChannel).close();
+    verify(gcsChannel, never()).seek(anyLong());
+  }
+
+  @Test
+  public void testReadAtPosition_pastEnd() throws IOException {
+    assertThat(chan.read(ByteBuffer.allocate(1), 42)).isEqualTo(-1);
+    verify(gcsStorage, times(1)).reader(eq(file));
+  }
+
+  @Test
+  public void testReadAtPosition_whenClosed_throwsCce() throws IOException {
+    when(gcsChannel.isOpen()).thenReturn(false);
+    thrown.expect(ClosedChannelException.class);
+    chan.read(ByteBuffer.allocate(1), 0);
+  }
 }
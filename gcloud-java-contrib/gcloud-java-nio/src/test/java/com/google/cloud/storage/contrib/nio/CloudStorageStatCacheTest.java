@@ -0,0 +1,145 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.storage.contrib.nio;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+import com.google.cloud.storage.BlobId;
+import com.google.cloud.storage.BlobInfo;
+import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.StorageException;
+import com.google.common.testing.FakeTicker;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit tests for {@link CloudStorageStatCache}.
+ */
+@RunWith(JUnit4.class)
+public class CloudStorageStatCacheTest {
+
+  @Rule public final ExpectedException thrown = ExpectedException.none();
+
+  private final Storage storage = mock(Storage.class);
+  private final FakeTicker ticker = new FakeTicker();
+  private final BlobId file = BlobId.of("bucket", "file");
+  private final BlobInfo metadata = mock(BlobInfo.class);
+
+  @Before
+  public void before() {
+    when(metadata.blobId()).thenReturn(file);
+    when(metadata.size()).thenReturn(42L);
+  }
+
+  @Test
+  public void testGet_cachesMetadata() {
+    when(storage.get(file)).thenReturn(metadata);
+    CloudStorageStatCache cache = CloudStorageStatCache.create(10, 1000, ticker);
+    assertThat(cache.isEnabled()).isTrue();
+    assertThat(cache.get(storage, file)).isSameAs(metadata);
+    assertThat(cache.get(storage, BlobId.of("bucket", "file", 7L))).isSameAs(metadata);
+    verify(storage).get(file);
+  }
+
+  @Test
+  public void testGet_cachesMissingObjects() {
+    CloudStorageStatCache cache = CloudStorageStatCache.create(10, 1000, ticker);
+    assertThat(cache.get(storage, file)).isNull();
+    assertThat(cache.get(storage, file)).isNull();
+    verify(storage).get(file);
+  }
+
+  @Test
+  public void testGet_expires() {
+    when(storage.get(file)).thenReturn(metadata);
+    CloudStorageStatCache cache = CloudStorageStatCache.create(10, 1000, ticker);
+    cache.get(storage, file);
+    ticker.advance(999, TimeUnit.MILLISECONDS);
+    cache.get(storage, file);
+    verify(storage).get(file);
+    ticker.advance(1, TimeUnit.MILLISECONDS);
+    cache.get(storage, file);
+    verify(storage, times(2)).get(file);
+  }
+
+  @Test
+  public void testGet_propagatesStorageException() {
+    StorageException exception = new StorageException(500, "oops");
+    when(storage.get(file)).thenThrow(exception);
+    CloudStorageStatCache cache = CloudStorageStatCache.create(10, 1000, ticker);
+    thrown.expect(StorageException.class);
+    thrown.expectMessage("oops");
+    cache.get(storage, file);
+  }
+
+  @Test
+  public void testPut() {
+    CloudStorageStatCache cache = CloudStorageStatCache.create(10, 1000, ticker);
+    BlobInfo directory = mock(BlobInfo.class);
+    when(directory.blobId()).thenReturn(BlobId.of("bucket", "dir/"));
+    when(directory.size()).thenReturn(0L);
+    when(directory.isDirectory()).thenReturn(true);
+    BlobInfo partial = mock(BlobInfo.class);
+    when(partial.blobId()).thenReturn(BlobId.of("bucket", "partial"));
+    cache.put(metadata);
+    cache.put(directory);
+    cache.put(partial);
+    assertThat(cache.get(storage, file)).isSameAs(metadata);
+    cache.get(storage, BlobId.of("bucket", "dir/"));
+    cache.get(storage, BlobId.of("bucket", "partial"));
+    verify(storage).get(BlobId.of("bucket", "dir/"));
+    verify(storage).get(BlobId.of("bucket", "partial"));
+    verify(storage, times(0)).get(file);
+  }
+
+  @Test
+  public void testInvalidate() {
+    when(storage.get(file)).thenReturn(metadata);
+    CloudStorageStatCache cache = CloudStorageStatCache.create(10, 1000, ticker);
+    cache.get(storage, file);
+    cache.invalidate(file);
+    cache.get(storage, file);
+    cache.invalidateAll();
+    cache.get(storage, file);
+    verify(storage, times(3)).get(file);
+  }
+
+  @Test
+  public void testDisabled() {
+    when(storage.get(file)).thenReturn(metadata);
+    CloudStorageStatCache cache =
+        CloudStorageStatCache.create(CloudStorageConfiguration.DEFAULT);
+    assertThat(cache.isEnabled()).isFalse();
+    cache.put(metadata);
+    verifyZeroInteractions(storage);
+    assertThat(cache.get(storage, file)).isSameAs(metadata);
+    assertThat(cache.get(storage, file)).isSameAs(metadata);
+    verify(storage, times(2)).get(file);
+  }
+}
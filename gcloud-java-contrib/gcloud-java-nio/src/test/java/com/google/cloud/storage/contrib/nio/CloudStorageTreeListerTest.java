@@ -0,0 +1,183 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.storage.contrib.nio;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.mockito.AdditionalAnswers.delegatesTo;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import com.google.cloud.storage.BlobId;
+import com.google.cloud.storage.BlobInfo;
+import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.StorageOptions;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Matchers;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Unit tests for {@link CloudStorageTreeLister}.
+ */
+@RunWith(JUnit4.class)
+public class CloudStorageTreeListerTest {
+
+  @Rule public final ExpectedException thrown = ExpectedException.none();
+
+  private static final DirectoryStream.Filter<Path> ALL = new DirectoryStream.Filter<Path>() {
+    @Override
+    public boolean accept(Path entry) {
+      return true;
+    }
+  };
+
+  private Storage storage;
+  private CloudStorageFileSystem fs;
+
+  @Before
+  public void before() {
+    StorageOptions options = LocalStorageHelper.options();
+    CloudStorageFileSystemProvider.setGCloudOptions(options);
+    Storage localStorage = options.service();
+    for (String name : new String[] {
+        "data/a", "data/b/c", "data/b/d/e", "data/b-x", "data/f/", "other/g"}) {
+      localStorage.create(
+          BlobInfo.builder(BlobId.of("bucket", name)).build(), name.getBytes(UTF_8));
+    }
+    storage = mock(Storage.class, delegatesTo(localStorage));
+    fs = CloudStorageFileSystem.forBucket("bucket",
+        CloudStorageConfiguration.builder().recursiveListings(true).statCacheSize(100).build());
+  }
+
+  @After
+  public void after() throws IOException {
+    fs.close();
+  }
+
+  private DirectoryStream<Path> list(String dir) {
+    return fs.treeLister().newDirectoryStream(storage, fs.getPath(dir), ALL);
+  }
+
+  /**
+   * Lists {@code dir} and its subdirectories depth first, like {@code Files.walkFileTree}.
+   */
+  private void walk(String dir, List<String> entries) throws IOException {
+    try (DirectoryStream<Path> stream = list(dir)) {
+      for (Path entry : stream) {
+        entries.add(entry.toString());
+        if (entry.toString().endsWith("/")) {
+          walk(entry.toString(), entries);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testWalk_listsOnce() throws IOException {
+    List<String> entries = new ArrayList<>();
+    walk("/data/", entries);
+    assertThat(entries).containsExactly(
+        "data/a", "data/b-x", "data/b/", "data/b/c", "data/b/d/", "data/b/d/e", "data/f/");
+    verify(storage, times(1)).list(anyString(), Matchers.<Storage.BlobListOption>anyVararg());
+  }
+
+  @Test
+  public void testList_skipsUnopenedSubdirectories() throws IOException {
+    List<String> entries = new ArrayList<>();
+    try (DirectoryStream<Path> stream = list("/data")) {
+      for (Path entry : stream) {
+        entries.add(entry.toString());
+      }
+    }
+    assertThat(entries).containsExactly("data/a", "data/b-x", "data/b/", "data/f/");
+  }
+
+  @Test
+  public void testList_skipsDirectoryObject() throws IOException {
+    List<String> entries = new ArrayList<>();
+    try (DirectoryStream<Path> stream = list("/data/f/")) {
+      for (Path entry : stream) {
+        entries.add(entry.toString());
+      }
+    }
+    assertThat(entries).isEmpty();
+  }
+
+  @Test
+  public void testList_subdirectoryOpenedLater_listsAgain() throws IOException {
+    List<String> dirs = new ArrayList<>();
+    try (DirectoryStream<Path> stream = list("/data/")) {
+      for (Path entry : stream) {
+        if (entry.toString().endsWith("/")) {
+          dirs.add(entry.toString());
+        }
+      }
+    }
+    List<String> entries = new ArrayList<>();
+    try (DirectoryStream<Path> stream = list(dirs.get(0))) {
+      for (Path entry : stream) {
+        entries.add(entry.toString());
+      }
+    }
+    assertThat(entries).containsExactly("data/b/c", "data/b/d/");
+    verify(storage, times(2)).list(anyString(), Matchers.<Storage.BlobListOption>anyVararg());
+  }
+
+  @Test
+  public void testList_populatesStatCache() throws IOException {
+    List<String> entries = new ArrayList<>();
+    walk("/data/", entries);
+    assertThat(fs.statCache().get(storage, BlobId.of("bucket", "data/b/d/e")).size())
+        .isEqualTo(10L);
+    verify(storage, never()).get(any(BlobId.class));
+  }
+
+  @Test
+  public void testList_parentMovedPast_throwsConcurrentModificationException()
+      throws IOException {
+    try (DirectoryStream<Path> parent = list("/data/")) {
+      Iterator<Path> entries = parent.iterator();
+      Path dir = entries.next();
+      while (!dir.toString().endsWith("/")) {
+        dir = entries.next();
+      }
+      try (DirectoryStream<Path> child = list(dir.toString())) {
+        entries.next();
+        thrown.expect(ConcurrentModificationException.class);
+        child.iterator().hasNext();
+      }
+    }
+  }
+}
@@ -16,6 +16,7 @@
 
 package com.google.cloud.storage.contrib.nio;
 
+import com.google.api.client.googleapis.json.GoogleJsonError;
 import com.google.api.services.storage.model.Bucket;
 import com.google.api.services.storage.model.StorageObject;
 import com.google.cloud.storage.Storage;
@@ -29,23 +30,26 @@ import java.math.BigInteger;
 import java.nio.file.FileAlreadyExistsException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-
-import javax.annotation.concurrent.NotThreadSafe;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A bare-bones in-memory implementation of Storage, meant for testing.
  *
- * <p>This class is <i>not</i> thread-safe. It's also (currently) limited in the following ways:
+ * <p>Objects are kept in concurrent maps, so that tests can call this class from several threads,
+ * but its operations aren't atomic. It's also (currently) limited in the following ways:
  * <ul>
  * <li>Supported
  *   <ul>
  *   <li>object create
  *   <li>object get
  *   <li>object delete
- *   <li>list the contents of a bucket
+ *   <li>list the contents of a bucket, in name order
+ *   <li>batches of object deletes and gets, which run when submitted
  *   </ul>
  * <li>Unsupported
  *   <ul>
@@ -57,20 +61,18 @@ import javax.annotation.concurrent.NotThreadSafe;
  *   <li>file attributes
  *   <li>patch
  *   <li>continueRewrite
- *   <li>createBatch
  *   <li>checksums, etags
  *   </ul>
  * </ul>
  */
-@NotThreadSafe
 class FakeStorageRpc implements StorageRpc {
 
   // fullname -> metadata
-  Map<String, StorageObject> metadata = new HashMap<>();
+  Map<String, StorageObject> metadata = new ConcurrentHashMap<>();
   // fullname -> contents
-  Map<String, byte[]> contents = new HashMap<>();
+  Map<String, byte[]> contents = new ConcurrentHashMap<>();
   // fullname -> future contents that will be visible on close.
-  Map<String, byte[]> futureContents = new HashMap<>();
+  Map<String, byte[]> futureContents = new ConcurrentHashMap<>();
 
   private final boolean throwIfOption;
 
@@ -83,8 +85,8 @@ class FakeStorageRpc implements StorageRpc {
 
   // remove all files
   void reset() {
-    metadata = new HashMap<>();
-    contents = new HashMap<>();
+    metadata = new ConcurrentHashMap<>();
+    contents = new ConcurrentHashMap<>();
   }
 
   @Override
@@ -146,9 +148,20 @@ class FakeStorageRpc implements StorageRpc {
       if (processedAsFolder(so, delimiter, prefix, folders)) {
         continue;
       }
+      String key = fullname(so);
+      if (contents.containsKey(key)) {
+        so.setSize(BigInteger.valueOf(contents.get(key).length));
+      }
       values.add(so);
     }
     values.addAll(folders.values());
+    // like Cloud Storage, return the objects and prefixes in name order
+    Collections.sort(values, new Comparator<StorageObject>() {
+      @Override
+      public int compare(StorageObject a, StorageObject b) {
+        return a.getName().compareTo(b.getName());
+      }
+    });
     // null cursor to indicate there is no more data (empty string would cause us to be called again).
     // The type cast seems to be necessary to help Java's typesystem remember that collections are iterable.
     return Tuple.of(null, (Iterable<StorageObject>) values);
@@ -214,8 +227,7 @@ class FakeStorageRpc implements StorageRpc {
 
   @Override
   public RpcBatch createBatch() {
-    //return new DefaultRpcBatch(storage);
-    throw new UnsupportedOperationException();
+    return new FakeRpcBatch();
   }
 
   @Override
@@ -286,7 +298,7 @@ class FakeStorageRpc implements StorageRpc {
     if (futureContents.containsKey(uploadId)) {
       bytes = futureContents.get(uploadId);
       if (bytes.length < length + destOffset) {
-        bytes = new byte[(int) (length + destOffset)];
+        bytes = Arrays.copyOf(bytes, (int) (length + destOffset));
       }
     } else {
       bytes = new byte[(int) (length + destOffset)];
@@ -366,4 +378,69 @@ class FakeStorageRpc implements StorageRpc {
     folders.put(folderName, fakeFolder);
     return true;
   }
+
+  /**
+   * Batch that runs its calls one by one when submitted.
+   */
+  private class FakeRpcBatch implements RpcBatch {
+
+    private final List<Runnable> calls = new ArrayList<>();
+
+    @Override
+    public void addDelete(final StorageObject storageObject, final Callback<Void> callback,
+        final Map<Option, ?> options) {
+      calls.add(new Runnable() {
+        @Override
+        public void run() {
+          if (delete(storageObject, options)) {
+            callback.onSuccess(null);
+          } else {
+            callback.onFailure(notFound(storageObject));
+          }
+        }
+      });
+    }
+
+    @Override
+    public void addPatch(final StorageObject storageObject,
+        final Callback<StorageObject> callback, final Map<Option, ?> options) {
+      calls.add(new Runnable() {
+        @Override
+        public void run() {
+          callback.onSuccess(patch(storageObject, options));
+        }
+      });
+    }
+
+    @Override
+    public void addGet(final StorageObject storageObject, final Callback<StorageObject> callback,
+        final Map<Option, ?> options) {
+      calls.add(new Runnable() {
+        @Override
+        public void run() {
+          StorageObject result = get(storageObject, options);
+          if (result != null) {
+            callback.onSuccess(result);
+          } else {
+            callback.onFailure(notFound(storageObject));
+          }
+        }
+      });
+    }
+
+    @Override
+    public void submit() {
+      for (Runnable call : calls) {
+        call.run();
+      }
+      calls.clear();
+    }
+
+    private GoogleJsonError notFound(StorageObject storageObject) {
+      GoogleJsonError error = new GoogleJsonError();
+      error.setCode(404);
+      error.setMessage("File not found: " + fullname(storageObject));
+      return error;
+    }
+  }
 }
@@ -59,6 +59,12 @@ public class UnixPathTest {
     assertThat(p("../").normalize()).isEqualTo(p(""));
   }
 
+  @Test
+  public void testNormalize_parentOfEveryComponent() {
+    assertThat(p("a/b/../..").normalize()).isEqualTo(p(""));
+    assertThat(p("/a/bc/../..").normalize()).isEqualTo(p("/"));
+  }
+
   @Test
   public void testNormalize_extraSlashes_getRemoved() {
     assertThat(p("///").normalize()).isEqualTo(p("/"));
@@ -260,6 +266,13 @@ public class UnixPathTest {
     assertThat(p("eins/zwei/drei/vier/").subpath(2, 4)).isEqualTo(p("drei/vier"));
   }
 
+  @Test
+  public void testSubpath_extraSlashes_getRemoved() {
+    assertThat(p("/eins//zwei/drei").subpath(0, 2)).isEqualTo(p("eins/zwei"));
+    assertThat(p("/eins//zwei/drei").subpath(1, 3)).isEqualTo(p("zwei/drei"));
+    assertThat(pp("eins//zwei").subpath(0, 3)).isEqualTo(pp("eins//zwei"));
+  }
+
   @Test
   public void testSubpath_empty_returnsEmpty() {
     assertThat(p("").subpath(0, 1)).isEqualTo(p(""));
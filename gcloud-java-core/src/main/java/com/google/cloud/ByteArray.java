@@ -80,6 +80,28 @@ public class ByteArray implements Iterable<Byte>, Serializable {
     return byteString.size();
   }
 
+  /**
+   * Returns the byte at the given index. Unlike {@link #toByteArray()} this method does not copy
+   * the content of this {@code ByteArray}.
+   *
+   * @throws IndexOutOfBoundsException if {@code index < 0} or {@code index >= length()}
+   */
+  public final byte byteAt(int index) {
+    return byteString.byteAt(index);
+  }
+
+  /**
+   * Returns a {@code ByteArray} view of the bytes in this {@code ByteArray} between
+   * {@code beginIndex} (inclusive) and {@code endIndex} (exclusive). The bytes are not copied: the
+   * returned object shares the content of this {@code ByteArray}.
+   *
+   * @throws IndexOutOfBoundsException if {@code beginIndex < 0}, {@code endIndex > length()} or
+   *     {@code beginIndex > endIndex}
+   */
+  public final ByteArray substring(int beginIndex, int endIndex) {
+    return new ByteArray(byteString.substring(beginIndex, endIndex));
+  }
+
   /**
    * Returns a copy of this {@code ByteArray} as an array of bytes.
    */
@@ -95,14 +117,16 @@ public class ByteArray implements Iterable<Byte>, Serializable {
   }
 
   /**
-   * Returns the content of this {@code ByteArray} as a read-only {@link ByteBuffer}.
+   * Returns the content of this {@code ByteArray} as a read-only {@link ByteBuffer}. The bytes are
+   * not copied: the returned buffer is a view over the content of this {@code ByteArray}.
    */
   public final ByteBuffer asReadOnlyByteBuffer() {
     return byteString.asReadOnlyByteBuffer();
   }
 
   /**
-   * Returns an {@link InputStream} for this {@code ByteArray} content.
+   * Returns an {@link InputStream} for this {@code ByteArray} content. The bytes are not copied:
+   * the stream reads directly from the content of this {@code ByteArray}.
    */
   public final InputStream asInputStream() {
     return byteString.newInput();
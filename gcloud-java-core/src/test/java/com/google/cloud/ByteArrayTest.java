@@ -107,6 +107,21 @@ public class ByteArrayTest {
     assertArrayEquals(BYTES_CONTENT, ByteStreams.toByteArray(ARRAY.asInputStream()));
   }
 
+  @Test
+  public void testByteAt() {
+    for (int i = 0; i < BYTES_CONTENT.length; i++) {
+      assertEquals(BYTES_CONTENT[i], ARRAY.byteAt(i));
+    }
+  }
+
+  @Test
+  public void testSubstring() {
+    ByteArray substring = ARRAY.substring(7, BYTES_CONTENT.length);
+    assertEquals(STRING_CONTENT.substring(7), substring.toStringUtf8());
+    assertEquals(BYTES_CONTENT.length - 7, substring.length());
+    assertEquals(ARRAY, ARRAY.substring(0, BYTES_CONTENT.length));
+  }
+
   @Test
   public void testHashCode() {
     assertEquals(STRING_ARRAY.hashCode(), BYTES_ARRAY.hashCode());
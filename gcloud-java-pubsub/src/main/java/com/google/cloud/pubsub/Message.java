@@ -200,7 +200,10 @@ public class Message implements Serializable {
 
   Message(BuilderImpl builder) {
     id = builder.id;
-    payload = new InternalByteArray(checkNotNull(builder.payload));
+    ByteArray builderPayload = checkNotNull(builder.payload);
+    // payloads that are already internal (e.g. from a received message) can be shared as is
+    payload = builderPayload instanceof InternalByteArray
+        ? (InternalByteArray) builderPayload : new InternalByteArray(builderPayload);
     attributes = ImmutableMap.copyOf(builder.attributes);
     publishTime = builder.publishTime;
   }
@@ -240,7 +243,9 @@ public class Message implements Serializable {
   }
 
   /**
-   * Returns the message payload.
+   * Returns the message payload. The returned object does not copy the message's bytes, use
+   * {@link ByteArray#asReadOnlyByteBuffer()} or {@link ByteArray#asInputStream()} to access them
+   * without any copy.
    */
   public ByteArray payload() {
     return payload;
@@ -293,7 +298,16 @@ public class Message implements Serializable {
   }
 
   static Message fromPb(PubsubMessage messagePb) {
-    Builder builder = builder(new InternalByteArray(messagePb.getData()));
+    return builderFromPb(messagePb).build();
+  }
+
+  /**
+   * Returns a builder initialized with the content of the provided protobuf message. The payload
+   * is not copied: the returned builder references the protobuf's {@code ByteString}.
+   */
+  static BuilderImpl builderFromPb(PubsubMessage messagePb) {
+    BuilderImpl builder = new BuilderImpl();
+    builder.payload(new InternalByteArray(messagePb.getData()));
     if (messagePb.hasPublishTime()) {
       Timestamp ts = messagePb.getPublishTime();
       Long millis = ts.getSeconds() * MILLIS_PER_SECOND + ts.getNanos() / NANOS_PER_MILLISECOND;
@@ -304,10 +318,8 @@ public class Message implements Serializable {
     if (!Objects.equals(messagePb.getMessageId(), "")) {
       builder.id(messagePb.getMessageId());
     }
-    for (Map.Entry<String, String> entry : messagePb.getAttributes().entrySet()) {
-      builder.addAttribute(entry.getKey(), entry.getValue());
-    }
-    return builder.build();
+    builder.attributes(messagePb.getAttributes());
+    return builder;
   }
 
   /**
@@ -18,23 +18,42 @@ package com.google.cloud.pubsub;
 
 import static com.google.cloud.pubsub.spi.v1.SubscriberApi.formatSubscriptionName;
 import static com.google.common.base.MoreObjects.firstNonNull;
+import static com.google.common.base.Preconditions.checkArgument;
 
 import com.google.cloud.GrpcServiceOptions.ExecutorFactory;
 import com.google.cloud.pubsub.PubSub.MessageConsumer;
 import com.google.cloud.pubsub.PubSub.MessageProcessor;
+import com.google.cloud.pubsub.PubSub.PullOption.ProcessingMode;
 import com.google.cloud.pubsub.spi.PubSubRpc;
 import com.google.cloud.pubsub.spi.PubSubRpc.PullCallback;
 import com.google.cloud.pubsub.spi.PubSubRpc.PullFuture;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.JdkFutureAdapters;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.pubsub.v1.PublishResponse;
 import com.google.pubsub.v1.PullRequest;
 import com.google.pubsub.v1.PullResponse;
 
 import io.grpc.internal.SharedResourceHolder;
 
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -43,6 +62,13 @@ import java.util.concurrent.atomic.AtomicInteger;
 final class MessageConsumerImpl implements MessageConsumer {
 
   private static final int MAX_QUEUED_CALLBACKS = 100;
+  private static final int MAX_ORDERING_LANES = 64;
+  private static final int MAX_DELIVERY_ATTEMPTS = 5;
+  private static final int MAX_TRACKED_MESSAGES = 10_000;
+  private static final int MAX_DEAD_LETTER_BATCH_SIZE = 1_000;
+  private static final int INITIAL_NACK_DELAY_SECONDS = 1;
+  // maximum acknowledge deadline allowed by the service
+  private static final int MAX_NACK_DELAY_SECONDS = 600;
   // shared scheduled executor, used to schedule pulls
   private static final SharedResourceHolder.Resource<ExecutorService> CONSUMER_EXECUTOR =
       new SharedResourceHolder.Resource<ExecutorService>() {
@@ -51,6 +77,20 @@ final class MessageConsumerImpl implements MessageConsumer {
           return Executors.newSingleThreadExecutor();
         }
 
+        @Override
+        public void close(ExecutorService instance) {
+          instance.shutdown();
+        }
+      };
+  // shared work-stealing pool, used to run message processor callbacks in SHARED_POOL mode
+  private static final SharedResourceHolder.Resource<ExecutorService> SHARED_PROCESSOR_POOL =
+      new SharedResourceHolder.Resource<ExecutorService>() {
+        @Override
+        public ExecutorService create() {
+          return new ForkJoinPool(Runtime.getRuntime().availableProcessors(),
+              ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+        }
+
         @Override
         public void close(ExecutorService instance) {
           instance.shutdown();
@@ -66,6 +106,11 @@ final class MessageConsumerImpl implements MessageConsumer {
   private final ExecutorService consumerExecutor;
   private final ExecutorFactory<ExecutorService> executorFactory;
   private final ExecutorService executor;
+  private final KeyedDispatcher dispatcher;
+  private final String orderingKey;
+  private final DeliveryAttempts deliveryAttempts;
+  private final DeadLetterPublisher deadLetterPublisher;
+  private final int maxDeliveryAttempts;
   private final AtomicInteger queuedCallbacks;
   private final int maxQueuedCallbacks;
   private final Object futureLock = new Object();
@@ -109,7 +154,15 @@ final class MessageConsumerImpl implements MessageConsumer {
    */
   static class DefaultExecutorFactory implements ExecutorFactory<ExecutorService> {
 
-    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final ExecutorService executor;
+
+    DefaultExecutorFactory() {
+      this(1);
+    }
+
+    DefaultExecutorFactory(int threads) {
+      executor = Executors.newFixedThreadPool(threads);
+    }
 
     @Override
     public ExecutorService get() {
@@ -122,6 +175,387 @@ final class MessageConsumerImpl implements MessageConsumer {
     }
   }
 
+  /**
+   * Executor factory that returns a work-stealing pool shared by all message consumers that use
+   * {@link ProcessingMode#SHARED_POOL}. The pool is shut down once no consumer uses it.
+   */
+  static class SharedPoolExecutorFactory implements ExecutorFactory<ExecutorService> {
+
+    @Override
+    public ExecutorService get() {
+      return SharedResourceHolder.get(SHARED_PROCESSOR_POOL);
+    }
+
+    @Override
+    public void release(ExecutorService executor) {
+      SharedResourceHolder.release(SHARED_PROCESSOR_POOL, executor);
+    }
+  }
+
+  /**
+   * Executor factory that runs each task in a new virtual thread, if the JVM supports them, or in a
+   * cached platform thread otherwise.
+   */
+  static class VirtualThreadExecutorFactory implements ExecutorFactory<ExecutorService> {
+
+    private static final Method NEW_VIRTUAL_THREAD_EXECUTOR = virtualThreadExecutorMethod();
+
+    private static Method virtualThreadExecutorMethod() {
+      try {
+        return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      } catch (NoSuchMethodException ex) {
+        return null;
+      }
+    }
+
+    @Override
+    public ExecutorService get() {
+      if (NEW_VIRTUAL_THREAD_EXECUTOR != null) {
+        try {
+          return (ExecutorService) NEW_VIRTUAL_THREAD_EXECUTOR.invoke(null);
+        } catch (IllegalAccessException | InvocationTargetException ex) {
+          // fall back to platform threads
+        }
+      }
+      return Executors.newCachedThreadPool();
+    }
+
+    @Override
+    public void release(ExecutorService executor) {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * An executor that runs at most {@code maxRunning} tasks at the same time on a delegate executor.
+   * Tasks that exceed the limit are queued and submitted once a running task completes. This is
+   * used to isolate message consumers that share the same executor from each other.
+   */
+  static final class BoundedExecutor implements Executor {
+
+    private final Executor executor;
+    private final int maxRunning;
+    private final Queue<Runnable> pending = new ArrayDeque<>();
+    private int running;
+
+    BoundedExecutor(Executor executor, int maxRunning) {
+      checkArgument(maxRunning > 0, "Parallelism must be > 0");
+      this.executor = executor;
+      this.maxRunning = maxRunning;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+      synchronized (this) {
+        if (running >= maxRunning) {
+          pending.add(task);
+          return;
+        }
+        running++;
+      }
+      submit(task);
+    }
+
+    /**
+     * Submits {@code task} to the delegate executor, in a slot already counted as running. If the
+     * delegate rejects the task, the slot is released and the exception is rethrown.
+     */
+    private void submit(Runnable task) {
+      try {
+        executor.execute(new Slot(task));
+      } catch (RejectedExecutionException ex) {
+        synchronized (this) {
+          running--;
+        }
+        throw ex;
+      }
+    }
+
+    synchronized int running() {
+      return running;
+    }
+
+    private final class Slot implements Runnable {
+
+      private final Runnable task;
+
+      Slot(Runnable task) {
+        this.task = task;
+      }
+
+      @Override
+      public void run() {
+        try {
+          task.run();
+        } finally {
+          Runnable next;
+          synchronized (BoundedExecutor.this) {
+            next = pending.poll();
+            if (next == null) {
+              running--;
+            }
+          }
+          if (next != null) {
+            // resubmit rather than run inline so that other tasks in the delegate can progress
+            submit(next);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Dispatches tasks to an executor so that tasks sharing the same key are executed sequentially,
+   * in submission order, while tasks with different keys can run in parallel. Keys are hashed to a
+   * bounded number of serial lanes; lanes are created lazily and do not hold a thread while idle.
+   * The number of pending tasks is not bounded by the dispatcher itself: the consumer bounds it
+   * with {@code maxQueuedCallbacks}.
+   */
+  static final class KeyedDispatcher {
+
+    private final Executor executor;
+    private final SerialLane[] lanes;
+
+    KeyedDispatcher(Executor executor, int maxLanes) {
+      checkArgument(maxLanes > 0, "Maximum number of lanes must be positive");
+      this.executor = executor;
+      this.lanes = new SerialLane[maxLanes];
+    }
+
+    /**
+     * Executes the provided task. If {@code key} is {@code null} the task is directly handed to the
+     * executor, otherwise it is executed after all previously submitted tasks in the same lane.
+     */
+    void execute(String key, Runnable task) {
+      if (key == null) {
+        executor.execute(task);
+      } else {
+        lane(key).execute(task);
+      }
+    }
+
+    private SerialLane lane(String key) {
+      int index = (key.hashCode() & Integer.MAX_VALUE) % lanes.length;
+      synchronized (lanes) {
+        SerialLane lane = lanes[index];
+        if (lane == null) {
+          lane = new SerialLane(executor);
+          lanes[index] = lane;
+        }
+        return lane;
+      }
+    }
+  }
+
+  /**
+   * A queue of tasks executed one at a time on a shared executor. After running a task the lane
+   * resubmits itself to the executor, if more tasks are pending, so that busy lanes do not starve
+   * other lanes.
+   */
+  static final class SerialLane implements Runnable {
+
+    private final Executor executor;
+    private final Queue<Runnable> tasks = new ArrayDeque<>();
+    private boolean scheduled;
+
+    SerialLane(Executor executor) {
+      this.executor = executor;
+    }
+
+    void execute(Runnable task) {
+      synchronized (this) {
+        tasks.add(task);
+        if (scheduled) {
+          return;
+        }
+        scheduled = true;
+      }
+      schedule();
+    }
+
+    @Override
+    public void run() {
+      Runnable task;
+      synchronized (this) {
+        task = tasks.poll();
+      }
+      try {
+        task.run();
+      } finally {
+        boolean reschedule;
+        synchronized (this) {
+          reschedule = !tasks.isEmpty();
+          scheduled = reschedule;
+        }
+        if (reschedule) {
+          schedule();
+        }
+      }
+    }
+
+    /**
+     * Submits this lane to the executor. If the executor rejects it the lane is no longer
+     * scheduled, so that pending tasks run once a later task schedules the lane again.
+     */
+    private void schedule() {
+      try {
+        executor.execute(this);
+      } catch (RejectedExecutionException ex) {
+        synchronized (this) {
+          scheduled = false;
+        }
+        throw ex;
+      }
+    }
+  }
+
+  /**
+   * Bounded, least-recently-used map that counts the delivery attempts of messages that failed
+   * processing. When the map is full, the entry for the least recently failed message is evicted.
+   */
+  static final class DeliveryAttempts {
+
+    private final Map<String, Integer> attempts;
+
+    DeliveryAttempts(final int maxSize) {
+      this.attempts = new LinkedHashMap<String, Integer>(16, 0.75f, true) {
+
+        private static final long serialVersionUID = 7421846734658736578L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+          return size() > maxSize;
+        }
+      };
+    }
+
+    /**
+     * Records a failed delivery attempt for the message with the provided key and returns the
+     * number of failed attempts recorded so far.
+     */
+    synchronized int increment(String key) {
+      Integer previous = attempts.get(key);
+      int current = previous == null ? 1 : previous + 1;
+      attempts.put(key, current);
+      return current;
+    }
+
+    synchronized void remove(String key) {
+      attempts.remove(key);
+    }
+
+    synchronized int size() {
+      return attempts.size();
+    }
+  }
+
+  /**
+   * Publishes messages to the dead-letter topic in batches, with asynchronous publish calls. The
+   * first processing thread that adds a message starts a publish call, messages added while the
+   * call is in progress are published by the next call, started once the previous one completes.
+   * Messages are acknowledged once published, or nacked if publishing failed. Processing threads
+   * never wait for publish calls to complete.
+   */
+  final class DeadLetterPublisher {
+
+    private final String topic;
+    private final Queue<ReceivedMessage> queue = new ArrayDeque<>();
+    private boolean publishing;
+
+    DeadLetterPublisher(String topic) {
+      this.topic = topic;
+    }
+
+    void add(ReceivedMessage message) {
+      synchronized (this) {
+        queue.add(message);
+        if (publishing) {
+          return;
+        }
+        publishing = true;
+      }
+      publishQueued();
+    }
+
+    /**
+     * Publishes the queued messages. Returns as soon as a publish call is in progress, the call's
+     * callback publishes the remaining messages once the call completes.
+     */
+    private void publishQueued() {
+      while (true) {
+        final List<ReceivedMessage> batch = new ArrayList<>();
+        synchronized (this) {
+          while (!queue.isEmpty() && batch.size() < MAX_DEAD_LETTER_BATCH_SIZE) {
+            batch.add(queue.poll());
+          }
+          if (batch.isEmpty()) {
+            publishing = false;
+            return;
+          }
+        }
+        ListenableFuture<PublishResponse> future = publishAsync(batch);
+        if (!future.isDone()) {
+          Futures.addCallback(future, new FutureCallback<PublishResponse>() {
+            @Override
+            public void onSuccess(PublishResponse response) {
+              batchCompleted(batch, true);
+              publishQueued();
+            }
+
+            @Override
+            public void onFailure(Throwable error) {
+              // messages are nacked and will be published again once redelivered
+              batchCompleted(batch, false);
+              publishQueued();
+            }
+          });
+          return;
+        }
+        // completed futures are handled here rather than in a callback, to avoid recursion
+        boolean published;
+        try {
+          future.get();
+          published = true;
+        } catch (InterruptedException | ExecutionException ex) {
+          published = false;
+        }
+        batchCompleted(batch, published);
+      }
+    }
+
+    private ListenableFuture<PublishResponse> publishAsync(List<ReceivedMessage> batch) {
+      List<Message> messages = new ArrayList<>(batch.size());
+      for (ReceivedMessage message : batch) {
+        messages.add(Message.builder(message.payload()).attributes(message.attributes()).build());
+      }
+      Future<PublishResponse> future;
+      try {
+        future = pubsubRpc.publish(PubSubImpl.publishRequest(pubsubOptions, topic, messages));
+      } catch (RuntimeException ex) {
+        return Futures.immediateFailedFuture(ex);
+      }
+      // the RPC implementations return listenable futures, callbacks are then added without
+      // blocking a thread until the call completes
+      return future instanceof ListenableFuture
+          ? (ListenableFuture<PublishResponse>) future
+          : JdkFutureAdapters.listenInPoolThread(future);
+    }
+
+    private void batchCompleted(List<ReceivedMessage> batch, boolean published) {
+      for (ReceivedMessage message : batch) {
+        if (published) {
+          if (message.id() != null) {
+            deliveryAttempts.remove(message.id());
+          }
+          pubsub.ackAsync(message.subscription(), message.ackId());
+        } else {
+          nack(message, maxDeliveryAttempts);
+        }
+        completed(message);
+      }
+    }
+  }
+
   class ConsumerRunnable implements Runnable {
 
     @Override
@@ -138,7 +572,8 @@ final class MessageConsumerImpl implements MessageConsumer {
           for (com.google.pubsub.v1.ReceivedMessage message : messages) {
             deadlineRenewer.add(subscription, message.getAckId());
             ReceivedMessage receivedMessage = ReceivedMessage.fromPb(pubsub, subscription, message);
-            executor.execute(ackingRunnable(receivedMessage));
+            String key = orderingKey != null ? receivedMessage.attributes().get(orderingKey) : null;
+            dispatcher.execute(key, ackingRunnable(receivedMessage));
           }
           nextPull();
         }
@@ -164,22 +599,56 @@ final class MessageConsumerImpl implements MessageConsumer {
       return new Runnable() {
         @Override
         public void run() {
+          boolean deadLettered = false;
           try {
             messageProcessor.process(receivedMessage);
+            if (receivedMessage.id() != null) {
+              deliveryAttempts.remove(receivedMessage.id());
+            }
             pubsub.ackAsync(receivedMessage.subscription(), receivedMessage.ackId());
           } catch (Exception ex) {
-            pubsub.nackAsync(receivedMessage.subscription(), receivedMessage.ackId());
+            // messages without an id can not be correlated across deliveries
+            int attempts = receivedMessage.id() != null
+                ? deliveryAttempts.increment(receivedMessage.id()) : 1;
+            if (deadLetterPublisher != null && attempts >= maxDeliveryAttempts) {
+              deadLettered = true;
+            } else {
+              nack(receivedMessage, attempts);
+            }
           } finally {
-            deadlineRenewer.remove(receivedMessage.subscription(), receivedMessage.ackId());
-            queuedCallbacks.decrementAndGet();
-            // We can now pull more messages, according to the next pull policy.
-            pullIfNeeded();
+            if (!deadLettered) {
+              completed(receivedMessage);
+            }
+          }
+          if (deadLettered) {
+            // the dead-letter publisher completes the message once published
+            deadLetterPublisher.add(receivedMessage);
           }
         }
       };
     }
   }
 
+  /**
+   * Returns the delay after which a message that failed {@code attempts} times is redelivered.
+   */
+  static int nackDelaySeconds(int attempts) {
+    int exponent = Math.min(attempts - 1, 30);
+    return (int) Math.min((long) INITIAL_NACK_DELAY_SECONDS << exponent, MAX_NACK_DELAY_SECONDS);
+  }
+
+  private void nack(ReceivedMessage message, int attempts) {
+    pubsub.modifyAckDeadlineAsync(message.subscription(), nackDelaySeconds(attempts),
+        TimeUnit.SECONDS, message.ackId());
+  }
+
+  private void completed(ReceivedMessage message) {
+    deadlineRenewer.remove(message.subscription(), message.ackId());
+    queuedCallbacks.decrementAndGet();
+    // We can now pull more messages, according to the next pull policy.
+    pullIfNeeded();
+  }
+
   private MessageConsumerImpl(Builder builder) {
     this.pubsubOptions = builder.pubsubOptions;
     this.subscription = builder.subscription;
@@ -189,10 +658,29 @@ final class MessageConsumerImpl implements MessageConsumer {
     this.deadlineRenewer = builder.deadlineRenewer;
     this.queuedCallbacks = new AtomicInteger();
     this.consumerExecutor = SharedResourceHolder.get(CONSUMER_EXECUTOR);
-    this.executorFactory =
-        builder.executorFactory != null ? builder.executorFactory : new DefaultExecutorFactory();
-    this.executor = executorFactory.get();
     this.maxQueuedCallbacks = firstNonNull(builder.maxQueuedCallbacks, MAX_QUEUED_CALLBACKS);
+    ProcessingMode processingMode =
+        firstNonNull(builder.processingMode, ProcessingMode.DEDICATED_THREADS);
+    Integer parallelism = builder.parallelism;
+    if (builder.executorFactory != null) {
+      this.executorFactory = builder.executorFactory;
+    } else {
+      parallelism = firstNonNull(parallelism, defaultParallelism(processingMode));
+      this.executorFactory = executorFactory(processingMode, parallelism);
+    }
+    this.executor = executorFactory.get();
+    // a dedicated pool has exactly parallelism threads, other executors are bounded per consumer
+    boolean bounded = parallelism != null && (builder.executorFactory != null
+        || processingMode != ProcessingMode.DEDICATED_THREADS);
+    Executor processorExecutor = bounded ? new BoundedExecutor(executor, parallelism) : executor;
+    this.orderingKey = builder.orderingKey;
+    this.dispatcher = new KeyedDispatcher(processorExecutor,
+        firstNonNull(builder.maxOrderingLanes, MAX_ORDERING_LANES));
+    this.deliveryAttempts =
+        new DeliveryAttempts(firstNonNull(builder.maxTrackedMessages, MAX_TRACKED_MESSAGES));
+    this.deadLetterPublisher =
+        builder.deadLetterTopic != null ? new DeadLetterPublisher(builder.deadLetterTopic) : null;
+    this.maxDeliveryAttempts = firstNonNull(builder.maxDeliveryAttempts, MAX_DELIVERY_ATTEMPTS);
     this.consumerRunnable = new ConsumerRunnable();
     int nextPullThreshold = builder.nextPullThreshold != null ? builder.nextPullThreshold
         : this.maxQueuedCallbacks / 2;
@@ -200,6 +688,29 @@ final class MessageConsumerImpl implements MessageConsumer {
     nextPull();
   }
 
+  private int defaultParallelism(ProcessingMode processingMode) {
+    switch (processingMode) {
+      case SHARED_POOL:
+        return Runtime.getRuntime().availableProcessors();
+      case VIRTUAL_THREADS:
+        return maxQueuedCallbacks;
+      default:
+        return 1;
+    }
+  }
+
+  private static ExecutorFactory<ExecutorService> executorFactory(ProcessingMode processingMode,
+      int parallelism) {
+    switch (processingMode) {
+      case SHARED_POOL:
+        return new SharedPoolExecutorFactory();
+      case VIRTUAL_THREADS:
+        return new VirtualThreadExecutorFactory();
+      default:
+        return new DefaultExecutorFactory(parallelism);
+    }
+  }
+
   private void pullIfNeeded() {
     synchronized (futureLock) {
       if (closed || scheduledFuture != null || !pullPolicy.shouldPull(queuedCallbacks.get())) {
@@ -244,7 +755,14 @@ final class MessageConsumerImpl implements MessageConsumer {
     private final MessageProcessor messageProcessor;
     private Integer maxQueuedCallbacks;
     private ExecutorFactory<ExecutorService> executorFactory;
+    private ProcessingMode processingMode;
+    private Integer parallelism;
     private Integer nextPullThreshold;
+    private String orderingKey;
+    private Integer maxOrderingLanes;
+    private String deadLetterTopic;
+    private Integer maxDeliveryAttempts;
+    private Integer maxTrackedMessages;
 
     Builder(PubSubOptions pubsubOptions, String subscription, AckDeadlineRenewer deadlineRenewer,
         MessageProcessor messageProcessor) {
@@ -271,6 +789,23 @@ final class MessageConsumerImpl implements MessageConsumer {
       return this;
     }
 
+    /**
+     * Sets how threads used to run message processor callbacks are managed. Ignored if an executor
+     * factory is set.
+     */
+    Builder processingMode(ProcessingMode processingMode) {
+      this.processingMode = processingMode;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of message processor callbacks executed at the same time.
+     */
+    Builder parallelism(Integer parallelism) {
+      this.parallelism = parallelism;
+      return this;
+    }
+
     /**
      * Sets a threshold for the next pull. If the consumer stopped pulling due to reaching the
      * maximum number of queued callbacks, it will be pull again only once at least
@@ -281,6 +816,48 @@ final class MessageConsumerImpl implements MessageConsumer {
       return this;
     }
 
+    /**
+     * Sets the name of the message attribute used as ordering key. Messages with the same value for
+     * the attribute are processed sequentially.
+     */
+    Builder orderingKey(String orderingKey) {
+      this.orderingKey = orderingKey;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of serial lanes ordering keys are hashed to.
+     */
+    Builder maxOrderingLanes(Integer maxOrderingLanes) {
+      this.maxOrderingLanes = maxOrderingLanes;
+      return this;
+    }
+
+    /**
+     * Sets the topic where messages that failed processing too many times are published.
+     */
+    Builder deadLetterTopic(String deadLetterTopic) {
+      this.deadLetterTopic = deadLetterTopic;
+      return this;
+    }
+
+    /**
+     * Sets the number of failed delivery attempts after which a message is published to the
+     * dead-letter topic.
+     */
+    Builder maxDeliveryAttempts(Integer maxDeliveryAttempts) {
+      this.maxDeliveryAttempts = maxDeliveryAttempts;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of messages whose failed delivery attempts are tracked.
+     */
+    Builder maxTrackedMessages(Integer maxTrackedMessages) {
+      this.maxTrackedMessages = maxTrackedMessages;
+      return this;
+    }
+
     /**
      * Creates a {@code MessageConsumerImpl} object.
      */
@@ -87,7 +87,13 @@ public interface PubSub extends AutoCloseable, Service<PubSubOptions> {
 
     enum OptionType implements Option.OptionType {
       EXECUTOR_FACTORY,
-      MAX_QUEUED_CALLBACKS;
+      MAX_QUEUED_CALLBACKS,
+      ORDERING_KEY,
+      MAX_ORDERING_LANES,
+      DEAD_LETTER_TOPIC,
+      MAX_DELIVERY_ATTEMPTS,
+      PARALLELISM,
+      PROCESSING_MODE;
 
       @SuppressWarnings("unchecked")
       <T> T get(Map<Option.OptionType, ?> options) {
@@ -98,9 +104,44 @@ public interface PubSub extends AutoCloseable, Service<PubSubOptions> {
         return get(options);
       }
 
+      String getString(Map<Option.OptionType, ?> options) {
+        return get(options);
+      }
+
       ExecutorFactory<ExecutorService> getExecutorFactory(Map<Option.OptionType, ?> options) {
         return get(options);
       }
+
+      ProcessingMode getProcessingMode(Map<Option.OptionType, ?> options) {
+        return get(options);
+      }
+    }
+
+    /**
+     * Strategies for the threads that run message processor callbacks, when no executor is
+     * provided via {@link #executorFactory(ExecutorFactory)}.
+     */
+    public enum ProcessingMode {
+      /**
+       * Each message consumer uses its own pool of {@link #parallelism(int)} threads. This is the
+       * default mode.
+       */
+      DEDICATED_THREADS,
+
+      /**
+       * Message consumers share a work-stealing pool with as many threads as available processors.
+       * Each consumer runs at most {@link #parallelism(int)} callbacks at the same time, so that a
+       * busy consumer does not starve the others. This mode is well suited for CPU-bound message
+       * processors.
+       */
+      SHARED_POOL,
+
+      /**
+       * Each callback runs in its own virtual thread, if supported by the JVM, or in a pooled
+       * platform thread otherwise. Each consumer runs at most {@link #parallelism(int)} callbacks
+       * at the same time. This mode is well suited for message processors that block on I/O.
+       */
+      VIRTUAL_THREADS
     }
 
     private PullOption(Option.OptionType option, Object value) {
@@ -121,7 +162,9 @@ public interface PubSub extends AutoCloseable, Service<PubSubOptions> {
     /**
      * Returns an option to specify the executor used to execute message processor callbacks. The
      * executor determines the number of messages that can be processed at the same time. If not
-     * provided, a single-threaded executor is used to execute message processor callbacks.
+     * provided, an executor is created according to {@link #processingMode(ProcessingMode)} and
+     * {@link #parallelism(int)}. By default a single-threaded executor is used to execute message
+     * processor callbacks.
      *
      * <p>The {@link ExecutorFactory} object can be used to handle creation and release of the
      * executor, possibly reusing existing executors. {@link ExecutorFactory#get()} is called when
@@ -136,16 +179,88 @@ public interface PubSub extends AutoCloseable, Service<PubSubOptions> {
     public static PullOption executorFactory(ExecutorFactory executorFactory) {
       return new PullOption(OptionType.EXECUTOR_FACTORY, executorFactory);
     }
+
+    /**
+     * Returns an option to specify the maximum number of messages processed at the same time by a
+     * message consumer. If not provided, messages are processed one at a time when using
+     * {@link ProcessingMode#DEDICATED_THREADS}, at most as many messages as available processors
+     * are processed at the same time when using {@link ProcessingMode#SHARED_POOL} and at most as
+     * many messages as {@link #maxQueuedCallbacks(int)} are processed at the same time when using
+     * {@link ProcessingMode#VIRTUAL_THREADS}. If an executor is provided via
+     * {@link #executorFactory(ExecutorFactory)}, this option further limits the number of
+     * callbacks the consumer submits to it at the same time.
+     */
+    public static PullOption parallelism(int parallelism) {
+      return new PullOption(OptionType.PARALLELISM, parallelism);
+    }
+
+    /**
+     * Returns an option to specify how threads used to run message processor callbacks are
+     * managed. This option is ignored if an executor is provided via
+     * {@link #executorFactory(ExecutorFactory)}. If not provided,
+     * {@link ProcessingMode#DEDICATED_THREADS} is used.
+     */
+    public static PullOption processingMode(ProcessingMode processingMode) {
+      return new PullOption(OptionType.PROCESSING_MODE, processingMode);
+    }
+
+    /**
+     * Returns an option to specify a message attribute whose value is used as ordering key. Pulled
+     * messages that share the same value for the {@code attribute} are processed sequentially, in
+     * the order they were received, while messages with different values can be processed in
+     * parallel by the executor provided via {@link #executorFactory(ExecutorFactory)}. Messages
+     * that do not have the attribute are processed without any ordering guarantee. If not
+     * provided, messages are processed in no particular order.
+     *
+     * @param attribute the name of the message attribute used as ordering key
+     */
+    public static PullOption orderingKey(String attribute) {
+      return new PullOption(OptionType.ORDERING_KEY, attribute);
+    }
+
+    /**
+     * Returns an option to specify the maximum number of serial lanes used to process messages
+     * when an ordering key is set via {@link #orderingKey(String)}. Ordering keys are hashed to
+     * lanes, messages in the same lane are processed sequentially. A higher number of lanes allows
+     * for more parallelism but keys are more likely to share a lane when the number is low. If not
+     * provided, at most 64 lanes are used.
+     */
+    public static PullOption maxOrderingLanes(int maxOrderingLanes) {
+      return new PullOption(OptionType.MAX_ORDERING_LANES, maxOrderingLanes);
+    }
+
+    /**
+     * Returns an option to specify a topic where messages that could not be processed are
+     * published. Once {@link MessageProcessor#process(Message)} failed for a message
+     * {@link #maxDeliveryAttempts(int)} times, the message (payload and attributes) is published
+     * to {@code topic} and acknowledged on the subscription. Messages are published in batches.
+     * If not provided, failing messages are redelivered indefinitely.
+     *
+     * @param topic the name of the dead-letter topic
+     */
+    public static PullOption deadLetterTopic(String topic) {
+      return new PullOption(OptionType.DEAD_LETTER_TOPIC, topic);
+    }
+
+    /**
+     * Returns an option to specify the number of times a message can fail processing before being
+     * published to the topic set via {@link #deadLetterTopic(String)}. Delivery attempts are
+     * tracked by message id for a bounded number of recently failed messages. If not provided, a
+     * message is published to the dead-letter topic after 5 failed delivery attempts.
+     */
+    public static PullOption maxDeliveryAttempts(int maxDeliveryAttempts) {
+      return new PullOption(OptionType.MAX_DELIVERY_ATTEMPTS, maxDeliveryAttempts);
+    }
   }
 
   /**
    * A callback to process pulled messages. The received message will be ack'ed upon successful
-   * return or nack'ed if exception is thrown.
+   * return or nack'ed, with a delay, if exception is thrown.
    */
   interface MessageProcessor {
     /**
      * Processes the received {@code message}. If this method returns correctly the message is
-     * ack'ed. If this method throws an exception the message is nack'ed.
+     * ack'ed. If this method throws an exception the message is nack'ed, with a delay.
      */
     void process(Message message) throws Exception;
   }
@@ -470,10 +585,21 @@ public interface PubSub extends AutoCloseable, Service<PubSubOptions> {
    * all pulled messages, the ack deadline is automatically renewed until the message is either
    * acknowledged or "nacked".
    *
+   * <p>Messages for which {@link MessageProcessor#process(Message)} throws are not made available
+   * for redelivery immediately: their acknowledge deadline is set to a delay that grows
+   * exponentially with the number of failed delivery attempts (1 second for the first failure, up
+   * to 10 minutes). The {@link PullOption#deadLetterTopic(String)} and
+   * {@link PullOption#maxDeliveryAttempts(int)} options can be used to stop redelivering messages
+   * that keep failing and publish them to a dead-letter topic instead.
+   *
    * <p>The {@link PullOption#maxQueuedCallbacks(int)} option can be used to control the maximum
    * number of queued messages (messages either being processed or waiting to be processed). The
    * {@link PullOption#executorFactory(ExecutorFactory)} can be used to provide an executor to run
-   * message processor callbacks.
+   * message processor callbacks. Alternatively, the {@link PullOption#parallelism(int)} and
+   * {@link PullOption#processingMode(PullOption.ProcessingMode)} options can be used to process
+   * several messages at the same time, for instance on virtual threads when message processors
+   * block on I/O. The {@link PullOption#orderingKey(String)} option can be used to process messages
+   * that share the same value for a given attribute sequentially.
    *
    * @param subscription the subscription from which to pull messages
    * @param callback the callback to be executed on each message
@@ -18,8 +18,14 @@ package com.google.cloud.pubsub;
 
 import static com.google.cloud.pubsub.PubSub.ListOption.OptionType.PAGE_SIZE;
 import static com.google.cloud.pubsub.PubSub.ListOption.OptionType.PAGE_TOKEN;
+import static com.google.cloud.pubsub.PubSub.PullOption.OptionType.DEAD_LETTER_TOPIC;
 import static com.google.cloud.pubsub.PubSub.PullOption.OptionType.EXECUTOR_FACTORY;
+import static com.google.cloud.pubsub.PubSub.PullOption.OptionType.MAX_DELIVERY_ATTEMPTS;
+import static com.google.cloud.pubsub.PubSub.PullOption.OptionType.MAX_ORDERING_LANES;
 import static com.google.cloud.pubsub.PubSub.PullOption.OptionType.MAX_QUEUED_CALLBACKS;
+import static com.google.cloud.pubsub.PubSub.PullOption.OptionType.ORDERING_KEY;
+import static com.google.cloud.pubsub.PubSub.PullOption.OptionType.PARALLELISM;
+import static com.google.cloud.pubsub.PubSub.PullOption.OptionType.PROCESSING_MODE;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.util.concurrent.Futures.lazyTransform;
 
@@ -271,7 +277,7 @@ class PubSubImpl extends BaseService<PubSubOptions> implements PubSub {
     return get(publishAsync(topic, message));
   }
 
-  private static PublishRequest publishRequest(PubSubOptions serviceOptions, String topic,
+  static PublishRequest publishRequest(PubSubOptions serviceOptions, String topic,
       Iterable<Message> messages) {
     PublishRequest.Builder builder = PublishRequest.newBuilder();
     builder.setTopic(PublisherApi.formatTopicName(serviceOptions.projectId(), topic));
@@ -516,6 +522,12 @@ class PubSubImpl extends BaseService<PubSubOptions> implements PubSub {
     return MessageConsumerImpl.builder(options(), subscription, ackDeadlineRenewer, callback)
         .maxQueuedCallbacks(MAX_QUEUED_CALLBACKS.getInteger(optionMap))
         .executorFactory(EXECUTOR_FACTORY.getExecutorFactory(optionMap))
+        .processingMode(PROCESSING_MODE.getProcessingMode(optionMap))
+        .parallelism(PARALLELISM.getInteger(optionMap))
+        .orderingKey(ORDERING_KEY.getString(optionMap))
+        .maxOrderingLanes(MAX_ORDERING_LANES.getInteger(optionMap))
+        .deadLetterTopic(DEAD_LETTER_TOPIC.getString(optionMap))
+        .maxDeliveryAttempts(MAX_DELIVERY_ATTEMPTS.getInteger(optionMap))
         .build();
   }
 
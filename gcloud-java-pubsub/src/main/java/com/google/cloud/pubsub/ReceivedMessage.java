@@ -247,8 +247,7 @@ public final class ReceivedMessage extends Message {
 
   static ReceivedMessage fromPb(PubSub pubsub, String subscription,
       com.google.pubsub.v1.ReceivedMessage msgPb) {
-    Message message = fromPb(msgPb.getMessage());
     String ackId = msgPb.getAckId();
-    return new Builder(subscription, ackId, pubsub, new BuilderImpl(message)).build();
+    return new Builder(subscription, ackId, pubsub, builderFromPb(msgPb.getMessage())).build();
   }
 }
@@ -0,0 +1,764 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.pubsub.testing;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.cloud.AuthCredentials;
+import com.google.cloud.RetryParams;
+import com.google.cloud.pubsub.PubSubException;
+import com.google.cloud.pubsub.PubSubOptions;
+import com.google.cloud.pubsub.spi.PubSubRpc;
+import com.google.cloud.pubsub.spi.PubSubRpcFactory;
+import com.google.common.util.concurrent.ForwardingListenableFuture;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.protobuf.Empty;
+import com.google.protobuf.Timestamp;
+import com.google.pubsub.v1.AcknowledgeRequest;
+import com.google.pubsub.v1.DeleteSubscriptionRequest;
+import com.google.pubsub.v1.DeleteTopicRequest;
+import com.google.pubsub.v1.GetSubscriptionRequest;
+import com.google.pubsub.v1.GetTopicRequest;
+import com.google.pubsub.v1.ListSubscriptionsRequest;
+import com.google.pubsub.v1.ListSubscriptionsResponse;
+import com.google.pubsub.v1.ListTopicSubscriptionsRequest;
+import com.google.pubsub.v1.ListTopicSubscriptionsResponse;
+import com.google.pubsub.v1.ListTopicsRequest;
+import com.google.pubsub.v1.ListTopicsResponse;
+import com.google.pubsub.v1.ModifyAckDeadlineRequest;
+import com.google.pubsub.v1.ModifyPushConfigRequest;
+import com.google.pubsub.v1.PublishRequest;
+import com.google.pubsub.v1.PublishResponse;
+import com.google.pubsub.v1.PubsubMessage;
+import com.google.pubsub.v1.PullRequest;
+import com.google.pubsub.v1.PullResponse;
+import com.google.pubsub.v1.ReceivedMessage;
+import com.google.pubsub.v1.Subscription;
+import com.google.pubsub.v1.Topic;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A thread-safe, in-memory implementation of {@link PubSubRpc}, for use in tests and benchmarks.
+ * Unlike {@link LocalPubsubHelper} it does not require any external emulator process: topics,
+ * subscriptions and messages are all kept in the JVM.
+ *
+ * <p>The implementation supports creating, getting, listing and deleting topics and
+ * subscriptions, publishing and pulling messages, acknowledging messages and modifying their
+ * acknowledge deadline. Messages whose acknowledge deadline expires are redelivered. Pull
+ * requests with {@code returnImmediately} set to {@code false} wait for messages for at most
+ * {@link Builder#maxPullWait(long, TimeUnit)}. Push configurations are stored but never used.
+ *
+ * <p>A latency can be added to every call via {@link Builder#latency(long, TimeUnit)} and calls can
+ * be made to fail with a given probability via {@link Builder#errorRate(double)}. Failing calls
+ * complete with a {@link PubSubException}.
+ *
+ * <p>Example usage:
+ * <pre> {@code
+ * InMemoryPubSubRpc rpc = InMemoryPubSubRpc.builder()
+ *     .latency(5, TimeUnit.MILLISECONDS)
+ *     .errorRate(0.01)
+ *     .build();
+ * PubSub pubsub = rpc.options().service();
+ * } </pre>
+ */
+public class InMemoryPubSubRpc implements PubSubRpc {
+
+  private static final String PROJECT_ID = "in-memory-project";
+  private static final String DELETED_TOPIC = "_deleted-topic_";
+  private static final int DEFAULT_ACK_DEADLINE_SECONDS = 10;
+  private static final int DEFAULT_PAGE_SIZE = 100;
+  private static final long DEFAULT_MAX_PULL_WAIT_MILLIS = 1000;
+
+  private final NavigableMap<String, Topic> topics = new ConcurrentSkipListMap<>();
+  private final NavigableMap<String, SubscriptionState> subscriptions =
+      new ConcurrentSkipListMap<>();
+  private final AtomicLong messageIds = new AtomicLong();
+  private final AtomicLong ackIds = new AtomicLong();
+  private final ScheduledExecutorService scheduler;
+  private final long latencyNanos;
+  private final double errorRate;
+  private final long maxPullWaitNanos;
+
+  /**
+   * Builder for {@code InMemoryPubSubRpc} objects.
+   */
+  public static class Builder {
+
+    private long latencyNanos;
+    private double errorRate;
+    private long maxPullWaitNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_MAX_PULL_WAIT_MILLIS);
+
+    private Builder() {}
+
+    /**
+     * Sets the latency added to every call. By default no latency is added.
+     */
+    public Builder latency(long latency, TimeUnit unit) {
+      checkArgument(latency >= 0, "Latency must be >= 0");
+      this.latencyNanos = unit.toNanos(latency);
+      return this;
+    }
+
+    /**
+     * Sets the probability, between 0 and 1, that a call fails with a {@link PubSubException}. By
+     * default calls never fail.
+     */
+    public Builder errorRate(double errorRate) {
+      checkArgument(errorRate >= 0 && errorRate <= 1, "Error rate must be between 0 and 1");
+      this.errorRate = errorRate;
+      return this;
+    }
+
+    /**
+     * Sets the maximum time a pull request with {@code returnImmediately} set to {@code false}
+     * waits for messages to be available. If no message is published within this time, an empty
+     * response is returned. By default pull requests wait at most 1 second.
+     */
+    public Builder maxPullWait(long maxPullWait, TimeUnit unit) {
+      checkArgument(maxPullWait >= 0, "Maximum pull wait must be >= 0");
+      this.maxPullWaitNanos = unit.toNanos(maxPullWait);
+      return this;
+    }
+
+    /**
+     * Creates an {@code InMemoryPubSubRpc} object.
+     */
+    public InMemoryPubSubRpc build() {
+      return new InMemoryPubSubRpc(this);
+    }
+  }
+
+  private static final class PullFutureImpl
+      extends ForwardingListenableFuture.SimpleForwardingListenableFuture<PullResponse>
+      implements PullFuture {
+
+    PullFutureImpl(ListenableFuture<PullResponse> delegate) {
+      super(delegate);
+    }
+
+    @Override
+    public void addCallback(final PullCallback callback) {
+      Futures.addCallback(delegate(), new FutureCallback<PullResponse>() {
+        @Override
+        public void onSuccess(PullResponse result) {
+          callback.success(result);
+        }
+
+        @Override
+        public void onFailure(Throwable error) {
+          callback.failure(error);
+        }
+      });
+    }
+  }
+
+  private static final class OutstandingMessage {
+
+    final PubsubMessage message;
+    long deadlineNanos;
+
+    OutstandingMessage(PubsubMessage message, long deadlineNanos) {
+      this.message = message;
+      this.deadlineNanos = deadlineNanos;
+    }
+  }
+
+  private static final class WaitingPull {
+
+    final SettableFuture<PullResponse> future;
+    final int maxMessages;
+
+    WaitingPull(SettableFuture<PullResponse> future, int maxMessages) {
+      this.future = future;
+      this.maxMessages = maxMessages;
+    }
+  }
+
+  /**
+   * The state of a subscription: its definition, the messages waiting to be delivered, the
+   * delivered messages waiting to be acknowledged and the pull requests waiting for messages. All
+   * accesses must be guarded by the object's lock.
+   */
+  private final class SubscriptionState {
+
+    private Subscription subscription;
+    private final ArrayDeque<PubsubMessage> pending = new ArrayDeque<>();
+    private final Map<String, OutstandingMessage> outstanding = new LinkedHashMap<>();
+    private final ArrayDeque<WaitingPull> waitingPulls = new ArrayDeque<>();
+    private boolean expiryCheckScheduled;
+
+    SubscriptionState(Subscription subscription) {
+      this.subscription = subscription;
+    }
+
+    void requeueExpired(long now) {
+      Iterator<OutstandingMessage> iterator = outstanding.values().iterator();
+      while (iterator.hasNext()) {
+        OutstandingMessage message = iterator.next();
+        if (message.deadlineNanos - now <= 0) {
+          iterator.remove();
+          pending.addFirst(message.message);
+        }
+      }
+    }
+
+    /**
+     * Returns the earliest acknowledge deadline of the outstanding messages, which must not be
+     * empty.
+     */
+    long nextDeadline() {
+      long next = Long.MAX_VALUE;
+      boolean first = true;
+      for (OutstandingMessage message : outstanding.values()) {
+        if (first || message.deadlineNanos - next < 0) {
+          next = message.deadlineNanos;
+          first = false;
+        }
+      }
+      return next;
+    }
+
+    PullResponse take(int maxMessages, long now) {
+      PullResponse.Builder builder = PullResponse.newBuilder();
+      long deadline = now + TimeUnit.SECONDS.toNanos(subscription.getAckDeadlineSeconds());
+      for (int i = 0; i < maxMessages && !pending.isEmpty(); i++) {
+        PubsubMessage message = pending.poll();
+        String ackId = Long.toString(ackIds.incrementAndGet());
+        outstanding.put(ackId, new OutstandingMessage(message, deadline));
+        builder.addReceivedMessages(
+            ReceivedMessage.newBuilder().setAckId(ackId).setMessage(message));
+      }
+      return builder.build();
+    }
+
+    /**
+     * Puts back messages that were taken for a pull request that could not be completed (e.g.
+     * because it was cancelled).
+     */
+    void restore(PullResponse response) {
+      List<ReceivedMessage> messages = response.getReceivedMessagesList();
+      for (int i = messages.size() - 1; i >= 0; i--) {
+        ReceivedMessage message = messages.get(i);
+        outstanding.remove(message.getAckId());
+        pending.addFirst(message.getMessage());
+      }
+    }
+  }
+
+  private InMemoryPubSubRpc(Builder builder) {
+    this.latencyNanos = builder.latencyNanos;
+    this.errorRate = builder.errorRate;
+    this.maxPullWaitNanos = builder.maxPullWaitNanos;
+    ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1,
+        new ThreadFactoryBuilder().setDaemon(true).setNameFormat("in-memory-pubsub-%d").build());
+    executor.setRemoveOnCancelPolicy(true);
+    this.scheduler = executor;
+  }
+
+  /**
+   * Returns a {@link PubSubOptions} object whose service uses this RPC instance.
+   */
+  public PubSubOptions options() {
+    return PubSubOptions.builder()
+        .projectId(PROJECT_ID)
+        .authCredentials(AuthCredentials.noAuth())
+        .retryParams(RetryParams.noRetries())
+        .serviceRpcFactory(new PubSubRpcFactory() {
+          @Override
+          public PubSubRpc create(PubSubOptions options) {
+            return InMemoryPubSubRpc.this;
+          }
+        })
+        .build();
+  }
+
+  /**
+   * Deletes all topics, subscriptions and messages.
+   */
+  public void reset() {
+    topics.clear();
+    subscriptions.clear();
+  }
+
+  private static PubSubException error(String message) {
+    return new PubSubException(new IOException(message), true);
+  }
+
+  private boolean shouldFail() {
+    return errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate;
+  }
+
+  /**
+   * Completes {@code future} with {@code value}, after the configured latency, or with an error
+   * according to the configured error rate.
+   */
+  private <V> ListenableFuture<V> respond(final SettableFuture<V> future, final V value) {
+    final boolean fail = shouldFail();
+    complete(new Runnable() {
+      @Override
+      public void run() {
+        if (fail) {
+          future.setException(error("Injected error"));
+        } else {
+          future.set(value);
+        }
+      }
+    });
+    return future;
+  }
+
+  /**
+   * Completes a pull request with {@code response}, after the configured latency, or with an error
+   * according to the configured error rate. If the request fails or was cancelled the received
+   * messages are put back, to be delivered to the next pull requests.
+   */
+  private void deliver(final SubscriptionState state, final SettableFuture<PullResponse> future,
+      final PullResponse response) {
+    final boolean fail = shouldFail();
+    complete(new Runnable() {
+      @Override
+      public void run() {
+        if (!fail && future.set(response)) {
+          return;
+        }
+        synchronized (state) {
+          state.restore(response);
+        }
+        if (fail) {
+          future.setException(error("Injected error"));
+        }
+        serveWaitingPulls(state);
+      }
+    });
+  }
+
+  /**
+   * Completes the waiting pull requests of a subscription with its pending messages, including
+   * the messages whose acknowledge deadline expired. If pull requests are still waiting, the next
+   * expiration of an acknowledge deadline is scheduled to serve them.
+   */
+  private void serveWaitingPulls(SubscriptionState state) {
+    List<WaitingPull> toComplete = new ArrayList<>();
+    List<PullResponse> responses = new ArrayList<>();
+    synchronized (state) {
+      long now = System.nanoTime();
+      state.requeueExpired(now);
+      while (!state.waitingPulls.isEmpty() && !state.pending.isEmpty()) {
+        WaitingPull waitingPull = state.waitingPulls.poll();
+        if (!waitingPull.future.isDone()) {
+          toComplete.add(waitingPull);
+          responses.add(state.take(waitingPull.maxMessages, now));
+        }
+      }
+      scheduleExpiryCheck(state, now);
+    }
+    // complete futures outside of the lock, callbacks are run by the completing thread
+    for (int i = 0; i < toComplete.size(); i++) {
+      deliver(state, toComplete.get(i).future, responses.get(i));
+    }
+  }
+
+  /**
+   * Schedules serving the waiting pull requests of a subscription when the first acknowledge
+   * deadline of its outstanding messages expires. At most one check is scheduled per
+   * subscription. Must be called while holding the subscription's lock.
+   */
+  private void scheduleExpiryCheck(final SubscriptionState state, long now) {
+    if (state.expiryCheckScheduled || state.waitingPulls.isEmpty()
+        || state.outstanding.isEmpty()) {
+      return;
+    }
+    state.expiryCheckScheduled = true;
+    scheduler.schedule(new Runnable() {
+      @Override
+      public void run() {
+        synchronized (state) {
+          state.expiryCheckScheduled = false;
+        }
+        serveWaitingPulls(state);
+      }
+    }, Math.max(state.nextDeadline() - now, 0), TimeUnit.NANOSECONDS);
+  }
+
+  private void complete(Runnable completion) {
+    if (latencyNanos > 0) {
+      scheduler.schedule(completion, latencyNanos, TimeUnit.NANOSECONDS);
+    } else {
+      completion.run();
+    }
+  }
+
+  private <V> ListenableFuture<V> respond(V value) {
+    return respond(SettableFuture.<V>create(), value);
+  }
+
+  private <V> ListenableFuture<V> fail(String message) {
+    SettableFuture<V> future = SettableFuture.create();
+    future.setException(error(message));
+    return future;
+  }
+
+  private SubscriptionState subscriptionState(String name) {
+    SubscriptionState state = subscriptions.get(name);
+    if (state == null) {
+      throw error("Subscription " + name + " not found");
+    }
+    return state;
+  }
+
+  private static <V> List<V> page(NavigableMap<String, V> map, String prefix, String pageToken,
+      int pageSize, List<String> lastKey) {
+    NavigableMap<String, V> tail = pageToken.isEmpty() ? map.tailMap(prefix, true)
+        : map.tailMap(pageToken, false);
+    List<V> values = new ArrayList<>();
+    int size = pageSize > 0 ? pageSize : DEFAULT_PAGE_SIZE;
+    for (Map.Entry<String, V> entry : tail.entrySet()) {
+      if (!entry.getKey().startsWith(prefix) || values.size() == size) {
+        break;
+      }
+      values.add(entry.getValue());
+      lastKey.clear();
+      lastKey.add(entry.getKey());
+    }
+    return values;
+  }
+
+  private static String nextPageToken(NavigableMap<String, ?> map, String prefix,
+      List<String> lastKey) {
+    if (lastKey.isEmpty()) {
+      return "";
+    }
+    String higher = map.higherKey(lastKey.get(0));
+    return higher != null && higher.startsWith(prefix) ? lastKey.get(0) : "";
+  }
+
+  @Override
+  public Future<Topic> create(Topic topic) {
+    if (topics.putIfAbsent(topic.getName(), topic) != null) {
+      return fail("Topic " + topic.getName() + " already exists");
+    }
+    return respond(topic);
+  }
+
+  @Override
+  public Future<PublishResponse> publish(PublishRequest request) {
+    String topic = request.getTopic();
+    if (!topics.containsKey(topic)) {
+      return fail("Topic " + topic + " not found");
+    }
+    Timestamp.Builder publishTime = Timestamp.newBuilder();
+    long millis = System.currentTimeMillis();
+    publishTime.setSeconds(millis / 1000).setNanos((int) (millis % 1000 * 1000000));
+    PublishResponse.Builder response = PublishResponse.newBuilder();
+    List<PubsubMessage> messages = new ArrayList<>(request.getMessagesCount());
+    for (PubsubMessage message : request.getMessagesList()) {
+      String id = Long.toString(messageIds.incrementAndGet());
+      messages.add(message.toBuilder().setMessageId(id).setPublishTime(publishTime).build());
+      response.addMessageIds(id);
+    }
+    for (SubscriptionState state : subscriptions.values()) {
+      synchronized (state) {
+        if (!topic.equals(state.subscription.getTopic())) {
+          continue;
+        }
+        state.pending.addAll(messages);
+      }
+      serveWaitingPulls(state);
+    }
+    return respond(response.build());
+  }
+
+  @Override
+  public Future<Topic> get(GetTopicRequest request) {
+    return respond(topics.get(request.getTopic()));
+  }
+
+  @Override
+  public Future<ListTopicsResponse> list(ListTopicsRequest request) {
+    String prefix = request.getProject() + "/topics/";
+    List<String> lastKey = new ArrayList<>(1);
+    List<Topic> page =
+        page(topics, prefix, request.getPageToken(), request.getPageSize(), lastKey);
+    return respond(ListTopicsResponse.newBuilder()
+        .addAllTopics(page)
+        .setNextPageToken(nextPageToken(topics, prefix, lastKey))
+        .build());
+  }
+
+  @Override
+  public Future<ListTopicSubscriptionsResponse> list(ListTopicSubscriptionsRequest request) {
+    NavigableMap<String, String> topicSubscriptions = new TreeMap<>();
+    for (SubscriptionState state : subscriptions.values()) {
+      synchronized (state) {
+        if (request.getTopic().equals(state.subscription.getTopic())) {
+          topicSubscriptions.put(state.subscription.getName(), state.subscription.getName());
+        }
+      }
+    }
+    List<String> lastKey = new ArrayList<>(1);
+    List<String> page =
+        page(topicSubscriptions, "", request.getPageToken(), request.getPageSize(), lastKey);
+    return respond(ListTopicSubscriptionsResponse.newBuilder()
+        .addAllSubscriptions(page)
+        .setNextPageToken(nextPageToken(topicSubscriptions, "", lastKey))
+        .build());
+  }
+
+  @Override
+  public Future<Empty> delete(DeleteTopicRequest request) {
+    if (topics.remove(request.getTopic()) == null) {
+      return respond((Empty) null);
+    }
+    for (SubscriptionState state : subscriptions.values()) {
+      synchronized (state) {
+        if (request.getTopic().equals(state.subscription.getTopic())) {
+          state.subscription = state.subscription.toBuilder().setTopic(DELETED_TOPIC).build();
+        }
+      }
+    }
+    return respond(Empty.getDefaultInstance());
+  }
+
+  @Override
+  public Future<Subscription> create(Subscription subscription) {
+    if (!topics.containsKey(subscription.getTopic())) {
+      return fail("Topic " + subscription.getTopic() + " not found");
+    }
+    if (subscription.getAckDeadlineSeconds() == 0) {
+      subscription = subscription.toBuilder()
+          .setAckDeadlineSeconds(DEFAULT_ACK_DEADLINE_SECONDS)
+          .build();
+    }
+    if (subscriptions.putIfAbsent(subscription.getName(), new SubscriptionState(subscription))
+        != null) {
+      return fail("Subscription " + subscription.getName() + " already exists");
+    }
+    return respond(subscription);
+  }
+
+  @Override
+  public Future<Subscription> get(GetSubscriptionRequest request) {
+    SubscriptionState state = subscriptions.get(request.getSubscription());
+    if (state == null) {
+      return respond((Subscription) null);
+    }
+    synchronized (state) {
+      return respond(state.subscription);
+    }
+  }
+
+  @Override
+  public Future<ListSubscriptionsResponse> list(ListSubscriptionsRequest request) {
+    String prefix = request.getProject() + "/subscriptions/";
+    List<String> lastKey = new ArrayList<>(1);
+    List<SubscriptionState> page =
+        page(subscriptions, prefix, request.getPageToken(), request.getPageSize(), lastKey);
+    ListSubscriptionsResponse.Builder response = ListSubscriptionsResponse.newBuilder();
+    for (SubscriptionState state : page) {
+      synchronized (state) {
+        response.addSubscriptions(state.subscription);
+      }
+    }
+    response.setNextPageToken(nextPageToken(subscriptions, prefix, lastKey));
+    return respond(response.build());
+  }
+
+  @Override
+  public Future<Empty> delete(DeleteSubscriptionRequest request) {
+    SubscriptionState state = subscriptions.remove(request.getSubscription());
+    if (state == null) {
+      return respond((Empty) null);
+    }
+    List<WaitingPull> waitingPulls;
+    synchronized (state) {
+      waitingPulls = new ArrayList<>(state.waitingPulls);
+      state.waitingPulls.clear();
+    }
+    for (WaitingPull waitingPull : waitingPulls) {
+      waitingPull.future.set(PullResponse.getDefaultInstance());
+    }
+    return respond(Empty.getDefaultInstance());
+  }
+
+  @Override
+  public Future<Empty> modify(ModifyAckDeadlineRequest request) {
+    SubscriptionState state;
+    try {
+      state = subscriptionState(request.getSubscription());
+    } catch (PubSubException ex) {
+      return fail(ex.getMessage());
+    }
+    long now = System.nanoTime();
+    long deadline = now + TimeUnit.SECONDS.toNanos(request.getAckDeadlineSeconds());
+    List<PubsubMessage> nacked = new ArrayList<>();
+    synchronized (state) {
+      for (String ackId : request.getAckIdsList()) {
+        OutstandingMessage message = state.outstanding.get(ackId);
+        if (message == null) {
+          continue;
+        }
+        if (request.getAckDeadlineSeconds() == 0) {
+          state.outstanding.remove(ackId);
+          nacked.add(message.message);
+        } else {
+          message.deadlineNanos = deadline;
+        }
+      }
+      // nacked messages are redelivered first, in the order they were nacked
+      for (int i = nacked.size() - 1; i >= 0; i--) {
+        state.pending.addFirst(nacked.get(i));
+      }
+    }
+    if (!nacked.isEmpty()) {
+      serveWaitingPulls(state);
+    }
+    return respond(Empty.getDefaultInstance());
+  }
+
+  @Override
+  public Future<Empty> acknowledge(AcknowledgeRequest request) {
+    SubscriptionState state;
+    try {
+      state = subscriptionState(request.getSubscription());
+    } catch (PubSubException ex) {
+      return fail(ex.getMessage());
+    }
+    synchronized (state) {
+      for (String ackId : request.getAckIdsList()) {
+        state.outstanding.remove(ackId);
+      }
+    }
+    return respond(Empty.getDefaultInstance());
+  }
+
+  @Override
+  public PullFuture pull(PullRequest request) {
+    final SubscriptionState state = subscriptions.get(request.getSubscription());
+    if (state == null) {
+      return new PullFutureImpl(
+          this.<PullResponse>fail("Subscription " + request.getSubscription() + " not found"));
+    }
+    final SettableFuture<PullResponse> future = SettableFuture.create();
+    final WaitingPull waitingPull;
+    PullResponse response;
+    synchronized (state) {
+      long now = System.nanoTime();
+      state.requeueExpired(now);
+      response = state.take(request.getMaxMessages(), now);
+      if (response.getReceivedMessagesCount() == 0 && !request.getReturnImmediately()
+          && maxPullWaitNanos > 0) {
+        waitingPull = new WaitingPull(future, request.getMaxMessages());
+        state.waitingPulls.add(waitingPull);
+        scheduleExpiryCheck(state, now);
+      } else {
+        waitingPull = null;
+      }
+    }
+    if (waitingPull != null) {
+      // no message available, wait for messages to be published or for the pull to time out
+      final ScheduledFuture<?> timeout = scheduler.schedule(new Runnable() {
+        @Override
+        public void run() {
+          boolean timedOut;
+          synchronized (state) {
+            timedOut = state.waitingPulls.remove(waitingPull);
+          }
+          if (timedOut) {
+            future.set(PullResponse.getDefaultInstance());
+          }
+        }
+      }, maxPullWaitNanos, TimeUnit.NANOSECONDS);
+      future.addListener(new Runnable() {
+        @Override
+        public void run() {
+          timeout.cancel(false);
+          if (future.isCancelled()) {
+            synchronized (state) {
+              state.waitingPulls.remove(waitingPull);
+            }
+          }
+        }
+      }, MoreExecutors.directExecutor());
+      return new PullFutureImpl(future);
+    }
+    deliver(state, future, response);
+    return new PullFutureImpl(future);
+  }
+
+  @Override
+  public Future<Empty> modify(ModifyPushConfigRequest request) {
+    SubscriptionState state;
+    try {
+      state = subscriptionState(request.getSubscription());
+    } catch (PubSubException ex) {
+      return fail(ex.getMessage());
+    }
+    synchronized (state) {
+      state.subscription =
+          state.subscription.toBuilder().setPushConfig(request.getPushConfig()).build();
+    }
+    return respond(Empty.getDefaultInstance());
+  }
+
+  @Override
+  public void close() throws Exception {
+    // the RPC object is shared by all services created from options(), it is not closed by them
+  }
+
+  /**
+   * Releases the resources used by this object, such as the thread used to simulate latency.
+   */
+  public void shutdown() {
+    scheduler.shutdownNow();
+  }
+
+  /**
+   * Returns a builder for {@code InMemoryPubSubRpc} objects.
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Creates an {@code InMemoryPubSubRpc} object with no latency and no errors.
+   */
+  public static InMemoryPubSubRpc create() {
+    return builder().build();
+  }
+}
@@ -30,6 +30,13 @@
  * helper.stop();
  * } </pre>
  *
+ * <p>{@link com.google.cloud.pubsub.testing.InMemoryPubSubRpc} can be used instead of the emulator
+ * when tests or benchmarks must run without any external process:
+ * <pre> {@code
+ * InMemoryPubSubRpc rpc = InMemoryPubSubRpc.create();
+ * PubSub localPubsub = rpc.options().service();
+ * } </pre>
+ *
  * @see <a href="https://github.com/GoogleCloudPlatform/gcloud-java/blob/master/TESTING.md#testing-code-that-uses-pubsub">
  *     gcloud-java tools for testing</a>
  */
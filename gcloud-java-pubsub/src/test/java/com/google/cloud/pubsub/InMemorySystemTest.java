@@ -0,0 +1,51 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.pubsub;
+
+import com.google.cloud.pubsub.testing.InMemoryPubSubRpc;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+
+public class InMemorySystemTest extends BaseSystemTest {
+
+  private static InMemoryPubSubRpc pubsubRpc;
+  private static PubSub pubsub;
+
+  @Override
+  protected PubSub pubsub() {
+    return pubsub;
+  }
+
+  @Override
+  protected String formatForTest(String resourceName) {
+    return resourceName;
+  }
+
+  @BeforeClass
+  public static void startServer() {
+    pubsubRpc = InMemoryPubSubRpc.create();
+    pubsub = pubsubRpc.options().service();
+  }
+
+  @AfterClass
+  public static void stopServer() throws Exception {
+    pubsub.close();
+    pubsubRpc.reset();
+    pubsubRpc.shutdown();
+  }
+}
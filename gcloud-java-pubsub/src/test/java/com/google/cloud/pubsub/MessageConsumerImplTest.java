@@ -16,15 +16,24 @@
 
 package com.google.cloud.pubsub;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
 import com.google.cloud.GrpcServiceOptions.ExecutorFactory;
 import com.google.cloud.pubsub.PubSub.MessageConsumer;
 import com.google.cloud.pubsub.PubSub.MessageProcessor;
+import com.google.cloud.pubsub.PubSub.PullOption.ProcessingMode;
 import com.google.cloud.pubsub.spi.PubSubRpc;
 import com.google.cloud.pubsub.spi.PubSubRpc.PullCallback;
 import com.google.cloud.pubsub.spi.PubSubRpc.PullFuture;
+import com.google.common.collect.ImmutableList;
 import com.google.common.util.concurrent.ForwardingListenableFuture;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.google.pubsub.v1.PublishRequest;
+import com.google.pubsub.v1.PublishResponse;
 import com.google.pubsub.v1.PullRequest;
 import com.google.pubsub.v1.PullResponse;
 
@@ -36,9 +45,18 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.Timeout;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class MessageConsumerImplTest {
 
@@ -184,8 +202,10 @@ public class MessageConsumerImplTest {
     EasyMock.expect(options.projectId()).andReturn(PROJECT).anyTimes();
     EasyMock.expect(pubsub.options()).andReturn(options).times(2);
     final CountDownLatch latch = new CountDownLatch(2);
-    EasyMock.expect(pubsub.nackAsync(SUBSCRIPTION, ACK_ID1)).andReturn(null);
-    EasyMock.expect(pubsub.nackAsync(SUBSCRIPTION, ACK_ID2)).andReturn(null);
+    EasyMock.expect(pubsub.modifyAckDeadlineAsync(SUBSCRIPTION, 1, TimeUnit.SECONDS,
+        ACK_ID1)).andReturn(null);
+    EasyMock.expect(pubsub.modifyAckDeadlineAsync(SUBSCRIPTION, 1, TimeUnit.SECONDS,
+        ACK_ID2)).andReturn(null);
     EasyMock.replay(pubsub);
     EasyMock.expect(pubsubRpc.pull(request)).andReturn(new TestPullFuture(PULL_RESPONSE));
     EasyMock.expect(pubsubRpc.pull(EasyMock.<PullRequest>anyObject()))
@@ -276,7 +296,8 @@ public class MessageConsumerImplTest {
     final CountDownLatch nextPullLatch = new CountDownLatch(1);
     final CountDownLatch latch = new CountDownLatch(2);
     EasyMock.expect(pubsub.options()).andReturn(options);
-    EasyMock.expect(pubsub.nackAsync(SUBSCRIPTION, ACK_ID1)).andAnswer(new IAnswer<Future<Void>>() {
+    EasyMock.expect(pubsub.modifyAckDeadlineAsync(SUBSCRIPTION, 1, TimeUnit.SECONDS,
+        ACK_ID1)).andAnswer(new IAnswer<Future<Void>>() {
       @Override
       public Future<Void> answer() throws Throwable {
         nextPullLatch.await();
@@ -284,7 +305,8 @@ public class MessageConsumerImplTest {
       }
     });
     EasyMock.expect(pubsub.options()).andReturn(options);
-    EasyMock.expect(pubsub.nackAsync(SUBSCRIPTION, ACK_ID2)).andReturn(null);
+    EasyMock.expect(pubsub.modifyAckDeadlineAsync(SUBSCRIPTION, 1, TimeUnit.SECONDS,
+        ACK_ID2)).andReturn(null);
     EasyMock.replay(pubsub);
     EasyMock.expect(pubsubRpc.pull(request1)).andReturn(new TestPullFuture(response1));
     EasyMock.expect(pubsubRpc.pull(request2)).andAnswer(new IAnswer<PullFuture>() {
@@ -381,8 +403,10 @@ public class MessageConsumerImplTest {
     EasyMock.expect(pubsub.options()).andReturn(options).times(2);
     final CountDownLatch nextPullLatch = new CountDownLatch(1);
     final CountDownLatch latch = new CountDownLatch(3);
-    EasyMock.expect(pubsub.nackAsync(SUBSCRIPTION, ACK_ID1)).andReturn(null);
-    EasyMock.expect(pubsub.nackAsync(SUBSCRIPTION, ACK_ID2)).andAnswer(new IAnswer<Future<Void>>() {
+    EasyMock.expect(pubsub.modifyAckDeadlineAsync(SUBSCRIPTION, 1, TimeUnit.SECONDS,
+        ACK_ID1)).andReturn(null);
+    EasyMock.expect(pubsub.modifyAckDeadlineAsync(SUBSCRIPTION, 1, TimeUnit.SECONDS,
+        ACK_ID2)).andAnswer(new IAnswer<Future<Void>>() {
       @Override
       public Future<Void> answer() throws Throwable {
         nextPullLatch.await();
@@ -390,7 +414,8 @@ public class MessageConsumerImplTest {
       }
     });
     EasyMock.expect(pubsub.options()).andReturn(options);
-    EasyMock.expect(pubsub.nackAsync(SUBSCRIPTION, ACK_ID1)).andReturn(null);
+    EasyMock.expect(pubsub.modifyAckDeadlineAsync(SUBSCRIPTION, 2, TimeUnit.SECONDS,
+        ACK_ID1)).andReturn(null);
     EasyMock.replay(pubsub);
     EasyMock.expect(pubsubRpc.pull(request1)).andReturn(new TestPullFuture(PULL_RESPONSE));
     EasyMock.expect(pubsubRpc.pull(request2)).andAnswer(new IAnswer<PullFuture>() {
@@ -450,4 +475,285 @@ public class MessageConsumerImplTest {
     consumer.close();
     EasyMock.verify(executor);
   }
+
+  @Test
+  public void testKeyedDispatcherPreservesOrderPerKey() throws Exception {
+    EasyMock.replay(pubsubRpc, pubsub, options, renewer);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    int tasksPerKey = 100;
+    String[] keys = {"key1", "key2", "key3"};
+    final CountDownLatch latch = new CountDownLatch(tasksPerKey * keys.length);
+    MessageConsumerImpl.KeyedDispatcher dispatcher =
+        new MessageConsumerImpl.KeyedDispatcher(executor, 2);
+    List<List<Integer>> processed = new ArrayList<>();
+    for (int i = 0; i < keys.length; i++) {
+      processed.add(Collections.synchronizedList(new ArrayList<Integer>()));
+    }
+    for (int i = 0; i < tasksPerKey; i++) {
+      for (int k = 0; k < keys.length; k++) {
+        final List<Integer> keyProcessed = processed.get(k);
+        final int value = i;
+        dispatcher.execute(keys[k], new Runnable() {
+          @Override
+          public void run() {
+            keyProcessed.add(value);
+            latch.countDown();
+          }
+        });
+      }
+    }
+    latch.await();
+    executor.shutdown();
+    for (List<Integer> keyProcessed : processed) {
+      assertEquals(tasksPerKey, keyProcessed.size());
+      for (int i = 0; i < tasksPerKey; i++) {
+        assertEquals(i, (int) keyProcessed.get(i));
+      }
+    }
+  }
+
+  @Test
+  public void testMessageConsumerOrderingKey() throws Exception {
+    Message message1 = MESSAGE1.toBuilder().addAttribute("key", "value").build();
+    Message message2 = MESSAGE2.toBuilder().addAttribute("key", "value").build();
+    PullResponse response = PullResponse.newBuilder()
+        .addReceivedMessages(MESSAGE1_PB.toBuilder().setMessage(message1.toPb()))
+        .addReceivedMessages(MESSAGE2_PB.toBuilder().setMessage(message2.toPb()))
+        .build();
+    PullRequest request = pullRequest(MAX_QUEUED_CALLBACKS);
+    EasyMock.expect(options.rpc()).andReturn(pubsubRpc);
+    EasyMock.expect(options.service()).andReturn(pubsub);
+    EasyMock.expect(options.projectId()).andReturn(PROJECT).anyTimes();
+    EasyMock.expect(pubsub.options()).andReturn(options).times(2);
+    final CountDownLatch latch = new CountDownLatch(2);
+    EasyMock.expect(pubsub.ackAsync(SUBSCRIPTION, ACK_ID1)).andReturn(null);
+    EasyMock.expect(pubsub.ackAsync(SUBSCRIPTION, ACK_ID2)).andReturn(null);
+    EasyMock.replay(pubsub);
+    EasyMock.expect(pubsubRpc.pull(request)).andReturn(new TestPullFuture(response));
+    EasyMock.expect(pubsubRpc.pull(EasyMock.<PullRequest>anyObject()))
+        .andReturn(new TestPullFuture(EMPTY_RESPONSE)).anyTimes();
+    renewer.add(SUBSCRIPTION, ACK_ID1);
+    EasyMock.expectLastCall();
+    renewer.add(SUBSCRIPTION, ACK_ID2);
+    EasyMock.expectLastCall();
+    renewer.remove(SUBSCRIPTION, ACK_ID1);
+    EasyMock.expectLastCall().andAnswer(createAnswer(latch));
+    renewer.remove(SUBSCRIPTION, ACK_ID2);
+    EasyMock.expectLastCall().andAnswer(createAnswer(latch));
+    EasyMock.replay(pubsubRpc, options, renewer);
+    final List<String> processed = Collections.synchronizedList(new ArrayList<String>());
+    MessageProcessor processor = new MessageProcessor() {
+      @Override
+      public void process(Message message) throws Exception {
+        processed.add(message.payloadAsString());
+      }
+    };
+    final ExecutorService executor = Executors.newFixedThreadPool(2);
+    try (MessageConsumer consumer =
+         MessageConsumerImpl.builder(options, SUBSCRIPTION, renewer, processor)
+             .maxQueuedCallbacks(MAX_QUEUED_CALLBACKS)
+             .orderingKey("key")
+             .executorFactory(new ExecutorFactory<ExecutorService>() {
+               @Override
+               public ExecutorService get() {
+                 return executor;
+               }
+
+               @Override
+               public void release(ExecutorService executor) {
+                 executor.shutdown();
+               }
+             })
+             .build()) {
+      latch.await();
+    }
+    assertEquals(message1.payloadAsString(), processed.get(0));
+    assertEquals(message2.payloadAsString(), processed.get(1));
+  }
+
+  @Test
+  public void testNackDelaySeconds() {
+    EasyMock.replay(pubsubRpc, pubsub, options, renewer);
+    assertEquals(1, MessageConsumerImpl.nackDelaySeconds(1));
+    assertEquals(2, MessageConsumerImpl.nackDelaySeconds(2));
+    assertEquals(256, MessageConsumerImpl.nackDelaySeconds(9));
+    assertEquals(600, MessageConsumerImpl.nackDelaySeconds(11));
+    assertEquals(600, MessageConsumerImpl.nackDelaySeconds(100));
+  }
+
+  @Test
+  public void testDeliveryAttempts() {
+    EasyMock.replay(pubsubRpc, pubsub, options, renewer);
+    MessageConsumerImpl.DeliveryAttempts attempts = new MessageConsumerImpl.DeliveryAttempts(2);
+    assertEquals(1, attempts.increment("id1"));
+    assertEquals(2, attempts.increment("id1"));
+    assertEquals(1, attempts.increment("id2"));
+    assertEquals(3, attempts.increment("id1"));
+    // id2 is the least recently failed message and is evicted
+    assertEquals(1, attempts.increment("id3"));
+    assertEquals(2, attempts.size());
+    assertEquals(1, attempts.increment("id2"));
+    attempts.remove("id2");
+    assertEquals(1, attempts.size());
+  }
+
+  @Test
+  public void testMessageConsumerDeadLetter() throws Exception {
+    PullRequest request = pullRequest(MAX_QUEUED_CALLBACKS);
+    EasyMock.expect(options.rpc()).andReturn(pubsubRpc);
+    EasyMock.expect(options.service()).andReturn(pubsub);
+    EasyMock.expect(options.projectId()).andReturn(PROJECT).anyTimes();
+    EasyMock.expect(pubsub.options()).andReturn(options).times(2);
+    final CountDownLatch latch = new CountDownLatch(2);
+    EasyMock.expect(pubsub.ackAsync(SUBSCRIPTION, ACK_ID1)).andReturn(null);
+    EasyMock.expect(pubsub.ackAsync(SUBSCRIPTION, ACK_ID2)).andReturn(null);
+    EasyMock.replay(pubsub);
+    // dead letter publish calls are interleaved with pull calls
+    EasyMock.checkOrder(pubsubRpc, false);
+    PublishResponse publishResponse = PublishResponse.newBuilder().addMessageIds("id").build();
+    EasyMock.expect(pubsubRpc.publish(EasyMock.<PublishRequest>anyObject()))
+        .andReturn(Futures.immediateFuture(publishResponse))
+        .times(1, 2);
+    EasyMock.expect(pubsubRpc.pull(request)).andReturn(new TestPullFuture(PULL_RESPONSE));
+    EasyMock.expect(pubsubRpc.pull(EasyMock.<PullRequest>anyObject()))
+        .andReturn(new TestPullFuture(EMPTY_RESPONSE)).anyTimes();
+    renewer.add(SUBSCRIPTION, ACK_ID1);
+    EasyMock.expectLastCall();
+    renewer.add(SUBSCRIPTION, ACK_ID2);
+    EasyMock.expectLastCall();
+    renewer.remove(SUBSCRIPTION, ACK_ID1);
+    EasyMock.expectLastCall().andAnswer(createAnswer(latch));
+    renewer.remove(SUBSCRIPTION, ACK_ID2);
+    EasyMock.expectLastCall().andAnswer(createAnswer(latch));
+    EasyMock.replay(pubsubRpc, options, renewer);
+    try (MessageConsumer consumer =
+        MessageConsumerImpl.builder(options, SUBSCRIPTION, renewer, THROW_PROCESSOR)
+            .maxQueuedCallbacks(MAX_QUEUED_CALLBACKS)
+            .deadLetterTopic("dead-letter")
+            .maxDeliveryAttempts(1)
+            .build()) {
+      latch.await();
+    }
+  }
+
+  @Test
+  public void testBoundedExecutorLimitsRunningTasks() throws Exception {
+    EasyMock.replay(pubsubRpc, pubsub, options, renewer);
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    int tasks = 50;
+    final int maxRunning = 3;
+    final CountDownLatch latch = new CountDownLatch(tasks);
+    final AtomicInteger running = new AtomicInteger();
+    final AtomicInteger maxObserved = new AtomicInteger();
+    MessageConsumerImpl.BoundedExecutor boundedExecutor =
+        new MessageConsumerImpl.BoundedExecutor(executor, maxRunning);
+    for (int i = 0; i < tasks; i++) {
+      boundedExecutor.execute(new Runnable() {
+        @Override
+        public void run() {
+          int current = running.incrementAndGet();
+          int max;
+          while ((max = maxObserved.get()) < current && !maxObserved.compareAndSet(max, current)) {
+            // retry
+          }
+          Uninterruptibles.sleepUninterruptibly(1, TimeUnit.MILLISECONDS);
+          running.decrementAndGet();
+          latch.countDown();
+        }
+      });
+    }
+    latch.await();
+    executor.shutdown();
+    assertTrue(maxObserved.get() <= maxRunning);
+  }
+
+  @Test
+  public void testBoundedExecutorRejectedTask() {
+    EasyMock.replay(pubsubRpc, pubsub, options, renewer);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    executor.shutdown();
+    MessageConsumerImpl.BoundedExecutor boundedExecutor =
+        new MessageConsumerImpl.BoundedExecutor(executor, 1);
+    try {
+      boundedExecutor.execute(new Runnable() {
+        @Override
+        public void run() {}
+      });
+      fail("RejectedExecutionException expected");
+    } catch (RejectedExecutionException ex) {
+      // expected
+    }
+    assertEquals(0, boundedExecutor.running());
+  }
+
+  @Test
+  public void testSerialLaneRejectedTask() {
+    EasyMock.replay(pubsubRpc, pubsub, options, renewer);
+    final AtomicBoolean reject = new AtomicBoolean(true);
+    MessageConsumerImpl.SerialLane lane = new MessageConsumerImpl.SerialLane(new Executor() {
+      @Override
+      public void execute(Runnable command) {
+        if (reject.getAndSet(false)) {
+          throw new RejectedExecutionException();
+        }
+        command.run();
+      }
+    });
+    final List<Integer> executed = new ArrayList<>();
+    try {
+      lane.execute(new Runnable() {
+        @Override
+        public void run() {
+          executed.add(1);
+        }
+      });
+      fail("RejectedExecutionException expected");
+    } catch (RejectedExecutionException ex) {
+      // expected
+    }
+    lane.execute(new Runnable() {
+      @Override
+      public void run() {
+        executed.add(2);
+      }
+    });
+    assertEquals(ImmutableList.of(1, 2), executed);
+  }
+
+  @Test
+  public void testMessageConsumerProcessingModes() throws Exception {
+    for (ProcessingMode processingMode : ProcessingMode.values()) {
+      EasyMock.reset(pubsubRpc, pubsub, options, renewer);
+      PullRequest request = pullRequest(MAX_QUEUED_CALLBACKS);
+      EasyMock.expect(options.rpc()).andReturn(pubsubRpc);
+      EasyMock.expect(options.service()).andReturn(pubsub);
+      EasyMock.expect(options.projectId()).andReturn(PROJECT).anyTimes();
+      EasyMock.expect(pubsub.options()).andReturn(options).times(2);
+      final CountDownLatch latch = new CountDownLatch(2);
+      EasyMock.expect(pubsub.ackAsync(SUBSCRIPTION, ACK_ID1)).andReturn(null);
+      EasyMock.expect(pubsub.ackAsync(SUBSCRIPTION, ACK_ID2)).andReturn(null);
+      EasyMock.replay(pubsub);
+      EasyMock.expect(pubsubRpc.pull(request)).andReturn(new TestPullFuture(PULL_RESPONSE));
+      EasyMock.expect(pubsubRpc.pull(EasyMock.<PullRequest>anyObject()))
+          .andReturn(new TestPullFuture(EMPTY_RESPONSE)).anyTimes();
+      renewer.add(SUBSCRIPTION, ACK_ID1);
+      EasyMock.expectLastCall();
+      renewer.add(SUBSCRIPTION, ACK_ID2);
+      EasyMock.expectLastCall();
+      renewer.remove(SUBSCRIPTION, ACK_ID1);
+      EasyMock.expectLastCall().andAnswer(createAnswer(latch));
+      renewer.remove(SUBSCRIPTION, ACK_ID2);
+      EasyMock.expectLastCall().andAnswer(createAnswer(latch));
+      EasyMock.replay(pubsubRpc, options, renewer);
+      try (MessageConsumer consumer =
+          MessageConsumerImpl.builder(options, SUBSCRIPTION, renewer, DO_NOTHING_PROCESSOR)
+              .maxQueuedCallbacks(MAX_QUEUED_CALLBACKS)
+              .processingMode(processingMode)
+              .parallelism(2)
+              .build()) {
+        latch.await();
+      }
+      EasyMock.verify(pubsub, renewer);
+    }
+  }
 }
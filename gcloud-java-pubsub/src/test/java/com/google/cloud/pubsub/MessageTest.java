@@ -18,6 +18,7 @@ package com.google.cloud.pubsub;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
 import com.google.cloud.ByteArray;
 import com.google.common.collect.ImmutableMap;
@@ -125,6 +126,12 @@ public class MessageTest {
     compareMessage(message, Message.fromPb(message.toPb()));
   }
 
+  @Test
+  public void testPayloadIsShared() {
+    Message message = Message.fromPb(MESSAGE.toPb());
+    assertSame(message.payload(), message.toBuilder().build().payload());
+  }
+
   private void compareMessage(Message expected, Message value) {
     assertEquals(expected, value);
     assertEquals(expected.id(), value.id());
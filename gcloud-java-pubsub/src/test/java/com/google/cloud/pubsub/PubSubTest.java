@@ -31,6 +31,9 @@ public class PubSubTest {
   private static final int PAGE_SIZE = 42;
   private static final String PAGE_TOKEN = "page token";
   private static final int MAX_QUEUED_CALLBACKS = 42;
+  private static final int MAX_ORDERING_LANES = 8;
+  private static final int MAX_DELIVERY_ATTEMPTS = 3;
+  private static final int PARALLELISM = 4;
 
   @Test
   public void testListOption() {
@@ -55,5 +58,29 @@ public class PubSubTest {
     pullOption = PullOption.executorFactory(executorFactory);
     assertSame(executorFactory, pullOption.value());
     assertEquals(PullOption.OptionType.EXECUTOR_FACTORY, pullOption.optionType());
+    // ordering key
+    pullOption = PullOption.orderingKey("key");
+    assertEquals("key", pullOption.value());
+    assertEquals(PullOption.OptionType.ORDERING_KEY, pullOption.optionType());
+    // max ordering lanes
+    pullOption = PullOption.maxOrderingLanes(MAX_ORDERING_LANES);
+    assertEquals(MAX_ORDERING_LANES, pullOption.value());
+    assertEquals(PullOption.OptionType.MAX_ORDERING_LANES, pullOption.optionType());
+    // dead-letter topic
+    pullOption = PullOption.deadLetterTopic("topic");
+    assertEquals("topic", pullOption.value());
+    assertEquals(PullOption.OptionType.DEAD_LETTER_TOPIC, pullOption.optionType());
+    // max delivery attempts
+    pullOption = PullOption.maxDeliveryAttempts(MAX_DELIVERY_ATTEMPTS);
+    assertEquals(MAX_DELIVERY_ATTEMPTS, pullOption.value());
+    assertEquals(PullOption.OptionType.MAX_DELIVERY_ATTEMPTS, pullOption.optionType());
+    // parallelism
+    pullOption = PullOption.parallelism(PARALLELISM);
+    assertEquals(PARALLELISM, pullOption.value());
+    assertEquals(PullOption.OptionType.PARALLELISM, pullOption.optionType());
+    // processing mode
+    pullOption = PullOption.processingMode(PullOption.ProcessingMode.VIRTUAL_THREADS);
+    assertEquals(PullOption.ProcessingMode.VIRTUAL_THREADS, pullOption.value());
+    assertEquals(PullOption.OptionType.PROCESSING_MODE, pullOption.optionType());
   }
 }
@@ -442,13 +442,16 @@ public class Blob extends BlobInfo {
   }
 
   /**
-   * Returns a {@code ReadChannel} object for reading this blob's content.
+   * Returns a {@code ReadChannel} object for reading this blob's content. If the blob is read
+   * sequentially from its start, its content is validated against the blob's CRC32C or MD5
+   * checksum.
    *
    * @param options blob read options
    * @throws StorageException upon failure
+   * @see Storage#reader(BlobInfo, Storage.BlobSourceOption...)
    */
   public ReadChannel reader(BlobSourceOption... options) {
-    return storage.reader(blobId(), toSourceOptions(this, options));
+    return storage.reader(this, toSourceOptions(this, options));
   }
 
   /**
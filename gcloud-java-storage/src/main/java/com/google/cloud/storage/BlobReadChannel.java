@@ -54,6 +54,7 @@ class BlobReadChannel implements ReadChannel {
   private final StorageObject storageObject;
   private int bufferPos;
   private byte[] buffer;
+  private ContentChecksum checksum;
 
   BlobReadChannel(StorageOptions serviceOptions, BlobId blob,
       Map<StorageRpc.Option, ?> requestOptions) {
@@ -65,6 +66,19 @@ class BlobReadChannel implements ReadChannel {
     storageObject = blob.toPb();
   }
 
+  /**
+   * Creates a channel that validates the content it reads against the checksum of
+   * {@code blobInfo}, if any, as long as the blob is read sequentially from its start. Content
+   * served with {@code gzip} encoding may be decompressed, so it isn't validated.
+   */
+  BlobReadChannel(StorageOptions serviceOptions, BlobInfo blobInfo,
+      Map<StorageRpc.Option, ?> requestOptions) {
+    this(serviceOptions, blobInfo.blobId(), requestOptions);
+    if (!"gzip".equalsIgnoreCase(blobInfo.contentEncoding())) {
+      checksum = ContentChecksum.of(blobInfo);
+    }
+  }
+
   @Override
   public RestorableState<ReadChannel> capture() {
     StateImpl.Builder builder = StateImpl.builder(serviceOptions, blob, requestOptions)
@@ -137,8 +151,10 @@ class BlobReadChannel implements ReadChannel {
       } catch (RetryHelper.RetryHelperException e) {
         throw StorageException.translateAndThrow(e);
       }
+      updateChecksum();
       if (toRead > buffer.length) {
         endOfStream = true;
+        validateChecksum();
         if (buffer.length == 0) {
           buffer = null;
           return -1;
@@ -156,6 +172,30 @@ class BlobReadChannel implements ReadChannel {
     return toWrite;
   }
 
+  private void updateChecksum() {
+    if (checksum != null) {
+      if (checksum.length() == position) {
+        checksum.update(buffer, 0, buffer.length);
+      } else {
+        // not read sequentially from the start
+        checksum = null;
+      }
+    }
+  }
+
+  private void validateChecksum() {
+    if (checksum != null) {
+      ContentChecksum completed = checksum;
+      checksum = null;
+      try {
+        completed.validate();
+      } catch (StorageException e) {
+        buffer = null;
+        throw e;
+      }
+    }
+  }
+
   static class StateImpl implements RestorableState<ReadChannel>, Serializable {
 
     private static final long serialVersionUID = 3889420316004453706L;
@@ -29,19 +29,33 @@ import java.util.Map;
 
 /**
  * Write channel implementation to upload Google Cloud Storage blobs.
+ *
+ * <p>If the blob has a CRC32C or MD5 checksum, i.e. if the channel was created with the
+ * {@link Storage.BlobWriteOption#crc32cMatch()} or {@link Storage.BlobWriteOption#md5Match()}
+ * option, the content is checksummed as it is uploaded, and the upload fails instead of being
+ * finalized if the checksums differ. Channels restored after content was uploaded don't validate
+ * it.
  */
 class BlobWriteChannel extends BaseWriteChannel<StorageOptions, BlobInfo> {
 
+  private ContentChecksum checksum;
+  private StorageException checksumMismatch;
+
   BlobWriteChannel(StorageOptions options, BlobInfo blob, Map<StorageRpc.Option, ?> optionsMap) {
     this(options, blob, options.rpc().open(blob.toPb(), optionsMap));
   }
 
   BlobWriteChannel(StorageOptions options, BlobInfo blobInfo, String uploadId) {
     super(options, blobInfo, uploadId);
+    checksum = ContentChecksum.of(blobInfo);
   }
 
   @Override
   protected void flushBuffer(final int length, final boolean last) {
+    if (last) {
+      // before the upload is finalized
+      updateChecksum(length, true);
+    }
     try {
       runWithRetries(callable(new Runnable() {
         @Override
@@ -52,6 +66,35 @@ class BlobWriteChannel extends BaseWriteChannel<StorageOptions, BlobInfo> {
     } catch (RetryHelper.RetryHelperException e) {
       throw StorageException.translateAndThrow(e);
     }
+    if (!last) {
+      // once the chunk is uploaded, so that it isn't checksummed twice if the upload is retried
+      updateChecksum(length, false);
+    }
+  }
+
+  private void updateChecksum(int length, boolean last) {
+    if (checksumMismatch != null) {
+      throw checksumMismatch;
+    }
+    if (checksum == null) {
+      return;
+    }
+    if (checksum.length() != position()) {
+      // restored after some content was uploaded
+      checksum = null;
+      return;
+    }
+    checksum.update(buffer(), 0, length);
+    if (last) {
+      try {
+        checksum.validate();
+      } catch (StorageException e) {
+        checksumMismatch = e;
+        throw e;
+      } finally {
+        checksum = null;
+      }
+    }
   }
 
   protected StateImpl.Builder stateBuilder() {
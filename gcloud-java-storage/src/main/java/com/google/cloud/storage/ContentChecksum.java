@@ -0,0 +1,150 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.storage;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.BaseEncoding;
+import com.google.common.primitives.Ints;
+
+import java.lang.reflect.Constructor;
+import java.util.zip.Checksum;
+
+/**
+ * Checksum of blob content computed incrementally as the content goes through a channel, and
+ * compared with the CRC32C or MD5 checksum of a {@link BlobInfo} once all the content went
+ * through.
+ *
+ * <p>CRC32C is used whenever the blob has one, since it's much cheaper to compute than MD5. It is
+ * computed with {@code java.util.zip.CRC32C} when the JVM provides it (Java 9 and later), which is
+ * hardware accelerated, and with Guava's implementation otherwise.
+ */
+final class ContentChecksum {
+
+  private static final Constructor<? extends Checksum> JDK_CRC32C = jdkCrc32c();
+
+  private final BlobId blob;
+  private final String algorithm;
+  private final String expected;
+  private final Checksum crc32c;
+  private final Hasher md5;
+  private long length;
+
+  private ContentChecksum(BlobId blob, String algorithm, String expected, Checksum crc32c,
+      Hasher md5) {
+    this.blob = blob;
+    this.algorithm = algorithm;
+    this.expected = expected;
+    this.crc32c = crc32c;
+    this.md5 = md5;
+  }
+
+  /**
+   * Returns a checksum to compare with the CRC32C or MD5 checksum of {@code blobInfo}, or
+   * {@code null} if {@code blobInfo} has neither.
+   */
+  static ContentChecksum of(BlobInfo blobInfo) {
+    if (blobInfo.crc32c() != null) {
+      return new ContentChecksum(blobInfo.blobId(), "CRC32C", blobInfo.crc32c(), newCrc32c(), null);
+    }
+    if (blobInfo.md5() != null) {
+      return new ContentChecksum(
+          blobInfo.blobId(), "MD5", blobInfo.md5(), null, Hashing.md5().newHasher());
+    }
+    return null;
+  }
+
+  /**
+   * Returns the number of bytes checksummed so far.
+   */
+  long length() {
+    return length;
+  }
+
+  void update(byte[] bytes, int offset, int length) {
+    if (crc32c != null) {
+      crc32c.update(bytes, offset, length);
+    } else {
+      md5.putBytes(bytes, offset, length);
+    }
+    this.length += length;
+  }
+
+  /**
+   * Checks that the content checksummed so far matches the checksum of the blob. Must be called at
+   * most once.
+   *
+   * @throws StorageException if the checksums differ
+   */
+  void validate() {
+    byte[] actual =
+        crc32c != null ? Ints.toByteArray((int) crc32c.getValue()) : md5.hash().asBytes();
+    String encoded = BaseEncoding.base64().encode(actual);
+    if (!expected.equals(encoded)) {
+      throw new StorageException(0, "Blob " + blob + " has " + algorithm + " " + expected
+          + " but its content has " + algorithm + " " + encoded);
+    }
+  }
+
+  static Checksum newCrc32c() {
+    if (JDK_CRC32C != null) {
+      try {
+        return JDK_CRC32C.newInstance();
+      } catch (ReflectiveOperationException e) {
+        // fall back on Guava
+      }
+    }
+    return new GuavaCrc32c();
+  }
+
+  private static Constructor<? extends Checksum> jdkCrc32c() {
+    try {
+      return Class.forName("java.util.zip.CRC32C").asSubclass(Checksum.class).getConstructor();
+    } catch (ReflectiveOperationException | ClassCastException e) {
+      return null;
+    }
+  }
+
+  /**
+   * CRC32C {@link Checksum} for JVMs older than Java 9. {@link #getValue()} can only be called
+   * once between resets.
+   */
+  static final class GuavaCrc32c implements Checksum {
+
+    private Hasher hasher = Hashing.crc32c().newHasher();
+
+    @Override
+    public void update(int b) {
+      hasher.putByte((byte) b);
+    }
+
+    @Override
+    public void update(byte[] bytes, int offset, int length) {
+      hasher.putBytes(bytes, offset, length);
+    }
+
+    @Override
+    public long getValue() {
+      return hasher.hash().asInt() & 0xffffffffL;
+    }
+
+    @Override
+    public void reset() {
+      hasher = Hashing.crc32c().newHasher();
+    }
+  }
+}
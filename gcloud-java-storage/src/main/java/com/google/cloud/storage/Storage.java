@@ -1478,6 +1478,33 @@ public interface Storage extends Service<StorageOptions> {
    */
   ReadChannel reader(BlobId blob, BlobSourceOption... options);
 
+  /**
+   * Returns a channel for reading the content of {@code blobInfo}, like
+   * {@link #reader(BlobId, BlobSourceOption...)} with {@code blobInfo.blobId()}. In addition, if
+   * the blob is read sequentially from its start, the content is checksummed as it is read and
+   * compared with {@link BlobInfo#crc32c()}, or with {@link BlobInfo#md5()} if the CRC32C checksum
+   * isn't set. If they differ, the {@code blobReadChannel.read(ByteBuffer)} call reaching the end
+   * of the blob throws {@link StorageException}. Content isn't validated once the channel seeks to
+   * another position, nor if {@link BlobInfo#contentEncoding()} is {@code gzip}, nor by channels
+   * restored from a captured state.
+   *
+   * <p>Example of reading and validating a blob's content:
+   * <pre>{@code
+   * Blob blob = storage.get(BlobId.of("bucket", "blob_name"));
+   * try (ReadChannel reader = storage.reader(blob)) {
+   *   ByteBuffer bytes = ByteBuffer.allocate(64 * 1024);
+   *   while (reader.read(bytes) > 0) {
+   *     bytes.flip();
+   *     // do something with bytes
+   *     bytes.clear();
+   *   }
+   * }
+   * }</pre>
+   *
+   * @throws StorageException upon failure
+   */
+  ReadChannel reader(BlobInfo blobInfo, BlobSourceOption... options);
+
   /**
    * Creates a blob and return a channel for writing its content. By default any md5 and crc32c
    * values in the given {@code blobInfo} are ignored unless requested via the
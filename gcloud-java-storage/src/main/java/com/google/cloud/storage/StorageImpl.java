@@ -465,6 +465,12 @@ final class StorageImpl extends BaseService<StorageOptions> implements Storage {
     return new BlobReadChannel(options(), blob, optionsMap);
   }
 
+  @Override
+  public ReadChannel reader(BlobInfo blobInfo, BlobSourceOption... options) {
+    Map<StorageRpc.Option, ?> optionsMap = optionMap(blobInfo.blobId(), options);
+    return new BlobReadChannel(options(), blobInfo, optionsMap);
+  }
+
   @Override
   public BlobWriteChannel writer(BlobInfo blobInfo, BlobWriteOption... options) {
     Tuple<BlobInfo, BlobTargetOption[]> targetOptions = BlobTargetOption.convert(blobInfo, options);
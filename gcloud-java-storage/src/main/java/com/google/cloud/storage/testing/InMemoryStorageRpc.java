@@ -0,0 +1,963 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.storage.testing;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.api.client.googleapis.json.GoogleJsonError;
+import com.google.api.client.util.DateTime;
+import com.google.api.services.storage.model.Bucket;
+import com.google.api.services.storage.model.StorageObject;
+import com.google.cloud.AuthCredentials;
+import com.google.cloud.RetryParams;
+import com.google.cloud.storage.StorageException;
+import com.google.cloud.storage.StorageOptions;
+import com.google.cloud.storage.spi.RpcBatch;
+import com.google.cloud.storage.spi.StorageRpc;
+import com.google.cloud.storage.spi.StorageRpcFactory;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.Hashing;
+import com.google.common.io.BaseEncoding;
+import com.google.common.io.ByteStreams;
+import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A thread-safe, in-memory implementation of {@link StorageRpc}, for use in tests and benchmarks.
+ * Buckets and objects are all kept in the JVM, so no network access or credentials are needed.
+ *
+ * <p>The implementation supports creating, getting, listing, updating and deleting buckets and
+ * objects, object generations and metagenerations with their preconditions, bucket versioning,
+ * resumable uploads, compose, rewrites driven one chunk at a time and batches.
+ *
+ * <p>A latency can be added to every call via {@link Builder#latency(long, TimeUnit)}, the bytes
+ * transferred by all calls can be limited via {@link Builder#bandwidth(double)}, and calls can be
+ * made to fail with a given probability via {@link Builder#errorRate(double)}. Failing calls throw
+ * a {@link StorageException} with the code set by {@link Builder#errorCode(int)}.
+ *
+ * <p>While this implementation attempts to simulate Cloud Storage, there are some divergences in
+ * behavior. The following is a non-exhaustive list of some of those behavioral differences:
+ *
+ * <ul>
+ * <li>There are no projects, permissions or access control lists: any call is allowed, and ACLs,
+ *     predefined ACLs and projections are ignored.
+ * <li>The {@code fields} option is ignored, all the fields are always returned.
+ * <li>Generations are increasing microsecond timestamps, but aren't guaranteed to match the
+ *     creation time of the object.
+ * <li>Noncurrent generations of an object are kept only if versioning is enabled on its bucket
+ *     when the object is overwritten or deleted. Lifecycle rules are never applied.
+ * <li>Object content is held in memory, so objects can't be larger than 2 GiB.
+ * <li>Rewrites progress by {@code megabytesRewrittenPerCall} at each call, or complete in one
+ *     call if it isn't set.
+ * <li>Batches run their calls one after the other when submitted. Latency and injected errors
+ *     apply once to the whole batch.
+ * <li>The messages in the errors thrown by this implementation do not necessarily match the
+ *     messages given by the actual service.
+ * </ul>
+ *
+ * <p>Example usage:
+ * <pre> {@code
+ * InMemoryStorageRpc rpc = InMemoryStorageRpc.builder()
+ *     .latency(20, TimeUnit.MILLISECONDS)
+ *     .bandwidth(50 * 1024 * 1024)
+ *     .errorRate(0.01)
+ *     .build();
+ * Storage storage = rpc.options().service();
+ * storage.create(BucketInfo.of("bucket"));
+ * } </pre>
+ */
+@ThreadSafe
+public class InMemoryStorageRpc implements StorageRpc {
+
+  private static final String PROJECT_ID = "in-memory-project";
+  private static final int DEFAULT_ERROR_CODE = 503;
+  private static final int MAX_COMPOSE_SOURCES = 32;
+  private static final long MEGABYTE = 1024L * 1024L;
+
+  /**
+   * Object fields that {@code patch} and {@code rewrite} don't copy from the request, because the
+   * service computes them.
+   */
+  private static final Set<String> OBJECT_OUTPUT_FIELDS = ImmutableSet.of(
+      "bucket", "name", "generation", "metageneration", "size", "md5Hash", "crc32c", "etag", "id",
+      "timeCreated", "updated", "timeDeleted", "componentCount", "selfLink", "mediaLink");
+  private static final Set<String> BUCKET_OUTPUT_FIELDS = ImmutableSet.of(
+      "name", "id", "metageneration", "etag", "timeCreated", "projectNumber", "selfLink");
+
+  private final long latencyMillis;
+  private final RateLimiter bandwidth;
+  private final double errorRate;
+  private final int errorCode;
+  private final AtomicLong uploadIds = new AtomicLong();
+  private final ConcurrentMap<String, Upload> uploads = new ConcurrentHashMap<>();
+
+  @GuardedBy("this")
+  private final Random random;
+  @GuardedBy("this")
+  private final SortedMap<String, BucketEntry> buckets = new TreeMap<>();
+  @GuardedBy("this")
+  private long lastGeneration;
+
+  /**
+   * Builder for {@code InMemoryStorageRpc} objects.
+   */
+  public static class Builder {
+
+    private long latencyMillis;
+    private double bytesPerSecond;
+    private double errorRate;
+    private int errorCode = DEFAULT_ERROR_CODE;
+    private long randomSeed = System.nanoTime();
+
+    private Builder() {}
+
+    /**
+     * Sets the latency added to every call. By default no latency is added.
+     */
+    public Builder latency(long latency, TimeUnit unit) {
+      checkArgument(latency >= 0, "Latency must be >= 0");
+      this.latencyMillis = unit.toMillis(latency);
+      return this;
+    }
+
+    /**
+     * Sets how many bytes per second all calls can upload and download together. Calls wait until
+     * enough bandwidth is available to transfer their content. By default bandwidth isn't limited.
+     */
+    public Builder bandwidth(double bytesPerSecond) {
+      checkArgument(bytesPerSecond > 0, "Bandwidth must be > 0");
+      this.bytesPerSecond = bytesPerSecond;
+      return this;
+    }
+
+    /**
+     * Sets the probability, between 0 and 1, that a call fails with a {@link StorageException}. By
+     * default calls never fail.
+     */
+    public Builder errorRate(double errorRate) {
+      checkArgument(errorRate >= 0 && errorRate <= 1, "Error rate must be between 0 and 1");
+      this.errorRate = errorRate;
+      return this;
+    }
+
+    /**
+     * Sets the HTTP status code of the errors injected by {@link #errorRate(double)}. By default
+     * failing calls throw a retryable {@code 503} error.
+     */
+    public Builder errorCode(int errorCode) {
+      this.errorCode = errorCode;
+      return this;
+    }
+
+    /**
+     * Sets the seed choosing which calls fail, so that the same sequence of calls fails the same
+     * way.
+     */
+    public Builder randomSeed(long randomSeed) {
+      this.randomSeed = randomSeed;
+      return this;
+    }
+
+    /**
+     * Creates an {@code InMemoryStorageRpc} object.
+     */
+    public InMemoryStorageRpc build() {
+      return new InMemoryStorageRpc(this);
+    }
+  }
+
+  private InMemoryStorageRpc(Builder builder) {
+    this.latencyMillis = builder.latencyMillis;
+    this.bandwidth = builder.bytesPerSecond > 0 ? RateLimiter.create(builder.bytesPerSecond) : null;
+    this.errorRate = builder.errorRate;
+    this.errorCode = builder.errorCode;
+    this.random = new Random(builder.randomSeed);
+  }
+
+  /**
+   * Creates an {@code InMemoryStorageRpc} object with no latency, bandwidth limit or errors.
+   */
+  public static InMemoryStorageRpc create() {
+    return builder().build();
+  }
+
+  /**
+   * Returns a builder for {@code InMemoryStorageRpc} objects.
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Returns a {@link StorageOptions} object whose service uses this RPC instance. Calls are not
+   * retried, set other {@link StorageOptions#retryParams()} to retry injected errors.
+   */
+  public StorageOptions options() {
+    return StorageOptions.builder()
+        .projectId(PROJECT_ID)
+        .authCredentials(AuthCredentials.noAuth())
+        .retryParams(RetryParams.noRetries())
+        .serviceRpcFactory(new StorageRpcFactory() {
+          @Override
+          public StorageRpc create(StorageOptions options) {
+            return InMemoryStorageRpc.this;
+          }
+        })
+        .build();
+  }
+
+  /**
+   * Deletes all buckets, objects and pending uploads.
+   */
+  public synchronized void reset() {
+    buckets.clear();
+    uploads.clear();
+  }
+
+  @Override
+  public Bucket create(Bucket bucket, Map<Option, ?> options) {
+    simulate(0);
+    synchronized (this) {
+      if (buckets.containsKey(bucket.getName())) {
+        throw new StorageException(409, "Bucket " + bucket.getName() + " already exists");
+      }
+      Bucket created = bucket.clone()
+          .setId(bucket.getName())
+          .setMetageneration(1L)
+          .setTimeCreated(new DateTime(System.currentTimeMillis()));
+      if (created.getLocation() == null) {
+        created.setLocation("US");
+      }
+      if (created.getStorageClass() == null) {
+        created.setStorageClass("STANDARD");
+      }
+      setEtag(created);
+      buckets.put(bucket.getName(), new BucketEntry(created));
+      return created.clone();
+    }
+  }
+
+  @Override
+  public StorageObject create(StorageObject object, InputStream content, Map<Option, ?> options) {
+    byte[] bytes;
+    try {
+      bytes = ByteStreams.toByteArray(content);
+    } catch (IOException ex) {
+      throw new StorageException(ex);
+    }
+    simulate(bytes.length);
+    return store(object, bytes, options, true);
+  }
+
+  @Override
+  public Tuple<String, Iterable<Bucket>> list(Map<Option, ?> options) {
+    simulate(0);
+    String prefix = (String) options.get(Option.PREFIX);
+    String pageToken = (String) options.get(Option.PAGE_TOKEN);
+    Long maxResults = (Long) options.get(Option.MAX_RESULTS);
+    List<Bucket> page = new ArrayList<>();
+    String nextPageToken = null;
+    synchronized (this) {
+      SortedMap<String, BucketEntry> tail =
+          pageToken != null ? buckets.tailMap(pageToken + '\0') : buckets;
+      for (BucketEntry entry : tail.values()) {
+        String name = entry.bucket.getName();
+        if (prefix != null && !name.startsWith(prefix)) {
+          continue;
+        }
+        if (maxResults != null && page.size() == maxResults) {
+          nextPageToken = page.get(page.size() - 1).getName();
+          break;
+        }
+        page.add(entry.bucket.clone());
+      }
+    }
+    return Tuple.<String, Iterable<Bucket>>of(nextPageToken, page);
+  }
+
+  @Override
+  public Tuple<String, Iterable<StorageObject>> list(String bucket, Map<Option, ?> options) {
+    simulate(0);
+    String prefix = (String) options.get(Option.PREFIX);
+    String delimiter = (String) options.get(Option.DELIMITER);
+    String pageToken = (String) options.get(Option.PAGE_TOKEN);
+    Long maxResults = (Long) options.get(Option.MAX_RESULTS);
+    boolean versions = Boolean.TRUE.equals(options.get(Option.VERSIONS));
+    // objects and prefixes, keyed like the page tokens
+    NavigableMap<String, StorageObject> results = new TreeMap<>();
+    synchronized (this) {
+      BucketEntry entry = bucketEntry(bucket);
+      Iterable<Entry> candidates = versions ? entry.allVersions() : entry.objects.values();
+      for (Entry object : candidates) {
+        String name = object.metadata.getName();
+        if (prefix != null && !name.startsWith(prefix)) {
+          continue;
+        }
+        int start = prefix != null ? prefix.length() : 0;
+        int end = delimiter != null ? name.indexOf(delimiter, start) : -1;
+        if (end >= 0) {
+          String directory = name.substring(0, end + delimiter.length());
+          results.put(directory, new StorageObject()
+              .set("isDirectory", true)
+              .setBucket(bucket)
+              .setName(directory)
+              .setSize(BigInteger.ZERO));
+        } else {
+          String key = versions
+              ? String.format("%s\0%020d", name, object.metadata.getGeneration())
+              : name;
+          results.put(key, object.metadata.clone());
+        }
+      }
+    }
+    if (pageToken != null) {
+      results = results.tailMap(pageToken, false);
+    }
+    List<StorageObject> page = new ArrayList<>();
+    String nextPageToken = null;
+    for (Map.Entry<String, StorageObject> result : results.entrySet()) {
+      if (maxResults != null && page.size() == maxResults) {
+        nextPageToken = results.lowerKey(result.getKey());
+        break;
+      }
+      page.add(result.getValue());
+    }
+    return Tuple.<String, Iterable<StorageObject>>of(nextPageToken, page);
+  }
+
+  @Override
+  public Bucket get(Bucket bucket, Map<Option, ?> options) {
+    simulate(0);
+    synchronized (this) {
+      BucketEntry entry = buckets.get(bucket.getName());
+      if (entry == null) {
+        return null;
+      }
+      checkMetagenerationPreconditions(entry.bucket.getMetageneration(), options);
+      return entry.bucket.clone();
+    }
+  }
+
+  @Override
+  public StorageObject get(StorageObject object, Map<Option, ?> options) {
+    simulate(0);
+    return getObject(object, options);
+  }
+
+  private StorageObject getObject(StorageObject object, Map<Option, ?> options) {
+    synchronized (this) {
+      BucketEntry bucket = buckets.get(object.getBucket());
+      Entry entry = bucket != null ? bucket.find(object) : null;
+      if (entry == null) {
+        return null;
+      }
+      checkPreconditions(entry, options);
+      return entry.metadata.clone();
+    }
+  }
+
+  @Override
+  public Bucket patch(Bucket bucket, Map<Option, ?> options) {
+    simulate(0);
+    synchronized (this) {
+      BucketEntry entry = bucketEntry(bucket.getName());
+      checkMetagenerationPreconditions(entry.bucket.getMetageneration(), options);
+      Bucket patched = entry.bucket.clone();
+      for (Map.Entry<String, Object> field : bucket.entrySet()) {
+        if (!BUCKET_OUTPUT_FIELDS.contains(field.getKey())) {
+          patched.set(field.getKey(), field.getValue());
+        }
+      }
+      patched.setMetageneration(patched.getMetageneration() + 1);
+      setEtag(patched);
+      entry.bucket = patched;
+      return patched.clone();
+    }
+  }
+
+  @Override
+  public StorageObject patch(StorageObject storageObject, Map<Option, ?> options) {
+    simulate(0);
+    return patchObject(storageObject, options);
+  }
+
+  private StorageObject patchObject(StorageObject storageObject, Map<Option, ?> options) {
+    synchronized (this) {
+      Entry entry = bucketEntry(storageObject.getBucket()).find(storageObject);
+      if (entry == null) {
+        throw notFound(storageObject);
+      }
+      checkPreconditions(entry, options);
+      StorageObject patched = entry.metadata.clone();
+      for (Map.Entry<String, Object> field : storageObject.entrySet()) {
+        if (!OBJECT_OUTPUT_FIELDS.contains(field.getKey())) {
+          patched.set(field.getKey(), field.getValue());
+        }
+      }
+      patched.setMetageneration(patched.getMetageneration() + 1)
+          .setUpdated(new DateTime(System.currentTimeMillis()));
+      setEtag(patched);
+      entry.metadata = patched;
+      return patched.clone();
+    }
+  }
+
+  @Override
+  public boolean delete(Bucket bucket, Map<Option, ?> options) {
+    simulate(0);
+    synchronized (this) {
+      BucketEntry entry = buckets.get(bucket.getName());
+      if (entry == null) {
+        return false;
+      }
+      checkMetagenerationPreconditions(entry.bucket.getMetageneration(), options);
+      if (!entry.objects.isEmpty() || !entry.noncurrent.isEmpty()) {
+        throw new StorageException(409, "Bucket " + bucket.getName() + " is not empty");
+      }
+      buckets.remove(bucket.getName());
+      return true;
+    }
+  }
+
+  @Override
+  public boolean delete(StorageObject object, Map<Option, ?> options) {
+    simulate(0);
+    return deleteObject(object, options);
+  }
+
+  private boolean deleteObject(StorageObject object, Map<Option, ?> options) {
+    synchronized (this) {
+      BucketEntry bucket = buckets.get(object.getBucket());
+      Entry entry = bucket != null ? bucket.find(object) : null;
+      if (entry == null) {
+        return false;
+      }
+      checkPreconditions(entry, options);
+      if (!bucket.noncurrent.remove(entry)) {
+        bucket.objects.remove(object.getName());
+        // deleting a generation explicitly removes it for good
+        if (object.getGeneration() == null && bucket.isVersioned()) {
+          entry.metadata.setTimeDeleted(new DateTime(System.currentTimeMillis()));
+          bucket.noncurrent.add(entry);
+        }
+      }
+      return true;
+    }
+  }
+
+  @Override
+  public RpcBatch createBatch() {
+    return new LocalRpcBatch();
+  }
+
+  @Override
+  public StorageObject compose(Iterable<StorageObject> sources, StorageObject target,
+      Map<Option, ?> targetOptions) {
+    List<StorageObject> sourceList = ImmutableList.copyOf(sources);
+    if (sourceList.size() > MAX_COMPOSE_SOURCES) {
+      throw new StorageException(400,
+          "A maximum of " + MAX_COMPOSE_SOURCES + " objects can be composed at once");
+    }
+    byte[] content;
+    long componentCount = 0;
+    synchronized (this) {
+      BucketEntry bucket = bucketEntry(target.getBucket());
+      List<byte[]> parts = new ArrayList<>(sourceList.size());
+      int size = 0;
+      for (StorageObject source : sourceList) {
+        Entry entry = bucket.objects.get(source.getName());
+        if (entry == null) {
+          throw notFound(source.clone().setBucket(target.getBucket()));
+        }
+        // sources with a generation are preconditions, like DefaultStorageRpc sends them
+        if (source.getGeneration() != null
+            && !source.getGeneration().equals(entry.metadata.getGeneration())) {
+          throw preconditionFailed();
+        }
+        Integer components = entry.metadata.getComponentCount();
+        componentCount += components != null ? components : 1;
+        parts.add(entry.content);
+        size += entry.content.length;
+      }
+      content = new byte[size];
+      int offset = 0;
+      for (byte[] part : parts) {
+        System.arraycopy(part, 0, content, offset, part.length);
+        offset += part.length;
+      }
+    }
+    simulate(0);
+    StorageObject composed = target.clone().setComponentCount(Ints.checkedCast(componentCount));
+    return store(composed, content, targetOptions, true);
+  }
+
+  @Override
+  public byte[] load(StorageObject storageObject, Map<Option, ?> options) {
+    byte[] content;
+    synchronized (this) {
+      Entry entry = bucketEntry(storageObject.getBucket()).find(storageObject);
+      if (entry == null) {
+        throw notFound(storageObject);
+      }
+      checkPreconditions(entry, options);
+      content = entry.content.clone();
+    }
+    simulate(content.length);
+    return content;
+  }
+
+  @Override
+  public Tuple<String, byte[]> read(StorageObject from, Map<Option, ?> options, long position,
+      int bytes) {
+    Tuple<String, byte[]> result;
+    synchronized (this) {
+      Entry entry = bucketEntry(from.getBucket()).find(from);
+      if (entry == null) {
+        throw notFound(from);
+      }
+      checkPreconditions(entry, options);
+      if (position >= entry.content.length) {
+        // the service answers 416, which DefaultStorageRpc maps to an empty read
+        return Tuple.of(null, new byte[0]);
+      }
+      int end = (int) Math.min(entry.content.length, position + bytes);
+      result = Tuple.of(entry.metadata.getEtag(),
+          Arrays.copyOfRange(entry.content, (int) position, end));
+    }
+    simulate(result.y().length);
+    return result;
+  }
+
+  @Override
+  public String open(StorageObject object, Map<Option, ?> options) {
+    simulate(0);
+    synchronized (this) {
+      checkPreconditions(bucketEntry(object.getBucket()).objects.get(object.getName()), options);
+    }
+    String uploadId = "local-upload-" + uploadIds.incrementAndGet();
+    uploads.put(uploadId, new Upload(object.clone(), options));
+    return uploadId;
+  }
+
+  @Override
+  public void write(String uploadId, byte[] toWrite, int toWriteOffset, long destOffset,
+      int length, boolean last) {
+    simulate(length);
+    Upload upload = uploads.get(uploadId);
+    if (upload == null) {
+      throw new StorageException(404, "Upload " + uploadId + " not found");
+    }
+    byte[] content;
+    synchronized (upload) {
+      if (destOffset > upload.size) {
+        throw new StorageException(400,
+            "Upload " + uploadId + " is missing bytes " + upload.size + " to " + destOffset);
+      }
+      int end = Ints.checkedCast(destOffset + length);
+      if (end > upload.buffer.length) {
+        upload.buffer = Arrays.copyOf(upload.buffer, Math.max(end, 2 * upload.buffer.length));
+      }
+      System.arraycopy(toWrite, toWriteOffset, upload.buffer, (int) destOffset, length);
+      upload.size = Math.max(upload.size, end);
+      if (!last) {
+        return;
+      }
+      content = Arrays.copyOf(upload.buffer, end);
+      uploads.remove(uploadId);
+    }
+    store(upload.object, content, upload.options, true);
+  }
+
+  @Override
+  public RewriteResponse openRewrite(RewriteRequest rewriteRequest) {
+    Entry source;
+    synchronized (this) {
+      source = bucketEntry(rewriteRequest.source.getBucket()).find(rewriteRequest.source);
+      if (source == null) {
+        throw notFound(rewriteRequest.source);
+      }
+      checkSourcePreconditions(source, rewriteRequest.sourceOptions);
+    }
+    return rewrite(rewriteRequest, source.metadata.getGeneration(), 0);
+  }
+
+  @Override
+  public RewriteResponse continueRewrite(RewriteResponse previousResponse) {
+    // the token holds the source generation and how much of it was rewritten so far
+    String[] token = previousResponse.rewriteToken.split(":");
+    return rewrite(previousResponse.rewriteRequest, Long.parseLong(token[0]),
+        Long.parseLong(token[1]));
+  }
+
+  /**
+   * Rewrites the next chunk of the source generation, and stores the target once all bytes are
+   * rewritten.
+   */
+  private RewriteResponse rewrite(RewriteRequest request, long generation, long rewritten) {
+    Entry source;
+    synchronized (this) {
+      StorageObject pinned = request.source.clone().setGeneration(generation);
+      source = bucketEntry(pinned.getBucket()).find(pinned);
+      if (source == null) {
+        throw notFound(pinned);
+      }
+    }
+    long size = source.content.length;
+    long chunk = request.megabytesRewrittenPerCall != null
+        ? request.megabytesRewrittenPerCall * MEGABYTE : size;
+    long total = Math.min(size, rewritten + Math.max(chunk, 1));
+    simulate(total - rewritten);
+    if (total < size) {
+      return new RewriteResponse(request, null, size, false, generation + ":" + total, total);
+    }
+    StorageObject target;
+    if (request.overrideInfo) {
+      target = request.target.clone();
+    } else {
+      target = new StorageObject();
+      for (Map.Entry<String, Object> field : source.metadata.entrySet()) {
+        if (!OBJECT_OUTPUT_FIELDS.contains(field.getKey())) {
+          target.set(field.getKey(), field.getValue());
+        }
+      }
+      target.setBucket(request.target.getBucket()).setName(request.target.getName());
+    }
+    // the content was checked when the source was stored
+    StorageObject result = store(target, source.content, request.targetOptions, false);
+    return new RewriteResponse(request, result, size, true, null, total);
+  }
+
+  /**
+   * Stores {@code content} as a new generation of {@code object}, and returns its metadata.
+   *
+   * @param checkHashes whether to check the MD5 and CRC32C of {@code object}, if set, against
+   *     {@code content}
+   */
+  private StorageObject store(StorageObject object, byte[] content, Map<Option, ?> options,
+      boolean checkHashes) {
+    String md5 = BaseEncoding.base64().encode(Hashing.md5().hashBytes(content).asBytes());
+    String crc32c = BaseEncoding.base64().encode(
+        Ints.toByteArray(Hashing.crc32c().hashBytes(content).asInt()));
+    if (checkHashes) {
+      if (object.getMd5Hash() != null && !object.getMd5Hash().equals(md5)) {
+        throw new StorageException(400, "Provided MD5 hash doesn't match data");
+      }
+      if (object.getCrc32c() != null && !object.getCrc32c().equals(crc32c)) {
+        throw new StorageException(400, "Provided CRC32C checksum doesn't match data");
+      }
+    }
+    synchronized (this) {
+      BucketEntry bucket = bucketEntry(object.getBucket());
+      Entry current = bucket.objects.get(object.getName());
+      checkPreconditions(current, options);
+      long generation = nextGeneration();
+      DateTime now = new DateTime(System.currentTimeMillis());
+      StorageObject metadata = object.clone()
+          .setGeneration(generation)
+          .setMetageneration(1L)
+          .setSize(BigInteger.valueOf(content.length))
+          .setMd5Hash(md5)
+          .setCrc32c(crc32c)
+          .setId(object.getBucket() + "/" + object.getName() + "/" + generation)
+          .setTimeCreated(now)
+          .setUpdated(now);
+      setEtag(metadata);
+      bucket.objects.put(object.getName(), new Entry(metadata, content));
+      if (current != null && bucket.isVersioned()) {
+        current.metadata.setTimeDeleted(now);
+        bucket.noncurrent.add(current);
+      }
+      return metadata.clone();
+    }
+  }
+
+  @GuardedBy("this")
+  private long nextGeneration() {
+    lastGeneration = Math.max(lastGeneration + 1, TimeUnit.MILLISECONDS.toMicros(
+        System.currentTimeMillis()));
+    return lastGeneration;
+  }
+
+  @GuardedBy("this")
+  private BucketEntry bucketEntry(String bucket) {
+    BucketEntry entry = buckets.get(bucket);
+    if (entry == null) {
+      throw new StorageException(404, "Bucket " + bucket + " not found");
+    }
+    return entry;
+  }
+
+  /**
+   * Simulates the latency, bandwidth and failures of a request transferring {@code bytes} bytes.
+   */
+  private void simulate(long bytes) {
+    if (latencyMillis > 0) {
+      Uninterruptibles.sleepUninterruptibly(latencyMillis, TimeUnit.MILLISECONDS);
+    }
+    if (bandwidth != null && bytes > 0) {
+      bandwidth.acquire(Ints.saturatedCast(bytes));
+    }
+    if (errorRate > 0) {
+      boolean fail;
+      synchronized (this) {
+        fail = random.nextDouble() < errorRate;
+      }
+      if (fail) {
+        throw new StorageException(errorCode, "Injected error " + errorCode);
+      }
+    }
+  }
+
+  private static void setEtag(Bucket bucket) {
+    bucket.setEtag(etag(bucket.getName(), bucket.getMetageneration()));
+  }
+
+  private static void setEtag(StorageObject object) {
+    object.setEtag(etag(object.getId(), object.getMetageneration()));
+  }
+
+  private static String etag(String id, long metageneration) {
+    return BaseEncoding.base64().encode(Hashing.md5().newHasher()
+        .putString(id, StandardCharsets.UTF_8)
+        .putLong(metageneration)
+        .hash()
+        .asBytes());
+  }
+
+  /**
+   * Checks the generation and metageneration preconditions in {@code options} against
+   * {@code entry}, which is {@code null} if the object doesn't exist.
+   */
+  private static void checkPreconditions(Entry entry, Map<Option, ?> options) {
+    long generation = entry != null ? entry.metadata.getGeneration() : 0;
+    Long ifGenerationMatch = (Long) options.get(Option.IF_GENERATION_MATCH);
+    Long ifGenerationNotMatch = (Long) options.get(Option.IF_GENERATION_NOT_MATCH);
+    if (ifGenerationMatch != null && ifGenerationMatch != generation
+        || ifGenerationNotMatch != null && ifGenerationNotMatch == generation) {
+      throw preconditionFailed();
+    }
+    if (entry != null) {
+      checkMetagenerationPreconditions(entry.metadata.getMetageneration(), options);
+    } else if (options.get(Option.IF_METAGENERATION_MATCH) != null) {
+      throw preconditionFailed();
+    }
+  }
+
+  private static void checkMetagenerationPreconditions(long metageneration,
+      Map<Option, ?> options) {
+    Long ifMetagenerationMatch = (Long) options.get(Option.IF_METAGENERATION_MATCH);
+    Long ifMetagenerationNotMatch = (Long) options.get(Option.IF_METAGENERATION_NOT_MATCH);
+    if (ifMetagenerationMatch != null && ifMetagenerationMatch != metageneration
+        || ifMetagenerationNotMatch != null && ifMetagenerationNotMatch == metageneration) {
+      throw preconditionFailed();
+    }
+  }
+
+  private static void checkSourcePreconditions(Entry source, Map<Option, ?> options) {
+    long generation = source.metadata.getGeneration();
+    long metageneration = source.metadata.getMetageneration();
+    Long ifGenerationMatch = (Long) options.get(Option.IF_SOURCE_GENERATION_MATCH);
+    Long ifGenerationNotMatch = (Long) options.get(Option.IF_SOURCE_GENERATION_NOT_MATCH);
+    Long ifMetagenerationMatch = (Long) options.get(Option.IF_SOURCE_METAGENERATION_MATCH);
+    Long ifMetagenerationNotMatch = (Long) options.get(Option.IF_SOURCE_METAGENERATION_NOT_MATCH);
+    if (ifGenerationMatch != null && ifGenerationMatch != generation
+        || ifGenerationNotMatch != null && ifGenerationNotMatch == generation
+        || ifMetagenerationMatch != null && ifMetagenerationMatch != metageneration
+        || ifMetagenerationNotMatch != null && ifMetagenerationNotMatch == metageneration) {
+      throw preconditionFailed();
+    }
+  }
+
+  private static StorageException preconditionFailed() {
+    return new StorageException(412, "Precondition Failed");
+  }
+
+  private static StorageException notFound(StorageObject object) {
+    return new StorageException(404, "Object " + object.getName() + " in bucket "
+        + object.getBucket() + " not found");
+  }
+
+  private static final class BucketEntry {
+
+    private Bucket bucket;
+    private final SortedMap<String, Entry> objects = new TreeMap<>();
+    private final List<Entry> noncurrent = new LinkedList<>();
+
+    BucketEntry(Bucket bucket) {
+      this.bucket = bucket;
+    }
+
+    boolean isVersioned() {
+      return bucket.getVersioning() != null
+          && Boolean.TRUE.equals(bucket.getVersioning().getEnabled());
+    }
+
+    /**
+     * Returns the generation of {@code object}, or its live generation if no generation is set.
+     */
+    Entry find(StorageObject object) {
+      Entry live = objects.get(object.getName());
+      Long generation = object.getGeneration();
+      if (generation == null || live != null && generation.equals(live.metadata.getGeneration())) {
+        return live;
+      }
+      for (Entry entry : noncurrent) {
+        if (entry.metadata.getName().equals(object.getName())
+            && generation.equals(entry.metadata.getGeneration())) {
+          return entry;
+        }
+      }
+      return null;
+    }
+
+    Iterable<Entry> allVersions() {
+      List<Entry> all = new ArrayList<>(objects.values());
+      all.addAll(noncurrent);
+      return all;
+    }
+  }
+
+  private static final class Entry {
+
+    private StorageObject metadata;
+    private final byte[] content;
+
+    Entry(StorageObject metadata, byte[] content) {
+      this.metadata = metadata;
+      this.content = content;
+    }
+  }
+
+  private static final class Upload {
+
+    private final StorageObject object;
+    private final Map<Option, ?> options;
+    private byte[] buffer = new byte[0];
+    private int size;
+
+    Upload(StorageObject object, Map<Option, ?> options) {
+      this.object = object;
+      this.options = options;
+    }
+  }
+
+  /**
+   * Batch that runs its calls one after the other when submitted. Latency and injected errors
+   * apply to the batch request as a whole.
+   */
+  private final class LocalRpcBatch implements RpcBatch {
+
+    private final List<Runnable> calls = new ArrayList<>();
+
+    @Override
+    public void addDelete(final StorageObject storageObject, final Callback<Void> callback,
+        final Map<Option, ?> options) {
+      calls.add(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            if (deleteObject(storageObject, options)) {
+              callback.onSuccess(null);
+            } else {
+              callback.onFailure(error(notFound(storageObject)));
+            }
+          } catch (StorageException ex) {
+            callback.onFailure(error(ex));
+          }
+        }
+      });
+    }
+
+    @Override
+    public void addPatch(final StorageObject storageObject,
+        final Callback<StorageObject> callback, final Map<Option, ?> options) {
+      calls.add(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            callback.onSuccess(patchObject(storageObject, options));
+          } catch (StorageException ex) {
+            callback.onFailure(error(ex));
+          }
+        }
+      });
+    }
+
+    @Override
+    public void addGet(final StorageObject storageObject, final Callback<StorageObject> callback,
+        final Map<Option, ?> options) {
+      calls.add(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            StorageObject object = getObject(storageObject, options);
+            if (object != null) {
+              callback.onSuccess(object);
+            } else {
+              callback.onFailure(error(notFound(storageObject)));
+            }
+          } catch (StorageException ex) {
+            callback.onFailure(error(ex));
+          }
+        }
+      });
+    }
+
+    @Override
+    public void submit() {
+      // the whole batch is a single request
+      simulate(0);
+      Iterator<Runnable> iterator = calls.iterator();
+      while (iterator.hasNext()) {
+        iterator.next().run();
+        iterator.remove();
+      }
+    }
+
+    private GoogleJsonError error(StorageException ex) {
+      GoogleJsonError error = new GoogleJsonError();
+      error.setCode(ex.code());
+      error.setMessage(ex.getMessage());
+      return error;
+    }
+  }
+}
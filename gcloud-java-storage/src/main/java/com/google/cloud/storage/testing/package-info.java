@@ -15,14 +15,14 @@
  */
 
 /**
- * A testing helper for Google Cloud Storage.
+ * Testing helpers for Google Cloud Storage.
  *
  * <p>A simple usage example:
  *
  * <p>Before the test:
  * <pre> {@code
  * RemoteStorageHelper helper = RemoteStorageHelper.create();
- * Storage storage = helper.options().service();
+ * Storage storage = rpc.options().service();
  * String bucket = RemoteStorageHelper.generateBucketName();
  * storage.create(BucketInfo.of(bucket));
  * } </pre>
@@ -32,6 +32,13 @@
  * RemoteStorageHelper.forceDelete(storage, bucket, 5, TimeUnit.SECONDS);
  * } </pre>
  *
+ * <p>Tests and benchmarks that shouldn't use the network can run against an in-memory backend:
+ * <pre> {@code
+ * InMemoryStorageRpc rpc = InMemoryStorageRpc.create();
+ * Storage storage = rpc.options().service();
+ * storage.create(BucketInfo.of("bucket"));
+ * } </pre>
+ *
  * @see <a href="https://github.com/GoogleCloudPlatform/gcloud-java/blob/master/TESTING.md#testing-code-that-uses-storage">
  *     gcloud-java tools for testing</a>
  */
@@ -32,6 +32,10 @@ import com.google.cloud.RetryParams;
 import com.google.cloud.storage.spi.StorageRpc;
 import com.google.cloud.storage.spi.StorageRpcFactory;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.hash.Hashing;
+import com.google.common.io.BaseEncoding;
+import com.google.common.primitives.Bytes;
+import com.google.common.primitives.Ints;
 
 import org.junit.After;
 import org.junit.Before;
@@ -229,6 +233,92 @@ public class BlobReadChannelTest {
     assertEquals(state.toString(), secondState.toString());
   }
 
+  @Test
+  public void testReadValidatesCrc32c() throws IOException {
+    byte[] firstResult = randomByteArray(DEFAULT_CHUNK_SIZE);
+    byte[] secondResult = randomByteArray(42);
+    BlobInfo blobInfo = BlobInfo.builder(BLOB_ID).crc32c(crc32c(firstResult, secondResult)).build();
+    expect(storageRpcMock.read(BLOB_ID.toPb(), EMPTY_RPC_OPTIONS, 0, DEFAULT_CHUNK_SIZE))
+        .andReturn(StorageRpc.Tuple.of("etag", firstResult));
+    expect(storageRpcMock.read(BLOB_ID.toPb(), EMPTY_RPC_OPTIONS, DEFAULT_CHUNK_SIZE,
+        DEFAULT_CHUNK_SIZE)).andReturn(StorageRpc.Tuple.of("etag", secondResult));
+    replay(storageRpcMock);
+    reader = new BlobReadChannel(options, blobInfo, EMPTY_RPC_OPTIONS);
+    ByteBuffer readBuffer = ByteBuffer.allocate(DEFAULT_CHUNK_SIZE);
+    assertEquals(DEFAULT_CHUNK_SIZE, reader.read(readBuffer));
+    readBuffer.clear();
+    assertEquals(42, reader.read(readBuffer));
+    assertEquals(-1, reader.read(readBuffer));
+  }
+
+  @Test
+  public void testReadValidatesMd5() throws IOException {
+    byte[] result = randomByteArray(42);
+    String md5 = BaseEncoding.base64().encode(Hashing.md5().hashBytes(result).asBytes());
+    BlobInfo blobInfo = BlobInfo.builder(BLOB_ID).md5(md5).build();
+    expect(storageRpcMock.read(BLOB_ID.toPb(), EMPTY_RPC_OPTIONS, 0, DEFAULT_CHUNK_SIZE))
+        .andReturn(StorageRpc.Tuple.of("etag", result));
+    replay(storageRpcMock);
+    reader = new BlobReadChannel(options, blobInfo, EMPTY_RPC_OPTIONS);
+    assertEquals(42, reader.read(ByteBuffer.allocate(DEFAULT_CHUNK_SIZE)));
+  }
+
+  @Test
+  public void testReadChecksumMismatch() throws IOException {
+    byte[] firstResult = randomByteArray(DEFAULT_CHUNK_SIZE);
+    byte[] secondResult = randomByteArray(42);
+    String crc32c = crc32c(firstResult, secondResult);
+    BlobInfo blobInfo = BlobInfo.builder(BLOB_ID).crc32c(crc32c).build();
+    secondResult[0]++;
+    expect(storageRpcMock.read(BLOB_ID.toPb(), EMPTY_RPC_OPTIONS, 0, DEFAULT_CHUNK_SIZE))
+        .andReturn(StorageRpc.Tuple.of("etag", firstResult));
+    expect(storageRpcMock.read(BLOB_ID.toPb(), EMPTY_RPC_OPTIONS, DEFAULT_CHUNK_SIZE,
+        DEFAULT_CHUNK_SIZE)).andReturn(StorageRpc.Tuple.of("etag", secondResult));
+    replay(storageRpcMock);
+    reader = new BlobReadChannel(options, blobInfo, EMPTY_RPC_OPTIONS);
+    ByteBuffer readBuffer = ByteBuffer.allocate(DEFAULT_CHUNK_SIZE);
+    reader.read(readBuffer);
+    readBuffer.clear();
+    try {
+      reader.read(readBuffer);
+      fail("Expected ReadChannel read to throw StorageException");
+    } catch (StorageException ex) {
+      assertEquals("Blob " + BLOB_ID + " has CRC32C " + crc32c + " but its content has CRC32C "
+          + crc32c(firstResult, secondResult), ex.getMessage());
+    }
+    assertEquals(0, readBuffer.position());
+    assertEquals(-1, reader.read(readBuffer));
+  }
+
+  @Test
+  public void testReadAfterSeekIsNotValidated() throws IOException {
+    byte[] result = randomByteArray(42);
+    BlobInfo blobInfo = BlobInfo.builder(BLOB_ID).crc32c("AAAAAA==").build();
+    expect(storageRpcMock.read(BLOB_ID.toPb(), EMPTY_RPC_OPTIONS, 42, DEFAULT_CHUNK_SIZE))
+        .andReturn(StorageRpc.Tuple.of("etag", result));
+    replay(storageRpcMock);
+    reader = new BlobReadChannel(options, blobInfo, EMPTY_RPC_OPTIONS);
+    reader.seek(42);
+    assertEquals(42, reader.read(ByteBuffer.allocate(DEFAULT_CHUNK_SIZE)));
+  }
+
+  @Test
+  public void testReadGzipIsNotValidated() throws IOException {
+    byte[] result = randomByteArray(42);
+    BlobInfo blobInfo =
+        BlobInfo.builder(BLOB_ID).crc32c("AAAAAA==").contentEncoding("gzip").build();
+    expect(storageRpcMock.read(BLOB_ID.toPb(), EMPTY_RPC_OPTIONS, 0, DEFAULT_CHUNK_SIZE))
+        .andReturn(StorageRpc.Tuple.of("etag", result));
+    replay(storageRpcMock);
+    reader = new BlobReadChannel(options, blobInfo, EMPTY_RPC_OPTIONS);
+    assertEquals(42, reader.read(ByteBuffer.allocate(DEFAULT_CHUNK_SIZE)));
+  }
+
+  private static String crc32c(byte[]... chunks) {
+    return BaseEncoding.base64().encode(
+        Ints.toByteArray(Hashing.crc32c().hashBytes(Bytes.concat(chunks)).asInt()));
+  }
+
   private static byte[] randomByteArray(int size) {
     byte[] byteArray = new byte[size];
     RANDOM.nextBytes(byteArray);
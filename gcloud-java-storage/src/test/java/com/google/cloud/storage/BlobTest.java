@@ -284,7 +284,7 @@ public class BlobTest {
     initializeExpectedBlob(2);
     ReadChannel channel = createMock(ReadChannel.class);
     expect(storage.options()).andReturn(mockOptions);
-    expect(storage.reader(BLOB_INFO.blobId())).andReturn(channel);
+    expect(storage.reader(eq(expectedBlob))).andReturn(channel);
     replay(storage);
     initializeBlob();
     assertSame(channel, blob.reader());
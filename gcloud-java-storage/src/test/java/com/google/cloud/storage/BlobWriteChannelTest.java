@@ -36,6 +36,10 @@ import com.google.cloud.WriteChannel;
 import com.google.cloud.storage.spi.StorageRpc;
 import com.google.cloud.storage.spi.StorageRpcFactory;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.hash.Hashing;
+import com.google.common.io.BaseEncoding;
+import com.google.common.primitives.Bytes;
+import com.google.common.primitives.Ints;
 
 import org.easymock.Capture;
 import org.easymock.CaptureType;
@@ -240,6 +244,53 @@ public class BlobWriteChannelTest {
     assertEquals(state.toString(), state2.toString());
   }
 
+  @Test
+  public void testCloseValidatesChecksum() throws IOException {
+    ByteBuffer buffer1 = randomBuffer(CUSTOM_CHUNK_SIZE);
+    ByteBuffer buffer2 = randomBuffer(MIN_CHUNK_SIZE);
+    BlobInfo blobInfo = BLOB_INFO.toBuilder()
+        .crc32c(crc32c(Bytes.concat(buffer1.array(), buffer2.array())))
+        .build();
+    expect(storageRpcMock.open(blobInfo.toPb(), EMPTY_RPC_OPTIONS)).andReturn(UPLOAD_ID);
+    storageRpcMock.write(eq(UPLOAD_ID), anyObject(byte[].class), eq(0), eq(0L),
+        eq(CUSTOM_CHUNK_SIZE), eq(false));
+    storageRpcMock.write(eq(UPLOAD_ID), anyObject(byte[].class), eq(0),
+        eq((long) CUSTOM_CHUNK_SIZE), eq(MIN_CHUNK_SIZE), eq(true));
+    replay(storageRpcMock);
+    writer = new BlobWriteChannel(options, blobInfo, EMPTY_RPC_OPTIONS);
+    writer.chunkSize(CUSTOM_CHUNK_SIZE);
+    writer.write(buffer1);
+    writer.write(buffer2);
+    writer.close();
+    assertTrue(!writer.isOpen());
+  }
+
+  @Test
+  public void testCloseChecksumMismatch() throws IOException {
+    ByteBuffer buffer = randomBuffer(MIN_CHUNK_SIZE);
+    String crc32c = crc32c(new byte[0]);
+    BlobInfo blobInfo = BLOB_INFO.toBuilder().crc32c(crc32c).build();
+    expect(storageRpcMock.open(blobInfo.toPb(), EMPTY_RPC_OPTIONS)).andReturn(UPLOAD_ID);
+    replay(storageRpcMock);
+    writer = new BlobWriteChannel(options, blobInfo, EMPTY_RPC_OPTIONS);
+    writer.write(buffer);
+    for (int i = 0; i < 2; i++) {
+      try {
+        writer.close();
+        fail("Expected BlobWriteChannel close to throw StorageException");
+      } catch (StorageException ex) {
+        assertEquals("Blob " + blobInfo.blobId() + " has CRC32C " + crc32c
+            + " but its content has CRC32C " + crc32c(buffer.array()), ex.getMessage());
+      }
+    }
+    assertTrue(writer.isOpen());
+  }
+
+  private static String crc32c(byte[] content) {
+    return BaseEncoding.base64().encode(
+        Ints.toByteArray(Hashing.crc32c().hashBytes(content).asInt()));
+  }
+
   private static ByteBuffer randomBuffer(int size) {
     byte[] byteArray = new byte[size];
     RANDOM.nextBytes(byteArray);
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.storage;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.util.zip.Checksum;
+
+public class ContentChecksumTest {
+
+  private static final BlobId BLOB_ID = BlobId.of("b", "n");
+  private static final byte[] CONTENT = "123456789".getBytes(UTF_8);
+  // checksums of CONTENT
+  private static final long CRC32C_VALUE = 0xe3069283L;
+  private static final String CRC32C = "4waSgw==";
+  private static final String MD5 = "JfnnlDI7RTiF9RgfG2JNCw==";
+
+  @Test
+  public void testCrc32c() {
+    Checksum crc32c = ContentChecksum.newCrc32c();
+    crc32c.update(CONTENT, 0, 4);
+    crc32c.update(CONTENT, 4, 5);
+    assertEquals(CRC32C_VALUE, crc32c.getValue());
+  }
+
+  @Test
+  public void testGuavaCrc32c() {
+    Checksum crc32c = new ContentChecksum.GuavaCrc32c();
+    crc32c.update(CONTENT[0]);
+    crc32c.update(CONTENT, 1, 8);
+    assertEquals(CRC32C_VALUE, crc32c.getValue());
+    crc32c.reset();
+    crc32c.update(CONTENT, 0, 9);
+    assertEquals(CRC32C_VALUE, crc32c.getValue());
+  }
+
+  @Test
+  public void testOf() {
+    assertNull(ContentChecksum.of(BlobInfo.builder(BLOB_ID).build()));
+    // the MD5 checksum is ignored if the CRC32C checksum is set
+    ContentChecksum checksum =
+        ContentChecksum.of(BlobInfo.builder(BLOB_ID).crc32c(CRC32C).md5("AAAA").build());
+    checksum.update(CONTENT, 0, CONTENT.length);
+    assertEquals(CONTENT.length, checksum.length());
+    checksum.validate();
+  }
+
+  @Test
+  public void testValidateMd5() {
+    ContentChecksum checksum = ContentChecksum.of(BlobInfo.builder(BLOB_ID).md5(MD5).build());
+    checksum.update(CONTENT, 0, CONTENT.length);
+    checksum.validate();
+  }
+
+  @Test
+  public void testValidateMismatch() {
+    ContentChecksum checksum = ContentChecksum.of(BlobInfo.builder(BLOB_ID).crc32c(CRC32C).build());
+    checksum.update(CONTENT, 0, 8);
+    try {
+      checksum.validate();
+      fail("Expected validate to throw StorageException");
+    } catch (StorageException ex) {
+      assertEquals(0, ex.code());
+    }
+  }
+}
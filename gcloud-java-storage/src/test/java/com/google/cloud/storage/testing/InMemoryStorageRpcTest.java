@@ -0,0 +1,323 @@
+/*
+ * Copyright 2016 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.storage.testing;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.cloud.Page;
+import com.google.cloud.ReadChannel;
+import com.google.cloud.WriteChannel;
+import com.google.cloud.storage.Blob;
+import com.google.cloud.storage.BlobId;
+import com.google.cloud.storage.BlobInfo;
+import com.google.cloud.storage.BucketInfo;
+import com.google.cloud.storage.CopyWriter;
+import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.Storage.BlobListOption;
+import com.google.cloud.storage.Storage.BlobSourceOption;
+import com.google.cloud.storage.Storage.BlobTargetOption;
+import com.google.cloud.storage.StorageBatch;
+import com.google.cloud.storage.StorageBatchResult;
+import com.google.cloud.storage.StorageException;
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.Hashing;
+import com.google.common.io.BaseEncoding;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class InMemoryStorageRpcTest {
+
+  private static final String BUCKET = "bucket";
+  private static final byte[] CONTENT = "Hello, World!".getBytes(UTF_8);
+
+  private InMemoryStorageRpc rpc;
+  private Storage storage;
+
+  @Before
+  public void setUp() {
+    rpc = InMemoryStorageRpc.create();
+    storage = rpc.options().service();
+    storage.create(BucketInfo.of(BUCKET));
+  }
+
+  private static byte[] content(int size) {
+    byte[] content = new byte[size];
+    for (int i = 0; i < size; i++) {
+      content[i] = (byte) i;
+    }
+    return content;
+  }
+
+  @Test
+  public void testCreateAndRead() {
+    Blob created = storage.create(BlobInfo.builder(BUCKET, "blob").build(), CONTENT);
+    assertEquals(CONTENT.length, created.size().longValue());
+    assertEquals(1L, created.metageneration().longValue());
+    assertEquals(BaseEncoding.base64().encode(Hashing.md5().hashBytes(CONTENT).asBytes()),
+        created.md5());
+    Blob blob = storage.get(BlobId.of(BUCKET, "blob"));
+    assertEquals(created.generation(), blob.generation());
+    assertEquals(created.crc32c(), blob.crc32c());
+    assertArrayEquals(CONTENT, storage.readAllBytes(BUCKET, "blob"));
+    assertNull(storage.get(BlobId.of(BUCKET, "missing")));
+    assertNull(storage.get("missing"));
+  }
+
+  @Test
+  public void testCreate_bucketMissing() {
+    try {
+      storage.create(BlobInfo.builder("missing", "blob").build(), CONTENT);
+      fail();
+    } catch (StorageException ex) {
+      assertEquals(404, ex.code());
+    }
+  }
+
+  @Test
+  public void testCreate_preconditions() {
+    Blob first = storage.create(BlobInfo.builder(BUCKET, "blob").build(), CONTENT,
+        BlobTargetOption.doesNotExist());
+    try {
+      storage.create(BlobInfo.builder(BUCKET, "blob").build(), CONTENT,
+          BlobTargetOption.doesNotExist());
+      fail();
+    } catch (StorageException ex) {
+      assertEquals(412, ex.code());
+    }
+    Blob second = storage.create(first, new byte[0], BlobTargetOption.generationMatch());
+    assertTrue(second.generation() > first.generation());
+    assertArrayEquals(new byte[0], storage.readAllBytes(BUCKET, "blob"));
+    try {
+      storage.readAllBytes(first.blobId(), BlobSourceOption.generationMatch());
+      fail();
+    } catch (StorageException ex) {
+      assertEquals(404, ex.code());
+    }
+  }
+
+  @Test
+  public void testUpdate_incrementsMetageneration() {
+    Blob blob = storage.create(BlobInfo.builder(BUCKET, "blob").build(), CONTENT);
+    Blob updated = storage.update(blob.toBuilder().contentType("text/plain").build(),
+        BlobTargetOption.metagenerationMatch());
+    assertEquals("text/plain", updated.contentType());
+    assertEquals(2L, updated.metageneration().longValue());
+    assertEquals(blob.generation(), updated.generation());
+    assertNotEquals(blob.etag(), updated.etag());
+    try {
+      storage.update(blob.toBuilder().contentType("text/html").build(),
+          BlobTargetOption.metagenerationMatch());
+      fail();
+    } catch (StorageException ex) {
+      assertEquals(412, ex.code());
+    }
+  }
+
+  @Test
+  public void testVersioning() {
+    storage.create(BucketInfo.builder("versioned").versioningEnabled(true).build());
+    Blob first = storage.create(BlobInfo.builder("versioned", "blob").build(), CONTENT);
+    storage.create(BlobInfo.builder("versioned", "blob").build(), new byte[0]);
+    assertArrayEquals(CONTENT, storage.readAllBytes(first.blobId()));
+    assertTrue(storage.delete(BlobId.of("versioned", "blob")));
+    assertNull(storage.get(BlobId.of("versioned", "blob")));
+    assertEquals(first.generation(), storage.get(first.blobId()).generation());
+    Page<Blob> versions = storage.list("versioned", BlobListOption.versions(true));
+    assertEquals(2, ImmutableList.copyOf(versions.values()).size());
+    assertTrue(storage.delete(first.blobId()));
+    assertNull(storage.get(first.blobId()));
+  }
+
+  @Test
+  public void testOverwrite_unversionedBucketDropsGeneration() {
+    Blob first = storage.create(BlobInfo.builder(BUCKET, "blob").build(), CONTENT);
+    storage.create(BlobInfo.builder(BUCKET, "blob").build(), new byte[0]);
+    assertNull(storage.get(first.blobId()));
+  }
+
+  @Test
+  public void testList_pagesAndDirectories() {
+    for (String name : new String[] {"a", "b", "dir/c", "dir/d", "e"}) {
+      storage.create(BlobInfo.builder(BUCKET, name).build(), CONTENT);
+    }
+    Page<Blob> page = storage.list(BUCKET, BlobListOption.pageSize(2));
+    List<String> names = new ArrayList<>();
+    while (page != null) {
+      for (Blob blob : page.values()) {
+        names.add(blob.name());
+      }
+      page = page.nextPage();
+    }
+    assertEquals(ImmutableList.of("a", "b", "dir/c", "dir/d", "e"), names);
+    names.clear();
+    Iterator<Blob> blobs =
+        storage.list(BUCKET, BlobListOption.currentDirectory(), BlobListOption.pageSize(2))
+            .iterateAll();
+    while (blobs.hasNext()) {
+      Blob blob = blobs.next();
+      names.add(blob.name() + (blob.isDirectory() ? " (dir)" : ""));
+    }
+    assertEquals(ImmutableList.of("a", "b", "dir/ (dir)", "e"), names);
+    Page<Blob> prefixed = storage.list(BUCKET, BlobListOption.prefix("dir/"));
+    assertEquals(2, ImmutableList.copyOf(prefixed.values()).size());
+  }
+
+  @Test
+  public void testDeleteBucket_notEmpty() {
+    storage.create(BlobInfo.builder(BUCKET, "blob").build(), CONTENT);
+    try {
+      storage.delete(BUCKET);
+      fail();
+    } catch (StorageException ex) {
+      assertEquals(409, ex.code());
+    }
+    assertTrue(storage.delete(BUCKET, "blob"));
+    assertFalse(storage.delete(BUCKET, "blob"));
+    assertTrue(storage.delete(BUCKET));
+    assertNull(storage.get(BUCKET));
+  }
+
+  @Test
+  public void testCompose() {
+    storage.create(BlobInfo.builder(BUCKET, "first").build(), "Hello, ".getBytes(UTF_8));
+    storage.create(BlobInfo.builder(BUCKET, "second").build(), "World!".getBytes(UTF_8));
+    Blob composed = storage.compose(
+        Storage.ComposeRequest.of(BUCKET, ImmutableList.of("first", "second"), "composed"));
+    assertEquals(CONTENT.length, composed.size().longValue());
+    assertEquals(2, composed.componentCount().intValue());
+    assertArrayEquals(CONTENT, storage.readAllBytes(BUCKET, "composed"));
+  }
+
+  @Test
+  public void testCopy_inChunks() {
+    byte[] content = content(3 * 1024 * 1024 + 1);
+    Blob source = storage.create(BlobInfo.builder(BUCKET, "source").build(), content);
+    CopyWriter writer = storage.copy(Storage.CopyRequest.builder()
+        .source(source.blobId())
+        .target(BlobId.of(BUCKET, "target"))
+        .megabytesCopiedPerChunk(1L)
+        .build());
+    int chunks = 1;
+    while (!writer.isDone()) {
+      assertEquals(chunks * 1024 * 1024, writer.totalBytesCopied());
+      writer.copyChunk();
+      chunks++;
+    }
+    assertEquals(4, chunks);
+    assertEquals(content.length, writer.totalBytesCopied());
+    assertEquals(source.md5(), writer.result().md5());
+    assertArrayEquals(content, storage.readAllBytes(BUCKET, "target"));
+  }
+
+  @Test
+  public void testWriterAndReader() throws IOException {
+    byte[] content = content(1000);
+    try (WriteChannel writer = storage.writer(BlobInfo.builder(BUCKET, "blob").build())) {
+      writer.setChunkSize(256 * 1024);
+      for (int i = 0; i < content.length; i += 100) {
+        writer.write(ByteBuffer.wrap(content, i, 100));
+      }
+    }
+    ByteBuffer read = ByteBuffer.allocate(content.length);
+    try (ReadChannel reader = storage.reader(BUCKET, "blob")) {
+      reader.setChunkSize(64);
+      reader.seek(10);
+      while (reader.read(read) >= 0) {
+        // keep reading
+      }
+    }
+    assertEquals(content.length - 10, read.position());
+    for (int i = 0; i < read.position(); i++) {
+      assertEquals(content[i + 10], read.get(i));
+    }
+  }
+
+  @Test
+  public void testBatch() {
+    storage.create(BlobInfo.builder(BUCKET, "blob").build(), CONTENT);
+    StorageBatch batch = storage.batch();
+    StorageBatchResult<Blob> get = batch.get(BUCKET, "blob");
+    StorageBatchResult<Blob> missing = batch.get(BUCKET, "missing");
+    StorageBatchResult<Boolean> delete = batch.delete(BUCKET, "blob");
+    StorageBatchResult<Boolean> deleteMissing = batch.delete(BUCKET, "missing");
+    batch.submit();
+    assertEquals(CONTENT.length, get.get().size().longValue());
+    assertNull(missing.get());
+    assertTrue(delete.get());
+    assertFalse(deleteMissing.get());
+    assertNull(storage.get(BlobId.of(BUCKET, "blob")));
+  }
+
+  @Test
+  public void testErrorRate() {
+    Storage failing = InMemoryStorageRpc.builder().errorRate(1).build().options().service();
+    try {
+      failing.create(BucketInfo.of(BUCKET));
+      fail();
+    } catch (StorageException ex) {
+      assertEquals(503, ex.code());
+    }
+  }
+
+  @Test
+  public void testConcurrentCreates() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<Blob>> futures = new ArrayList<>();
+      for (int i = 0; i < 100; i++) {
+        final String name = "blob-" + i;
+        futures.add(executor.submit(new Callable<Blob>() {
+          @Override
+          public Blob call() {
+            return storage.create(BlobInfo.builder(BUCKET, name).build(), CONTENT);
+          }
+        }));
+      }
+      for (Future<Blob> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+    assertEquals(100, ImmutableList.copyOf(storage.list(BUCKET).values()).size());
+  }
+
+  @Test
+  public void testReset() {
+    storage.create(BlobInfo.builder(BUCKET, "blob").build(), CONTENT);
+    rpc.reset();
+    assertNull(storage.get(BUCKET));
+  }
+}